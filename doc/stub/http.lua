@@ -21,7 +21,7 @@
 --
 -- @tparam[2] {
 --   url = string, body? = string, headers? = { [string] = string },
---   binary? = boolean, method? = string, redirect? = boolean,
+--   binary? = boolean, method? = string, redirect? = boolean, stream? = boolean,
 -- } request Options for the request.
 --
 -- This table form is an expanded version of the previous syntax. All arguments
@@ -33,6 +33,10 @@
 --
 --  - `method`: Which HTTP method to use, for instance `"PATCH"` or `"DELETE"`.
 --  - `redirect`: Whether to follow HTTP redirects. Defaults to true.
+--  - `stream`: Whether to read the response body from the connection as it is
+--    needed, rather than downloading it all before the response is returned.
+--    Reading from the response will wait until enough has been received.
+--    Defaults to false.
 --
 -- @see http.get  For a synchronous way to make GET requests.
 -- @see http.post For a synchronous way to make POST requests.
@@ -41,6 +45,7 @@
 -- @changed 1.80pr1 Added argument for binary handles.
 -- @changed 1.80pr1.6 Added support for table argument.
 -- @changed 1.86.0 Added PATCH and TRACE methods.
+-- @changed 1.98.0 Added `stream` option.
 function request(...) end
 
 --- Make a HTTP GET request to the given url.
@@ -54,7 +59,7 @@ function request(...) end
 --
 -- @tparam[2] {
 --   url = string, headers? = { [string] = string },
---   binary? = boolean, method? = string, redirect? = boolean,
+--   binary? = boolean, method? = string, redirect? = boolean, stream? = boolean,
 -- } request Options for the request. See @{http.request} for details on how
 -- these options behave.
 --
@@ -92,7 +97,7 @@ function get(...) end
 --
 -- @tparam[2] {
 --   url = string, body? = string, headers? = { [string] = string },
---   binary? = boolean, method? = string, redirect? = boolean,
+--   binary? = boolean, method? = string, redirect? = boolean, stream? = boolean,
 -- } request Options for the request. See @{http.request} for details on how
 -- these options behave.
 --
@@ -161,9 +166,22 @@ function checkURL(url) end
 -- @treturn Websocket The websocket connection.
 -- @treturn[2] false If the websocket connection failed.
 -- @treturn string An error message describing why the connection failed.
+--
+-- @tparam[2] {
+--   url = string, headers? = { [string] = string }, buffered? = boolean
+-- } request Options for the websocket.
+--
+-- If `buffered` is true, incoming messages are kept in a queue on the
+-- websocket rather than queued as [`websocket_message`](#websocket-message-event)
+-- events. Messages must then be read with `Websocket.receive` or
+-- `Websocket.receiveMany`, the latter of which can return many messages at
+-- once. If the queue fills up, the server is asked to stop sending until some
+-- messages have been read.
+--
 -- @since 1.80pr1.1
 -- @changed 1.80pr1.3 No longer asynchronous.
 -- @changed 1.95.3 Added User-Agent to default headers.
+-- @changed 1.98.0 Added table form and the `buffered` option.
 function websocket(url, headers) end
 
 --- Asynchronously open a websocket.
@@ -176,6 +194,10 @@ function websocket(url, headers) end
 -- `ws://` or `wss://` protocol.
 -- @tparam[opt] { [string] = string } headers Additional headers to send as part
 -- of the initial websocket connection.
+-- @tparam[2] {
+--   url = string, headers? = { [string] = string }, buffered? = boolean
+-- } request Options for the websocket. See @{http.websocket} for details.
 -- @since 1.80pr1.3
 -- @changed 1.95.3 Added User-Agent to default headers.
+-- @changed 1.98.0 Added table form and the `buffered` option.
 function websocketAsync(url, headers) end
@@ -52,6 +52,12 @@ public final class ComputerCraft implements ModInitializer
     public static int computerSpaceLimit = 1000 * 1000;
     public static int floppySpaceLimit = 125 * 1000;
     public static int maximumFilesOpen = 128;
+    public static int fileWriteBuffer = 8 * 1024;
+    public static int fileWriteBudget = 64 * 1024;
+    public static int resourceCacheSize = 64 << 20;
+    public static int resourceCacheMaxFileSize = 4 << 20;
+    public static String metricsFile = "";
+    public static boolean metricsJmx = false;
     public static boolean disableLua51Features = false;
     public static String defaultComputerSettings = "";
     public static boolean debugEnable = true;
@@ -59,6 +65,8 @@ public final class ComputerCraft implements ModInitializer
     public static boolean commandRequireCreative = true;
 
     public static int computerThreads = 1;
+    public static boolean computerThreadsAdaptive = false;
+    public static int maxComputerThreads = 4;
     public static long maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( 10 );
     public static long maxMainComputerTime = TimeUnit.MILLISECONDS.toNanos( 5 );
 
@@ -70,8 +78,11 @@ public final class ComputerCraft implements ModInitializer
     ) );
     public static int httpMaxRequests = 16;
     public static int httpMaxWebsockets = 4;
+    public static int httpMaxIdleConnections = 4;
     public static int httpDownloadBandwidth = 32 * 1024 * 1024;
     public static int httpUploadBandwidth = 32 * 1024 * 1024;
+    public static int httpComputerDownloadBandwidth = 0;
+    public static int httpComputerUploadBandwidth = 0;
 
     public static boolean enableCommandBlock = false;
     public static int modemRange = 64;
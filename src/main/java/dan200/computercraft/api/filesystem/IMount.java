@@ -13,7 +13,9 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a read only part of a virtual filesystem that can be mounted onto a computer using
@@ -57,6 +59,37 @@ public interface IMount
      */
     void list( @Nonnull String path, @Nonnull List<String> contents ) throws IOException;
 
+    /**
+     * Returns the file names of all the files in a directory, along with their attributes.
+     *
+     * The default implementation calls {@link #list(String, List)} and then {@link #getAttributes(String)} for each
+     * entry, skipping any entries whose attributes cannot be fetched (for instance, because they were deleted after
+     * listing). Mounts which can fetch an entry's type and size while listing (for instance, from a directory stream or
+     * an index) should override this, as it is used when searching the file system.
+     *
+     * @param path     A file path in normalised format, relative to the mount location. ie: "programs/myprograms".
+     * @param contents A map of file names to attributes. Add all the files in this directory to this map.
+     * @throws IOException If the file was not a directory, or could not be listed.
+     */
+    default void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        List<String> names = new ArrayList<>();
+        list( path, names );
+
+        String prefix = path.isEmpty() ? "" : path + "/";
+        for( String name : names )
+        {
+            try
+            {
+                contents.put( name, getAttributes( prefix + name ) );
+            }
+            catch( IOException e )
+            {
+                // Skip this entry rather than failing the whole listing, as list() would still report the others.
+            }
+        }
+    }
+
     /**
      * Returns the size of a file with a given path, in bytes.
      *
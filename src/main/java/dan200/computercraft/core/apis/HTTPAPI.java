@@ -23,7 +23,6 @@ import java.net.URI;
 import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 
 import static dan200.computercraft.core.apis.TableHelper.*;
 
@@ -41,6 +40,8 @@ public class HTTPAPI implements ILuaAPI
     private final ResourceGroup<HttpRequest> requests = new ResourceQueue<>( () -> ComputerCraft.httpMaxRequests );
     private final ResourceGroup<Websocket> websockets = new ResourceGroup<>( () -> ComputerCraft.httpMaxWebsockets );
 
+    private ComputerShapingHandler shaper;
+
     public HTTPAPI( IAPIEnvironment environment )
     {
         apiEnvironment = environment;
@@ -66,6 +67,27 @@ public class HTTPAPI implements ILuaAPI
         checkUrls.shutdown();
         requests.shutdown();
         websockets.shutdown();
+
+        synchronized( this )
+        {
+            if( shaper != null )
+            {
+                shaper.release();
+                shaper = null;
+            }
+        }
+    }
+
+    /**
+     * Get the handler which limits this computer's bandwidth. This is created when first needed, as most computers
+     * never use the HTTP API.
+     *
+     * @return This computer's shaping handler.
+     */
+    private synchronized ComputerShapingHandler getShaper()
+    {
+        if( shaper == null ) shaper = new ComputerShapingHandler();
+        return shaper;
     }
 
     @Override
@@ -81,7 +103,7 @@ public class HTTPAPI implements ILuaAPI
     {
         String address, postString, requestMethod;
         Map<?, ?> headerTable;
-        boolean binary, redirect;
+        boolean binary, redirect, stream;
 
         if( args.get( 0 ) instanceof Map )
         {
@@ -92,6 +114,7 @@ public class HTTPAPI implements ILuaAPI
             binary = optBooleanField( options, "binary", false );
             requestMethod = optStringField( options, "method", null );
             redirect = optBooleanField( options, "redirect", true );
+            stream = optBooleanField( options, "stream", false );
 
         }
         else
@@ -103,6 +126,7 @@ public class HTTPAPI implements ILuaAPI
             binary = args.optBoolean( 3, false );
             requestMethod = null;
             redirect = true;
+            stream = false;
         }
 
         HttpHeaders headers = getHeaders( headerTable );
@@ -124,7 +148,7 @@ public class HTTPAPI implements ILuaAPI
         try
         {
             URI uri = HttpRequest.checkUri( address );
-            HttpRequest request = new HttpRequest( requests, apiEnvironment, address, postString, headers, binary, redirect );
+            HttpRequest request = new HttpRequest( requests, apiEnvironment, getShaper(), address, postString, headers, binary, redirect, stream );
 
             // Make the request
             if( !request.queue( r -> r.request( uri, httpMethod ) ) )
@@ -160,19 +184,37 @@ public class HTTPAPI implements ILuaAPI
     }
 
     @LuaFunction
-    public final Object[] websocket( String address, Optional<Map<?, ?>> headerTbl ) throws LuaException
+    public final Object[] websocket( IArguments args ) throws LuaException
     {
         if( !ComputerCraft.httpWebsocketEnabled )
         {
             throw new LuaException( "Websocket connections are disabled" );
         }
 
-        HttpHeaders headers = getHeaders( headerTbl.orElse( Collections.emptyMap() ) );
+        String address;
+        Map<?, ?> headerTable;
+        boolean buffered;
+
+        if( args.get( 0 ) instanceof Map )
+        {
+            Map<?, ?> options = args.getTable( 0 );
+            address = getStringField( options, "url" );
+            headerTable = optTableField( options, "headers", Collections.emptyMap() );
+            buffered = optBooleanField( options, "buffered", false );
+        }
+        else
+        {
+            address = args.getString( 0 );
+            headerTable = args.optTable( 1, Collections.emptyMap() );
+            buffered = false;
+        }
+
+        HttpHeaders headers = getHeaders( headerTable );
 
         try
         {
             URI uri = Websocket.checkUri( address );
-            if( !new Websocket( websockets, apiEnvironment, uri, address, headers ).queue( Websocket::connect ) )
+            if( !new Websocket( websockets, apiEnvironment, getShaper(), uri, address, headers, buffered ).queue( Websocket::connect ) )
             {
                 throw new LuaException( "Too many websockets already open" );
             }
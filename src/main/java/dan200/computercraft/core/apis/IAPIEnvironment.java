@@ -77,4 +77,6 @@ public interface IAPIEnvironment
     {
         addTrackingChange( field, 1 );
     }
+
+    void addTrackingTiming( @Nonnull TrackingField field, long time );
 }
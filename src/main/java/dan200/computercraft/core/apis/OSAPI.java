@@ -33,6 +33,12 @@ public class OSAPI implements ILuaAPI
     private final IAPIEnvironment apiEnvironment;
 
     private final Int2ObjectMap<Alarm> alarms = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * All pending {@link #alarms}, sorted by when they fire. This means {@link #update()} only needs to look at the
+     * alarms which have expired.
+     */
+    private final TreeSet<Alarm> alarmQueue = new TreeSet<>();
     private int clock;
     private double time;
     private int day;
@@ -41,11 +47,13 @@ public class OSAPI implements ILuaAPI
 
     private static class Alarm implements Comparable<Alarm>
     {
+        final int token;
         final double time;
         final int day;
 
-        Alarm( double time, int day )
+        Alarm( int token, double time, int day )
         {
+            this.token = token;
             this.time = time;
             this.day = day;
         }
@@ -54,8 +62,9 @@ public class OSAPI implements ILuaAPI
         public int compareTo( @Nonnull Alarm o )
         {
             double t = day * 24.0 + time;
-            double ot = day * 24.0 + time;
-            return Double.compare( t, ot );
+            double ot = o.day * 24.0 + o.time;
+            int compare = Double.compare( t, ot );
+            return compare != 0 ? compare : Integer.compare( token, o.token );
         }
     }
 
@@ -80,6 +89,7 @@ public class OSAPI implements ILuaAPI
         synchronized( alarms )
         {
             alarms.clear();
+            alarmQueue.clear();
         }
     }
 
@@ -99,17 +109,15 @@ public class OSAPI implements ILuaAPI
             if( time > previousTime || day > previousDay )
             {
                 double now = this.day * 24.0 + this.time;
-                Iterator<Int2ObjectMap.Entry<Alarm>> it = alarms.int2ObjectEntrySet().iterator();
-                while( it.hasNext() )
+                while( !alarmQueue.isEmpty() )
                 {
-                    Int2ObjectMap.Entry<Alarm> entry = it.next();
-                    Alarm alarm = entry.getValue();
+                    Alarm alarm = alarmQueue.first();
                     double t = alarm.day * 24.0 + alarm.time;
-                    if( now >= t )
-                    {
-                        apiEnvironment.queueEvent( "alarm", entry.getIntKey() );
-                        it.remove();
-                    }
+                    if( now < t ) break;
+
+                    apiEnvironment.queueEvent( "alarm", alarm.token );
+                    alarmQueue.pollFirst();
+                    alarms.remove( alarm.token );
                 }
             }
 
@@ -124,6 +132,7 @@ public class OSAPI implements ILuaAPI
         synchronized( alarms )
         {
             alarms.clear();
+            alarmQueue.clear();
         }
     }
 
@@ -223,7 +232,9 @@ public class OSAPI implements ILuaAPI
         synchronized( alarms )
         {
             int day = time > this.time ? this.day : this.day + 1;
-            alarms.put( nextAlarmToken, new Alarm( time, day ) );
+            Alarm alarm = new Alarm( nextAlarmToken, time, day );
+            alarms.put( alarm.token, alarm );
+            alarmQueue.add( alarm );
             return nextAlarmToken++;
         }
     }
@@ -241,7 +252,8 @@ public class OSAPI implements ILuaAPI
     {
         synchronized( alarms )
         {
-            alarms.remove( token );
+            Alarm alarm = alarms.remove( token );
+            if( alarm != null ) alarmQueue.remove( alarm );
         }
     }
 
@@ -102,7 +102,20 @@ public class PeripheralAPI implements ILuaAPI, IAPIEnvironment.IPeripheralChange
             if( method == null ) throw new LuaException( "No such method " + methodName );
 
             environment.addTrackingChange( TrackingField.PERIPHERAL_OPS );
-            return method.apply( peripheral, context, this, arguments );
+            TimedContext timedContext = new TimedContext( context );
+            long start = System.nanoTime();
+            try
+            {
+                return method.apply( peripheral, timedContext, this, arguments );
+            }
+            finally
+            {
+                // Main thread methods only queue a task here, so are timed when that task runs instead.
+                if( !timedContext.issuedTask )
+                {
+                    environment.addTrackingTiming( TrackingField.PERIPHERAL_TIME, System.nanoTime() - start );
+                }
+            }
         }
 
         // IComputerAccess implementation
@@ -192,6 +205,37 @@ public class PeripheralAPI implements ILuaAPI, IAPIEnvironment.IPeripheralChange
         }
     }
 
+    /**
+     * Wraps the context of a peripheral call, timing any main thread tasks it issues when they are executed.
+     */
+    private class TimedContext implements ILuaContext
+    {
+        private final ILuaContext context;
+        boolean issuedTask;
+
+        TimedContext( ILuaContext context )
+        {
+            this.context = context;
+        }
+
+        @Override
+        public long issueMainThreadTask( @Nonnull ILuaTask task ) throws LuaException
+        {
+            issuedTask = true;
+            return context.issueMainThreadTask( () -> {
+                long start = System.nanoTime();
+                try
+                {
+                    return task.execute();
+                }
+                finally
+                {
+                    environment.addTrackingTiming( TrackingField.PERIPHERAL_TIME, System.nanoTime() - start );
+                }
+            } );
+        }
+    }
+
     private final IAPIEnvironment environment;
     private final PeripheralWrapper[] peripherals = new PeripheralWrapper[6];
     private boolean running;
@@ -389,6 +389,6 @@ public abstract class TermMethods
     public static void setColour( Terminal terminal, int colour, double r, double g, double b )
     {
         terminal.getPalette().setColour( colour, r, g, b );
-        terminal.setChanged();
+        terminal.setPaletteChanged();
     }
 }
@@ -8,13 +8,16 @@ package dan200.computercraft.core.apis.handles;
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.api.lua.LuaFunction;
 import dan200.computercraft.core.filesystem.TrackingCloseable;
+import dan200.computercraft.core.lua.OwnedByteArray;
 
+import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -78,7 +81,15 @@ public class BinaryReadableHandle extends HandleGeneric
                     return seekable.position() >= seekable.size() ? null : new Object[] { "" };
                 }
 
-                if( count <= BUFFER_SIZE )
+                if( count > BUFFER_SIZE && seekable != null )
+                {
+                    // If we know the size of the file, we can read directly into a correctly sized array.
+                    long remaining = seekable.size() - seekable.position();
+                    if( remaining <= 0 ) return null;
+                    byte[] bytes = readFully( (int) Math.min( count, remaining ) );
+                    return bytes == null ? null : new Object[] { new OwnedByteArray( bytes ) };
+                }
+                else if( count <= BUFFER_SIZE )
                 {
                     ByteBuffer buffer = ByteBuffer.allocate( count );
 
@@ -124,7 +135,7 @@ public class BinaryReadableHandle extends HandleGeneric
                         System.arraycopy( part.array(), 0, bytes, pos, part.position() );
                         pos += part.position();
                     }
-                    return new Object[] { bytes };
+                    return new Object[] { new OwnedByteArray( bytes ) };
                 }
             }
             else
@@ -154,9 +165,18 @@ public class BinaryReadableHandle extends HandleGeneric
         checkOpen();
         try
         {
-            int expected = 32;
-            if( seekable != null ) expected = Math.max( expected, (int) (seekable.size() - seekable.position()) );
-            ByteArrayOutputStream stream = new ByteArrayOutputStream( expected );
+            if( seekable != null )
+            {
+                long remaining = seekable.size() - seekable.position();
+                if( remaining <= 0 ) return null;
+                if( remaining <= Integer.MAX_VALUE )
+                {
+                    byte[] bytes = readFully( (int) remaining );
+                    return bytes == null ? null : new Object[] { new OwnedByteArray( bytes ) };
+                }
+            }
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream( 32 );
 
             ByteBuffer buf = ByteBuffer.allocate( 8192 );
             boolean readAnything = false;
@@ -177,6 +197,29 @@ public class BinaryReadableHandle extends HandleGeneric
         }
     }
 
+    /**
+     * Read up to {@code length} bytes from the current position, stopping early if we reach the end of the file. This
+     * reads straight into the returned array, so needs no intermediate buffers.
+     *
+     * @param length The number of bytes to read.
+     * @return The read bytes, or {@code null} if we are at the end of the file. This array is exactly as long as the
+     * number of bytes read.
+     * @throws IOException If the file could not be read.
+     */
+    @Nullable
+    private byte[] readFully( int length ) throws IOException
+    {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        while( buffer.hasRemaining() )
+        {
+            if( reader.read( buffer ) < 0 ) break;
+        }
+
+        if( buffer.position() == 0 ) return null;
+        return buffer.hasRemaining() ? Arrays.copyOf( bytes, buffer.position() ) : bytes;
+    }
+
     /**
      * Read a line from the file.
      *
@@ -99,6 +99,8 @@ public class BinaryWritableHandle extends HandleGeneric
         checkOpen();
         try
         {
+            flushChannel();
+
             // Technically this is not needed
             if( writer instanceof FileChannel ) ((FileChannel) writer).force( false );
         }
@@ -90,15 +90,46 @@ public class EncodedReadableHandle extends HandleGeneric
         checkOpen();
         try
         {
+            // Read the file in one pass, normalising line endings as readLine would. Namely, "\r\n" and "\r" are
+            // converted to "\n", and the final line ending is dropped.
             StringBuilder result = new StringBuilder();
-            String line = reader.readLine();
-            while( line != null )
+            char[] buffer = new char[BUFFER_SIZE];
+            boolean pendingNewline = false, lastCr = false;
+            int read;
+            while( (read = reader.read( buffer )) >= 0 )
             {
-                result.append( line );
-                line = reader.readLine();
-                if( line != null )
+                int start = 0;
+                for( int i = 0; i < read; i++ )
+                {
+                    char c = buffer[i];
+                    if( c != '\n' && c != '\r' )
+                    {
+                        lastCr = false;
+                        continue;
+                    }
+
+                    if( i > start )
+                    {
+                        if( pendingNewline ) result.append( '\n' );
+                        result.append( buffer, start, i - start );
+                        pendingNewline = false;
+                    }
+                    start = i + 1;
+
+                    // Skip the \n of a \r\n pair. This may be split across reads, hence tracking it outside the loop.
+                    boolean skip = c == '\n' && lastCr;
+                    lastCr = c == '\r';
+                    if( skip ) continue;
+
+                    if( pendingNewline ) result.append( '\n' );
+                    pendingNewline = true;
+                }
+
+                if( start < read )
                 {
-                    result.append( "\n" );
+                    if( pendingNewline ) result.append( '\n' );
+                    result.append( buffer, start, read - start );
+                    pendingNewline = false;
                 }
             }
             return new Object[] { result.toString() };
@@ -93,6 +93,7 @@ public class EncodedWritableHandle extends HandleGeneric
         try
         {
             writer.flush();
+            flushChannel();
         }
         catch( IOException ignored )
         {
@@ -11,6 +11,7 @@ import dan200.computercraft.core.filesystem.TrackingCloseable;
 import dan200.computercraft.shared.util.IoUtil;
 
 import javax.annotation.Nonnull;
+import java.io.Flushable;
 import java.io.IOException;
 import java.nio.channels.Channel;
 import java.nio.channels.SeekableByteChannel;
@@ -37,6 +38,16 @@ public abstract class HandleGeneric
         closeable = null;
     }
 
+    /**
+     * Flush the underlying file, writing any contents buffered by the file system.
+     *
+     * @throws IOException If the file could not be flushed.
+     */
+    protected final void flushChannel() throws IOException
+    {
+        if( closeable instanceof Flushable flushable ) flushable.flush();
+    }
+
     /**
      * Close this file, freeing any resources it uses.
      *
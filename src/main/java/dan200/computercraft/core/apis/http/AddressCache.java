@@ -0,0 +1,184 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.apis.http.options.AddressRule;
+import dan200.computercraft.core.apis.http.options.Options;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.security.Security;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded cache of resolved addresses, and the {@link Options} which apply to them. This means repeated requests to
+ * the same host do not need to perform another DNS lookup, or check the address against every rule in
+ * {@link ComputerCraft#httpRules}.
+ *
+ * Java's own DNS cache never evicts hosts, and (if it is disabled, or a security manager is installed) may not expire
+ * them either. This cache holds at most {@link #MAX_HOSTS} hosts, keeping addresses for {@code networkaddress.cache.ttl}
+ * (30 seconds by default) and failed lookups for {@code networkaddress.cache.negative.ttl} (10 seconds by default).
+ * Options are recomputed whenever the rules change.
+ */
+final class AddressCache
+{
+    private static final int MAX_HOSTS = 1024;
+
+    static final AddressCache INSTANCE = new AddressCache(
+        MAX_HOSTS, getTtl( "networkaddress.cache.ttl", 30 ), getTtl( "networkaddress.cache.negative.ttl", 10 ),
+        System::nanoTime, InetSocketAddress::new
+    );
+
+    private final long ttl;
+    private final long negativeTtl;
+    private final LongSupplier clock;
+    private final Resolver resolver;
+    private final Cache<String, Entry> entries;
+
+    /**
+     * Create a new address cache.
+     *
+     * @param maxHosts    The maximum number of hosts to keep.
+     * @param ttl         How long to keep resolved addresses for, in nanoseconds.
+     * @param negativeTtl How long to keep failed lookups for, in nanoseconds.
+     * @param clock       The current time, in nanoseconds.
+     * @param resolver    Resolves a host, returning an unresolved address if the lookup failed.
+     */
+    AddressCache( int maxHosts, long ttl, long negativeTtl, LongSupplier clock, Resolver resolver )
+    {
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.clock = clock;
+        this.resolver = resolver;
+        entries = CacheBuilder.newBuilder()
+            .concurrencyLevel( 4 )
+            .maximumSize( maxHosts )
+            .build();
+    }
+
+    /**
+     * Resolve a host, using a cached address if available.
+     *
+     * @param host The host to resolve.
+     * @param port The port to connect to.
+     * @return The resolved address.
+     * @throws HTTPRequestException If the host could not be resolved.
+     */
+    @Nonnull
+    InetSocketAddress getAddress( String host, int port ) throws HTTPRequestException
+    {
+        String key = getKey( host, port );
+        Entry entry = entries.getIfPresent( key );
+        if( entry == null || clock.getAsLong() - entry.created >= entry.ttl )
+        {
+            InetSocketAddress address = resolver.resolve( host, port );
+            entry = address.isUnresolved()
+                ? new Entry( null, clock.getAsLong(), negativeTtl )
+                : new Entry( address, clock.getAsLong(), ttl );
+            if( entry.ttl > 0 ) entries.put( key, entry );
+        }
+
+        if( entry.address == null ) throw new HTTPRequestException( "Unknown host" );
+        return entry.address;
+    }
+
+    /**
+     * Get the options for an address, using the cached options for this host if available.
+     *
+     * @param host    The host which was resolved.
+     * @param address The address, resolved by {@link #getAddress(String, int)}.
+     * @return The options for this address.
+     */
+    @Nonnull
+    Options getOptions( String host, InetSocketAddress address )
+    {
+        List<AddressRule> rules = ComputerCraft.httpRules;
+
+        Entry entry = entries.getIfPresent( getKey( host, address.getPort() ) );
+        if( entry == null || !address.equals( entry.address ) ) return AddressRule.apply( rules, host, address );
+
+        Decision decision = entry.decision;
+        if( decision == null || decision.rules != rules )
+        {
+            entry.decision = decision = new Decision( rules, AddressRule.apply( rules, host, address ) );
+        }
+        return decision.options;
+    }
+
+    private static String getKey( String host, int port )
+    {
+        return host.toLowerCase( Locale.ROOT ) + ":" + port;
+    }
+
+    private static long getTtl( String property, long fallback )
+    {
+        long seconds = fallback;
+        String value = Security.getProperty( property );
+        if( value != null )
+        {
+            try
+            {
+                seconds = Long.parseLong( value.trim() );
+            }
+            catch( NumberFormatException ignored )
+            {
+                // Java ignores invalid values too, so just use the default.
+            }
+        }
+
+        // A negative TTL means addresses should be cached forever.
+        return seconds < 0 ? Long.MAX_VALUE : TimeUnit.SECONDS.toNanos( seconds );
+    }
+
+    @FunctionalInterface
+    interface Resolver
+    {
+        /**
+         * Look up a host.
+         *
+         * @param host The host to resolve.
+         * @param port The port to connect to.
+         * @return The resolved address, or an unresolved one if the lookup failed.
+         */
+        InetSocketAddress resolve( String host, int port );
+    }
+
+    private static final class Entry
+    {
+        @Nullable
+        final InetSocketAddress address;
+        final long created;
+        final long ttl;
+
+        volatile Decision decision;
+
+        Entry( @Nullable InetSocketAddress address, long created, long ttl )
+        {
+            this.address = address;
+            this.created = created;
+            this.ttl = ttl;
+        }
+    }
+
+    private static final class Decision
+    {
+        final List<AddressRule> rules;
+        final Options options;
+
+        Decision( List<AddressRule> rules, Options options )
+        {
+            this.rules = rules;
+            this.options = options;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.shared.util.ThreadUtils;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.traffic.GlobalTrafficShapingHandler;
+import io.netty.handler.traffic.TrafficCounter;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the bandwidth used by all of a single computer's HTTP requests and websockets.
+ *
+ * The global limits ({@link ComputerCraft#httpUploadBandwidth} and {@link ComputerCraft#httpDownloadBandwidth}) are
+ * split equally between the computers which are currently transferring data, further capped by the per-computer limits.
+ * This means a computer downloading large files cannot starve other computers' requests, but computers with idle
+ * connections (such as an open websocket) do not hold back a share they are not using. The global
+ * {@link NetworkUtils#SHAPING_HANDLER} is still applied on top of this.
+ *
+ * Shares are recalculated every {@link #INTERVAL} milliseconds, and whenever a computer opens its first connection or
+ * closes its last one.
+ */
+public final class ComputerShapingHandler extends GlobalTrafficShapingHandler
+{
+    /**
+     * How often to recalculate shares, in milliseconds.
+     */
+    private static final long INTERVAL = 1000;
+
+    /**
+     * Runs every computer's traffic counter, and the {@linkplain #tick() tick}. This is kept separate from
+     * {@link NetworkUtils#EXECUTOR}, so that slow DNS lookups and connection setup do not delay them.
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+        ThreadUtils.factory( "HTTP-Shaping" )
+    );
+
+    /**
+     * Computers with at least one open connection. Also guards {@link #channels} and the fields below it.
+     */
+    private static final Set<ComputerShapingHandler> active = new HashSet<>();
+
+    private static ScheduledFuture<?> rebalanceTask;
+
+    private int channels;
+
+    /**
+     * The total bytes read and written as of the last {@linkplain #tick() tick}.
+     */
+    private long lastRead, lastWritten;
+
+    /**
+     * Whether this computer read or wrote anything between the last two ticks.
+     */
+    private boolean reading, writing;
+
+    private long uploadLimit = -1, downloadLimit = -1;
+
+    public ComputerShapingHandler()
+    {
+        super( EXECUTOR );
+    }
+
+    @Override
+    public void handlerAdded( ChannelHandlerContext ctx ) throws Exception
+    {
+        synchronized( active )
+        {
+            if( channels++ == 0 )
+            {
+                active.add( this );
+                if( rebalanceTask == null )
+                {
+                    rebalanceTask = EXECUTOR.scheduleAtFixedRate( ComputerShapingHandler::tick, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS );
+                }
+                rebalance();
+            }
+        }
+
+        super.handlerAdded( ctx );
+    }
+
+    @Override
+    public void handlerRemoved( ChannelHandlerContext ctx ) throws Exception
+    {
+        super.handlerRemoved( ctx );
+
+        synchronized( active )
+        {
+            if( --channels == 0 )
+            {
+                active.remove( this );
+                reading = writing = false;
+                if( active.isEmpty() && rebalanceTask != null )
+                {
+                    rebalanceTask.cancel( false );
+                    rebalanceTask = null;
+                }
+                rebalance();
+            }
+        }
+    }
+
+    /**
+     * Recalculate every computer's share of the bandwidth, for instance after the config has changed.
+     */
+    public static void reconfigure()
+    {
+        synchronized( active )
+        {
+            for( ComputerShapingHandler handler : active ) handler.uploadLimit = handler.downloadLimit = -1;
+            rebalance();
+        }
+    }
+
+    /**
+     * Find which computers have transferred data since the last tick, and then share the bandwidth between them.
+     */
+    private static void tick()
+    {
+        synchronized( active )
+        {
+            for( ComputerShapingHandler handler : active )
+            {
+                TrafficCounter counter = handler.trafficCounter();
+                long read = counter.cumulativeReadBytes(), written = counter.cumulativeWrittenBytes();
+                handler.reading = read != handler.lastRead;
+                handler.writing = written != handler.lastWritten;
+                handler.lastRead = read;
+                handler.lastWritten = written;
+            }
+
+            rebalance();
+        }
+    }
+
+    private static void rebalance()
+    {
+        if( active.isEmpty() ) return;
+
+        int uploading = 0, downloading = 0;
+        for( ComputerShapingHandler handler : active )
+        {
+            if( handler.writing ) uploading++;
+            if( handler.reading ) downloading++;
+        }
+
+        // Idle computers get the same share as busy ones without reducing it, so they can start transferring
+        // immediately. Any overshoot until the next tick is still capped by the global handler.
+        long upload = getLimit( ComputerCraft.httpUploadBandwidth, ComputerCraft.httpComputerUploadBandwidth, uploading );
+        long download = getLimit( ComputerCraft.httpDownloadBandwidth, ComputerCraft.httpComputerDownloadBandwidth, downloading );
+        for( ComputerShapingHandler handler : active )
+        {
+            // Reconfiguring resets the handler's accounting, so only do it if the limits have changed.
+            if( handler.uploadLimit == upload && handler.downloadLimit == download ) continue;
+            handler.uploadLimit = upload;
+            handler.downloadLimit = download;
+            handler.configure( upload, download );
+        }
+    }
+
+    /**
+     * Get the limit for a single computer. Limits of 0 mean the bandwidth is unlimited.
+     *
+     * @param global    The limit shared by all computers.
+     * @param computer  The limit for any single computer.
+     * @param computers The number of computers currently using this limit.
+     * @return This computer's limit.
+     */
+    private static long getLimit( long global, long computer, int computers )
+    {
+        long share = global <= 0 ? 0 : Math.max( 1, global / Math.max( 1, computers ) );
+        if( computer <= 0 ) return share;
+        return share <= 0 ? computer : Math.min( share, computer );
+    }
+}
@@ -7,7 +7,6 @@ package dan200.computercraft.core.apis.http;
 
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.core.apis.http.options.Action;
-import dan200.computercraft.core.apis.http.options.AddressRule;
 import dan200.computercraft.core.apis.http.options.Options;
 import dan200.computercraft.shared.util.ThreadUtils;
 import io.netty.buffer.ByteBuf;
@@ -50,6 +49,12 @@ public final class NetworkUtils
         .build()
     );
 
+    /**
+     * The name of {@link #SHAPING_HANDLER} in a channel's pipeline. Each computer's {@link ComputerShapingHandler} is
+     * added directly after it.
+     */
+    public static final String SHAPING_HANDLER_NAME = "global_shaping";
+
     public static final AbstractTrafficShapingHandler SHAPING_HANDLER = new GlobalTrafficShapingHandler(
         EXECUTOR, ComputerCraft.httpUploadBandwidth, ComputerCraft.httpDownloadBandwidth
     );
@@ -117,6 +122,7 @@ public final class NetworkUtils
     public static void reloadConfig()
     {
         SHAPING_HANDLER.configure( ComputerCraft.httpUploadBandwidth, ComputerCraft.httpDownloadBandwidth );
+        ComputerShapingHandler.reconfigure();
     }
 
     public static void reset()
@@ -127,7 +133,8 @@ public final class NetworkUtils
     /**
      * Create a {@link InetSocketAddress} from a {@link java.net.URI}.
      *
-     * Note, this may require a DNS lookup, and so should not be executed on the main CC thread.
+     * Note, this may require a DNS lookup, and so should not be executed on the main CC thread. Lookups are cached by
+     * {@link AddressCache}, so repeated requests to the same host are cheap.
      *
      * @param uri The URI to fetch.
      * @param ssl Whether to connect with SSL. This is used to find the default port if not otherwise specified.
@@ -142,7 +149,8 @@ public final class NetworkUtils
     /**
      * Create a {@link InetSocketAddress} from the resolved {@code host} and port.
      *
-     * Note, this may require a DNS lookup, and so should not be executed on the main CC thread.
+     * Note, this may require a DNS lookup, and so should not be executed on the main CC thread. Lookups are cached by
+     * {@link AddressCache}, so repeated requests to the same host are cheap.
      *
      * @param host The host to resolve.
      * @param port The port, or -1 if not defined.
@@ -153,9 +161,7 @@ public final class NetworkUtils
     public static InetSocketAddress getAddress( String host, int port, boolean ssl ) throws HTTPRequestException
     {
         if( port < 0 ) port = ssl ? 443 : 80;
-        InetSocketAddress socketAddress = new InetSocketAddress( host, port );
-        if( socketAddress.isUnresolved() ) throw new HTTPRequestException( "Unknown host" );
-        return socketAddress;
+        return AddressCache.INSTANCE.getAddress( host, port );
     }
 
     /**
@@ -168,7 +174,7 @@ public final class NetworkUtils
      */
     public static Options getOptions( String host, InetSocketAddress address ) throws HTTPRequestException
     {
-        Options options = AddressRule.apply( ComputerCraft.httpRules, host, address );
+        Options options = AddressCache.INSTANCE.getOptions( host, address );
         if( options.action == Action.DENY ) throw new HTTPRequestException( "Domain not permitted" );
         return options;
     }
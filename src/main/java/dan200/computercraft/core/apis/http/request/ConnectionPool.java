@@ -0,0 +1,168 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of idle HTTP connections, allowing requests to the same host to reuse a connection rather than establishing a
+ * new one (and performing another TLS handshake) each time.
+ *
+ * Connections are pooled by {@link Key}, which includes the resolved address and any options which affect how the
+ * connection is set up, so requests are never sent over a connection which their {@code http.rules} would not have
+ * allowed. At most {@link ComputerCraft#httpMaxIdleConnections} idle connections are kept for each key, and connections
+ * are closed after being idle for {@link #IDLE_TIMEOUT} seconds.
+ */
+public final class ConnectionPool
+{
+    private static final int IDLE_TIMEOUT = 30;
+
+    private static final AttributeKey<Long> RELEASED_AT = AttributeKey.valueOf( "computercraft:released_at" );
+    private static final AttributeKey<Boolean> POOLED = AttributeKey.valueOf( "computercraft:pooled" );
+
+    private static final Map<Key, Deque<Channel>> idle = new HashMap<>();
+
+    private ConnectionPool()
+    {
+    }
+
+    /**
+     * Take an idle connection from the pool.
+     *
+     * @param key The host to connect to.
+     * @return An open connection, or {@code null} if none are available.
+     */
+    @Nullable
+    static Channel acquire( Key key )
+    {
+        synchronized( idle )
+        {
+            Deque<Channel> channels = idle.get( key );
+            if( channels == null ) return null;
+
+            Channel channel;
+            while( (channel = channels.pollFirst()) != null )
+            {
+                if( channel.isActive() ) break;
+            }
+
+            if( channels.isEmpty() ) idle.remove( key );
+            return channel;
+        }
+    }
+
+    /**
+     * Return a connection to the pool once a request has finished with it. The connection will be closed if the pool
+     * is already full.
+     *
+     * @param key     The host this connection is for.
+     * @param channel The connection to return.
+     */
+    static void release( Key key, Channel channel )
+    {
+        if( !channel.isActive() ) return;
+
+        synchronized( idle )
+        {
+            Deque<Channel> channels = idle.computeIfAbsent( key, x -> new ArrayDeque<>() );
+            if( channels.size() >= ComputerCraft.httpMaxIdleConnections )
+            {
+                if( channels.isEmpty() ) idle.remove( key );
+                channel.close();
+                return;
+            }
+
+            // Most recently used connections are reused first, so the others are left to time out.
+            channels.addFirst( channel );
+        }
+
+        long releasedAt = System.nanoTime();
+        channel.attr( RELEASED_AT ).set( releasedAt );
+        if( channel.attr( POOLED ).setIfAbsent( true ) == null )
+        {
+            channel.closeFuture().addListener( x -> remove( key, channel ) );
+        }
+        channel.eventLoop().schedule( () -> {
+            // Only evict this connection if it hasn't been used since.
+            if( Objects.equals( channel.attr( RELEASED_AT ).get(), releasedAt ) && remove( key, channel ) ) channel.close();
+        }, IDLE_TIMEOUT, TimeUnit.SECONDS );
+    }
+
+    private static boolean remove( Key key, Channel channel )
+    {
+        synchronized( idle )
+        {
+            Deque<Channel> channels = idle.get( key );
+            if( channels == null || !channels.remove( channel ) ) return false;
+
+            if( channels.isEmpty() ) idle.remove( key );
+            return true;
+        }
+    }
+
+    /**
+     * Close all idle connections.
+     */
+    public static void closeAll()
+    {
+        List<Channel> channels = new ArrayList<>();
+        synchronized( idle )
+        {
+            for( Deque<Channel> hostChannels : idle.values() ) channels.addAll( hostChannels );
+            idle.clear();
+        }
+
+        for( Channel channel : channels ) channel.close();
+    }
+
+    /**
+     * Identifies which connections may be shared.
+     */
+    static final class Key
+    {
+        private final boolean ssl;
+        private final String host;
+        private final InetSocketAddress address;
+        private final int timeout;
+
+        Key( boolean ssl, String host, InetSocketAddress address, int timeout )
+        {
+            this.ssl = ssl;
+            this.host = host;
+            this.address = address;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if( this == o ) return true;
+            if( !(o instanceof Key) ) return false;
+
+            Key other = (Key) o;
+            return ssl == other.ssl && timeout == other.timeout && host.equals( other.host ) && address.equals( other.address );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( ssl, host, address, timeout );
+        }
+    }
+}
@@ -7,6 +7,7 @@ package dan200.computercraft.core.apis.http.request;
 
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.http.ComputerShapingHandler;
 import dan200.computercraft.core.apis.http.HTTPRequestException;
 import dan200.computercraft.core.apis.http.NetworkUtils;
 import dan200.computercraft.core.apis.http.Resource;
@@ -16,6 +17,7 @@ import dan200.computercraft.core.tracking.TrackingField;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
@@ -25,12 +27,15 @@ import io.netty.handler.codec.http.*;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -45,29 +50,43 @@ public class HttpRequest extends Resource<HttpRequest>
 
     private static final int MAX_REDIRECTS = 16;
 
+    static final String SHAPING_HANDLER = "shaping";
+    static final String TIMEOUT_HANDLER = "timeout";
+    static final String HTTP_HANDLER = "http";
+
     private Future<?> executorFuture;
     private ChannelFuture connectFuture;
     private HttpRequestHandler currentRequest;
 
     private final IAPIEnvironment environment;
+    private final ComputerShapingHandler shaper;
 
     private final String address;
     private final ByteBuf postBuffer;
     private final HttpHeaders headers;
     private final boolean binary;
+    private final boolean streaming;
+    private final long startTime = System.nanoTime();
 
     final AtomicInteger redirects;
 
-    public HttpRequest( ResourceGroup<HttpRequest> limiter, IAPIEnvironment environment, String address, String postText, HttpHeaders headers, boolean binary, boolean followRedirects )
+    /**
+     * The body of a streaming response, which closes this request when garbage collected.
+     */
+    private WeakReference<StreamingResponseHandle> streamHandle;
+
+    public HttpRequest( ResourceGroup<HttpRequest> limiter, IAPIEnvironment environment, ComputerShapingHandler shaper, String address, String postText, HttpHeaders headers, boolean binary, boolean followRedirects, boolean streaming )
     {
         super( limiter );
         this.environment = environment;
+        this.shaper = shaper;
         this.address = address;
         postBuffer = postText != null
             ? Unpooled.wrappedBuffer( postText.getBytes( StandardCharsets.UTF_8 ) )
             : Unpooled.buffer( 0 );
         this.headers = headers;
         this.binary = binary;
+        this.streaming = streaming;
         redirects = new AtomicInteger( followRedirects ? MAX_REDIRECTS : 0 );
 
         if( postText != null )
@@ -89,6 +108,11 @@ public class HttpRequest extends Resource<HttpRequest>
         return environment;
     }
 
+    public String address()
+    {
+        return address;
+    }
+
     public static URI checkUri( String address ) throws HTTPRequestException
     {
         URI url;
@@ -119,13 +143,30 @@ public class HttpRequest extends Resource<HttpRequest>
     }
 
     public void request( URI uri, HttpMethod method )
+    {
+        request( uri, method, true );
+    }
+
+    /**
+     * Send this request again on a new connection. This is used when a pooled connection was closed by the server
+     * before we received a response.
+     *
+     * @param uri    The URI to request.
+     * @param method The method to request with.
+     */
+    void retry( URI uri, HttpMethod method )
+    {
+        request( uri, method, false );
+    }
+
+    private void request( URI uri, HttpMethod method, boolean reuse )
     {
         if( isClosed() ) return;
-        executorFuture = NetworkUtils.EXECUTOR.submit( () -> doRequest( uri, method ) );
+        executorFuture = NetworkUtils.EXECUTOR.submit( () -> doRequest( uri, method, reuse ) );
         checkClosed();
     }
 
-    private void doRequest( URI uri, HttpMethod method )
+    private void doRequest( URI uri, HttpMethod method, boolean reuse )
     {
         // If we're cancelled, abort.
         if( isClosed() ) return;
@@ -151,7 +192,14 @@ public class HttpRequest extends Resource<HttpRequest>
             environment.addTrackingChange( TrackingField.HTTP_REQUESTS, 1 );
             environment.addTrackingChange( TrackingField.HTTP_UPLOAD, requestBody );
 
-            HttpRequestHandler handler = currentRequest = new HttpRequestHandler( this, uri, method, options );
+            ConnectionPool.Key key = new ConnectionPool.Key( ssl, uri.getHost(), socketAddress, options.timeout );
+            if( reuse && ComputerCraft.httpMaxIdleConnections > 0 && tryReuse( key, uri, method, options ) )
+            {
+                checkClosed();
+                return;
+            }
+
+            HttpRequestHandler handler = currentRequest = new HttpRequestHandler( this, uri, method, options, key, false );
             connectFuture = new Bootstrap()
                 .group( NetworkUtils.LOOP_GROUP )
                 .channelFactory( NioSocketChannel::new )
@@ -167,7 +215,8 @@ public class HttpRequest extends Resource<HttpRequest>
                         }
 
                         ChannelPipeline p = ch.pipeline();
-                        p.addLast( NetworkUtils.SHAPING_HANDLER );
+                        p.addLast( NetworkUtils.SHAPING_HANDLER_NAME, NetworkUtils.SHAPING_HANDLER );
+                        p.addAfter( NetworkUtils.SHAPING_HANDLER_NAME, SHAPING_HANDLER, shaper );
                         if( sslContext != null )
                         {
                             p.addLast( sslContext.newHandler( ch.alloc(), uri.getHost(), socketAddress.getPort() ) );
@@ -175,11 +224,11 @@ public class HttpRequest extends Resource<HttpRequest>
 
                         if( options.timeout > 0 )
                         {
-                            p.addLast( new ReadTimeoutHandler( options.timeout, TimeUnit.MILLISECONDS ) );
+                            p.addLast( TIMEOUT_HANDLER, new ReadTimeoutHandler( options.timeout, TimeUnit.MILLISECONDS ) );
                         }
 
+                        p.addLast( HTTP_HANDLER, new HttpClientCodec() );
                         p.addLast(
-                            new HttpClientCodec(),
                             new HttpContentDecompressor(),
                             handler
                         );
@@ -205,9 +254,59 @@ public class HttpRequest extends Resource<HttpRequest>
         }
     }
 
+    /**
+     * Report how long this request took, from being made to the (final) response being received or the request
+     * failing.
+     */
+    void addTiming()
+    {
+        environment.addTrackingTiming( TrackingField.HTTP_TIME, System.nanoTime() - startTime );
+    }
+
+    /**
+     * Send this request over an idle connection from the {@link ConnectionPool}.
+     *
+     * @param key     The host to send this request to.
+     * @param uri     The URI to request.
+     * @param method  The method to request with.
+     * @param options The options for this host.
+     * @return Whether a connection was available.
+     */
+    private boolean tryReuse( ConnectionPool.Key key, URI uri, HttpMethod method, Options options )
+    {
+        Channel channel = ConnectionPool.acquire( key );
+        if( channel == null ) return false;
+
+        HttpRequestHandler handler = currentRequest = new HttpRequestHandler( this, uri, method, options, key, true );
+        try
+        {
+            ChannelPipeline pipeline = channel.pipeline();
+            pipeline.addAfter( NetworkUtils.SHAPING_HANDLER_NAME, SHAPING_HANDLER, shaper );
+            if( options.timeout > 0 )
+            {
+                pipeline.addBefore( HTTP_HANDLER, TIMEOUT_HANDLER, new ReadTimeoutHandler( options.timeout, TimeUnit.MILLISECONDS ) );
+            }
+
+            // Adding the handler will send the request.
+            pipeline.addLast( handler );
+            return true;
+        }
+        catch( NoSuchElementException e )
+        {
+            // The connection was closed (and its pipeline torn down) since we took it from the pool.
+            channel.close();
+            return false;
+        }
+    }
+
     void failure( String message )
     {
-        if( tryClose() ) environment.queueEvent( FAILURE_EVENT, address, message );
+        if( tryClose() )
+        {
+            // Responses have already been timed, but connection errors and timeouts have not.
+            addTiming();
+            environment.queueEvent( FAILURE_EVENT, address, message );
+        }
     }
 
     void failure( String message, HttpResponseHandle object )
@@ -220,14 +319,49 @@ public class HttpRequest extends Resource<HttpRequest>
         if( tryClose() ) environment.queueEvent( SUCCESS_EVENT, address, object );
     }
 
+    /**
+     * Queue the response to a streaming request. Unlike {@link #success(HttpResponseHandle)}, this does not close the
+     * request, as the body has not been received yet. Instead, the request is closed once the body has been fully
+     * read, or the response handle is closed or garbage collected.
+     *
+     * @param object  The response.
+     * @param handle  The response's body.
+     * @param message The reason the request failed, or {@code null} if it was successful.
+     */
+    void stream( HttpResponseHandle object, StreamingResponseHandle handle, @Nullable String message )
+    {
+        if( isClosed() ) return;
+
+        streamHandle = createOwnerReference( handle );
+        if( message == null )
+        {
+            environment.queueEvent( SUCCESS_EVENT, address, object );
+        }
+        else
+        {
+            environment.queueEvent( FAILURE_EVENT, address, message, object );
+        }
+    }
+
     @Override
     protected void dispose()
     {
         super.dispose();
 
         executorFuture = closeFuture( executorFuture );
-        connectFuture = closeChannel( connectFuture );
+
+        // Close the connection, unless it has been returned to the pool.
+        HttpRequestHandler handler = currentRequest;
+        if( handler == null || !handler.isReleased() )
+        {
+            connectFuture = closeChannel( connectFuture );
+        }
+        else
+        {
+            connectFuture = null;
+        }
         currentRequest = closeCloseable( currentRequest );
+        streamHandle = null;
     }
 
     public static long getHeaderSize( HttpHeaders headers )
@@ -255,4 +389,9 @@ public class HttpRequest extends Resource<HttpRequest>
     {
         return binary;
     }
+
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
 }
@@ -16,10 +16,15 @@ import dan200.computercraft.core.apis.http.options.Options;
 import dan200.computercraft.core.tracking.TrackingField;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutHandler;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -27,6 +32,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static dan200.computercraft.core.apis.http.request.HttpRequest.getHeaderSize;
 
@@ -39,6 +46,13 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
 
     private static final byte[] EMPTY_BYTES = new byte[0];
 
+    /**
+     * Methods which may safely be sent twice, and so can be retried even if the server may have received them.
+     */
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(
+        HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.TRACE, HttpMethod.PUT
+    );
+
     private final HttpRequest request;
     private boolean closed = false;
 
@@ -46,22 +60,72 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
     private final HttpMethod method;
     private final Options options;
 
+    private final ConnectionPool.Key key;
+    private final boolean reused;
+    private volatile Channel channel;
+    private volatile boolean released;
+    private volatile boolean written;
+
     private Charset responseCharset;
     private final HttpHeaders responseHeaders = new DefaultHttpHeaders();
+    private boolean responseKeepAlive;
     private HttpResponseStatus responseStatus;
     private CompositeByteBuf responseBody;
 
-    HttpRequestHandler( HttpRequest request, URI uri, HttpMethod method, Options options )
+    private volatile ResponseStream responseStream;
+    private long received;
+
+    HttpRequestHandler( HttpRequest request, URI uri, HttpMethod method, Options options, ConnectionPool.Key key, boolean reused )
     {
         this.request = request;
 
         this.uri = uri;
         this.method = method;
         this.options = options;
+
+        this.key = key;
+        this.reused = reused;
+    }
+
+    /**
+     * Whether this handler's connection has been returned to the {@link ConnectionPool}, and so should not be closed.
+     *
+     * @return Whether the connection has been released.
+     */
+    boolean isReleased()
+    {
+        return released;
+    }
+
+    @Override
+    public void handlerAdded( ChannelHandlerContext ctx ) throws Exception
+    {
+        channel = ctx.channel();
+
+        // If we're reusing a connection, it's already active, so send the request immediately.
+        if( reused )
+        {
+            if( ctx.channel().isActive() )
+            {
+                sendRequest( ctx );
+            }
+            else
+            {
+                retry( ctx );
+            }
+        }
+
+        super.handlerAdded( ctx );
     }
 
     @Override
     public void channelActive( ChannelHandlerContext ctx ) throws Exception
+    {
+        if( !reused ) sendRequest( ctx );
+        super.channelActive( ctx );
+    }
+
+    private void sendRequest( ChannelHandlerContext ctx )
     {
         if( request.checkClosed() ) return;
 
@@ -81,17 +145,60 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
             request.headers().set( HttpHeaderNames.ACCEPT_CHARSET, "UTF-8" );
         }
         request.headers().set( HttpHeaderNames.HOST, uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort() );
-        request.headers().set( HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE );
+        if( ComputerCraft.httpMaxIdleConnections > 0 )
+        {
+            request.headers().set( HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE );
+        }
+        else
+        {
+            request.headers().set( HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE );
+        }
 
-        ctx.channel().writeAndFlush( request );
+        ctx.channel().writeAndFlush( request ).addListener( f -> {
+            if( f.isSuccess() ) written = true;
+        } );
+    }
 
-        super.channelActive( ctx );
+    /**
+     * Determine whether we should retry this request on a new connection. This happens if a pooled connection was
+     * closed (for instance, the server timed it out) before we received a response.
+     *
+     * Once the request has been written, the server may have acted on it, so only idempotent requests are retried.
+     * Other requests are only retried if the connection failed before the request was sent.
+     *
+     * @param cause The exception which caused the failure, or {@code null} if the connection was closed.
+     * @return Whether we should retry this request.
+     */
+    private boolean shouldRetry( @Nullable Throwable cause )
+    {
+        // A timeout means the server is slow rather than the connection being stale, so retrying would just wait again.
+        if( cause instanceof ReadTimeoutException ) return false;
+        return reused && !closed && responseStatus == null && (!written || IDEMPOTENT_METHODS.contains( method ));
+    }
+
+    private void retry( ChannelHandlerContext ctx )
+    {
+        closed = true;
+        ctx.close();
+        request.retry( uri, method );
     }
 
     @Override
     public void channelInactive( ChannelHandlerContext ctx ) throws Exception
     {
-        if( !closed ) request.failure( "Could not connect" );
+        if( responseStream != null )
+        {
+            if( !closed ) failStream( ctx, "Connection closed" );
+        }
+        else if( shouldRetry( null ) )
+        {
+            retry( ctx );
+        }
+        else if( !closed )
+        {
+            // Once the request has been sent, we did connect, so report what actually went wrong.
+            request.failure( written ? "Connection closed" : "Could not connect" );
+        }
         super.channelInactive( ctx );
     }
 
@@ -132,12 +239,20 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
             }
 
             responseCharset = HttpUtil.getCharset( response, StandardCharsets.UTF_8 );
+            responseKeepAlive = HttpUtil.isKeepAlive( response );
             responseStatus = response.status();
             responseHeaders.add( response.headers() );
+
+            if( request.isStreaming() ) startStream();
         }
 
         if( message instanceof HttpContent content )
         {
+            if( responseStream != null )
+            {
+                streamContent( ctx, content );
+                return;
+            }
 
             if( responseBody == null )
             {
@@ -170,15 +285,139 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
                     responseHeaders.set( HttpHeaderNames.CONTENT_LENGTH, responseBody.readableBytes() );
                 }
 
-                ctx.close();
+                releaseOrClose( ctx );
                 sendResponse();
             }
         }
     }
 
+    /**
+     * Send the response to the computer as soon as we have received its headers, with a body which is read from the
+     * connection as the computer needs it.
+     */
+    private void startStream()
+    {
+        request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, getHeaderSize( responseHeaders ) );
+        request.addTiming();
+
+        HttpResponseStatus status = responseStatus;
+        ResponseStream stream = responseStream = new ResponseStream( request, this );
+        StreamingResponseHandle reader = new StreamingResponseHandle( stream, request.isBinary(), responseCharset );
+        HttpResponseHandle response = new HttpResponseHandle( reader, status.code(), status.reasonPhrase(), getHeaders() );
+        request.stream( response, reader, isSuccess( status ) ? null : status.reasonPhrase() );
+    }
+
+    private void streamContent( ChannelHandlerContext ctx, HttpContent content )
+    {
+        ByteBuf partial = content.content();
+        if( partial.isReadable() )
+        {
+            received += partial.readableBytes();
+            if( options.maxDownload != 0 && received > options.maxDownload )
+            {
+                failStream( ctx, "Response is too large" );
+                return;
+            }
+
+            request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, partial.readableBytes() );
+            responseStream.offer( partial );
+        }
+
+        if( content instanceof LastHttpContent )
+        {
+            closed = true;
+            responseStream.finish();
+
+            // The request is left open until the computer has read the rest of the body, so any unread data is
+            // released if the handle is garbage collected first.
+            releaseOrClose( ctx );
+        }
+    }
+
+    private void failStream( ChannelHandlerContext ctx, String message )
+    {
+        closed = true;
+        responseStream.fail( message );
+        ctx.close();
+    }
+
+    /**
+     * Pause or resume reading from the connection. This is used by {@link ResponseStream} to stop the server sending
+     * more data while the computer has plenty left to read.
+     *
+     * While paused, the read timeout is removed, as we are waiting on the computer rather than the server.
+     *
+     * @param reading Whether we should read from the connection.
+     */
+    void setReading( boolean reading )
+    {
+        Channel channel = this.channel;
+        if( channel == null ) return;
+
+        channel.eventLoop().execute( () -> {
+            // Don't touch the connection once we're done with it, as it may have been returned to the pool.
+            if( closed || !channel.isActive() ) return;
+
+            ChannelPipeline pipeline = channel.pipeline();
+            boolean hasTimeout = pipeline.get( HttpRequest.TIMEOUT_HANDLER ) != null;
+            if( reading )
+            {
+                if( options.timeout > 0 && !hasTimeout )
+                {
+                    pipeline.addBefore( HttpRequest.HTTP_HANDLER, HttpRequest.TIMEOUT_HANDLER, new ReadTimeoutHandler( options.timeout, TimeUnit.MILLISECONDS ) );
+                }
+                channel.config().setAutoRead( true );
+            }
+            else
+            {
+                channel.config().setAutoRead( false );
+                if( hasTimeout ) pipeline.remove( HttpRequest.TIMEOUT_HANDLER );
+            }
+        } );
+    }
+
+    /**
+     * Return our connection to the pool if the server allows it to be reused, otherwise close it.
+     *
+     * @param ctx The current channel context.
+     */
+    private void releaseOrClose( ChannelHandlerContext ctx )
+    {
+        Channel channel = ctx.channel();
+        if( ComputerCraft.httpMaxIdleConnections <= 0 || !channel.isActive() || !responseKeepAlive )
+        {
+            ctx.close();
+            return;
+        }
+
+        released = true;
+        closed = true;
+        channel.config().setAutoRead( true );
+        ChannelPipeline pipeline = channel.pipeline();
+        if( pipeline.get( HttpRequest.TIMEOUT_HANDLER ) != null ) pipeline.remove( HttpRequest.TIMEOUT_HANDLER );
+
+        // Idle connections shouldn't count towards this computer's share of the bandwidth.
+        if( pipeline.get( HttpRequest.SHAPING_HANDLER ) != null ) pipeline.remove( HttpRequest.SHAPING_HANDLER );
+        pipeline.remove( this );
+        ConnectionPool.release( key, channel );
+    }
+
     @Override
     public void exceptionCaught( ChannelHandlerContext ctx, Throwable cause )
     {
+        if( responseStream != null )
+        {
+            if( ComputerCraft.logComputerErrors ) ComputerCraft.log.error( "Error handling HTTP response", cause );
+            if( !closed ) failStream( ctx, NetworkUtils.toFriendlyError( cause ) );
+            return;
+        }
+
+        if( shouldRetry( cause ) )
+        {
+            retry( ctx );
+            return;
+        }
+
         if( ComputerCraft.logComputerErrors ) ComputerCraft.log.error( "Error handling HTTP response", cause );
         request.failure( NetworkUtils.toFriendlyError( cause ) );
     }
@@ -189,17 +428,12 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
         CompositeByteBuf body = responseBody;
         byte[] bytes = body == null ? EMPTY_BYTES : NetworkUtils.toBytes( body );
 
-        // Decode the headers
         HttpResponseStatus status = responseStatus;
-        Map<String, String> headers = new HashMap<>();
-        for( Map.Entry<String, String> header : responseHeaders )
-        {
-            String existing = headers.get( header.getKey() );
-            headers.put( header.getKey(), existing == null ? header.getValue() : existing + "," + header.getValue() );
-        }
+        Map<String, String> headers = getHeaders();
 
         // Fire off a stats event
         request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, getHeaderSize( responseHeaders ) + bytes.length );
+        request.addTiming();
 
         // Prepare to queue an event
         ArrayByteChannel contents = new ArrayByteChannel( bytes );
@@ -208,7 +442,7 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
             : new EncodedReadableHandle( EncodedReadableHandle.open( contents, responseCharset ) );
         HttpResponseHandle stream = new HttpResponseHandle( reader, status.code(), status.reasonPhrase(), headers );
 
-        if( status.code() >= 200 && status.code() < 400 )
+        if( isSuccess( status ) )
         {
             request.success( stream );
         }
@@ -218,6 +452,27 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
         }
     }
 
+    /**
+     * Decode the response's headers, combining any which are sent multiple times.
+     *
+     * @return The response's headers.
+     */
+    private Map<String, String> getHeaders()
+    {
+        Map<String, String> headers = new HashMap<>();
+        for( Map.Entry<String, String> header : responseHeaders )
+        {
+            String existing = headers.get( header.getKey() );
+            headers.put( header.getKey(), existing == null ? header.getValue() : existing + "," + header.getValue() );
+        }
+        return headers;
+    }
+
+    private static boolean isSuccess( HttpResponseStatus status )
+    {
+        return status.code() >= 200 && status.code() < 400;
+    }
+
     /**
      * Determine the redirect from this response.
      *
@@ -247,10 +502,19 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
     public void close()
     {
         closed = true;
+
+        Channel channel = this.channel;
+        if( channel != null && !released ) channel.close();
+
         if( responseBody != null )
         {
             responseBody.release();
             responseBody = null;
         }
+
+        // Release any of the body which was never read. If we're closed before it was all received, this also makes
+        // sure the computer isn't left waiting for the rest.
+        ResponseStream stream = responseStream;
+        if( stream != null ) stream.discard();
     }
 }
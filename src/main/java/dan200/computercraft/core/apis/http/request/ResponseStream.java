@@ -0,0 +1,236 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.core.computer.MainThread;
+import dan200.computercraft.core.filesystem.TrackingCloseable;
+import io.netty.buffer.ByteBuf;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The body of a streamed HTTP response, shared between the connection's {@link HttpRequestHandler} and the computer's
+ * {@link StreamingResponseHandle}.
+ *
+ * Chunks are queued as they are received from the server. Once more than {@link #HIGH_WATER} bytes are waiting to be
+ * read, we stop reading from the connection (and so the server's TCP window fills up and it stops sending), resuming
+ * once the computer has read all but {@link #LOW_WATER} bytes. This means the memory used by a response is bounded,
+ * however large its body is.
+ *
+ * If the computer is waiting for data, we wake it up when more arrives. Rather than inventing a new event, which every
+ * program would then see, this queues a {@code task_complete} event with an id no task will ever use. Programs already
+ * ignore task events which are not their own.
+ *
+ * The request is kept open until the computer has read the whole body (or closes the handle), so that the request's
+ * weak reference to the handle stays alive. If the handle is garbage collected before then, the request is closed and
+ * any unread chunks are {@linkplain #discard() released}.
+ */
+final class ResponseStream implements TrackingCloseable
+{
+    private static final String WAKE_EVENT = "task_complete";
+
+    private static final int HIGH_WATER = 64 * 1024;
+    private static final int LOW_WATER = 16 * 1024;
+
+    private final HttpRequest request;
+    private final HttpRequestHandler handler;
+
+    private final long wakeId = MainThread.getUniqueTaskID();
+
+    private final Deque<ByteBuf> chunks = new ArrayDeque<>();
+    private int queued;
+    private boolean paused;
+    private boolean finished;
+
+    /**
+     * Whether the computer is waiting for more data. This is only cleared by the computer, once it has resumed.
+     */
+    private boolean waiting;
+
+    /**
+     * Whether we have queued an event to wake the computer since it started waiting.
+     */
+    private boolean woken;
+
+    private boolean open = true;
+    private String error;
+
+    ResponseStream( HttpRequest request, HttpRequestHandler handler )
+    {
+        this.request = request;
+        this.handler = handler;
+    }
+
+    /**
+     * Queue a chunk of the body. This is called from the connection's event loop.
+     *
+     * @param chunk The chunk to queue. This is retained by the stream.
+     */
+    synchronized void offer( ByteBuf chunk )
+    {
+        if( !open || finished ) return;
+
+        chunks.addLast( chunk.retain() );
+        queued += chunk.readableBytes();
+        if( !paused && queued >= HIGH_WATER )
+        {
+            paused = true;
+            handler.setReading( false );
+        }
+
+        wake();
+    }
+
+    /**
+     * Mark the body as having been fully received.
+     */
+    synchronized void finish()
+    {
+        finished = true;
+        wake();
+    }
+
+    /**
+     * Abort this stream, for instance if the connection was closed before the body was received.
+     *
+     * @param message The error to report to the computer on its next read.
+     */
+    synchronized void fail( String message )
+    {
+        if( finished ) return;
+
+        finished = true;
+        error = message;
+        wake();
+    }
+
+    private void wake()
+    {
+        if( !waiting || woken ) return;
+        woken = true;
+        request.environment().queueEvent( WAKE_EVENT, wakeId, true );
+    }
+
+    /**
+     * Take the next chunk of the body.
+     *
+     * @return The next chunk, which the caller must release, or {@code null} if none is available yet.
+     */
+    @Nullable
+    synchronized ByteBuf poll()
+    {
+        ByteBuf chunk = chunks.pollFirst();
+        if( chunk == null ) return null;
+
+        queued -= chunk.readableBytes();
+        if( paused && queued < LOW_WATER )
+        {
+            paused = false;
+            if( !finished ) handler.setReading( true );
+        }
+        return chunk;
+    }
+
+    /**
+     * Whether the whole body has been received and read.
+     *
+     * @return If there is nothing more to read.
+     */
+    synchronized boolean isFinished()
+    {
+        return finished && chunks.isEmpty();
+    }
+
+    /**
+     * Get the reason this stream failed.
+     *
+     * @return The error message, or {@code null} if the stream has not failed.
+     */
+    @Nullable
+    synchronized String getError()
+    {
+        return error;
+    }
+
+    /**
+     * Prepare to wait for more data.
+     *
+     * The computer should then wait for <em>any</em> event, calling {@link #resume()} and trying to read again after
+     * each one. Events are dropped when a computer's event queue is full, so it must not rely on receiving ours.
+     * However, in that case it has plenty of other events which will wake it up.
+     *
+     * @return Whether the computer should wait, or {@code false} if data arrived in the meantime and so it should try
+     * reading again.
+     */
+    synchronized boolean await()
+    {
+        if( !chunks.isEmpty() || finished ) return false;
+        waiting = true;
+        woken = false;
+        return true;
+    }
+
+    /**
+     * Stop waiting for data, after the computer has been resumed.
+     */
+    synchronized void resume()
+    {
+        waiting = false;
+    }
+
+    /**
+     * Close the request once the computer has read the whole body. The handle may still be used, though will only
+     * report the end of the body (or the error which ended it).
+     */
+    void release()
+    {
+        request.close();
+    }
+
+    /**
+     * Release any chunks which have not been read. This is called when the request is closed, and so nothing further
+     * will be received.
+     */
+    void discard()
+    {
+        synchronized( this )
+        {
+            if( !finished )
+            {
+                finished = true;
+                error = "Connection closed";
+                wake();
+            }
+
+            ByteBuf chunk;
+            while( (chunk = chunks.pollFirst()) != null ) chunk.release();
+            queued = 0;
+        }
+    }
+
+    @Override
+    public synchronized boolean isOpen()
+    {
+        return open;
+    }
+
+    @Override
+    public void close()
+    {
+        synchronized( this )
+        {
+            if( !open ) return;
+            open = false;
+        }
+
+        discard();
+
+        // Closing the request closes the connection, if it has not been returned to the pool already.
+        request.close();
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+import dan200.computercraft.api.lua.MethodResult;
+import dan200.computercraft.core.apis.handles.HandleGeneric;
+import io.netty.buffer.ByteBuf;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * The body of a http response made with {@code stream = true}. This provides the same reading methods as a normal
+ * response, but the body is read from the connection as it is needed, rather than being downloaded up front.
+ *
+ * If no data is available yet, reading will wait until the server has sent enough, much like
+ * {@code os.pullEvent()}. Any events received while waiting are discarded, as with {@code sleep()}.
+ */
+public class StreamingResponseHandle extends HandleGeneric
+{
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate( 0 );
+
+    private final ResponseStream stream;
+    private final boolean binary;
+    private final CharsetDecoder decoder;
+
+    /**
+     * Data which has been decoded, but not yet read. Binary responses are decoded as ISO-8859-1, so each character is
+     * a single byte.
+     */
+    private final StringBuilder buffer = new StringBuilder();
+    private int position;
+
+    /**
+     * Bytes at the end of the previous chunk which did not form a complete character.
+     */
+    private ByteBuffer partial = EMPTY;
+    private boolean ended;
+
+    StreamingResponseHandle( ResponseStream stream, boolean binary, Charset charset )
+    {
+        super( stream );
+        this.stream = stream;
+        this.binary = binary;
+
+        // Replace malformed input rather than erroring, as EncodedReadableHandle does.
+        decoder = (binary ? StandardCharsets.ISO_8859_1 : charset).newDecoder()
+            .onMalformedInput( CodingErrorAction.REPLACE )
+            .onUnmappableCharacter( CodingErrorAction.REPLACE );
+    }
+
+    /**
+     * Read a number of characters (or bytes, for binary responses) from the response.
+     *
+     * @param countArg The number to read. For binary responses, a single byte is returned <em>as a number</em> when
+     *                 this is absent. Otherwise, this defaults to 1.
+     * @return The read data.
+     * @throws LuaException When trying to read a negative number of characters.
+     * @throws LuaException If the response has been closed, or the connection failed while reading.
+     * @cc.treturn [1] nil If we are at the end of the response.
+     * @cc.treturn [2] number The value of the byte read, for binary responses when {@code count} is absent.
+     * @cc.treturn [3] string The characters read.
+     */
+    @LuaFunction
+    public final MethodResult read( Optional<Integer> countArg ) throws LuaException
+    {
+        checkOpen();
+
+        int count = countArg.orElse( 1 );
+        if( count < 0 ) throw new LuaException( "Cannot read a negative number of " + (binary ? "bytes" : "characters") );
+        boolean single = binary && !countArg.isPresent();
+
+        return read( ended -> {
+            int available = available();
+            if( available < Math.max( count, 1 ) && !ended ) return null;
+            if( available == 0 ) return MethodResult.of();
+
+            String result = take( Math.min( count, available ) );
+            return single ? MethodResult.of( result.charAt( 0 ) & 0xFF ) : MethodResult.of( encode( result ) );
+        } );
+    }
+
+    /**
+     * Read a line from the response.
+     *
+     * @param withTrailingArg Whether to include the newline characters with the returned string. Defaults to {@code false}.
+     * @return The read line.
+     * @throws LuaException If the response has been closed, or the connection failed while reading.
+     * @cc.treturn string|nil The read line or {@code nil} if at the end of the response.
+     */
+    @LuaFunction
+    public final MethodResult readLine( Optional<Boolean> withTrailingArg ) throws LuaException
+    {
+        checkOpen();
+
+        boolean withTrailing = withTrailingArg.orElse( false );
+        return read( ended -> {
+            int newline = buffer.indexOf( "\n", position );
+            if( newline < 0 )
+            {
+                if( !ended ) return null;
+                return available() == 0 ? MethodResult.of() : MethodResult.of( encode( take( available() ) ) );
+            }
+
+            String line = take( newline + 1 - position );
+            if( !withTrailing )
+            {
+                int end = line.length() - 1;
+                if( end > 0 && line.charAt( end - 1 ) == '\r' ) end--;
+                line = line.substring( 0, end );
+            }
+            return MethodResult.of( encode( line ) );
+        } );
+    }
+
+    /**
+     * Read the remainder of the response.
+     *
+     * @return The rest of the response.
+     * @throws LuaException If the response has been closed, or the connection failed while reading.
+     * @cc.treturn string|nil The remaining contents of the response, or {@code nil} if we are at the end.
+     */
+    @LuaFunction
+    public final MethodResult readAll() throws LuaException
+    {
+        checkOpen();
+
+        return read( ended -> {
+            if( !ended ) return null;
+            return available() == 0 ? MethodResult.of() : MethodResult.of( encode( take( available() ) ) );
+        } );
+    }
+
+    /**
+     * Attempt a read, pulling more data from the stream until it succeeds. If no more data is available, we wait for
+     * the stream to receive some and then try again.
+     *
+     * @param reader The read to perform.
+     * @return The result of reading, or a yield if we must wait for more data.
+     * @throws LuaException If the stream failed.
+     */
+    private MethodResult read( Reader reader ) throws LuaException
+    {
+        checkOpen();
+        while( true )
+        {
+            MethodResult result = reader.read( ended );
+            if( result != null ) return result;
+
+            if( !pull() && stream.await() )
+            {
+                // Try again after every event, rather than waiting for a specific one - see ResponseStream.await().
+                return MethodResult.pullEvent( null, args -> {
+                    stream.resume();
+                    return read( reader );
+                } );
+            }
+        }
+    }
+
+    /**
+     * Decode the next chunk from the stream.
+     *
+     * @return Whether any more data was available.
+     * @throws LuaException If the stream failed.
+     */
+    private boolean pull() throws LuaException
+    {
+        if( ended ) return false;
+
+        ByteBuf chunk = stream.poll();
+        if( chunk != null )
+        {
+            try
+            {
+                decode( chunk.nioBuffer(), false );
+            }
+            finally
+            {
+                chunk.release();
+            }
+            return true;
+        }
+
+        if( !stream.isFinished() ) return false;
+
+        // The whole body has been received, so free up the request.
+        stream.release();
+
+        String error = stream.getError();
+        if( error != null ) throw new LuaException( error );
+
+        decode( EMPTY, true );
+        ended = true;
+        return true;
+    }
+
+    private void decode( ByteBuffer bytes, boolean end )
+    {
+        ByteBuffer input = bytes;
+        if( partial.hasRemaining() )
+        {
+            input = ByteBuffer.allocate( partial.remaining() + bytes.remaining() );
+            input.put( partial ).put( bytes ).flip();
+        }
+
+        CharBuffer output = CharBuffer.allocate( (int) Math.ceil( input.remaining() * (double) decoder.maxCharsPerByte() ) + 4 );
+        decoder.decode( input, output, end );
+        if( end ) decoder.flush( output );
+        output.flip();
+
+        // Compact the buffer before appending, so it does not grow without bound.
+        if( position > 0 && position >= buffer.length() / 2 )
+        {
+            buffer.delete( 0, position );
+            position = 0;
+        }
+        buffer.append( output );
+
+        // Keep any incomplete character around until the next chunk arrives.
+        partial = input.hasRemaining() ? ByteBuffer.allocate( input.remaining() ).put( input ).flip() : EMPTY;
+    }
+
+    private int available()
+    {
+        return buffer.length() - position;
+    }
+
+    private String take( int count )
+    {
+        String result = buffer.substring( position, position + count );
+        position += count;
+        return result;
+    }
+
+    private Object encode( String contents )
+    {
+        return binary ? contents.getBytes( StandardCharsets.ISO_8859_1 ) : contents;
+    }
+
+    @FunctionalInterface
+    private interface Reader
+    {
+        /**
+         * Try to read from the buffered data.
+         *
+         * @param ended Whether the whole response has been received. If so, this must return a result.
+         * @return The result of reading, or {@code null} if more data is needed.
+         * @throws LuaException If the read failed.
+         */
+        @Nullable
+        MethodResult read( boolean ended ) throws LuaException;
+    }
+}
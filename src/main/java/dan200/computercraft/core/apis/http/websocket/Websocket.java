@@ -8,6 +8,7 @@ package dan200.computercraft.core.apis.http.websocket;
 import com.google.common.base.Strings;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.http.ComputerShapingHandler;
 import dan200.computercraft.core.apis.http.HTTPRequestException;
 import dan200.computercraft.core.apis.http.NetworkUtils;
 import dan200.computercraft.core.apis.http.Resource;
@@ -34,6 +35,12 @@ import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.Future;
 
 /**
@@ -52,22 +59,64 @@ public class Websocket extends Resource<Websocket>
     static final String CLOSE_EVENT = "websocket_closed";
     static final String MESSAGE_EVENT = "websocket_message";
 
+    /**
+     * Queued when a message arrives on a buffered websocket, and a computer is waiting in
+     * {@link WebsocketHandle#receive} for one. This may be dropped if the computer's event queue is full, so the
+     * computer checks its inbox again after any event.
+     */
+    static final String INBOX_EVENT = "websocket_inbox";
+
+    /**
+     * The maximum number of messages (or bytes) held in a buffered websocket's inbox. Once this is reached, we stop
+     * reading from the connection until the computer has received half of them.
+     */
+    private static final int INBOX_MESSAGES = 256;
+    private static final int INBOX_BYTES = 1 << 20;
+
     private Future<?> executorFuture;
     private ChannelFuture connectFuture;
     private WeakReference<WebsocketHandle> websocketHandle;
 
     private final IAPIEnvironment environment;
+    private final ComputerShapingHandler shaper;
     private final URI uri;
     private final String address;
     private final HttpHeaders headers;
+    private final boolean buffered;
+
+    /**
+     * Messages received on a buffered websocket, which have not been received by the computer yet. The other inbox
+     * fields are also guarded by this.
+     */
+    private final Deque<Message> inbox = new ArrayDeque<>();
+    private int inboxBytes;
+    private Channel pausedChannel;
+
+    /**
+     * Whether the computer is waiting for a message. This is only cleared by the computer, once it has been resumed.
+     */
+    private boolean waiting;
+
+    /**
+     * Whether we have queued an {@link #INBOX_EVENT} since the computer started waiting.
+     */
+    private boolean woken;
 
-    public Websocket( ResourceGroup<Websocket> limiter, IAPIEnvironment environment, URI uri, String address, HttpHeaders headers )
+    /**
+     * The {@link #CLOSE_EVENT} or {@link #FAILURE_EVENT} for a buffered websocket which was closed while messages were
+     * still in its inbox. This is queued once the computer has received them all.
+     */
+    private Object[] closeEvent;
+
+    public Websocket( ResourceGroup<Websocket> limiter, IAPIEnvironment environment, ComputerShapingHandler shaper, URI uri, String address, HttpHeaders headers, boolean buffered )
     {
         super( limiter );
         this.environment = environment;
+        this.shaper = shaper;
         this.uri = uri;
         this.address = address;
         this.headers = headers;
+        this.buffered = buffered;
     }
 
     public static URI checkUri( String address ) throws HTTPRequestException
@@ -145,7 +194,7 @@ public class Websocket extends Resource<Websocket>
                     protected void initChannel( SocketChannel ch )
                     {
                         ChannelPipeline p = ch.pipeline();
-                        p.addLast( NetworkUtils.SHAPING_HANDLER );
+                        p.addLast( NetworkUtils.SHAPING_HANDLER, shaper );
                         if( sslContext != null )
                         {
                             p.addLast( sslContext.newHandler( ch.alloc(), uri.getHost(), socketAddress.getPort() ) );
@@ -196,21 +245,173 @@ public class Websocket extends Resource<Websocket>
         checkClosed();
     }
 
+    /**
+     * Deliver a message to the computer. This is called from the connection's event loop.
+     *
+     * Unbuffered websockets queue a {@link #MESSAGE_EVENT} for each message. Buffered websockets instead add the
+     * message to their inbox, and stop reading from the connection once it is full.
+     *
+     * @param channel  The channel this message was received on.
+     * @param contents The message, either a {@link String} or a {@code byte[]}.
+     * @param length   The length of this message.
+     * @param binary   Whether this is a binary message.
+     */
+    void message( Channel channel, Object contents, int length, boolean binary )
+    {
+        if( !buffered )
+        {
+            environment.queueEvent( MESSAGE_EVENT, address, contents, binary );
+            return;
+        }
+
+        synchronized( inbox )
+        {
+            inbox.addLast( new Message( contents, length, binary ) );
+            inboxBytes += length;
+            if( pausedChannel == null && (inbox.size() >= INBOX_MESSAGES || inboxBytes >= INBOX_BYTES) )
+            {
+                pausedChannel = channel;
+                channel.config().setAutoRead( false );
+            }
+
+            if( waiting && !woken )
+            {
+                woken = true;
+                environment.queueEvent( INBOX_EVENT, address );
+            }
+        }
+    }
+
+    /**
+     * Take messages from a buffered websocket's inbox. This also stops the computer waiting for messages, if it was.
+     *
+     * @param count The maximum number of messages to take.
+     * @return The messages taken, which may be empty.
+     */
+    List<Message> take( int count )
+    {
+        synchronized( inbox )
+        {
+            waiting = false;
+
+            int size = Math.min( count, inbox.size() );
+            if( size == 0 ) return Collections.emptyList();
+
+            List<Message> messages = new ArrayList<>( size );
+            for( int i = 0; i < size; i++ )
+            {
+                Message message = inbox.removeFirst();
+                inboxBytes -= message.length;
+                messages.add( message );
+            }
+
+            if( pausedChannel != null && inbox.size() < INBOX_MESSAGES / 2 && inboxBytes < INBOX_BYTES / 2 )
+            {
+                pausedChannel.config().setAutoRead( true );
+                pausedChannel = null;
+            }
+
+            if( inbox.isEmpty() && closeEvent != null )
+            {
+                queueEvent( closeEvent );
+                closeEvent = null;
+            }
+
+            return messages;
+        }
+    }
+
+    /**
+     * Whether this websocket has been closed, and the computer has received every message from its inbox.
+     *
+     * @return Whether the computer's handle should now be closed.
+     */
+    boolean isDrained()
+    {
+        synchronized( inbox )
+        {
+            return isClosed() && inbox.isEmpty();
+        }
+    }
+
+    /**
+     * Prepare to wait for a message on a buffered websocket.
+     *
+     * The computer should then {@linkplain #take(int) check its inbox} after every event, not just an
+     * {@link #INBOX_EVENT}, in case that was dropped.
+     *
+     * @return Whether the computer should wait, or {@code false} if a message arrived in the meantime.
+     */
+    boolean await()
+    {
+        synchronized( inbox )
+        {
+            if( !inbox.isEmpty() ) return false;
+            waiting = true;
+            woken = false;
+            return true;
+        }
+    }
+
+    /**
+     * Stop waiting for a message, without taking any. This is used when the computer gives up waiting.
+     */
+    void stopWaiting()
+    {
+        synchronized( inbox )
+        {
+            waiting = false;
+        }
+    }
+
+    boolean isBuffered()
+    {
+        return buffered;
+    }
+
     void failure( String message )
     {
-        if( tryClose() ) environment.queueEvent( FAILURE_EVENT, address, message );
+        if( tryClose() ) queueClosed( new Object[] { FAILURE_EVENT, address, message } );
     }
 
     void close( int status, String reason )
     {
         if( tryClose() )
         {
-            environment.queueEvent( CLOSE_EVENT, address,
+            queueClosed( new Object[] {
+                CLOSE_EVENT, address,
                 Strings.isNullOrEmpty( reason ) ? null : reason,
-                status < 0 ? null : status );
+                status < 0 ? null : status,
+            } );
         }
     }
 
+    /**
+     * Report that this websocket has been closed. If a buffered websocket still has messages in its inbox, this is
+     * delayed until the computer has received them, so closing never appears to overtake a message.
+     *
+     * @param event The event to queue.
+     */
+    private void queueClosed( Object[] event )
+    {
+        synchronized( inbox )
+        {
+            if( inbox.isEmpty() )
+            {
+                queueEvent( event );
+            }
+            else
+            {
+                closeEvent = event;
+            }
+        }
+    }
+
+    private void queueEvent( Object[] event )
+    {
+        environment.queueEvent( (String) event[0], Arrays.copyOfRange( event, 1, event.length ) );
+    }
+
     @Override
     protected void dispose()
     {
@@ -221,8 +422,27 @@ public class Websocket extends Resource<Websocket>
 
         WeakReference<WebsocketHandle> websocketHandleRef = websocketHandle;
         WebsocketHandle websocketHandle = websocketHandleRef == null ? null : websocketHandleRef.get();
+
+        synchronized( inbox )
+        {
+            pausedChannel = null;
+
+            // If the server closed the connection, the computer can still receive any messages left in the inbox. The
+            // handle is closed once it has received them all. We keep hold of the handle, so disposing again does not
+            // throw the messages away.
+            if( websocketHandle != null && !websocketHandle.isClosed() && !inbox.isEmpty() )
+            {
+                websocketHandle.closeChannel();
+                return;
+            }
+
+            this.websocketHandle = null;
+            inbox.clear();
+            inboxBytes = 0;
+            closeEvent = null;
+        }
+
         IoUtil.closeQuietly( websocketHandle );
-        this.websocketHandle = null;
     }
 
     public IAPIEnvironment environment()
@@ -234,4 +454,18 @@ public class Websocket extends Resource<Websocket>
     {
         return address;
     }
+
+    static final class Message
+    {
+        final Object contents;
+        final int length;
+        final boolean binary;
+
+        Message( Object contents, int length, boolean binary )
+        {
+            this.contents = contents;
+            this.length = length;
+            this.binary = binary;
+        }
+    }
 }
@@ -14,11 +14,18 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 
 import javax.annotation.Nonnull;
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static dan200.computercraft.api.lua.LuaValues.checkFinite;
 import static dan200.computercraft.core.apis.IAPIEnvironment.TIMER_EVENT;
@@ -39,6 +46,13 @@ public class WebsocketHandle implements Closeable
 
     private Channel channel;
 
+    /**
+     * Messages which have been sent by the computer, but not yet written to the channel. These are written and flushed
+     * together by a single task on the channel's event loop, which is scheduled when {@link #flushPending} is set.
+     */
+    private final Queue<WebSocketFrame> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
     public WebsocketHandle( Websocket websocket, Options options, Channel channel )
     {
         this.websocket = websocket;
@@ -62,11 +76,38 @@ public class WebsocketHandle implements Closeable
     public final MethodResult receive( Optional<Double> timeout ) throws LuaException
     {
         checkOpen();
-        int timeoutId = timeout.isPresent()
+        return new ReceiveCallback( startTimer( timeout ), 0 ).receive();
+    }
+
+    /**
+     * Wait for one or more messages from the server.
+     *
+     * This waits until at least one message is available, and then returns every message which has been received
+     * (up to {@code count}). For websockets opened with {@code buffered = true}, this allows receiving many messages
+     * at once, rather than one message per event. Otherwise, this returns a single message.
+     *
+     * @param count   The maximum number of messages to receive.
+     * @param timeout The number of seconds to wait if no message is received.
+     * @return The result of receiving.
+     * @throws LuaException If the websocket has been closed, or the count is not positive.
+     * @cc.treturn [1] { string... } The received messages.
+     * @cc.treturn { boolean... } Whether each message was binary.
+     * @cc.treturn [2] nil If the websocket was closed while waiting, or if we timed out.
+     * @cc.since 1.98.0
+     */
+    @LuaFunction
+    public final MethodResult receiveMany( int count, Optional<Double> timeout ) throws LuaException
+    {
+        checkOpen();
+        if( count <= 0 ) throw new LuaException( "bad argument #1 (count must be positive)" );
+        return new ReceiveCallback( startTimer( timeout ), count ).receive();
+    }
+
+    private int startTimer( Optional<Double> timeout ) throws LuaException
+    {
+        return timeout.isPresent()
             ? websocket.environment().startTimer( Math.round( checkFinite( 0, timeout.get() ) / 0.05 ) )
             : -1;
-
-        return new ReceiveCallback( timeoutId ).pull;
     }
 
     /**
@@ -89,15 +130,29 @@ public class WebsocketHandle implements Closeable
             throw new LuaException( "Message is too large" );
         }
 
+        Channel channel = this.channel;
+        if( channel == null ) throw new LuaException( "attempt to use a closed file" );
+
         websocket.environment().addTrackingChange( TrackingField.WEBSOCKET_OUTGOING, text.length() );
 
-        Channel channel = this.channel;
-        if( channel != null )
-        {
-            channel.writeAndFlush( binary.orElse( false )
-                ? new BinaryWebSocketFrame( Unpooled.wrappedBuffer( LuaValues.encode( text ) ) )
-                : new TextWebSocketFrame( text ) );
-        }
+        outbox.add( binary.orElse( false )
+            ? new BinaryWebSocketFrame( Unpooled.wrappedBuffer( LuaValues.encode( text ) ) )
+            : new TextWebSocketFrame( text ) );
+
+        // Rather than flushing each message individually, write and flush everything in the outbox once the event loop
+        // gets round to it. This means messages sent in quick succession are written to the socket together.
+        if( flushPending.compareAndSet( false, true ) ) channel.eventLoop().execute( () -> flush( channel ) );
+    }
+
+    private void flush( Channel channel )
+    {
+        // Clear the flag before draining the outbox: anything added after this point schedules another flush, and
+        // anything added before it is written below.
+        flushPending.set( false );
+
+        WebSocketFrame frame;
+        while( (frame = outbox.poll()) != null ) channel.write( frame );
+        channel.flush();
     }
 
     /**
@@ -116,11 +171,24 @@ public class WebsocketHandle implements Closeable
         if( closed ) throw new LuaException( "attempt to use a closed file" );
     }
 
+    boolean isClosed()
+    {
+        return closed;
+    }
+
     @Override
     public void close()
     {
         closed = true;
+        closeChannel();
+    }
 
+    /**
+     * Close the underlying connection, but leave this handle open so the computer can receive any messages left in a
+     * buffered websocket's inbox.
+     */
+    void closeChannel()
+    {
         Channel channel = this.channel;
         if( channel != null )
         {
@@ -134,9 +202,58 @@ public class WebsocketHandle implements Closeable
         final MethodResult pull = MethodResult.pullEvent( null, this );
         private final int timeoutId;
 
-        ReceiveCallback( int timeoutId )
+        /**
+         * The maximum number of messages to receive, or 0 if we are receiving a single message.
+         */
+        private final int count;
+
+        ReceiveCallback( int timeoutId, int count )
         {
             this.timeoutId = timeoutId;
+            this.count = count;
+        }
+
+        MethodResult receive()
+        {
+            return websocket.isBuffered() ? take() : pull;
+        }
+
+        /**
+         * Take messages from a buffered websocket's inbox, waiting if none are available.
+         *
+         * @return The received messages, or a yield if we must wait.
+         */
+        private MethodResult take()
+        {
+            while( true )
+            {
+                List<Websocket.Message> messages = websocket.take( Math.max( count, 1 ) );
+
+                // The server closed the websocket, and we've now received everything it sent.
+                if( websocket.isDrained() ) close();
+
+                if( !messages.isEmpty() ) return result( messages );
+                if( closed ) return MethodResult.of();
+                if( websocket.await() ) return pull;
+            }
+        }
+
+        private MethodResult result( List<Websocket.Message> messages )
+        {
+            if( count == 0 )
+            {
+                Websocket.Message message = messages.get( 0 );
+                return MethodResult.of( message.contents, message.binary );
+            }
+
+            List<Object> contents = new ArrayList<>( messages.size() );
+            List<Boolean> binary = new ArrayList<>( messages.size() );
+            for( Websocket.Message message : messages )
+            {
+                contents.add( message.contents );
+                binary.add( message.binary );
+            }
+            return MethodResult.of( contents, binary );
         }
 
         @Nonnull
@@ -145,7 +262,8 @@ public class WebsocketHandle implements Closeable
         {
             if( event.length >= 3 && Objects.equal( event[0], MESSAGE_EVENT ) && Objects.equal( event[1], websocket.address() ) )
             {
-                return MethodResult.of( Arrays.copyOfRange( event, 2, event.length ) );
+                if( count == 0 ) return MethodResult.of( Arrays.copyOfRange( event, 2, event.length ) );
+                return MethodResult.of( Collections.singletonList( event[2] ), Collections.singletonList( event.length >= 4 ? event[3] : false ) );
             }
             else if( event.length >= 2 && Objects.equal( event[0], CLOSE_EVENT ) && Objects.equal( event[1], websocket.address() ) && closed )
             {
@@ -156,10 +274,12 @@ public class WebsocketHandle implements Closeable
                 && event[1] instanceof Number && ((Number) event[1]).intValue() == timeoutId )
             {
                 // If we received a matching timer event then abort.
+                if( websocket.isBuffered() ) websocket.stopWaiting();
                 return MethodResult.of();
             }
 
-            return pull;
+            // Buffered websockets check their inbox after every event, as the INBOX_EVENT may have been dropped.
+            return websocket.isBuffered() ? take() : pull;
         }
     }
 }
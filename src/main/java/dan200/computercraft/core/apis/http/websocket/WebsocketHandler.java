@@ -14,8 +14,6 @@ import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.websocketx.*;
 import io.netty.util.CharsetUtil;
 
-import static dan200.computercraft.core.apis.http.websocket.Websocket.MESSAGE_EVENT;
-
 public class WebsocketHandler extends SimpleChannelInboundHandler<Object>
 {
     private final Websocket websocket;
@@ -66,14 +64,15 @@ public class WebsocketHandler extends SimpleChannelInboundHandler<Object>
             String data = ((TextWebSocketFrame) frame).text();
 
             websocket.environment().addTrackingChange( TrackingField.WEBSOCKET_INCOMING, data.length() );
-            websocket.environment().queueEvent( MESSAGE_EVENT, websocket.address(), data, false );
+            // Count the message's encoded size towards the inbox limit, rather than its length in characters.
+            websocket.message( ctx.channel(), data, frame.content().readableBytes(), false );
         }
         else if( frame instanceof BinaryWebSocketFrame )
         {
             byte[] converted = NetworkUtils.toBytes( frame.content() );
 
             websocket.environment().addTrackingChange( TrackingField.WEBSOCKET_INCOMING, converted.length );
-            websocket.environment().queueEvent( MESSAGE_EVENT, websocket.address(), converted, true );
+            websocket.message( ctx.channel(), converted, converted.length, true );
         }
         else if( frame instanceof CloseWebSocketFrame closeFrame )
         {
@@ -44,6 +44,8 @@ public final class Generator<T>
     private static final String INTERNAL_METHOD_RESULT = Type.getInternalName( MethodResult.class );
     private static final String DESC_METHOD_RESULT = Type.getDescriptor( MethodResult.class );
 
+    private static final String INTERNAL_RESULT_HELPERS = Type.getInternalName( ResultHelpers.class );
+
     private static final String INTERNAL_ARGUMENTS = Type.getInternalName( IArguments.class );
     private static final String DESC_ARGUMENTS = Type.getDescriptor( IArguments.class );
 
@@ -258,6 +260,11 @@ public final class Generator<T>
                 {
                     mw.visitMethodInsn( INVOKESTATIC, INTERNAL_METHOD_RESULT, "of", "()" + DESC_METHOD_RESULT, false );
                 }
+                else if( ret == boolean.class || ret == int.class || ret == long.class )
+                {
+                    // Common primitive results are shared, rather than boxing and wrapping them on every call.
+                    mw.visitMethodInsn( INVOKESTATIC, INTERNAL_RESULT_HELPERS, "of", "(" + Type.getDescriptor( ret ) + ")" + DESC_METHOD_RESULT, false );
+                }
                 else if( ret.isPrimitive() )
                 {
                     Class<?> boxed = Primitives.wrap( ret );
@@ -7,12 +7,72 @@ package dan200.computercraft.core.asm;
 
 import dan200.computercraft.api.lua.MethodResult;
 
-final class ResultHelpers
+/**
+ * Helpers for working with {@link MethodResult}s.
+ *
+ * This is public as it is also called from code generated by {@link Generator}, which lives in the package of the
+ * class declaring the method.
+ */
+public final class ResultHelpers
 {
+    private static final int CACHE_MIN = -128;
+    private static final int CACHE_MAX = 1024;
+
+    /*
+     * We only cache the boxed values, rather than whole MethodResults. getResult() exposes the result's backing array,
+     * so a shared MethodResult could be modified by one caller and corrupt every later call.
+     */
+    private static final Integer[] INTEGERS = new Integer[CACHE_MAX - CACHE_MIN];
+    private static final Long[] LONGS = new Long[CACHE_MAX - CACHE_MIN];
+
+    static
+    {
+        for( int i = 0; i < INTEGERS.length; i++ )
+        {
+            INTEGERS[i] = i + CACHE_MIN;
+            LONGS[i] = (long) (i + CACHE_MIN);
+        }
+    }
+
     private ResultHelpers()
     {
     }
 
+    /**
+     * Get the result for a function returning a boolean.
+     *
+     * @param value The value to return.
+     * @return The resulting {@link MethodResult}.
+     */
+    public static MethodResult of( boolean value )
+    {
+        return MethodResult.of( value ? Boolean.TRUE : Boolean.FALSE );
+    }
+
+    /**
+     * Get the result for a function returning an int. Small values are boxed from a cache, rather than allocating a
+     * new {@link Integer} every call.
+     *
+     * @param value The value to return.
+     * @return The resulting {@link MethodResult}.
+     */
+    public static MethodResult of( int value )
+    {
+        return MethodResult.of( value >= CACHE_MIN && value < CACHE_MAX ? INTEGERS[value - CACHE_MIN] : Integer.valueOf( value ) );
+    }
+
+    /**
+     * Get the result for a function returning a long. Small values are boxed from a cache, rather than allocating a
+     * new {@link Long} every call.
+     *
+     * @param value The value to return.
+     * @return The resulting {@link MethodResult}.
+     */
+    public static MethodResult of( long value )
+    {
+        return MethodResult.of( value >= CACHE_MIN && value < CACHE_MAX ? LONGS[(int) value - CACHE_MIN] : Long.valueOf( value ) );
+    }
+
     static Object[] checkNormalResult( MethodResult result )
     {
         if( result.getCallback() != null )
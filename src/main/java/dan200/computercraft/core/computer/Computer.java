@@ -10,9 +10,12 @@ import dan200.computercraft.api.lua.ILuaAPI;
 import dan200.computercraft.api.peripheral.IWorkMonitor;
 import dan200.computercraft.core.apis.IAPIEnvironment;
 import dan200.computercraft.core.filesystem.FileSystem;
+import dan200.computercraft.core.lua.CobaltLuaMachine;
+import dan200.computercraft.core.lua.ILuaMachine;
 import dan200.computercraft.core.terminal.Terminal;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
 
 /**
  * Represents a computer which may exist in-world or elsewhere.
@@ -50,12 +53,25 @@ public class Computer
     private int ticksSinceStart = -1;
 
     public Computer( IComputerEnvironment environment, Terminal terminal, int id )
+    {
+        this( environment, terminal, id, CobaltLuaMachine::new );
+    }
+
+    /**
+     * Create a computer which uses a specific kind of Lua machine.
+     *
+     * @param environment The environment this computer is in.
+     * @param terminal    The computer's terminal.
+     * @param id          The computer's ID.
+     * @param luaFactory  Constructs the Lua machine each time the computer is started.
+     */
+    Computer( IComputerEnvironment environment, Terminal terminal, int id, BiFunction<Computer, TimeoutState, ILuaMachine> luaFactory )
     {
         this.id = id;
         this.environment = environment;
         this.terminal = terminal;
 
-        executor = new ComputerExecutor( this );
+        executor = new ComputerExecutor( this, luaFactory );
         serverExecutor = new MainThreadExecutor( this );
     }
 
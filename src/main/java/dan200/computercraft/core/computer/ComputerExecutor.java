@@ -13,11 +13,11 @@ import dan200.computercraft.api.lua.ILuaAPIFactory;
 import dan200.computercraft.core.apis.*;
 import dan200.computercraft.core.filesystem.FileSystem;
 import dan200.computercraft.core.filesystem.FileSystemException;
-import dan200.computercraft.core.lua.CobaltLuaMachine;
 import dan200.computercraft.core.lua.ILuaMachine;
 import dan200.computercraft.core.lua.MachineResult;
 import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.core.tracking.Tracking;
+import dan200.computercraft.core.tracking.TrackingField;
 import dan200.computercraft.shared.util.Colour;
 import dan200.computercraft.shared.util.IoUtil;
 
@@ -28,8 +28,10 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 
 /**
  * The main task queue and executor for a single computer. This handles turning on and off a computer, as well as
@@ -55,7 +57,14 @@ final class ComputerExecutor
 {
     private static final int QUEUE_LIMIT = 256;
 
+    private static final AtomicLong nextQueueId = new AtomicLong();
+
     private final Computer computer;
+
+    /**
+     * Constructs the Lua machine each time the computer is started.
+     */
+    private final BiFunction<Computer, TimeoutState, ILuaMachine> luaFactory;
     private final List<ILuaAPI> apis = new ArrayList<>();
     final TimeoutState timeout = new TimeoutState();
 
@@ -99,19 +108,28 @@ final class ComputerExecutor
      */
     volatile boolean onComputerQueue = false;
 
+    /**
+     * A unique identifier for this executor, used to order executors with the same {@link #virtualRuntime} within
+     * {@link ComputerThread}'s run queues.
+     */
+    final long queueId = nextQueueId.getAndIncrement();
+
     /**
      * The amount of time this computer has used on a theoretical machine which shares work evenly amongst computers.
      *
+     * This must not be changed while the executor is sitting in one of {@link ComputerThread}'s run queues, as it is
+     * used as the sort key.
+     *
      * @see ComputerThread
      */
-    long virtualRuntime = 0;
+    volatile long virtualRuntime = 0;
 
     /**
      * The last time at which we updated {@link #virtualRuntime}.
      *
      * @see ComputerThread
      */
-    long vRuntimeStart;
+    volatile long vRuntimeStart;
 
     /**
      * The command that {@link #work()} should execute on the computer thread.
@@ -156,12 +174,13 @@ final class ComputerExecutor
      */
     final AtomicReference<Thread> executingThread = new AtomicReference<>();
 
-    ComputerExecutor( Computer computer )
+    ComputerExecutor( Computer computer, BiFunction<Computer, TimeoutState, ILuaMachine> luaFactory )
     {
         // Ensure the computer thread is running as required.
         ComputerThread.start();
 
         this.computer = computer;
+        this.luaFactory = luaFactory;
 
         Environment environment = computer.getEnvironment();
 
@@ -400,7 +419,7 @@ final class ComputerExecutor
         }
 
         // Create the lua machine
-        ILuaMachine machine = new CobaltLuaMachine( computer, timeout );
+        ILuaMachine machine = luaFactory.apply( computer, timeout );
 
         // Add the APIs. We unwrap them (yes, this is horrible) to get access to the underlying object.
         for( ILuaAPI api : apis ) machine.addAPI( api instanceof ApiWrapper ? ((ApiWrapper) api).getDelegate() : api );
@@ -620,6 +639,7 @@ final class ComputerExecutor
         }
         else if( event != null )
         {
+            Tracking.addTiming( computer, TrackingField.EVENT_WAIT_TIME, System.nanoTime() - event.queued );
             resumeMachine( event.name, event.args );
         }
     }
@@ -671,6 +691,7 @@ final class ComputerExecutor
     {
         final String name;
         final Object[] args;
+        final long queued = System.nanoTime();
 
         private Event( String name, Object[] args )
         {
@@ -10,13 +10,18 @@ import dan200.computercraft.shared.util.ThreadUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.TreeSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.LockSupport;
-import java.util.concurrent.locks.ReentrantLock;
 
 import static dan200.computercraft.core.computer.TimeoutState.ABORT_TIMEOUT;
 import static dan200.computercraft.core.computer.TimeoutState.TIMEOUT;
@@ -43,6 +48,20 @@ import static dan200.computercraft.core.computer.TimeoutState.TIMEOUT;
  * In reality, it's unlikely that more than a few computers are waiting to execute at once, so this will not have much
  * effect unless you have a computer hogging execution time. However, it is pretty effective in those situations.
  *
+ * Rather than a single global queue, each {@link TaskRunner} owns its own {@link RunQueue}, ordered by virtual runtime.
+ * Newly runnable executors are spread across these queues, so runners rarely contend on the same queue. A runner takes
+ * work from its own queue first, and only when that is empty does it steal the head of another runner's queue. None of
+ * this requires a global lock: the queues are concurrent skip lists, and {@link #minimumVirtualRuntime} is only ever
+ * increased with a CAS.
+ *
+ * Note that this ordering is only fair within each queue. Across queues, an executor may run before one with a smaller
+ * virtual runtime on another runner's queue. As executors are placed on the least loaded queue, and idle runners steal
+ * from busy ones, this only delays an executor by a task or so, which is acceptable given the virtual runtimes are
+ * themselves estimates.
+ *
+ * The number of runners may change while the server is running (see {@link #resize()}). Runners which are removed
+ * finish their current task before exiting, and hand their queued executors over to the remaining runners.
+ *
  * @see TimeoutState For how hard timeouts are handled.
  * @see ComputerExecutor For how computers actually do execution.
  */
@@ -76,6 +95,12 @@ public final class ComputerThread
      */
     private static final long LATENCY_MAX_TASKS = DEFAULT_LATENCY / DEFAULT_MIN_PERIOD;
 
+    /**
+     * The number of {@link #MONITOR_WAKEUP}s to wait after the adaptive pool has been resized before it may be resized
+     * again.
+     */
+    private static final int ADAPTIVE_COOLDOWN = 20;
+
     /**
      * Lock used for modifications to the array of current threads.
      */
@@ -94,30 +119,36 @@ public final class ComputerThread
     /**
      * The array of current runners, and their owning threads.
      */
-    private static TaskRunner[] runners;
+    private static volatile TaskRunner[] runners;
 
-    private static long latency;
-    private static long minPeriod;
+    /**
+     * Runners which have been removed from {@link #runners} by a resize, but are still finishing their current task.
+     * These are still observed by the {@link Monitor}.
+     */
+    private static final Set<TaskRunner> drainingRunners = ConcurrentHashMap.newKeySet();
 
-    private static final ReentrantLock computerLock = new ReentrantLock();
+    /**
+     * The number of runners the {@link Monitor} would like when the pool is sized adaptively. This is clamped to the
+     * configured range in {@link #targetRunnerCount()}.
+     */
+    private static volatile int adaptiveRunnerCount = 0;
 
-    private static final Condition hasWork = computerLock.newCondition();
+    private static volatile long latency;
+    private static volatile long minPeriod;
 
     /**
-     * Active queues to execute.
+     * The total number of executors across every {@link RunQueue}.
+     *
+     * This is incremented before an executor is added to a queue, and decremented after it is removed, so it is never
+     * less than the actual number of queued executors.
      */
-    private static final TreeSet<ComputerExecutor> computerQueue = new TreeSet<>( ( a, b ) -> {
-        if( a == b ) return 0; // Should never happen, but let's be consistent here
-
-        long at = a.virtualRuntime, bt = b.virtualRuntime;
-        if( at == bt ) return Integer.compare( a.hashCode(), b.hashCode() );
-        return at < bt ? -1 : 1;
-    } );
+    private static final AtomicInteger queuedCount = new AtomicInteger();
 
     /**
-     * The minimum {@link ComputerExecutor#virtualRuntime} time on the tree.
+     * The minimum {@link ComputerExecutor#virtualRuntime} time across all queues and running tasks. This only ever
+     * increases.
      */
-    private static long minimumVirtualRuntime = 0;
+    private static final AtomicLong minimumVirtualRuntime = new AtomicLong();
 
     private static final ThreadFactory monitorFactory = ThreadUtils.factory( "Computer-Monitor" );
     private static final ThreadFactory runnerFactory = ThreadUtils.factory( "Computer-Runner" );
@@ -133,27 +164,18 @@ public final class ComputerThread
         {
             running = true;
 
-            if( runners == null )
-            {
-                // TODO: Change the runners length on config reloads
-                runners = new TaskRunner[ComputerCraft.computerThreads];
-
-                // latency and minPeriod are scaled by 1 + floor(log2(threads)). We can afford to execute tasks for
-                // longer when executing on more than one thread.
-                long factor = 64 - Long.numberOfLeadingZeros( runners.length );
-                latency = DEFAULT_LATENCY * factor;
-                minPeriod = DEFAULT_MIN_PERIOD * factor;
-            }
+            setRunnerCount( targetRunnerCount() );
 
+            TaskRunner[] runners = ComputerThread.runners;
             for( int i = 0; i < runners.length; i++ )
             {
                 TaskRunner runner = runners[i];
-                if( runner == null || runner.owner == null || !runner.owner.isAlive() )
+                if( runner.owner == null || !runner.owner.isAlive() )
                 {
                     // Mark the old runner as dead, just in case.
-                    if( runner != null ) runner.running = false;
-                    // And start a new runner
-                    runnerFactory.newThread( runners[i] = new TaskRunner() ).start();
+                    runner.running = false;
+                    // And start a new runner, taking over the old runner's queue.
+                    runners[i] = spawn( runner.queue );
                 }
             }
 
@@ -161,6 +183,99 @@ public final class ComputerThread
         }
     }
 
+    /**
+     * Resize the pool of runners to match the current config. This should be called whenever the config is reloaded.
+     *
+     * If the computer thread is not running, this does nothing: the pool will be sized when it is next started.
+     */
+    public static void resize()
+    {
+        synchronized( threadLock )
+        {
+            if( running && runners != null ) start();
+        }
+    }
+
+    /**
+     * Get the number of runners we should currently have.
+     *
+     * @return The desired number of runners.
+     */
+    private static int targetRunnerCount()
+    {
+        int min = Math.max( 1, ComputerCraft.computerThreads );
+        if( !ComputerCraft.computerThreadsAdaptive ) return min;
+
+        int max = Math.max( min, ComputerCraft.maxComputerThreads );
+        return Math.max( min, Math.min( max, adaptiveRunnerCount ) );
+    }
+
+    /**
+     * Change the number of runners. New runners are not started - this is left to {@link #start()}. Any work queued on
+     * runners which are removed is immediately moved onto the remaining queues, though the runners themselves are
+     * allowed to finish their current task.
+     *
+     * This must be called while holding {@link #threadLock}.
+     *
+     * @param count The new number of runners.
+     */
+    private static void setRunnerCount( int count )
+    {
+        TaskRunner[] oldRunners = runners;
+        int oldCount = oldRunners == null ? 0 : oldRunners.length;
+        if( count == oldCount ) return;
+
+        if( oldRunners != null )
+        {
+            ComputerCraft.log.info( "Resizing computer thread pool from {} to {} runners.", oldCount, count );
+        }
+
+        // Populate every slot with a queue before publishing the array, as queue() may be called at any point.
+        TaskRunner[] newRunners = new TaskRunner[count];
+        for( int i = 0; i < count; i++ )
+        {
+            newRunners[i] = i < oldCount ? oldRunners[i] : new TaskRunner( new RunQueue() );
+        }
+
+        // latency and minPeriod are scaled by 1 + floor(log2(threads)). We can afford to execute tasks for
+        // longer when executing on more than one thread.
+        long factor = 64 - Long.numberOfLeadingZeros( count );
+        latency = DEFAULT_LATENCY * factor;
+        minPeriod = DEFAULT_MIN_PERIOD * factor;
+
+        runners = newRunners;
+
+        // Ask any excess runners to stop once they've finished their current task. We don't interrupt them, as that
+        // would kill the task they're running. They're added to the draining set before being stopped, so the monitor
+        // continues to observe their current task.
+        for( int i = count; i < oldCount; i++ )
+        {
+            TaskRunner runner = oldRunners[i];
+            boolean alive = runner.owner != null && runner.owner.isAlive();
+            if( alive ) drainingRunners.add( runner );
+            runner.running = false;
+
+            // Move any queued work elsewhere now, rather than leaving it to wait behind the current task.
+            retire( runner.queue );
+            if( alive ) LockSupport.unpark( runner.owner );
+        }
+    }
+
+    /**
+     * Create and start a new runner.
+     *
+     * @param queue The queue this runner should execute work from.
+     * @return The newly started runner.
+     */
+    private static TaskRunner spawn( RunQueue queue )
+    {
+        TaskRunner runner = new TaskRunner( queue );
+        Thread thread = runnerFactory.newThread( runner );
+        runner.owner = thread;
+        thread.start();
+        return runner;
+    }
+
     /**
      * Attempt to stop the computer thread. This interrupts each runner, and clears the task queue.
      */
@@ -179,16 +294,20 @@ public final class ComputerThread
                     if( runner.owner != null ) runner.owner.interrupt();
                 }
             }
-        }
 
-        computerLock.lock();
-        try
-        {
-            computerQueue.clear();
+            for( TaskRunner runner : drainingRunners )
+            {
+                if( runner.owner != null ) runner.owner.interrupt();
+            }
         }
-        finally
+
+        TaskRunner[] currentRunners = runners;
+        if( currentRunners != null )
         {
-            computerLock.unlock();
+            for( TaskRunner runner : currentRunners )
+            {
+                if( runner != null ) runner.queue.clear();
+            }
         }
     }
 
@@ -202,86 +321,160 @@ public final class ComputerThread
      */
     static void queue( @Nonnull ComputerExecutor executor )
     {
-        computerLock.lock();
-        try
+        if( executor.onComputerQueue ) throw new IllegalStateException( "Cannot queue already queued executor" );
+        executor.onComputerQueue = true;
+
+        updateRuntimes( null );
+
+        // We're not currently on the queue, so update its current execution time to
+        // ensure its at least as high as the minimum.
+        long newRuntime = minimumVirtualRuntime.get();
+
+        if( executor.virtualRuntime == 0 )
+        {
+            // Slow down new computers a little bit.
+            newRuntime += scaledPeriod();
+        }
+        else
         {
-            if( executor.onComputerQueue ) throw new IllegalStateException( "Cannot queue already queued executor" );
-            executor.onComputerQueue = true;
+            // Give a small boost to computers which have slept a little.
+            newRuntime -= latency / 2;
+        }
 
-            updateRuntimes( null );
+        executor.virtualRuntime = Math.max( newRuntime, executor.virtualRuntime );
 
-            // We're not currently on the queue, so update its current execution time to
-            // ensure its at least as high as the minimum.
-            long newRuntime = minimumVirtualRuntime;
+        // Add to the least loaded of two queues, and wake a sleeping worker.
+        push( pickQueue(), executor );
+        signalWork();
+    }
 
-            if( executor.virtualRuntime == 0 )
-            {
-                // Slow down new computers a little bit.
-                newRuntime += scaledPeriod();
-            }
-            else
-            {
-                // Give a small boost to computers which have slept a little.
-                newRuntime -= latency / 2;
-            }
+    /**
+     * Add an executor to a queue. If the queue has been retired by a resize, move its work onto another queue.
+     *
+     * @param queue    The queue to add to.
+     * @param executor The executor to add.
+     */
+    private static void push( RunQueue queue, ComputerExecutor executor )
+    {
+        queue.push( executor );
 
-            executor.virtualRuntime = Math.max( newRuntime, executor.virtualRuntime );
+        // The queue may have been retired after we picked it, in which case nobody will run it. The runner only sets
+        // the retired flag before draining the queue, so either it'll see our executor or we'll see the flag.
+        if( queue.retired ) retire( queue );
+    }
 
-            // Add to the queue, and signal the workers.
-            computerQueue.add( executor );
-            hasWork.signal();
-        }
-        finally
+    /**
+     * Mark a queue as retired, moving all its executors onto active queues.
+     *
+     * @param queue The queue to retire.
+     */
+    private static void retire( RunQueue queue )
+    {
+        queue.retired = true;
+
+        ComputerExecutor executor;
+        boolean moved = false;
+        while( (executor = queue.poll()) != null )
         {
-            computerLock.unlock();
+            push( pickQueue(), executor );
+            moved = true;
         }
+
+        if( moved ) signalWork();
+    }
+
+    /**
+     * Choose a queue to place a newly runnable executor on. We pick the least loaded of two random runners, which
+     * keeps the queues roughly balanced without having to scan every runner.
+     *
+     * @return The queue to add the executor to.
+     */
+    private static RunQueue pickQueue()
+    {
+        TaskRunner[] currentRunners = runners;
+        if( currentRunners == null ) throw new IllegalStateException( "Computer thread has not been started" );
+
+        return pickQueue( currentRunners[ThreadLocalRandom.current().nextInt( currentRunners.length )].queue );
+    }
+
+    /**
+     * Choose between a preferred queue and a random one, picking whichever is less loaded.
+     *
+     * @param preferred The queue to use, unless the other one has less work.
+     * @return The queue to add the executor to.
+     */
+    private static RunQueue pickQueue( RunQueue preferred )
+    {
+        TaskRunner[] currentRunners = runners;
+        if( currentRunners == null || currentRunners.length == 1 ) return preferred;
+
+        RunQueue other = currentRunners[ThreadLocalRandom.current().nextInt( currentRunners.length )].queue;
+        return other.size.get() < preferred.size.get() ? other : preferred;
     }
 
+    /**
+     * Wake up a single parked runner, if there is one.
+     */
+    private static void signalWork()
+    {
+        TaskRunner[] currentRunners = runners;
+        if( currentRunners == null ) return;
+
+        for( TaskRunner runner : currentRunners )
+        {
+            if( runner != null && runner.parked.compareAndSet( true, false ) )
+            {
+                LockSupport.unpark( runner.owner );
+                return;
+            }
+        }
+    }
 
     /**
-     * Update the {@link ComputerExecutor#virtualRuntime}s of all running tasks, and then update the
+     * Update the {@link ComputerExecutor#virtualRuntime} of the most recently executed task, and then update the
      * {@link #minimumVirtualRuntime} based on the current tasks.
      *
-     * This is called before queueing tasks, to ensure that {@link #minimumVirtualRuntime} is up-to-date.
+     * This is called before queueing tasks, to ensure that {@link #minimumVirtualRuntime} is up-to-date. Other
+     * running tasks are not modified (they are owned by another runner), instead we estimate their current runtime from
+     * when they started.
      *
-     * @param current The machine which we updating runtimes from.
+     * @param current The machine which we updating runtimes from. This must be owned by the current thread.
      */
     private static void updateRuntimes( @Nullable ComputerExecutor current )
     {
         long minRuntime = Long.MAX_VALUE;
+        long now = System.nanoTime();
+        int tasks = 1 + queuedCount.get();
 
-        // If we've a task on the queue, use that as our base time.
-        if( !computerQueue.isEmpty() ) minRuntime = computerQueue.first().virtualRuntime;
+        // Update the most recently executed one (if set).
+        if( current != null )
+        {
+            minRuntime = current.virtualRuntime += (now - current.vRuntimeStart) / tasks;
+        }
 
-        // Update all the currently executing tasks
-        long now = System.nanoTime();
-        int tasks = 1 + computerQueue.size();
         TaskRunner[] currentRunners = runners;
         if( currentRunners != null )
         {
             for( TaskRunner runner : currentRunners )
             {
-                if( runner == null ) continue;
-                ComputerExecutor executor = runner.currentExecutor.get();
-                if( executor == null ) continue;
-
-                // We do two things here: first we update the task's virtual runtime based on when we
-                // last checked, and then we check the minimum.
-                minRuntime = Math.min( minRuntime, executor.virtualRuntime += (now - executor.vRuntimeStart) / tasks );
-                executor.vRuntimeStart = now;
+                if( runner != null ) minRuntime = minRuntime( runner, current, minRuntime, now, tasks );
             }
         }
+        for( TaskRunner runner : drainingRunners ) minRuntime = minRuntime( runner, current, minRuntime, now, tasks );
 
-        // And update the most recently executed one (if set).
-        if( current != null )
-        {
-            minRuntime = Math.min( minRuntime, current.virtualRuntime += (now - current.vRuntimeStart) / tasks );
-        }
+        if( minRuntime < Long.MAX_VALUE ) minimumVirtualRuntime.accumulateAndGet( minRuntime, Math::max );
+    }
 
-        if( minRuntime > minimumVirtualRuntime && minRuntime < Long.MAX_VALUE )
-        {
-            minimumVirtualRuntime = minRuntime;
-        }
+    private static long minRuntime( TaskRunner runner, @Nullable ComputerExecutor current, long minRuntime, long now, int tasks )
+    {
+        // If we've a task on the queue, use that as our base time.
+        ComputerExecutor head = runner.queue.peek();
+        if( head != null ) minRuntime = Math.min( minRuntime, head.virtualRuntime );
+
+        // And check what the currently executing task's runtime would be if it stopped now.
+        ComputerExecutor executor = runner.currentExecutor.get();
+        if( executor == null || executor == current ) return minRuntime;
+        return Math.min( minRuntime, executor.virtualRuntime + (now - executor.vRuntimeStart) / tasks );
     }
 
     /**
@@ -303,22 +496,15 @@ public final class ComputerThread
             );
         }
 
-        computerLock.lock();
-        try
-        {
-            updateRuntimes( executor );
+        updateRuntimes( executor );
 
-            // If we've no more tasks, just return.
-            if( !executor.afterWork() ) return;
+        // If we've no more tasks, just return.
+        if( !executor.afterWork() ) return;
 
-            // Otherwise, add to the queue, and signal any waiting workers.
-            computerQueue.add( executor );
-            hasWork.signal();
-        }
-        finally
-        {
-            computerLock.unlock();
-        }
+        // Otherwise, add to this runner's queue (unless another is less loaded), and signal any waiting workers so they
+        // may steal it. Runners only steal when their own queue is empty, so this keeps busy queues balanced.
+        push( pickQueue( runner.queue ), executor );
+        signalWork();
     }
 
     /**
@@ -332,7 +518,7 @@ public final class ComputerThread
     static long scaledPeriod()
     {
         // +1 to include the current task
-        int count = 1 + computerQueue.size();
+        int count = 1 + queuedCount.get();
         return count < LATENCY_MAX_TASKS ? latency / count : minPeriod;
     }
 
@@ -343,7 +529,16 @@ public final class ComputerThread
      */
     static boolean hasPendingWork()
     {
-        return !computerQueue.isEmpty();
+        return queuedCount.get() > 0;
+    }
+
+    private static int compareRuntime( ComputerExecutor a, ComputerExecutor b )
+    {
+        if( a == b ) return 0; // Should never happen, but let's be consistent here
+
+        long at = a.virtualRuntime, bt = b.virtualRuntime;
+        if( at == bt ) return Long.compare( a.queueId, b.queueId );
+        return at < bt ? -1 : 1;
     }
 
     /**
@@ -354,6 +549,18 @@ public final class ComputerThread
      */
     private static final class Monitor implements Runnable
     {
+        /**
+         * A moving average of {@link #queuedCount}, used to size the pool when it is adaptive.
+         */
+        private double averageQueued = 0;
+
+        /**
+         * A moving average of the number of runners executing a task.
+         */
+        private double averageBusy = 0;
+
+        private int cooldown = 0;
+
         @Override
         public void run()
         {
@@ -370,69 +577,203 @@ public final class ComputerThread
                         {
                             TaskRunner runner = currentRunners[i];
                             // If we've no runner, skip.
-                            if( runner == null || runner.owner == null || !runner.owner.isAlive() )
+                            if( runner.owner == null || !runner.owner.isAlive() )
                             {
-                                if( !running ) continue;
+                                synchronized( threadLock )
+                                {
+                                    if( !running || runners.length <= i || runners[i] != runner ) continue;
 
-                                // Mark the old runner as dead and start a new one.
-                                ComputerCraft.log.warn( "Previous runner ({}) has crashed, restarting!",
-                                    runner != null && runner.owner != null ? runner.owner.getName() : runner );
-                                if( runner != null ) runner.running = false;
-                                runnerFactory.newThread( runners[i] = new TaskRunner() ).start();
+                                    // Mark the old runner as dead and start a new one.
+                                    ComputerCraft.log.warn( "Previous runner ({}) has crashed, restarting!",
+                                        runner.owner != null ? runner.owner.getName() : runner );
+                                    runner.running = false;
+                                    runners[i] = spawn( runner.queue );
+                                }
+                                continue;
                             }
 
-                            // If the runner has no work, skip
-                            ComputerExecutor executor = runner.currentExecutor.get();
-                            if( executor == null ) continue;
+                            checkRunner( runner, i );
+                        }
 
-                            // If we're still within normal execution times (TIMEOUT) or soft abort (ABORT_TIMEOUT),
-                            // then we can let the Lua machine do its work.
-                            long afterStart = executor.timeout.nanoCumulative();
-                            long afterHardAbort = afterStart - TIMEOUT - ABORT_TIMEOUT;
-                            if( afterHardAbort < 0 ) continue;
+                        if( ComputerCraft.computerThreadsAdaptive ) adapt( currentRunners );
+                    }
 
-                            // Set the hard abort flag.
-                            executor.timeout.hardAbort();
-                            executor.abort();
+                    for( TaskRunner runner : drainingRunners ) checkRunner( runner, -1 );
+                }
+            }
+            catch( InterruptedException ignored )
+            {
+            }
+        }
 
-                            if( afterHardAbort >= ABORT_TIMEOUT * 2 )
-                            {
-                                // If we've hard aborted and interrupted, and we're still not dead, then mark the runner
-                                // as dead, finish off the task, and spawn a new runner.
-                                timeoutTask( executor, runner.owner, afterStart );
-                                runner.running = false;
-                                runner.owner.interrupt();
+        /**
+         * Check if a runner's task has exceeded its time limit, and abort it if so.
+         *
+         * @param runner The runner to check.
+         * @param index  The runner's index within {@link #runners}, or {@code -1} if it is draining.
+         */
+        private void checkRunner( TaskRunner runner, int index )
+        {
+            // If the runner has no work, skip
+            ComputerExecutor executor = runner.currentExecutor.get();
+            if( executor == null ) return;
 
-                                ComputerExecutor thisExecutor = runner.currentExecutor.getAndSet( null );
-                                if( thisExecutor != null ) afterWork( runner, executor );
+            // If we're still within normal execution times (TIMEOUT) or soft abort (ABORT_TIMEOUT),
+            // then we can let the Lua machine do its work.
+            long afterStart = executor.timeout.nanoCumulative();
+            long afterHardAbort = afterStart - TIMEOUT - ABORT_TIMEOUT;
+            if( afterHardAbort < 0 ) return;
 
-                                synchronized( threadLock )
-                                {
-                                    if( running && runners.length > i && runners[i] == runner )
-                                    {
-                                        runnerFactory.newThread( currentRunners[i] = new TaskRunner() ).start();
-                                    }
-                                }
-                            }
-                            else if( afterHardAbort >= ABORT_TIMEOUT )
-                            {
-                                // If we've hard aborted but we're still not dead, dump the stack trace and interrupt
-                                // the task.
-                                timeoutTask( executor, runner.owner, afterStart );
-                                runner.owner.interrupt();
-                            }
-                        }
+            // Set the hard abort flag.
+            executor.timeout.hardAbort();
+            executor.abort();
+
+            if( afterHardAbort >= ABORT_TIMEOUT * 2 )
+            {
+                // If we've hard aborted and interrupted, and we're still not dead, then mark the runner
+                // as dead, finish off the task, and spawn a new runner.
+                timeoutTask( executor, runner.owner, afterStart );
+                runner.running = false;
+                runner.owner.interrupt();
+
+                ComputerExecutor thisExecutor = runner.currentExecutor.getAndSet( null );
+                if( thisExecutor != null ) afterWork( runner, executor );
+
+                synchronized( threadLock )
+                {
+                    TaskRunner[] runners = ComputerThread.runners;
+                    if( index >= 0 && running && runners.length > index && runners[index] == runner )
+                    {
+                        runners[index] = spawn( runner.queue );
+                    }
+                    else if( drainingRunners.remove( runner ) )
+                    {
+                        // If this runner was being removed anyway, don't replace it, just move its work elsewhere.
+                        retire( runner.queue );
                     }
                 }
             }
-            catch( InterruptedException ignored )
+            else if( afterHardAbort >= ABORT_TIMEOUT )
+            {
+                // If we've hard aborted but we're still not dead, dump the stack trace and interrupt
+                // the task.
+                timeoutTask( executor, runner.owner, afterStart );
+                runner.owner.interrupt();
+            }
+        }
+
+        /**
+         * Grow or shrink the pool based on how many executors are waiting for a runner.
+         *
+         * We add a runner when there are consistently more executors waiting than there are runners, and remove one
+         * when there is no queue and at least one runner is sitting idle.
+         *
+         * @param currentRunners The current runners.
+         */
+        private void adapt( TaskRunner[] currentRunners )
+        {
+            int busy = 0;
+            for( TaskRunner runner : currentRunners )
+            {
+                if( runner.currentExecutor.get() != null ) busy++;
+            }
+
+            // Exponential moving average, over roughly the last second.
+            averageQueued = averageQueued * 0.9 + queuedCount.get() * 0.1;
+            averageBusy = averageBusy * 0.9 + busy * 0.1;
+
+            if( cooldown > 0 )
+            {
+                cooldown--;
+                return;
+            }
+
+            int size = currentRunners.length;
+            int target = size;
+            if( averageQueued > size )
+            {
+                target = size + 1;
+            }
+            else if( averageQueued < 0.5 && averageBusy < size - 1 )
+            {
+                target = size - 1;
+            }
+
+            adaptiveRunnerCount = target;
+            if( targetRunnerCount() == size ) return;
+
+            cooldown = ADAPTIVE_COOLDOWN;
+            resize();
+        }
+    }
+
+    /**
+     * A queue of executors waiting to be run, sorted by their {@link ComputerExecutor#virtualRuntime}.
+     *
+     * Each queue belongs to a single {@link TaskRunner}, though executors may be stolen by other runners.
+     */
+    private static final class RunQueue
+    {
+        final ConcurrentSkipListSet<ComputerExecutor> executors = new ConcurrentSkipListSet<>( ComputerThread::compareRuntime );
+
+        /**
+         * An approximate count of executors in this queue. As with {@link #queuedCount}, this may over-estimate but
+         * never under-estimate.
+         */
+        final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * Whether this queue's runner has been removed. Any executors added to a retired queue should be moved
+         * elsewhere.
+         *
+         * @see #push(RunQueue, ComputerExecutor)
+         */
+        volatile boolean retired = false;
+
+        void push( ComputerExecutor executor )
+        {
+            queuedCount.incrementAndGet();
+            size.incrementAndGet();
+            if( !executors.add( executor ) )
+            {
+                // Should never happen, as executors are only queued once.
+                size.decrementAndGet();
+                queuedCount.decrementAndGet();
+            }
+        }
+
+        @Nullable
+        ComputerExecutor poll()
+        {
+            ComputerExecutor executor = executors.pollFirst();
+            if( executor != null ) removed();
+            return executor;
+        }
+
+        @Nullable
+        ComputerExecutor peek()
+        {
+            Iterator<ComputerExecutor> iterator = executors.iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        void clear()
+        {
+            while( true )
             {
+                if( poll() == null ) return;
             }
         }
+
+        private void removed()
+        {
+            size.decrementAndGet();
+            queuedCount.decrementAndGet();
+        }
     }
 
     /**
-     * Pulls tasks from the {@link #computerQueue} queue and runs them.
+     * Pulls tasks from its {@link RunQueue} (or other runners' queues) and runs them.
      *
      * This is responsible for running the {@link ComputerExecutor#work()}, {@link ComputerExecutor#beforeWork()} and
      * {@link ComputerExecutor#afterWork()} functions. Everything else is either handled by the executor, timeout
@@ -440,16 +781,111 @@ public final class ComputerThread
      */
     private static final class TaskRunner implements Runnable
     {
-        Thread owner;
+        volatile Thread owner;
         volatile boolean running = true;
 
+        final RunQueue queue;
+
+        /**
+         * Whether this runner is (or is about to be) parked waiting for work.
+         *
+         * @see #signalWork()
+         */
+        final AtomicBoolean parked = new AtomicBoolean();
+
         final AtomicReference<ComputerExecutor> currentExecutor = new AtomicReference<>();
 
+        TaskRunner( RunQueue queue )
+        {
+            this.queue = queue;
+        }
+
+        /**
+         * Take the next executor to run, from our own queue or another runner's. If there is no work anywhere, park
+         * until woken by {@link #signalWork()}.
+         *
+         * @return The executor to run, or {@code null} if this runner should stop.
+         * @throws InterruptedException If this thread was interrupted while waiting for work.
+         */
+        @Nullable
+        private ComputerExecutor take() throws InterruptedException
+        {
+            while( running && ComputerThread.running )
+            {
+                ComputerExecutor executor = poll();
+                if( executor != null ) return executor;
+
+                // Mark ourselves as parked before checking for work again, so that any executor queued after this check
+                // will unpark us.
+                parked.set( true );
+                if( queuedCount.get() > 0 )
+                {
+                    parked.set( false );
+                    continue;
+                }
+
+                LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( MONITOR_WAKEUP ) );
+                parked.set( false );
+                if( Thread.interrupted() ) throw new InterruptedException();
+            }
+
+            return null;
+        }
+
+        /**
+         * Take the next executor from our own queue, or steal one from another runner if our queue is empty.
+         *
+         * @return The executor to run, or {@code null} if there was nothing to take.
+         */
+        @Nullable
+        private ComputerExecutor poll()
+        {
+            ComputerExecutor executor = queue.poll();
+            if( executor != null || queuedCount.get() == 0 ) return executor;
+
+            TaskRunner[] currentRunners = runners;
+            if( currentRunners == null ) return null;
+
+            // Steal from the first non-empty queue, starting at a random runner so that thieves spread themselves
+            // across their victims rather than all contending on the same one.
+            int start = ThreadLocalRandom.current().nextInt( currentRunners.length );
+            for( int i = 0; i < currentRunners.length; i++ )
+            {
+                TaskRunner victim = currentRunners[(start + i) % currentRunners.length];
+                if( victim == null || victim == this || victim.queue.size.get() <= 0 ) continue;
+
+                executor = victim.queue.poll();
+                if( executor != null ) return executor;
+            }
+
+            // Retired queues are normally emptied straight away, but an executor may be briefly sat on one while it is
+            // being moved elsewhere.
+            for( TaskRunner victim : drainingRunners )
+            {
+                executor = victim.queue.poll();
+                if( executor != null ) return executor;
+            }
+
+            return null;
+        }
+
         @Override
         public void run()
         {
-            owner = Thread.currentThread();
+            try
+            {
+                runTasks();
+            }
+            finally
+            {
+                // If we've been removed by a resize, hand any remaining work to the other runners. Our queue will
+                // normally have been retired already, but this also covers the executor we were running.
+                if( drainingRunners.remove( this ) ) retire( queue );
+            }
+        }
 
+        private void runTasks()
+        {
             tasks:
             while( running && ComputerThread.running )
             {
@@ -457,17 +893,8 @@ public final class ComputerThread
                 ComputerExecutor executor;
                 try
                 {
-                    computerLock.lockInterruptibly();
-                    try
-                    {
-                        while( computerQueue.isEmpty() ) hasWork.await();
-                        executor = computerQueue.pollFirst();
-                        assert executor != null : "hasWork should ensure we never receive null work";
-                    }
-                    finally
-                    {
-                        computerLock.unlock();
-                    }
+                    executor = take();
+                    if( executor == null ) continue;
                 }
                 catch( InterruptedException ignored )
                 {
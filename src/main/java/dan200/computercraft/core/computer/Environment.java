@@ -18,7 +18,6 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import javax.annotation.Nonnull;
 import java.util.Arrays;
-import java.util.Iterator;
 
 /**
  * Represents the "environment" that a {@link Computer} exists in.
@@ -38,6 +37,10 @@ import java.util.Iterator;
  *
  * <h1>Peripheral</h1>
  * We also keep track of peripherals. These are read on both threads, and only written on the main thread.
+ *
+ * <h1>Timers</h1>
+ * Timers are scheduled on the {@link TimerWheel} shared by all computers. We keep track of our own timers in
+ * {@link #timers}, so they can be cancelled by ID, or when the computer is reset.
  */
 public final class Environment implements IAPIEnvironment
 {
@@ -214,6 +217,8 @@ public final class Environment implements IAPIEnvironment
     {
         synchronized( timers )
         {
+            TimerWheel wheel = MainThread.timers();
+            for( Timer timer : timers.values() ) wheel.cancel( timer );
             timers.clear();
         }
     }
@@ -228,24 +233,6 @@ public final class Environment implements IAPIEnvironment
             inputChanged = false;
             queueEvent( "redstone" );
         }
-
-        synchronized( timers )
-        {
-            // Countdown all of our active timers
-            Iterator<Int2ObjectMap.Entry<Timer>> it = timers.int2ObjectEntrySet().iterator();
-            while( it.hasNext() )
-            {
-                Int2ObjectMap.Entry<Timer> entry = it.next();
-                Timer timer = entry.getValue();
-                timer.ticksLeft--;
-                if( timer.ticksLeft <= 0 )
-                {
-                    // Queue the "timer" event
-                    queueEvent( TIMER_EVENT, entry.getIntKey() );
-                    it.remove();
-                }
-            }
-        }
     }
 
     /**
@@ -345,8 +332,11 @@ public final class Environment implements IAPIEnvironment
     {
         synchronized( timers )
         {
-            timers.put( nextTimerToken, new Timer( ticks ) );
-            return nextTimerToken++;
+            int id = nextTimerToken++;
+            Timer timer = new Timer( id, ticks );
+            timers.put( id, timer );
+            MainThread.timers().schedule( timer );
+            return id;
         }
     }
 
@@ -355,7 +345,8 @@ public final class Environment implements IAPIEnvironment
     {
         synchronized( timers )
         {
-            timers.remove( id );
+            Timer timer = timers.remove( id );
+            if( timer != null ) MainThread.timers().cancel( timer );
         }
     }
 
@@ -365,13 +356,33 @@ public final class Environment implements IAPIEnvironment
         Tracking.addValue( computer, field, change );
     }
 
-    private static class Timer
+    @Override
+    public void addTrackingTiming( @Nonnull TrackingField field, long time )
     {
-        long ticksLeft;
+        Tracking.addTiming( computer, field, time );
+    }
+
+    private final class Timer extends TimerWheel.Entry
+    {
+        final int id;
 
-        Timer( long ticksLeft )
+        Timer( int id, long ticks )
         {
-            this.ticksLeft = ticksLeft;
+            super( ticks );
+            this.id = id;
+        }
+
+        @Override
+        protected void fire()
+        {
+            synchronized( timers )
+            {
+                if( timers.get( id ) != this ) return;
+                timers.remove( id );
+            }
+
+            // Queue the "timer" event
+            queueEvent( TIMER_EVENT, id );
         }
     }
 }
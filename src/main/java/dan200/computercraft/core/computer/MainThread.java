@@ -15,7 +15,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Runs tasks on the main (server) thread, ticks {@link MainThreadExecutor}s, and limits how much time is used this
- * tick.
+ * tick. This also advances the {@link TimerWheel} shared by every computer.
  *
  * Similar to {@link MainThreadExecutor}, the {@link MainThread} can be in one of three states: cool, hot and cooling.
  * However, the implementation here is a little different:
@@ -77,6 +77,13 @@ public final class MainThread
 
     private static long minimumTime = 0;
 
+    /**
+     * The timers for every computer.
+     *
+     * @see Environment#startTimer(long)
+     */
+    private static final TimerWheel timers = new TimerWheel();
+
     private MainThread() {}
 
     public static long getUniqueTaskID()
@@ -105,6 +112,11 @@ public final class MainThread
         }
     }
 
+    static TimerWheel timers()
+    {
+        return timers;
+    }
+
     static void cooling( @Nonnull MainThreadExecutor executor )
     {
         cooling.add( executor );
@@ -133,6 +145,10 @@ public final class MainThread
         // Of course, we'll go over the MAX_TICK_TIME most of the time, but eventually that overrun will accumulate
         // and we'll skip a whole tick - bringing the average back down again.
         currentTick++;
+
+        // Fire any timers. We do this regardless of our budget, as otherwise timers would drift.
+        timers.tick();
+
         budget = Math.min( budget + ComputerCraft.maxMainGlobalTime, ComputerCraft.maxMainGlobalTime );
         canExecute = budget > 0;
 
@@ -186,6 +202,7 @@ public final class MainThread
         minimumTime = 0;
         lastTaskId.set( 0 );
         cooling.clear();
+        timers.reset();
         synchronized( executors )
         {
             executors.clear();
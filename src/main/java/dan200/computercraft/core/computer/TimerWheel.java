@@ -0,0 +1,258 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.computer;
+
+import javax.annotation.Nonnull;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A hierarchical timing wheel, used to schedule {@code os.startTimer} timers for every computer.
+ *
+ * Timers are bucketed by the tick they expire on. The first level has one slot for each of the next {@link #SLOTS}
+ * ticks, each subsequent level has one slot for {@link #SLOTS} slots of the level below. Whenever the lower level
+ * wraps around, the next slot of the upper level is "cascaded" down. This means advancing a tick only touches the
+ * timers which actually fire (and those which are cascaded, which happens at most once per level).
+ *
+ * Timers may be scheduled and cancelled from any thread. These are queued up and only applied to the wheel when it is
+ * advanced on the main thread (see {@link #tick()}), so the wheel itself requires no locking.
+ *
+ * @see MainThread#executePendingTasks()
+ */
+final class TimerWheel
+{
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /**
+     * The doubly-linked list of timers in each slot. Each list is headed by a sentinel entry.
+     */
+    private final Entry[][] wheels = new Entry[LEVELS][SLOTS];
+
+    /**
+     * Timers which expire too far in the future to fit on the wheel. These are re-examined every time the top level
+     * of the wheel wraps around.
+     */
+    private final Entry overflow = new Head();
+
+    /**
+     * The next tick to be processed.
+     */
+    private long currentTick = 0;
+
+    private final Queue<Entry> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Entry> cancelled = new ConcurrentLinkedQueue<>();
+
+    TimerWheel()
+    {
+        for( Entry[] wheel : wheels )
+        {
+            for( int i = 0; i < SLOTS; i++ ) wheel[i] = new Head();
+        }
+    }
+
+    /**
+     * Schedule a timer to be fired.
+     *
+     * @param entry The timer to schedule. This may only be scheduled once.
+     */
+    void schedule( @Nonnull Entry entry )
+    {
+        scheduled.add( entry );
+    }
+
+    /**
+     * Cancel a timer, preventing it from firing. This does nothing if the timer has already fired.
+     *
+     * @param entry The timer to cancel.
+     */
+    void cancel( @Nonnull Entry entry )
+    {
+        entry.cancelled = true;
+        cancelled.add( entry );
+    }
+
+    /**
+     * Advance the wheel by a single tick, firing any expired timers. This should only be called from the main thread.
+     */
+    void tick()
+    {
+        // Add any new timers. Timers scheduled before this tick count it as their first tick, hence the -1.
+        Entry entry;
+        while( (entry = scheduled.poll()) != null )
+        {
+            if( entry.cancelled ) continue;
+            entry.expiry = currentTick + Math.max( 0, entry.delay - 1 );
+            insert( entry );
+        }
+
+        // And remove any timers which have been cancelled since the last tick.
+        while( (entry = cancelled.poll()) != null ) unlink( entry );
+
+        int index = (int) (currentTick & SLOT_MASK);
+
+        // If the first level has wrapped around, move the next set of timers down.
+        if( index == 0 )
+        {
+            boolean wrapped = true;
+            for( int level = 1; level < LEVELS; level++ )
+            {
+                int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                cascade( wheels[level][slot] );
+                if( slot != 0 )
+                {
+                    wrapped = false;
+                    break;
+                }
+            }
+
+            if( wrapped ) cascade( overflow );
+        }
+
+        Entry head = wheels[0][index];
+        Entry timer = detach( head );
+        while( timer != null )
+        {
+            Entry next = timer.next;
+            timer.prev = timer.next = null;
+            if( !timer.cancelled ) timer.fire();
+            timer = next;
+        }
+
+        currentTick++;
+    }
+
+    /**
+     * Remove all timers from the wheel, without firing them.
+     */
+    void reset()
+    {
+        scheduled.clear();
+        cancelled.clear();
+        for( Entry[] wheel : wheels )
+        {
+            for( Entry head : wheel ) clear( head );
+        }
+        clear( overflow );
+        currentTick = 0;
+    }
+
+    private void insert( Entry entry )
+    {
+        long delta = entry.expiry - currentTick;
+
+        Entry head;
+        if( delta < 0 )
+        {
+            head = wheels[0][(int) (currentTick & SLOT_MASK)];
+        }
+        else if( delta >= 1L << (SLOT_BITS * LEVELS) )
+        {
+            head = overflow;
+        }
+        else
+        {
+            int level = 0;
+            while( delta >= 1L << (SLOT_BITS * (level + 1)) ) level++;
+            head = wheels[level][(int) ((entry.expiry >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        }
+
+        entry.prev = head;
+        entry.next = head.next;
+        if( head.next != null ) head.next.prev = entry;
+        head.next = entry;
+    }
+
+    private void cascade( Entry head )
+    {
+        Entry entry = detach( head );
+        while( entry != null )
+        {
+            Entry next = entry.next;
+            insert( entry );
+            entry = next;
+        }
+    }
+
+    /**
+     * Remove every entry from a list.
+     *
+     * @param head The list's sentinel.
+     * @return The first entry of the removed list. Entries still point to their successors.
+     */
+    private static Entry detach( Entry head )
+    {
+        Entry first = head.next;
+        head.next = null;
+        return first;
+    }
+
+    private static void clear( Entry head )
+    {
+        Entry entry = detach( head );
+        while( entry != null )
+        {
+            Entry next = entry.next;
+            entry.prev = entry.next = null;
+            entry = next;
+        }
+    }
+
+    private static void unlink( Entry entry )
+    {
+        Entry prev = entry.prev;
+        if( prev == null ) return;
+
+        Entry next = entry.next;
+        prev.next = next;
+        if( next != null ) next.prev = prev;
+        entry.prev = entry.next = null;
+    }
+
+    /**
+     * A timer on the wheel.
+     */
+    abstract static class Entry
+    {
+        final long delay;
+        volatile boolean cancelled;
+
+        // Only accessed on the main thread.
+        long expiry;
+        Entry prev;
+        Entry next;
+
+        /**
+         * Create a new timer.
+         *
+         * @param delay The number of ticks until this timer fires.
+         */
+        protected Entry( long delay )
+        {
+            this.delay = delay;
+        }
+
+        /**
+         * Called on the main thread when this timer expires.
+         */
+        protected abstract void fire();
+    }
+
+    private static final class Head extends Entry
+    {
+        Head()
+        {
+            super( 0 );
+        }
+
+        @Override
+        protected void fire()
+        {
+        }
+    }
+}
@@ -6,6 +6,7 @@
 package dan200.computercraft.core.filesystem;
 
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.nio.channels.Channel;
 
@@ -42,6 +43,11 @@ class ChannelWrapper<T extends Closeable> implements Closeable
         }
     }
 
+    void flush() throws IOException
+    {
+        if( channel instanceof Flushable flushable ) flushable.flush();
+    }
+
     T get()
     {
         return wrapper;
@@ -13,8 +13,10 @@ import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class ComboMount implements IMount
@@ -99,6 +101,35 @@ public class ComboMount implements IMount
         }
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        // Combine the listings from all the mounts, preferring entries from later mounts.
+        Map<String, BasicFileAttributes> partContents = null;
+        for( int i = parts.length - 1; i >= 0; --i )
+        {
+            IMount part = parts[i];
+            if( !part.exists( path ) || !part.isDirectory( path ) ) continue;
+
+            if( partContents == null )
+            {
+                partContents = new HashMap<>();
+            }
+            else
+            {
+                partContents.clear();
+            }
+
+            part.listAttributes( path, partContents );
+            for( Map.Entry<String, BasicFileAttributes> entry : partContents.entrySet() )
+            {
+                contents.putIfAbsent( entry.getKey(), entry.getValue() );
+            }
+        }
+
+        if( partContents == null ) throw new FileOperationException( path, "Not a directory" );
+    }
+
     @Override
     public long getSize( @Nonnull String path ) throws IOException
     {
@@ -135,7 +166,7 @@ public class ComboMount implements IMount
         for( int i = parts.length - 1; i >= 0; --i )
         {
             IMount part = parts[i];
-            if( part.exists( path ) && !part.isDirectory( path ) )
+            if( part.exists( path ) )
             {
                 return part.getAttributes( path );
             }
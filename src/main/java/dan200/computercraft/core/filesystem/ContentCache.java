@@ -0,0 +1,140 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.shared.util.ThreadUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of file contents, shared between all read-only mounts ({@link JarMount}, {@link ResourceMount} and
+ * {@link TemplateMount}).
+ *
+ * Files are keyed by an object provided by their mount, such as its file entry (compared by identity). Entries are
+ * weakly held, so a file's contents are dropped once its mount is reloaded or garbage collected. Otherwise, the cache
+ * is bounded by {@link ComputerCraft#resourceCacheSize}, evicting the least recently used files first.
+ */
+public final class ContentCache
+{
+    private static final ExecutorService PRELOAD_EXECUTOR = Executors.newSingleThreadExecutor(
+        ThreadUtils.factory( "ResourcePreload" )
+    );
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private static volatile Cache<Object, byte[]> cache;
+    private static long cacheSize;
+
+    private ContentCache()
+    {
+    }
+
+    private static Cache<Object, byte[]> cache()
+    {
+        Cache<Object, byte[]> cache = ContentCache.cache;
+        if( cache != null ) return cache;
+
+        synchronized( ContentCache.class )
+        {
+            if( ContentCache.cache != null ) return ContentCache.cache;
+
+            cacheSize = ComputerCraft.resourceCacheSize;
+            return ContentCache.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel( 4 )
+                .maximumWeight( ComputerCraft.resourceCacheSize )
+                .weakKeys()
+                .<Object, byte[]>weigher( ( k, v ) -> v.length )
+                .removalListener( x -> {
+                    if( x.getCause() == RemovalCause.SIZE ) evictions.incrementAndGet();
+                } )
+                .build();
+        }
+    }
+
+    /**
+     * Determine whether a file of a given size may be cached.
+     *
+     * @param size The file's size, or a negative number if unknown.
+     * @return Whether this file may be cached.
+     */
+    static boolean canCache( long size )
+    {
+        return size >= 0 && size <= ComputerCraft.resourceCacheMaxFileSize && size <= ComputerCraft.resourceCacheSize;
+    }
+
+    @Nullable
+    static byte[] get( @Nonnull Object file )
+    {
+        byte[] contents = cache().getIfPresent( file );
+        (contents == null ? misses : hits).incrementAndGet();
+        return contents;
+    }
+
+    /**
+     * Get a file's contents if it is cached, without counting it as an access.
+     *
+     * @param file The file to look up.
+     * @return The file's contents, or {@code null} if not cached.
+     */
+    @Nullable
+    static byte[] peek( @Nonnull Object file )
+    {
+        return cache().getIfPresent( file );
+    }
+
+    static void put( @Nonnull Object file, @Nonnull byte[] contents )
+    {
+        if( canCache( contents.length ) ) cache().put( file, contents );
+    }
+
+    /**
+     * Load files into the cache in the background.
+     *
+     * @param task The task which loads files.
+     */
+    static void preload( @Nonnull Runnable task )
+    {
+        if( ComputerCraft.resourceCacheSize > 0 ) PRELOAD_EXECUTOR.execute( task );
+    }
+
+    /**
+     * Update the cache after the config has changed. If the cache's size has changed, it is cleared and rebuilt the
+     * next time it is used.
+     */
+    public static synchronized void configure()
+    {
+        Cache<Object, byte[]> cache = ContentCache.cache;
+        if( cache == null || cacheSize == ComputerCraft.resourceCacheSize ) return;
+
+        ContentCache.cache = null;
+        cache.invalidateAll();
+    }
+
+    public static long getHits()
+    {
+        return hits.get();
+    }
+
+    public static long getMisses()
+    {
+        return misses.get();
+    }
+
+    public static long getEvictions()
+    {
+        return evictions.get();
+    }
+}
@@ -9,9 +9,11 @@ import com.google.common.collect.Sets;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.filesystem.FileOperationException;
 import dan200.computercraft.api.filesystem.IWritableMount;
+import dan200.computercraft.shared.util.ThreadUtils;
 
 import javax.annotation.Nonnull;
 import java.io.File;
+import java.io.Flushable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
@@ -19,8 +21,17 @@ import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FileMount implements IWritableMount
 {
@@ -29,7 +40,56 @@ public class FileMount implements IWritableMount
     private static final Set<OpenOption> WRITE_OPTIONS = Sets.newHashSet( StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING );
     private static final Set<OpenOption> APPEND_OPTIONS = Sets.newHashSet( StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND );
 
-    private class WritableCountingChannel implements WritableByteChannel
+    /**
+     * The format of the file we persist the used space to. This stores a version, the used space and the time the
+     * mount's root directory was last modified.
+     */
+    private static final int USAGE_VERSION = 1;
+    private static final int USAGE_SIZE = Integer.BYTES + Long.BYTES * 2;
+
+    /**
+     * How long to wait after a mount is modified before persisting its used space.
+     */
+    private static final int SAVE_DELAY = 5;
+
+    /**
+     * The executor which saves the space used by mounts and flushes buffered writes.
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+        ThreadUtils.factory( "FileMount" )
+    );
+
+    /**
+     * The executor which recounts the space used by mounts. Walking a large mount may take several seconds, so this
+     * is kept apart from {@link #EXECUTOR}, where it would hold up flushing other mounts' writes.
+     */
+    private static final ExecutorService RECOUNT_EXECUTOR = Executors.newSingleThreadExecutor(
+        ThreadUtils.factory( "FileMount-Recount" )
+    );
+
+    /**
+     * All mounts whose used space has changed and not yet been saved.
+     */
+    private static final Set<FileMount> DIRTY = ConcurrentHashMap.newKeySet();
+
+    /**
+     * How often buffered writes are flushed to disk, in milliseconds.
+     */
+    private static final int WRITE_FLUSH_INTERVAL = 1000;
+
+    /**
+     * All mounts which have buffered writes which have not been flushed.
+     */
+    private static final Set<FileMount> PENDING_WRITES = ConcurrentHashMap.newKeySet();
+
+    static
+    {
+        EXECUTOR.scheduleWithFixedDelay( () -> {
+            for( FileMount mount : PENDING_WRITES ) mount.flushWrites();
+        }, WRITE_FLUSH_INTERVAL, WRITE_FLUSH_INTERVAL, TimeUnit.MILLISECONDS );
+    }
+
+    private class WritableCountingChannel implements WritableByteChannel, Flushable
     {
 
         private final WritableByteChannel inner;
@@ -56,12 +116,16 @@ public class FileMount implements IWritableMount
                 long newBytes = -ignoredBytesLeft;
                 ignoredBytesLeft = 0;
 
-                long bytesLeft = capacity - usedSpace;
-                if( newBytes > bytesLeft ) throw new IOException( "Out of space" );
-                usedSpace += newBytes;
+                reserveSpace( newBytes );
             }
         }
 
+        @Override
+        public void flush() throws IOException
+        {
+            if( inner instanceof Flushable flushable ) flushable.flush();
+        }
+
         @Override
         public boolean isOpen()
         {
@@ -134,14 +198,30 @@ public class FileMount implements IWritableMount
     }
 
     private final File rootPath;
+    private final File usageFile;
     private final long capacity;
+
+    // Guarded by this.
     private long usedSpace;
+    private boolean dirty;
+
+    /**
+     * The pending recount of this mount's used space, or {@code null} if {@link #usedSpace} is accurate.
+     */
+    private volatile FutureTask<?> recount;
+
+    private final Set<WriteBehindChannel> unflushedChannels = ConcurrentHashMap.newKeySet();
+    private final AtomicLong unflushedBytes = new AtomicLong();
 
     public FileMount( File rootPath, long capacity )
     {
         this.rootPath = rootPath;
+        usageFile = new File( rootPath.getPath() + ".usage" );
         this.capacity = capacity + MINIMUM_FILE_SIZE;
-        usedSpace = created() ? measureUsedSpace( this.rootPath ) : MINIMUM_FILE_SIZE;
+        usedSpace = created() ? loadUsedSpace() : MINIMUM_FILE_SIZE;
+
+        FutureTask<?> recount = this.recount;
+        if( recount != null ) RECOUNT_EXECUTOR.execute( recount );
     }
 
     // IMount implementation
@@ -183,6 +263,39 @@ public class FileMount implements IWritableMount
         }
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        if( !created() )
+        {
+            if( !path.isEmpty() ) throw new FileOperationException( path, "Not a directory" );
+            return;
+        }
+
+        File file = getRealPath( path );
+        if( !file.isDirectory() ) throw new FileOperationException( path, "Not a directory" );
+
+        flushWrites();
+        try( DirectoryStream<Path> stream = Files.newDirectoryStream( file.toPath() ) )
+        {
+            for( Path child : stream )
+            {
+                BasicFileAttributes attributes;
+                try
+                {
+                    attributes = Files.readAttributes( child, BasicFileAttributes.class );
+                }
+                catch( NoSuchFileException e )
+                {
+                    // The file was deleted after listing, or is a broken link. list() skips these, so do the same.
+                    continue;
+                }
+
+                contents.put( child.getFileName().toString(), attributes );
+            }
+        }
+    }
+
     @Override
     public long getSize( @Nonnull String path ) throws IOException
     {
@@ -192,6 +305,7 @@ public class FileMount implements IWritableMount
         }
         else
         {
+            flushWrites();
             File file = getRealPath( path );
             if( file.exists() ) return file.isDirectory() ? 0 : file.length();
         }
@@ -203,6 +317,7 @@ public class FileMount implements IWritableMount
     @Override
     public ReadableByteChannel openForRead( @Nonnull String path ) throws IOException
     {
+        flushWrites();
         if( created() )
         {
             File file = getRealPath( path );
@@ -218,6 +333,7 @@ public class FileMount implements IWritableMount
     {
         if( created() )
         {
+            flushWrites();
             File file = getRealPath( path );
             if( file.exists() ) return Files.readAttributes( file.toPath(), BasicFileAttributes.class );
         }
@@ -230,6 +346,7 @@ public class FileMount implements IWritableMount
     @Override
     public void makeDirectory( @Nonnull String path ) throws IOException
     {
+        awaitRecount();
         create();
         File file = getRealPath( path );
         if( file.exists() )
@@ -253,7 +370,7 @@ public class FileMount implements IWritableMount
 
         if( file.mkdirs() )
         {
-            usedSpace += dirsToCreate * MINIMUM_FILE_SIZE;
+            addUsedSpace( dirsToCreate * MINIMUM_FILE_SIZE );
         }
         else
         {
@@ -268,6 +385,8 @@ public class FileMount implements IWritableMount
 
         if( created() )
         {
+            awaitRecount();
+            flushWrites();
             File file = getRealPath( path );
             if( file.exists() ) deleteRecursively( file );
         }
@@ -290,7 +409,7 @@ public class FileMount implements IWritableMount
         boolean success = file.delete();
         if( success )
         {
-            usedSpace -= Math.max( MINIMUM_FILE_SIZE, fileSize );
+            addUsedSpace( -Math.max( MINIMUM_FILE_SIZE, fileSize ) );
         }
         else
         {
@@ -302,21 +421,26 @@ public class FileMount implements IWritableMount
     @Override
     public WritableByteChannel openForWrite( @Nonnull String path ) throws IOException
     {
+        awaitRecount();
         create();
+        flushWrites();
         File file = getRealPath( path );
         if( file.exists() && file.isDirectory() ) throw new FileOperationException( path, "Cannot write to directory" );
 
         if( file.exists() )
         {
-            usedSpace -= Math.max( file.length(), MINIMUM_FILE_SIZE );
+            addUsedSpace( MINIMUM_FILE_SIZE - Math.max( file.length(), MINIMUM_FILE_SIZE ) );
         }
         else if( getRemainingSpace() < MINIMUM_FILE_SIZE )
         {
             throw new FileOperationException( path, "Out of space" );
         }
-        usedSpace += MINIMUM_FILE_SIZE;
+        else
+        {
+            addUsedSpace( MINIMUM_FILE_SIZE );
+        }
 
-        return new SeekableCountingChannel( Files.newByteChannel( file.toPath(), WRITE_OPTIONS ), MINIMUM_FILE_SIZE );
+        return new SeekableCountingChannel( bufferWrites( Files.newByteChannel( file.toPath(), WRITE_OPTIONS ) ), MINIMUM_FILE_SIZE );
     }
 
     @Nonnull
@@ -328,13 +452,15 @@ public class FileMount implements IWritableMount
             throw new FileOperationException( path, "No such file" );
         }
 
+        awaitRecount();
+        flushWrites();
         File file = getRealPath( path );
         if( !file.exists() ) throw new FileOperationException( path, "No such file" );
         if( file.isDirectory() ) throw new FileOperationException( path, "Cannot write to directory" );
 
         // Allowing seeking when appending is not recommended, so we use a separate channel.
         return new WritableCountingChannel(
-            Files.newByteChannel( file.toPath(), APPEND_OPTIONS ),
+            bufferWrites( Files.newByteChannel( file.toPath(), APPEND_OPTIONS ) ),
             Math.max( MINIMUM_FILE_SIZE - file.length(), 0 )
         );
     }
@@ -342,7 +468,11 @@ public class FileMount implements IWritableMount
     @Override
     public long getRemainingSpace()
     {
-        return Math.max( capacity - usedSpace, 0 );
+        awaitRecount();
+        synchronized( this )
+        {
+            return Math.max( capacity - usedSpace, 0 );
+        }
     }
 
     @Nonnull
@@ -374,6 +504,184 @@ public class FileMount implements IWritableMount
         }
     }
 
+    private SeekableByteChannel bufferWrites( SeekableByteChannel channel )
+    {
+        int size = ComputerCraft.fileWriteBuffer;
+        return size > 0 ? new WriteBehindChannel( this, channel, size ) : channel;
+    }
+
+    void markUnflushed( WriteBehindChannel channel )
+    {
+        unflushedChannels.add( channel );
+        PENDING_WRITES.add( this );
+    }
+
+    void markFlushed( WriteBehindChannel channel )
+    {
+        unflushedChannels.remove( channel );
+    }
+
+    long addUnflushedBytes( long delta )
+    {
+        return unflushedBytes.addAndGet( delta );
+    }
+
+    /**
+     * Write out any buffered writes. This is called before reading from or modifying the mount, so that buffered
+     * writes are never observable, as well as periodically from the background thread.
+     */
+    private void flushWrites()
+    {
+        if( unflushedChannels.isEmpty() ) return;
+
+        PENDING_WRITES.remove( this );
+        for( WriteBehindChannel channel : unflushedChannels ) channel.flushQuietly();
+
+        // A channel may have been written to while we were flushing, in which case make sure it's picked up next time.
+        if( !unflushedChannels.isEmpty() ) PENDING_WRITES.add( this );
+    }
+
+    private synchronized void reserveSpace( long bytes ) throws IOException
+    {
+        if( bytes > capacity - usedSpace ) throw new IOException( "Out of space" );
+        addUsedSpace( bytes );
+    }
+
+    /**
+     * Wait for any pending recount of the used space. This is called before modifying the mount, so that space limits
+     * are enforced against the real usage rather than an estimate, and so the recount never observes a modification
+     * part way through. If the background thread has not got to this mount yet, we count it on this thread instead.
+     *
+     * This must not be called while holding this mount's lock.
+     */
+    private void awaitRecount()
+    {
+        FutureTask<?> recount = this.recount;
+        if( recount == null ) return;
+
+        // This does nothing if the recount is already running or has finished.
+        recount.run();
+        try
+        {
+            recount.get();
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch( ExecutionException e )
+        {
+            ComputerCraft.log.error( "Error recounting used space for {}", rootPath, e.getCause() );
+        }
+    }
+
+    private synchronized void addUsedSpace( long delta )
+    {
+        usedSpace += delta;
+        if( dirty ) return;
+
+        // Remove the persisted usage until we next save, so that it is not trusted if we never get that far.
+        dirty = true;
+        DIRTY.add( this );
+        if( usageFile.exists() && !usageFile.delete() )
+        {
+            ComputerCraft.log.warn( "Cannot delete used space file {}", usageFile );
+        }
+        EXECUTOR.schedule( this::saveUsedSpace, SAVE_DELAY, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Load the used space from the persisted usage file. If this is missing or out of date, we create a recount (which
+     * the constructor queues in the background), and use the old value (if any) until then. Any writes wait for the
+     * recount to finish first.
+     *
+     * We consider the file out of date if the root directory was modified after it was saved. This will not catch every
+     * change made outside the mount, but the file is removed whenever the mount is modified and only written back once
+     * our own changes have been accounted for.
+     *
+     * @return The used space, or an estimate of it.
+     */
+    private long loadUsedSpace()
+    {
+        long estimate = MINIMUM_FILE_SIZE;
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( usageFile.toPath() ) );
+            if( buffer.remaining() == USAGE_SIZE && buffer.getInt() == USAGE_VERSION )
+            {
+                long used = buffer.getLong();
+                if( buffer.getLong() == rootPath.lastModified() ) return used;
+                estimate = used;
+            }
+        }
+        catch( NoSuchFileException ignored )
+        {
+            // Never saved, or modified without being saved again.
+        }
+        catch( IOException e )
+        {
+            ComputerCraft.log.error( "Cannot read used space file {}", usageFile, e );
+        }
+
+        recount = new FutureTask<>( this::recountUsedSpace, null );
+        return estimate;
+    }
+
+    private void recountUsedSpace()
+    {
+        long start;
+        synchronized( this )
+        {
+            start = usedSpace;
+        }
+
+        long measured = measureUsedSpace( rootPath );
+
+        synchronized( this )
+        {
+            // Apply the correction relative to our original estimate, to preserve any changes made while counting.
+            usedSpace += measured - start;
+            recount = null;
+
+            // Any saves while we were counting were skipped, so save again now we know the real usage.
+            dirty = true;
+            DIRTY.add( this );
+            EXECUTOR.schedule( this::saveUsedSpace, SAVE_DELAY, TimeUnit.SECONDS );
+        }
+    }
+
+    private synchronized void saveUsedSpace()
+    {
+        // Don't persist an estimate while a recount is pending, as it would be trusted on the next load. The recount
+        // queues another save once it has finished.
+        if( !dirty || recount != null ) return;
+        dirty = false;
+        DIRTY.remove( this );
+
+        if( !created() ) return;
+
+        ByteBuffer buffer = ByteBuffer.allocate( USAGE_SIZE );
+        buffer.putInt( USAGE_VERSION ).putLong( usedSpace ).putLong( rootPath.lastModified() );
+        try
+        {
+            Files.write( usageFile.toPath(), buffer.array() );
+        }
+        catch( IOException e )
+        {
+            ComputerCraft.log.error( "Cannot write used space file {}", usageFile, e );
+        }
+    }
+
+    /**
+     * Save the used space of any mounts which have been modified since they were last saved. This should be called
+     * when the server stops, so we don't need to recount them on the next load. Mounts which are still waiting to be
+     * recounted are skipped, and so will be recounted on the next load instead.
+     */
+    public static void saveAllUsedSpace()
+    {
+        for( FileMount mount : DIRTY ) mount.saveUsedSpace();
+    }
+
     private static class Visitor extends SimpleFileVisitor<Path>
     {
         long size;
@@ -13,6 +13,7 @@ import dan200.computercraft.api.filesystem.IWritableMount;
 import dan200.computercraft.shared.util.IoUtil;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.ref.Reference;
@@ -40,6 +41,12 @@ public class FileSystem
     private final FileSystemWrapperMount wrapper = new FileSystemWrapperMount( this );
     private final Map<String, MountWrapper> mounts = new HashMap<>();
 
+    /**
+     * A trie of mount points, keyed by each segment of their location (ignoring case). This allows finding the mount
+     * for a path, or the mounts inside a directory, without visiting every mount.
+     */
+    private final MountNode mountTree = new MountNode();
+
     private final HashMap<WeakReference<FileSystemWrapper<?>>, ChannelWrapper<?>> openFiles = new HashMap<>();
     private final ReferenceQueue<FileSystemWrapper<?>> openFileQueue = new ReferenceQueue<>();
 
@@ -89,14 +96,17 @@ public class FileSystem
     private synchronized void mount( MountWrapper wrapper )
     {
         String location = wrapper.getLocation();
-        mounts.remove( location );
-        mounts.put( location, wrapper );
+        MountWrapper existing = mounts.put( location, wrapper );
+        if( existing != null ) mountTree.remove( existing, location, 0 );
+        mountTree.add( wrapper, location );
     }
 
     public synchronized void unmount( String path )
     {
-        MountWrapper mount = mounts.remove( sanitizePath( path ) );
+        String location = sanitizePath( path );
+        MountWrapper mount = mounts.remove( location );
         if( mount == null ) return;
+        mountTree.remove( mount, location, 0 );
 
         cleanup();
 
@@ -169,12 +179,14 @@ public class FileSystem
 
     public synchronized long getSize( String path ) throws FileSystemException
     {
-        return getMount( sanitizePath( path ) ).getSize( sanitizePath( path ) );
+        path = sanitizePath( path );
+        return getMount( path ).getSize( path );
     }
 
     public synchronized BasicFileAttributes getAttributes( String path ) throws FileSystemException
     {
-        return getMount( sanitizePath( path ) ).getAttributes( sanitizePath( path ) );
+        path = sanitizePath( path );
+        return getMount( path ).getAttributes( path );
     }
 
     public synchronized String[] list( String path ) throws FileSystemException
@@ -187,11 +199,18 @@ public class FileSystem
         mount.list( path, list );
 
         // Add any mounts that are mounted at this location
-        for( MountWrapper otherMount : mounts.values() )
+        MountNode node = mountTree.find( path );
+        if( node != null )
         {
-            if( getDirectory( otherMount.getLocation() ).equals( path ) )
+            for( MountNode child : node.children )
             {
-                list.add( getName( otherMount.getLocation() ) );
+                for( MountWrapper otherMount : child.mounts )
+                {
+                    if( getDirectory( otherMount.getLocation() ).equals( path ) )
+                    {
+                        list.add( getName( otherMount.getLocation() ) );
+                    }
+                }
             }
         }
 
@@ -202,21 +221,134 @@ public class FileSystem
         return array;
     }
 
-    private void findIn( String dir, List<String> matches, Pattern wildPattern ) throws FileSystemException
+    public synchronized SortedMap<String, BasicFileAttributes> listAttributes( String path ) throws FileSystemException
+    {
+        return listEntries( sanitizePath( path ) );
+    }
+
+    /**
+     * Get the names of any mounts which are mounted directly within a directory. These are the only entries of a
+     * directory which may not belong to the same mount as the directory itself.
+     *
+     * @param path The directory to check.
+     * @return The names of the mounts within this directory.
+     */
+    public synchronized Set<String> listMounts( String path )
     {
-        String[] list = list( dir );
-        for( String entry : list )
+        path = sanitizePath( path );
+        MountNode node = mountTree.find( path );
+        if( node == null ) return Collections.emptySet();
+
+        Set<String> names = new HashSet<>();
+        for( MountNode child : node.children )
+        {
+            for( MountWrapper otherMount : child.mounts )
+            {
+                if( getDirectory( otherMount.getLocation() ).equals( path ) ) names.add( getName( otherMount.getLocation() ) );
+            }
+        }
+        return names;
+    }
+
+    /**
+     * List a directory along with the attributes of each entry, including any mounts which are mounted within it.
+     *
+     * @param path The sanitised path to list.
+     * @return The directory's entries, sorted by name.
+     * @throws FileSystemException If the path is not a directory or could not be listed.
+     */
+    private SortedMap<String, BasicFileAttributes> listEntries( String path ) throws FileSystemException
+    {
+        SortedMap<String, BasicFileAttributes> entries = new TreeMap<>();
+        getMount( path ).listAttributes( path, entries );
+
+        MountNode node = mountTree.find( path );
+        if( node != null )
         {
-            String entryPath = dir.isEmpty() ? entry : dir + "/" + entry;
-            if( wildPattern.matcher( entryPath ).matches() )
+            for( MountNode child : node.children )
+            {
+                for( MountWrapper otherMount : child.mounts )
+                {
+                    if( getDirectory( otherMount.getLocation() ).equals( path ) )
+                    {
+                        entries.put( getName( otherMount.getLocation() ), otherMount.getAttributes( otherMount.getLocation() ) );
+                    }
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Find all entries matching a wildcard pattern, one path segment at a time. As a wildcard never matches a "/",
+     * we only need to descend into directories which match the current segment.
+     *
+     * @param dir     The directory to search in.
+     * @param parts   The segments of the wildcard pattern.
+     * @param index   The index of the segment which entries of {@code dir} should match.
+     * @param matches The list to add matching paths to.
+     * @throws FileSystemException If a directory could not be listed.
+     */
+    private void findIn( String dir, String[] parts, int index, List<String> matches ) throws FileSystemException
+    {
+        String part = parts[index];
+        boolean last = index == parts.length - 1;
+        for( Map.Entry<String, BasicFileAttributes> entry : listEntries( dir ).entrySet() )
+        {
+            String name = entry.getKey();
+            if( !matchesWildcard( part, name ) ) continue;
+
+            String entryPath = dir.isEmpty() ? name : dir + "/" + name;
+            if( last )
             {
                 matches.add( entryPath );
             }
-            if( isDir( entryPath ) )
+            else if( entry.getValue().isDirectory() )
+            {
+                findIn( entryPath, parts, index + 1, matches );
+            }
+        }
+    }
+
+    /**
+     * Determine whether a file name matches a single segment of a wildcard pattern, where {@code *} matches any
+     * sequence of characters.
+     *
+     * @param pattern The pattern to match against.
+     * @param name    The file name to check.
+     * @return Whether this name matches.
+     */
+    private static boolean matchesWildcard( String pattern, String name )
+    {
+        int patternIdx = 0, nameIdx = 0;
+        int starIdx = -1, starNameIdx = 0;
+        while( nameIdx < name.length() )
+        {
+            if( patternIdx < pattern.length() && pattern.charAt( patternIdx ) == '*' )
+            {
+                // Initially match the empty string, consuming more characters if we fail later on.
+                starIdx = patternIdx++;
+                starNameIdx = nameIdx;
+            }
+            else if( patternIdx < pattern.length() && pattern.charAt( patternIdx ) == name.charAt( nameIdx ) )
+            {
+                patternIdx++;
+                nameIdx++;
+            }
+            else if( starIdx >= 0 )
+            {
+                patternIdx = starIdx + 1;
+                nameIdx = ++starNameIdx;
+            }
+            else
             {
-                findIn( entryPath, matches, wildPattern );
+                return false;
             }
         }
+
+        while( patternIdx < pattern.length() && pattern.charAt( patternIdx ) == '*' ) patternIdx++;
+        return patternIdx == pattern.length();
     }
 
     public synchronized String[] find( String wildPath ) throws FileSystemException
@@ -238,10 +370,10 @@ public class FileSystem
         // If this isn't a directory then just abort
         if( !isDir( startDir ) ) return new String[0];
 
-        // Scan as normal, starting from this directory
-        Pattern wildPattern = Pattern.compile( "^\\Q" + wildPath.replaceAll( "\\*", "\\\\E[^\\\\/]*\\\\Q" ) + "\\E$" );
+        // Then match the remaining segments against the directory tree, starting from this directory.
+        String[] parts = (prevDir == -1 ? wildPath : wildPath.substring( prevDir + 1 )).split( "/" );
         List<String> matches = new ArrayList<>();
-        findIn( startDir, matches, wildPattern );
+        findIn( startDir, parts, 0, matches );
 
         // Return matches
         String[] array = new String[matches.size()];
@@ -457,23 +589,8 @@ public class FileSystem
 
     private synchronized MountWrapper getMount( String path ) throws FileSystemException
     {
-        // Return the deepest mount that contains a given path
-        Iterator<MountWrapper> it = mounts.values().iterator();
-        MountWrapper match = null;
-        int matchLength = 999;
-        while( it.hasNext() )
-        {
-            MountWrapper mount = it.next();
-            if( contains( mount.getLocation(), path ) )
-            {
-                int len = toLocal( path, mount.getLocation() ).length();
-                if( match == null || len < matchLength )
-                {
-                    match = mount;
-                    matchLength = len;
-                }
-            }
-        }
+        // Return the deepest mount that contains a given path. Paths above the root are never contained in a mount.
+        MountWrapper match = path.equals( ".." ) || path.startsWith( "../" ) ? null : mountTree.findDeepest( path );
         if( match == null )
         {
             throw new FileSystemException( "/" + path + ": Invalid Path" );
@@ -576,8 +693,8 @@ public class FileSystem
 
     public static boolean contains( String pathA, String pathB )
     {
-        pathA = sanitizePath( pathA ).toLowerCase( Locale.ROOT );
-        pathB = sanitizePath( pathB ).toLowerCase( Locale.ROOT );
+        pathA = sanitizePath( pathA, false ).toLowerCase( Locale.ROOT );
+        pathB = sanitizePath( pathB, false ).toLowerCase( Locale.ROOT );
 
         if( pathB.equals( ".." ) )
         {
@@ -603,8 +720,8 @@ public class FileSystem
 
     public static String toLocal( String path, String location )
     {
-        path = sanitizePath( path );
-        location = sanitizePath( location );
+        path = sanitizePath( path, false );
+        location = sanitizePath( location, false );
 
         assert contains( location, path );
         String local = path.substring( location.length() );
@@ -617,4 +734,127 @@ public class FileSystem
             return local;
         }
     }
+
+    /**
+     * A node in the trie of mount points.
+     *
+     * Mount lookups are case-insensitive (see {@link #contains(String, String)}), so segments are compared ignoring
+     * case. As a result, several mounts whose locations differ only in case may share a node. Nodes rarely have more
+     * than a handful of children, so these are kept in a list and compared in place, rather than allocating a
+     * lower-cased key for every segment we look up.
+     */
+    private static final class MountNode
+    {
+        final String segment;
+        final List<MountNode> children = new ArrayList<>( 0 );
+        final List<MountWrapper> mounts = new ArrayList<>( 1 );
+
+        MountNode()
+        {
+            this( "" );
+        }
+
+        private MountNode( String segment )
+        {
+            this.segment = segment;
+        }
+
+        void add( MountWrapper mount, String location )
+        {
+            MountNode node = this;
+            int start = 0;
+            while( start < location.length() )
+            {
+                int end = segmentEnd( location, start );
+                MountNode child = node.child( location, start, end );
+                if( child == null ) node.children.add( child = new MountNode( location.substring( start, end ) ) );
+                node = child;
+                start = end + 1;
+            }
+            node.mounts.add( mount );
+        }
+
+        /**
+         * Remove a mount from the trie, pruning any nodes which are now empty.
+         *
+         * @param mount    The mount to remove.
+         * @param location The remaining part of the mount's location.
+         * @param start    The start of the next segment within {@code location}.
+         * @return Whether this node is now empty and may be removed.
+         */
+        boolean remove( MountWrapper mount, String location, int start )
+        {
+            if( start >= location.length() )
+            {
+                mounts.remove( mount );
+            }
+            else
+            {
+                int end = segmentEnd( location, start );
+                MountNode child = child( location, start, end );
+                if( child != null && child.remove( mount, location, end + 1 ) ) children.remove( child );
+            }
+
+            return mounts.isEmpty() && children.isEmpty();
+        }
+
+        @Nullable
+        MountNode find( String path )
+        {
+            MountNode node = this;
+            int start = 0;
+            while( node != null && start < path.length() )
+            {
+                int end = segmentEnd( path, start );
+                node = node.child( path, start, end );
+                start = end + 1;
+            }
+            return node;
+        }
+
+        @Nullable
+        MountWrapper findDeepest( String path )
+        {
+            MountNode node = this;
+            MountWrapper match = mounts.isEmpty() ? null : mounts.get( 0 );
+            int start = 0;
+            while( start < path.length() )
+            {
+                int end = segmentEnd( path, start );
+                node = node.child( path, start, end );
+                if( node == null ) break;
+                if( !node.mounts.isEmpty() ) match = node.mounts.get( 0 );
+                start = end + 1;
+            }
+            return match;
+        }
+
+        /**
+         * Find the child matching one segment of a path, ignoring case.
+         *
+         * @param path  The path to look up.
+         * @param start The start of the segment within {@code path}.
+         * @param end   The end of the segment within {@code path}.
+         * @return The matching child, or {@code null} if there is none.
+         */
+        @Nullable
+        private MountNode child( String path, int start, int end )
+        {
+            int length = end - start;
+            for( MountNode child : children )
+            {
+                if( child.segment.length() == length && path.regionMatches( true, start, child.segment, 0, length ) )
+                {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private static int segmentEnd( String path, int start )
+        {
+            int end = path.indexOf( '/', start );
+            return end < 0 ? path.length() : end;
+        }
+    }
 }
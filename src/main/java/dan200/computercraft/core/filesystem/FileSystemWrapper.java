@@ -9,6 +9,7 @@ import dan200.computercraft.shared.util.IoUtil;
 
 import javax.annotation.Nonnull;
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
@@ -26,7 +27,7 @@ import java.lang.ref.WeakReference;
  *
  * @param <T> The type of writer or channel to wrap.
  */
-public class FileSystemWrapper<T extends Closeable> implements TrackingCloseable
+public class FileSystemWrapper<T extends Closeable> implements TrackingCloseable, Flushable
 {
     private final FileSystem fileSystem;
     final MountWrapper mount;
@@ -50,6 +51,18 @@ public class FileSystemWrapper<T extends Closeable> implements TrackingCloseable
         closeable.close();
     }
 
+    /**
+     * Flush the underlying channel, writing any contents buffered by the mount. Note this does not flush the wrapped
+     * object itself.
+     *
+     * @throws IOException If the channel could not be flushed.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        closeable.flush();
+    }
+
     void closeExternally()
     {
         isOpen = false;
@@ -11,8 +11,10 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 public class FileSystemWrapperMount implements IFileSystem
@@ -145,6 +147,19 @@ public class FileSystemWrapperMount implements IFileSystem
         }
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        try
+        {
+            contents.putAll( filesystem.listAttributes( path ) );
+        }
+        catch( FileSystemException e )
+        {
+            throw new IOException( e.getMessage() );
+        }
+    }
+
     @Override
     public long getSize( @Nonnull String path ) throws IOException
     {
@@ -5,8 +5,6 @@
  */
 package dan200.computercraft.core.filesystem;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.io.ByteStreams;
 import dan200.computercraft.api.filesystem.FileOperationException;
 import dan200.computercraft.api.filesystem.IMount;
@@ -30,34 +28,11 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 public class JarMount implements IMount
 {
-    /**
-     * Only cache files smaller than 1MiB.
-     */
-    private static final int MAX_CACHED_SIZE = 1 << 20;
-
-    /**
-     * Limit the entire cache to 64MiB.
-     */
-    private static final int MAX_CACHE_SIZE = 64 << 20;
-
-    /**
-     * We maintain a cache of the contents of all files in the mount. This allows us to allow
-     * seeking within ROM files, and reduces the amount we need to access disk for computer startup.
-     */
-    private static final Cache<FileEntry, byte[]> CONTENTS_CACHE = CacheBuilder.newBuilder()
-        .concurrencyLevel( 4 )
-        .expireAfterAccess( 60, TimeUnit.SECONDS )
-        .maximumWeight( MAX_CACHE_SIZE )
-        .weakKeys()
-        .<FileEntry, byte[]>weigher( ( k, v ) -> v.length )
-        .build();
-
     /**
      * We have a {@link ReferenceQueue} of all mounts, a long with their corresponding {@link ZipFile}. If
      * the mount has been destroyed, we clean up after it.
@@ -174,6 +149,18 @@ public class JarMount implements IMount
         file.list( contents );
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        FileEntry file = get( path );
+        if( file == null || !file.isDirectory() ) throw new FileOperationException( path, "Not a directory" );
+
+        for( Map.Entry<String, FileEntry> child : file.children.entrySet() )
+        {
+            contents.put( child.getKey(), getAttributes( child.getValue() ) );
+        }
+    }
+
     @Override
     public long getSize( @Nonnull String path ) throws IOException
     {
@@ -189,7 +176,7 @@ public class JarMount implements IMount
         FileEntry file = get( path );
         if( file != null && !file.isDirectory() )
         {
-            byte[] contents = CONTENTS_CACHE.getIfPresent( file );
+            byte[] contents = ContentCache.get( file );
             if( contents != null ) return new ArrayByteChannel( contents );
 
             try
@@ -197,14 +184,20 @@ public class JarMount implements IMount
                 ZipEntry entry = zip.getEntry( file.path );
                 if( entry != null )
                 {
-                    try( InputStream stream = zip.getInputStream( entry ) )
-                    {
-                        if( stream.available() > MAX_CACHED_SIZE ) return Channels.newChannel( stream );
+                    InputStream stream = zip.getInputStream( entry );
+                    if( !ContentCache.canCache( entry.getSize() ) ) return Channels.newChannel( stream );
 
+                    try
+                    {
                         contents = ByteStreams.toByteArray( stream );
-                        CONTENTS_CACHE.put( file, contents );
-                        return new ArrayByteChannel( contents );
                     }
+                    finally
+                    {
+                        IoUtil.closeQuietly( stream );
+                    }
+
+                    ContentCache.put( file, contents );
+                    return new ArrayByteChannel( contents );
                 }
             }
             catch( IOException e )
@@ -221,13 +214,20 @@ public class JarMount implements IMount
     public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
     {
         FileEntry file = get( path );
-        if( file != null )
+        if( file != null ) return getAttributes( file );
+        throw new FileOperationException( path, "No such file" );
+    }
+
+    private BasicFileAttributes getAttributes( FileEntry file )
+    {
+        // Directories may not have an entry in the zip, in which case we synthesise one.
+        ZipEntry entry = file.path == null ? null : zip.getEntry( file.path );
+        if( entry == null )
         {
-            ZipEntry entry = zip.getEntry( file.path );
-            if( entry != null ) return new ZipEntryAttributes( entry );
+            entry = new ZipEntry( "/" );
+            entry.setSize( 0 );
         }
-
-        throw new FileOperationException( path, "No such file" );
+        return new ZipEntryAttributes( entry );
     }
 
     private static class FileEntry
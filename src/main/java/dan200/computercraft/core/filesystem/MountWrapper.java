@@ -17,6 +17,7 @@ import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalLong;
 
 class MountWrapper
@@ -121,6 +122,24 @@ class MountWrapper
         }
     }
 
+    public void listAttributes( String path, Map<String, BasicFileAttributes> contents ) throws FileSystemException
+    {
+        path = toLocal( path );
+        try
+        {
+            if( !mount.exists( path ) || !mount.isDirectory( path ) )
+            {
+                throw localExceptionOf( path, "Not a directory" );
+            }
+
+            mount.listAttributes( path, contents );
+        }
+        catch( IOException e )
+        {
+            throw localExceptionOf( path, e );
+        }
+    }
+
     public long getSize( String path ) throws FileSystemException
     {
         path = toLocal( path );
@@ -0,0 +1,389 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import com.google.common.io.ByteStreams;
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.filesystem.FileOperationException;
+import dan200.computercraft.api.filesystem.IMount;
+import dan200.computercraft.api.filesystem.IWritableMount;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * A copy-on-write mount, which layers a writable mount on top of a shared, read-only base mount.
+ *
+ * Files are read from the upper mount if present, and from the base mount otherwise. All changes are made to the upper
+ * mount: writing to a file replaces it, and appending to a file first copies it from the base mount. Deleting a file
+ * which exists in the base mount adds a "whiteout", hiding it (and any children) from the base mount. Whiteouts are
+ * stored in the upper mount in {@link #WHITEOUT_FILE}, which is hidden from the computer.
+ *
+ * As all changes are made to the upper mount, it is also responsible for tracking how much space is used.
+ */
+public class OverlayMount implements IWritableMount
+{
+    private static final String WHITEOUT_FILE = ".whiteout";
+
+    private final IMount base;
+    private final IWritableMount upper;
+
+    /**
+     * Paths which have been deleted from the base mount. Guarded by {@code this}.
+     */
+    private final Set<String> whiteouts;
+
+    public OverlayMount( @Nonnull IMount base, @Nonnull IWritableMount upper )
+    {
+        this.base = base;
+        this.upper = upper;
+        whiteouts = loadWhiteouts( upper );
+    }
+
+    // IMount implementation
+
+    @Override
+    public boolean exists( @Nonnull String path ) throws IOException
+    {
+        if( isReserved( path ) ) return false;
+        return upper.exists( path ) || (!isHidden( path ) && base.exists( path ));
+    }
+
+    @Override
+    public boolean isDirectory( @Nonnull String path ) throws IOException
+    {
+        if( isReserved( path ) ) return false;
+        if( upper.exists( path ) ) return upper.isDirectory( path );
+        return !isHidden( path ) && base.isDirectory( path );
+    }
+
+    @Override
+    public void list( @Nonnull String path, @Nonnull List<String> contents ) throws IOException
+    {
+        boolean inUpper = isUpperDirectory( path );
+        boolean inBase = isBaseDirectory( path );
+        if( !inUpper && !inBase ) throw new FileOperationException( path, "Not a directory" );
+
+        List<String> children = new ArrayList<>();
+        if( inUpper )
+        {
+            upper.list( path, children );
+            for( String child : children )
+            {
+                if( !isReserved( combine( path, child ) ) ) contents.add( child );
+            }
+        }
+
+        if( inBase )
+        {
+            Set<String> seen = new HashSet<>( children );
+            children.clear();
+            base.list( path, children );
+            for( String child : children )
+            {
+                if( !seen.contains( child ) && !isWhiteout( combine( path, child ) ) ) contents.add( child );
+            }
+        }
+    }
+
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        boolean inUpper = isUpperDirectory( path );
+        boolean inBase = isBaseDirectory( path );
+        if( !inUpper && !inBase ) throw new FileOperationException( path, "Not a directory" );
+
+        Map<String, BasicFileAttributes> children = new HashMap<>();
+        if( inUpper )
+        {
+            upper.listAttributes( path, children );
+            for( Map.Entry<String, BasicFileAttributes> child : children.entrySet() )
+            {
+                if( !isReserved( combine( path, child.getKey() ) ) ) contents.put( child.getKey(), child.getValue() );
+            }
+        }
+
+        if( inBase )
+        {
+            children.clear();
+            base.listAttributes( path, children );
+            for( Map.Entry<String, BasicFileAttributes> child : children.entrySet() )
+            {
+                if( !isWhiteout( combine( path, child.getKey() ) ) ) contents.putIfAbsent( child.getKey(), child.getValue() );
+            }
+        }
+    }
+
+    @Override
+    public long getSize( @Nonnull String path ) throws IOException
+    {
+        return getLayer( path ).getSize( path );
+    }
+
+    @Nonnull
+    @Override
+    public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        return getLayer( path ).getAttributes( path );
+    }
+
+    @Nonnull
+    @Override
+    public ReadableByteChannel openForRead( @Nonnull String path ) throws IOException
+    {
+        return getLayer( path ).openForRead( path );
+    }
+
+    // IWritableMount implementation
+
+    @Override
+    public void makeDirectory( @Nonnull String path ) throws IOException
+    {
+        if( isReserved( path ) ) throw new FileOperationException( path, "Access denied" );
+
+        if( !upper.exists( path ) && !isHidden( path ) && base.exists( path ) )
+        {
+            if( !base.isDirectory( path ) ) throw new FileOperationException( path, "File exists" );
+            return;
+        }
+
+        upper.makeDirectory( path );
+    }
+
+    @Override
+    public void delete( @Nonnull String path ) throws IOException
+    {
+        if( path.isEmpty() || isReserved( path ) ) throw new FileOperationException( path, "Access denied" );
+
+        if( upper.exists( path ) ) upper.delete( path );
+        if( !isHidden( path ) && base.exists( path ) ) addWhiteout( path );
+    }
+
+    @Nonnull
+    @Override
+    public WritableByteChannel openForWrite( @Nonnull String path ) throws IOException
+    {
+        if( isReserved( path ) ) throw new FileOperationException( path, "Access denied" );
+        if( !upper.exists( path ) && !isHidden( path ) && base.isDirectory( path ) )
+        {
+            throw new FileOperationException( path, "Cannot write to directory" );
+        }
+
+        makeParent( path );
+        return upper.openForWrite( path );
+    }
+
+    @Nonnull
+    @Override
+    public WritableByteChannel openForAppend( @Nonnull String path ) throws IOException
+    {
+        if( isReserved( path ) ) throw new FileOperationException( path, "Access denied" );
+        if( upper.exists( path ) ) return upper.openForAppend( path );
+        if( isHidden( path ) || !base.exists( path ) ) throw new FileOperationException( path, "No such file" );
+        if( base.isDirectory( path ) ) throw new FileOperationException( path, "Cannot write to directory" );
+
+        copyUp( path );
+        return upper.openForAppend( path );
+    }
+
+    @Override
+    public long getRemainingSpace() throws IOException
+    {
+        return upper.getRemainingSpace();
+    }
+
+    @Nonnull
+    @Override
+    public OptionalLong getCapacity()
+    {
+        return upper.getCapacity();
+    }
+
+    /**
+     * Get the layer which a file should be read from.
+     *
+     * @param path The file to read.
+     * @return The layer containing this file.
+     * @throws FileOperationException If the file does not exist.
+     */
+    private IMount getLayer( String path ) throws IOException
+    {
+        if( !isReserved( path ) )
+        {
+            if( upper.exists( path ) ) return upper;
+            if( !isHidden( path ) && base.exists( path ) ) return base;
+        }
+
+        throw new FileOperationException( path, "No such file" );
+    }
+
+    private boolean isUpperDirectory( String path ) throws IOException
+    {
+        return !isReserved( path ) && upper.isDirectory( path );
+    }
+
+    private boolean isBaseDirectory( String path ) throws IOException
+    {
+        if( isReserved( path ) || isHidden( path ) ) return false;
+
+        // A file in the upper mount hides the base mount's directory.
+        if( upper.exists( path ) && !upper.isDirectory( path ) ) return false;
+        return base.isDirectory( path );
+    }
+
+    /**
+     * Ensure a file's parent directory exists in the upper mount, so it can be written to.
+     *
+     * @param path The file we are about to create.
+     * @throws IOException If the directory could not be created.
+     */
+    private void makeParent( String path ) throws IOException
+    {
+        int slash = path.lastIndexOf( '/' );
+        if( slash < 0 ) return;
+
+        String parent = path.substring( 0, slash );
+        if( !upper.exists( parent ) ) upper.makeDirectory( parent );
+    }
+
+    /**
+     * Copy a file from the base mount into the upper mount.
+     *
+     * @param path The file to copy.
+     * @throws IOException If the file could not be copied.
+     */
+    private void copyUp( String path ) throws IOException
+    {
+        makeParent( path );
+        try( ReadableByteChannel source = base.openForRead( path );
+             WritableByteChannel destination = upper.openForWrite( path ) )
+        {
+            ByteStreams.copy( source, destination );
+        }
+        catch( IOException e )
+        {
+            // Don't leave a partial copy behind (for instance, if we ran out of space).
+            try
+            {
+                upper.delete( path );
+            }
+            catch( IOException inner )
+            {
+                e.addSuppressed( inner );
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isReserved( String path )
+    {
+        return path.equals( WHITEOUT_FILE );
+    }
+
+    private synchronized boolean isWhiteout( String path )
+    {
+        return whiteouts.contains( path );
+    }
+
+    /**
+     * Determine whether a file in the base mount has been deleted, either directly or by deleting one of its parents.
+     *
+     * @param path The path to check.
+     * @return Whether this file is hidden.
+     */
+    private synchronized boolean isHidden( String path )
+    {
+        if( whiteouts.isEmpty() ) return false;
+
+        while( true )
+        {
+            if( whiteouts.contains( path ) ) return true;
+
+            int slash = path.lastIndexOf( '/' );
+            if( slash < 0 ) return false;
+            path = path.substring( 0, slash );
+        }
+    }
+
+    private synchronized void addWhiteout( String path ) throws IOException
+    {
+        Set<String> old = new HashSet<>( whiteouts );
+
+        // Any whiteouts below this path are now redundant.
+        String prefix = path + "/";
+        whiteouts.removeIf( x -> x.startsWith( prefix ) );
+        whiteouts.add( path );
+
+        try
+        {
+            saveWhiteouts();
+        }
+        catch( IOException e )
+        {
+            whiteouts.clear();
+            whiteouts.addAll( old );
+            throw e;
+        }
+    }
+
+    private void saveWhiteouts() throws IOException
+    {
+        try( OutputStream stream = Channels.newOutputStream( upper.openForWrite( WHITEOUT_FILE ) ) )
+        {
+            for( String whiteout : whiteouts )
+            {
+                stream.write( whiteout.getBytes( StandardCharsets.UTF_8 ) );
+                stream.write( '\n' );
+            }
+        }
+    }
+
+    private static Set<String> loadWhiteouts( IWritableMount upper )
+    {
+        Set<String> whiteouts = new HashSet<>();
+        try
+        {
+            if( !upper.exists( WHITEOUT_FILE ) ) return whiteouts;
+
+            try( BufferedReader reader = new BufferedReader( new InputStreamReader(
+                Channels.newInputStream( upper.openForRead( WHITEOUT_FILE ) ), StandardCharsets.UTF_8
+            ) ) )
+            {
+                String line;
+                while( (line = reader.readLine()) != null )
+                {
+                    if( !line.isEmpty() ) whiteouts.add( line );
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            ComputerCraft.log.error( "Cannot load whiteouts for overlay mount", e );
+        }
+
+        return whiteouts;
+    }
+
+    private static String combine( String path, String child )
+    {
+        return path.isEmpty() ? child : path + "/" + child;
+    }
+}
@@ -5,17 +5,15 @@
  */
 package dan200.computercraft.core.filesystem;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.io.ByteStreams;
 import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.filesystem.FileOperationException;
 import dan200.computercraft.api.filesystem.IMount;
 import dan200.computercraft.core.apis.handles.ArrayByteChannel;
 import dan200.computercraft.shared.util.IoUtil;
 import net.minecraft.ResourceLocationException;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.resources.PreparableReloadListener;
-import net.minecraft.server.packs.resources.Resource;
 import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.server.packs.resources.SimplePreparableReloadListener;
 import net.minecraft.util.profiling.ProfilerFiller;
@@ -27,37 +25,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 public final class ResourceMount implements IMount
 {
-    /**
-     * Only cache files smaller than 1MiB.
-     */
-    private static final int MAX_CACHED_SIZE = 1 << 20;
-
-    /**
-     * Limit the entire cache to 64MiB.
-     */
-    private static final int MAX_CACHE_SIZE = 64 << 20;
-
-    private static final byte[] TEMP_BUFFER = new byte[8192];
-
-    /**
-     * We maintain a cache of the contents of all files in the mount. This allows us to allow
-     * seeking within ROM files, and reduces the amount we need to access disk for computer startup.
-     */
-    private static final Cache<FileEntry, byte[]> CONTENTS_CACHE = CacheBuilder.newBuilder()
-        .concurrencyLevel( 4 )
-        .expireAfterAccess( 60, TimeUnit.SECONDS )
-        .maximumWeight( MAX_CACHE_SIZE )
-        .weakKeys()
-        .<FileEntry, byte[]>weigher( ( k, v ) -> v.length )
-        .build();
-
     /**
      * Maintain a cache of currently loaded resource mounts. This cache is invalidated when currentManager changes.
      */
@@ -76,7 +52,11 @@ public final class ResourceMount implements IMount
         synchronized( MOUNT_CACHE )
         {
             ResourceMount mount = MOUNT_CACHE.get( path );
-            if( mount == null ) MOUNT_CACHE.put( path, mount = new ResourceMount( namespace, subPath, manager ) );
+            if( mount == null )
+            {
+                MOUNT_CACHE.put( path, mount = new ResourceMount( namespace, subPath, manager ) );
+                ContentCache.preload( mount::preload );
+            }
             return mount;
         }
     }
@@ -191,37 +171,50 @@ public final class ResourceMount implements IMount
     }
 
     @Override
-    public long getSize( @Nonnull String path ) throws IOException
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
     {
         FileEntry file = get( path );
-        if( file != null )
+        if( file == null || !file.isDirectory() ) throw new IOException( "/" + path + ": Not a directory" );
+
+        for( Map.Entry<String, FileEntry> child : file.children.entrySet() )
         {
-            if( file.size != -1 ) return file.size;
-            if( file.isDirectory() ) return file.size = 0;
+            contents.put( child.getKey(), new EntryAttributes( child.getValue() ) );
+        }
+    }
 
-            byte[] contents = CONTENTS_CACHE.getIfPresent( file );
-            if( contents != null ) return file.size = contents.length;
+    @Override
+    public long getSize( @Nonnull String path ) throws IOException
+    {
+        FileEntry file = get( path );
+        if( file != null ) return getSize( file );
+        throw new IOException( "/" + path + ": No such file" );
+    }
 
-            try
-            {
-                Resource resource = manager.getResource( file.identifier );
-                InputStream s = resource.getInputStream();
-                int total = 0, read = 0;
-                do
-                {
-                    total += read;
-                    read = s.read( TEMP_BUFFER );
-                } while( read > 0 );
+    private long getSize( FileEntry file )
+    {
+        if( file.size != -1 ) return file.size;
+        if( file.isDirectory() ) return file.size = 0;
 
-                return file.size = total;
-            }
-            catch( IOException e )
-            {
-                return file.size = 0;
-            }
+        byte[] contents = ContentCache.peek( file );
+        if( contents != null ) return file.size = contents.length;
+
+        try( InputStream stream = manager.getResource( file.identifier ).getInputStream() )
+        {
+            return file.size = ByteStreams.exhaust( stream );
+        }
+        catch( IOException e )
+        {
+            return file.size = 0;
         }
+    }
 
-        throw new IOException( "/" + path + ": No such file" );
+    @Nonnull
+    @Override
+    public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        FileEntry file = get( path );
+        if( file != null ) return new EntryAttributes( file );
+        throw new FileOperationException( path, "No such file" );
     }
 
     @Nonnull
@@ -231,13 +224,16 @@ public final class ResourceMount implements IMount
         FileEntry file = get( path );
         if( file != null && !file.isDirectory() )
         {
-            byte[] contents = CONTENTS_CACHE.getIfPresent( file );
+            byte[] contents = ContentCache.get( file );
             if( contents != null ) return new ArrayByteChannel( contents );
 
             try
             {
                 InputStream stream = manager.getResource( file.identifier ).getInputStream();
-                if( stream.available() > MAX_CACHED_SIZE ) return Channels.newChannel( stream );
+                if( !ContentCache.canCache( file.size != -1 ? file.size : stream.available() ) )
+                {
+                    return Channels.newChannel( stream );
+                }
 
                 try
                 {
@@ -248,7 +244,8 @@ public final class ResourceMount implements IMount
                     IoUtil.closeQuietly( stream );
                 }
 
-                CONTENTS_CACHE.put( file, contents );
+                file.size = contents.length;
+                ContentCache.put( file, contents );
                 return new ArrayByteChannel( contents );
             }
             catch( FileNotFoundException ignored )
@@ -281,6 +278,111 @@ public final class ResourceMount implements IMount
         }
     }
 
+    /**
+     * Load every file in this mount into the {@link ContentCache}. This is run in the background when the mount is
+     * loaded, so that computers booting afterwards do not need to read each file from the resource pack.
+     */
+    private void preload()
+    {
+        FileEntry root = this.root;
+        ResourceManager manager = this.manager;
+        if( root != null ) preload( manager, root );
+    }
+
+    private static void preload( ResourceManager manager, FileEntry file )
+    {
+        if( file.isDirectory() )
+        {
+            for( FileEntry child : file.children.values() ) preload( manager, child );
+            return;
+        }
+
+        if( ContentCache.peek( file ) != null ) return;
+
+        try( InputStream stream = manager.getResource( file.identifier ).getInputStream() )
+        {
+            if( !ContentCache.canCache( file.size != -1 ? file.size : stream.available() ) ) return;
+
+            byte[] contents = ByteStreams.toByteArray( stream );
+            file.size = contents.length;
+            ContentCache.put( file, contents );
+        }
+        catch( IOException e )
+        {
+            ComputerCraft.log.warn( "Failed to preload {}", file.identifier, e );
+        }
+    }
+
+    /**
+     * Attributes for a resource. Resource packs do not expose a file's size, so this is only computed when requested.
+     * This means listing a directory does not need to read every file within it.
+     */
+    private final class EntryAttributes implements BasicFileAttributes
+    {
+        private static final FileTime EPOCH = FileTime.from( Instant.EPOCH );
+
+        private final FileEntry file;
+
+        EntryAttributes( FileEntry file )
+        {
+            this.file = file;
+        }
+
+        @Override
+        public FileTime lastModifiedTime()
+        {
+            return EPOCH;
+        }
+
+        @Override
+        public FileTime lastAccessTime()
+        {
+            return EPOCH;
+        }
+
+        @Override
+        public FileTime creationTime()
+        {
+            return EPOCH;
+        }
+
+        @Override
+        public boolean isRegularFile()
+        {
+            return !file.isDirectory();
+        }
+
+        @Override
+        public boolean isDirectory()
+        {
+            return file.isDirectory();
+        }
+
+        @Override
+        public boolean isSymbolicLink()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isOther()
+        {
+            return false;
+        }
+
+        @Override
+        public long size()
+        {
+            return getSize( file );
+        }
+
+        @Override
+        public Object fileKey()
+        {
+            return null;
+        }
+    }
+
     /**
      * A {@link PreparableReloadListener} which reloads any associated mounts and correctly updates the resource manager
      * they point to.
@@ -294,7 +396,11 @@ public final class ResourceMount implements IMount
             profiler.push( "Reloading ComputerCraft mounts" );
             try
             {
-                for( ResourceMount mount : MOUNT_CACHE.values() ) mount.load( manager );
+                for( ResourceMount mount : MOUNT_CACHE.values() )
+                {
+                    mount.load( manager );
+                    ContentCache.preload( mount::preload );
+                }
             }
             finally
             {
@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.Map;
 
 public class SubMount implements IMount
 {
@@ -42,6 +43,12 @@ public class SubMount implements IMount
         parent.list( getFullPath( path ), contents );
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        parent.listAttributes( getFullPath( path ), contents );
+    }
+
     @Override
     public long getSize( @Nonnull String path ) throws IOException
     {
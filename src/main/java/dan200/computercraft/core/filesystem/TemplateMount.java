@@ -0,0 +1,212 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import dan200.computercraft.api.filesystem.FileOperationException;
+import dan200.computercraft.api.filesystem.IMount;
+import dan200.computercraft.core.apis.handles.ArrayByteChannel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only mount of a directory on disk, used as the shared base layer of an {@link OverlayMount}.
+ *
+ * There is a single mount for each directory, so every computer using the same template shares one copy of each file
+ * in the {@link ContentCache}. Files are keyed by their size and modification time, so any changes made to the template
+ * are picked up the next time the file is read.
+ */
+public final class TemplateMount implements IMount
+{
+    private static final Map<File, TemplateMount> MOUNTS = new HashMap<>();
+
+    /**
+     * The maximum number of files we track the key of. Forgetting a file's key allows its cached contents to be
+     * collected, at the cost of reading it again next time.
+     */
+    private static final int MAX_KEYS = 1024;
+
+    private final Path root;
+
+    /**
+     * The current key of recently read files, in access order. Guarded by itself.
+     */
+    private final Map<String, FileKey> keys = new LinkedHashMap<>( 16, 0.75f, true )
+    {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, FileKey> eldest )
+        {
+            return size() > MAX_KEYS;
+        }
+    };
+
+    private TemplateMount( Path root )
+    {
+        this.root = root;
+    }
+
+    /**
+     * Get the mount for a template directory.
+     *
+     * @param directory The directory to mount.
+     * @return The shared mount for this directory, or {@code null} if it does not exist.
+     */
+    @Nullable
+    public static TemplateMount get( @Nonnull File directory )
+    {
+        File file = directory.getAbsoluteFile();
+        if( !file.isDirectory() ) return null;
+
+        synchronized( MOUNTS )
+        {
+            return MOUNTS.computeIfAbsent( file, x -> new TemplateMount( x.toPath() ) );
+        }
+    }
+
+    /**
+     * Forget all template mounts. This is called when the server stops, so templates from one world are not kept
+     * alive (or shared with) the next one.
+     */
+    public static void reset()
+    {
+        synchronized( MOUNTS )
+        {
+            MOUNTS.clear();
+        }
+    }
+
+    @Override
+    public boolean exists( @Nonnull String path )
+    {
+        return Files.exists( getRealPath( path ) );
+    }
+
+    @Override
+    public boolean isDirectory( @Nonnull String path )
+    {
+        return Files.isDirectory( getRealPath( path ) );
+    }
+
+    @Override
+    public void list( @Nonnull String path, @Nonnull List<String> contents ) throws IOException
+    {
+        String[] children = getRealPath( path ).toFile().list();
+        if( children == null ) throw new FileOperationException( path, "Not a directory" );
+        Collections.addAll( contents, children );
+    }
+
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        Path file = getRealPath( path );
+        if( !Files.isDirectory( file ) ) throw new FileOperationException( path, "Not a directory" );
+
+        try( DirectoryStream<Path> stream = Files.newDirectoryStream( file ) )
+        {
+            for( Path child : stream )
+            {
+                try
+                {
+                    contents.put( child.getFileName().toString(), Files.readAttributes( child, BasicFileAttributes.class ) );
+                }
+                catch( NoSuchFileException ignored )
+                {
+                    // The file was deleted after listing, or is a broken link. Just skip it.
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getSize( @Nonnull String path ) throws IOException
+    {
+        BasicFileAttributes attributes = getAttributes( path );
+        return attributes.isDirectory() ? 0 : attributes.size();
+    }
+
+    @Nonnull
+    @Override
+    public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        try
+        {
+            return Files.readAttributes( getRealPath( path ), BasicFileAttributes.class );
+        }
+        catch( NoSuchFileException e )
+        {
+            throw new FileOperationException( path, "No such file" );
+        }
+    }
+
+    @Nonnull
+    @Override
+    public ReadableByteChannel openForRead( @Nonnull String path ) throws IOException
+    {
+        Path file = getRealPath( path );
+        BasicFileAttributes attributes = getAttributes( path );
+        if( attributes.isDirectory() ) throw new FileOperationException( path, "No such file" );
+
+        if( !ContentCache.canCache( attributes.size() ) ) return FileChannel.open( file, StandardOpenOption.READ );
+
+        FileKey key;
+        synchronized( keys )
+        {
+            key = keys.get( path );
+            if( key == null || !key.matches( attributes ) ) keys.put( path, key = new FileKey( attributes ) );
+        }
+
+        byte[] contents = ContentCache.get( key );
+        if( contents != null ) return new ArrayByteChannel( contents );
+
+        contents = Files.readAllBytes( file );
+
+        // Only cache the file if it wasn't changed while we were reading it.
+        if( contents.length == attributes.size() ) ContentCache.put( key, contents );
+        return new ArrayByteChannel( contents );
+    }
+
+    private Path getRealPath( String path )
+    {
+        return root.resolve( path );
+    }
+
+    /**
+     * Identifies a specific version of a file in the {@link ContentCache}. A new key is created whenever the file
+     * changes, allowing the old contents to be collected.
+     */
+    private static final class FileKey
+    {
+        final long size;
+        final FileTime modified;
+
+        FileKey( BasicFileAttributes attributes )
+        {
+            size = attributes.size();
+            modified = attributes.lastModifiedTime();
+        }
+
+        boolean matches( BasicFileAttributes attributes )
+        {
+            return size == attributes.size() && modified.equals( attributes.lastModifiedTime() );
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import dan200.computercraft.ComputerCraft;
+
+import javax.annotation.Nullable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A channel which buffers small writes in memory, writing them to the underlying file in the background.
+ *
+ * Writes are coalesced into a fixed-size buffer, which is written out when it fills up, when the channel is flushed,
+ * seeked or closed, or otherwise by {@link FileMount}'s background flusher. Each mount also has a budget of
+ * unflushed bytes: once this is exceeded, writes are flushed immediately.
+ *
+ * If writing to the underlying file fails, the channel is failed: the unwritten bytes are kept in the buffer and every
+ * later operation reports the error. Closing the channel makes one last attempt to write the kept bytes.
+ *
+ * All methods are synchronized, as the buffer may be flushed from the background thread at any time.
+ */
+final class WriteBehindChannel implements SeekableByteChannel, Flushable
+{
+    private final FileMount owner;
+    private final SeekableByteChannel inner;
+    private final ByteBuffer buffer;
+
+    /**
+     * The error which failed this channel, reported by every later operation.
+     */
+    @Nullable
+    private IOException error;
+
+    WriteBehindChannel( FileMount owner, SeekableByteChannel inner, int bufferSize )
+    {
+        this.owner = owner;
+        this.inner = inner;
+        buffer = ByteBuffer.allocate( bufferSize );
+    }
+
+    @Override
+    public synchronized int write( ByteBuffer src ) throws IOException
+    {
+        if( !inner.isOpen() ) throw new ClosedChannelException();
+        checkError();
+
+        int length = src.remaining();
+        if( length > buffer.remaining() )
+        {
+            flushBuffer();
+
+            // If this write would fill the buffer anyway, there's no point copying it.
+            if( length >= buffer.capacity() )
+            {
+                try
+                {
+                    while( src.hasRemaining() ) inner.write( src );
+                }
+                catch( IOException e )
+                {
+                    error = e;
+                    throw e;
+                }
+                return length;
+            }
+        }
+
+        boolean wasEmpty = buffer.position() == 0;
+        buffer.put( src );
+        if( wasEmpty ) owner.markUnflushed( this );
+
+        if( owner.addUnflushedBytes( length ) > ComputerCraft.fileWriteBudget ) flushBuffer();
+        return length;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        flushBuffer();
+    }
+
+    /**
+     * Flush this channel from the background flusher. If the write fails, the channel is failed, and the error will
+     * be reported by its next operation.
+     */
+    synchronized void flushQuietly()
+    {
+        if( !inner.isOpen() || error != null ) return;
+
+        try
+        {
+            flushBuffer();
+        }
+        catch( IOException ignored )
+        {
+            // Stored in error by flushBuffer.
+        }
+    }
+
+    private void checkError() throws IOException
+    {
+        if( error != null ) throw error;
+    }
+
+    /**
+     * Write out the buffer. If this fails, the bytes which were not written are kept at the start of the buffer, and
+     * the channel is failed.
+     *
+     * @throws IOException If the channel has failed, or the buffer could not be written.
+     */
+    private void flushBuffer() throws IOException
+    {
+        checkError();
+        writeBuffer();
+    }
+
+    private void writeBuffer() throws IOException
+    {
+        int length = buffer.position();
+        if( length == 0 ) return;
+
+        buffer.flip();
+        try
+        {
+            while( buffer.hasRemaining() ) inner.write( buffer );
+        }
+        catch( IOException e )
+        {
+            // Keep the unwritten bytes (and their share of the budget) rather than silently dropping them. The
+            // background flusher skips failed channels, so stop tracking this one.
+            buffer.compact();
+            owner.addUnflushedBytes( buffer.position() - length );
+            owner.markFlushed( this );
+            error = e;
+            throw e;
+        }
+
+        buffer.clear();
+        owner.addUnflushedBytes( -length );
+        owner.markFlushed( this );
+    }
+
+    @Override
+    public synchronized int read( ByteBuffer dst ) throws IOException
+    {
+        flushBuffer();
+        return inner.read( dst );
+    }
+
+    @Override
+    public synchronized long position() throws IOException
+    {
+        return inner.position() + buffer.position();
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position( long newPosition ) throws IOException
+    {
+        flushBuffer();
+        inner.position( newPosition );
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException
+    {
+        flushBuffer();
+        return inner.size();
+    }
+
+    @Override
+    public synchronized SeekableByteChannel truncate( long size ) throws IOException
+    {
+        flushBuffer();
+        inner.truncate( size );
+        return this;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return inner.isOpen();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if( !inner.isOpen() ) return;
+
+        try
+        {
+            // Even if the channel has failed, make one last attempt to write whatever is left in the buffer.
+            writeBuffer();
+        }
+        finally
+        {
+            owner.addUnflushedBytes( -buffer.position() );
+            owner.markFlushed( this );
+            buffer.clear();
+            inner.close();
+        }
+    }
+}
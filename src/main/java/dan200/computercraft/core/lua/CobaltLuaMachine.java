@@ -49,6 +49,8 @@ public class CobaltLuaMachine implements ILuaMachine
 
     private static final LuaMethod FUNCTION_METHOD = ( target, context, args ) -> ((ILuaFunction) target).call( args );
 
+    private static final Object[] EMPTY_OBJECTS = new Object[0];
+
     private final Computer computer;
     private final TimeoutState timeout;
     private final TimeoutDebugHandler debug;
@@ -264,6 +266,7 @@ public class CobaltLuaMachine implements ILuaMachine
         {
             return valueOf( Arrays.copyOf( b, b.length ) );
         }
+        if( object instanceof OwnedByteArray b ) return valueOf( b.getBytes() );
         if( object instanceof ByteBuffer b )
         {
             byte[] bytes = new byte[b.remaining()];
@@ -271,15 +274,15 @@ public class CobaltLuaMachine implements ILuaMachine
             return valueOf( bytes );
         }
 
-        if( values == null ) values = new IdentityHashMap<>( 1 );
-        LuaValue result = values.get( object );
-        if( result != null ) return result;
-
         if( object instanceof ILuaFunction )
         {
             return new ResultInterpreterFunction( this, FUNCTION_METHOD, object, context, object.toString() );
         }
 
+        if( values == null ) values = new IdentityHashMap<>( 1 );
+        LuaValue result = values.get( object );
+        if( result != null ) return result;
+
         if( object instanceof IDynamicLuaObject )
         {
             LuaValue wrapped = wrapLuaObject( object );
@@ -338,16 +341,32 @@ public class CobaltLuaMachine implements ILuaMachine
         if( objects == null || objects.length == 0 ) return Constants.NONE;
         if( objects.length == 1 ) return toValue( objects[0], null );
 
-        Map<Object, LuaValue> result = new IdentityHashMap<>( 0 );
+        // Most results are primitives, so we only start tracking converted objects once we find something which may
+        // contain a cycle.
+        Map<Object, LuaValue> result = null;
         LuaValue[] values = new LuaValue[objects.length];
         for( int i = 0; i < values.length; i++ )
         {
             Object object = objects[i];
+            if( result == null && !isPrimitive( object ) ) result = new IdentityHashMap<>( 1 );
             values[i] = toValue( object, result );
         }
         return varargsOf( values );
     }
 
+    /**
+     * Whether this value can be converted to Lua without needing to track objects which have already been converted.
+     *
+     * @param object The value to check.
+     * @return If this value is a primitive, and so cannot contain any cycles.
+     */
+    private static boolean isPrimitive( @Nullable Object object )
+    {
+        return object == null || object instanceof Number || object instanceof Boolean || object instanceof String
+            || object instanceof byte[] || object instanceof ByteBuffer || object instanceof OwnedByteArray
+            || object instanceof ILuaFunction;
+    }
+
     static Object toObject( LuaValue value, Map<LuaValue, Object> objects )
     {
         switch( value.type() )
@@ -414,6 +433,8 @@ public class CobaltLuaMachine implements ILuaMachine
     static Object[] toObjects( Varargs values )
     {
         int count = values.count();
+        if( count == 0 ) return EMPTY_OBJECTS;
+
         Object[] objects = new Object[count];
         for( int i = 0; i < count; i++ ) objects[i] = toObject( values.arg( i + 1 ), null );
         return objects;
@@ -0,0 +1,31 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.lua;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A byte array returned from a Lua function, whose ownership is handed over to the Lua machine.
+ *
+ * Plain {@code byte[]}s are copied when converted to Lua strings, as the caller may continue to modify them. This
+ * allows built-in functions which read large amounts of data (such as file handles) to skip that copy. The array must
+ * not be modified after it has been returned.
+ */
+public final class OwnedByteArray
+{
+    private final byte[] bytes;
+
+    public OwnedByteArray( @Nonnull byte[] bytes )
+    {
+        this.bytes = bytes;
+    }
+
+    @Nonnull
+    public byte[] getBytes()
+    {
+        return bytes;
+    }
+}
@@ -39,6 +39,17 @@ class VarargArguments implements IArguments
     {
         if( index < 0 || index >= varargs.count() ) return null;
 
+        // Avoid allocating a cache for values which are cheap to convert.
+        LuaValue value = varargs.arg( index + 1 );
+        switch( value.type() )
+        {
+            case Constants.TNIL:
+            case Constants.TNONE:
+                return null;
+            case Constants.TBOOLEAN:
+                return value.toBoolean();
+        }
+
         Object[] cache = this.cache;
         if( cache == null )
         {
@@ -50,7 +61,7 @@ class VarargArguments implements IArguments
             if( existing != null ) return existing;
         }
 
-        return cache[index] = CobaltLuaMachine.toObject( varargs.arg( index + 1 ), null );
+        return cache[index] = CobaltLuaMachine.toObject( value, null );
     }
 
     @Override
@@ -77,6 +88,88 @@ class VarargArguments implements IArguments
         return value instanceof LuaInteger ? value.toInteger() : (long) LuaValues.checkFinite( index, value.toDouble() );
     }
 
+    // The following methods read directly from the underlying Lua values, rather than converting them to Java objects
+    // (and caching the result) with get(int).
+
+    @Override
+    public boolean getBoolean( int index ) throws LuaException
+    {
+        LuaValue value = varargs.arg( index + 1 );
+        if( value.type() != Constants.TBOOLEAN ) throw LuaValues.badArgument( index, "boolean", value.typeName() );
+        return value.toBoolean();
+    }
+
+    @Nonnull
+    @Override
+    public String getString( int index ) throws LuaException
+    {
+        LuaValue value = varargs.arg( index + 1 );
+        if( value.type() != Constants.TSTRING ) throw LuaValues.badArgument( index, "string", value.typeName() );
+        return value.toString();
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Double> optDouble( int index ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? Optional.empty() : Optional.of( getDouble( index ) );
+    }
+
+    @Nonnull
+    @Override
+    public Optional<Integer> optInt( int index ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? Optional.empty() : Optional.of( getInt( index ) );
+    }
+
+    @Override
+    public Optional<Long> optLong( int index ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? Optional.empty() : Optional.of( getLong( index ) );
+    }
+
+    @Override
+    public Optional<Boolean> optBoolean( int index ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? Optional.empty() : Optional.of( getBoolean( index ) );
+    }
+
+    @Override
+    public Optional<String> optString( int index ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? Optional.empty() : Optional.of( getString( index ) );
+    }
+
+    @Override
+    public double optDouble( int index, double def ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? def : getDouble( index );
+    }
+
+    @Override
+    public int optInt( int index, int def ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? def : getInt( index );
+    }
+
+    @Override
+    public long optLong( int index, long def ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? def : getLong( index );
+    }
+
+    @Override
+    public boolean optBoolean( int index, boolean def ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? def : getBoolean( index );
+    }
+
+    @Override
+    public String optString( int index, String def ) throws LuaException
+    {
+        return varargs.arg( index + 1 ).isNil() ? def : getString( index );
+    }
+
     @Nonnull
     @Override
     public ByteBuffer getBytes( int index ) throws LuaException
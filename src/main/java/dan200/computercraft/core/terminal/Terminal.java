@@ -11,6 +11,7 @@ import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.FriendlyByteBuf;
 
 import javax.annotation.Nonnull;
+import java.util.BitSet;
 
 public class Terminal
 {
@@ -33,6 +34,13 @@ public class Terminal
 
     private final Runnable onChanged;
 
+    /**
+     * The lines which have changed since the last call to {@link #writeChanges(FriendlyByteBuf)}.
+     */
+    private final BitSet changedLines = new BitSet();
+    private boolean paletteChanged = false;
+    private boolean resized = false;
+
     public Terminal( int width, int height )
     {
         this( width, height, null );
@@ -65,6 +73,7 @@ public class Terminal
         clear();
         setChanged();
         palette.resetColours();
+        paletteChanged = true;
     }
 
     public int getWidth()
@@ -120,6 +129,7 @@ public class Terminal
                 backgroundColour[i].write( oldBackgroundColour[i] );
             }
         }
+        resized = true;
         setChanged();
     }
 
@@ -200,6 +210,7 @@ public class Terminal
             this.text[y].write( text, x );
             this.textColour[y].write( textColour, x );
             this.backgroundColour[y].write( backgroundColour, x );
+            changedLines.set( y );
             setChanged();
         }
     }
@@ -213,6 +224,7 @@ public class Terminal
             this.text[y].write( text, x );
             textColour[y].fill( base16.charAt( cursorColour ), x, x + text.length() );
             backgroundColour[y].fill( base16.charAt( cursorBackgroundColour ), x, x + text.length() );
+            changedLines.set( y );
             setChanged();
         }
     }
@@ -243,6 +255,7 @@ public class Terminal
             text = newText;
             textColour = newTextColour;
             backgroundColour = newBackgroundColour;
+            changedLines.set( 0, height );
             setChanged();
         }
     }
@@ -255,6 +268,7 @@ public class Terminal
             textColour[y].fill( base16.charAt( cursorColour ) );
             backgroundColour[y].fill( base16.charAt( cursorBackgroundColour ) );
         }
+        changedLines.set( 0, height );
         setChanged();
     }
 
@@ -266,6 +280,7 @@ public class Terminal
             text[y].fill( ' ' );
             textColour[y].fill( base16.charAt( cursorColour ) );
             backgroundColour[y].fill( base16.charAt( cursorBackgroundColour ) );
+            changedLines.set( y );
             setChanged();
         }
     }
@@ -284,6 +299,7 @@ public class Terminal
         this.text[y].write( text );
         this.textColour[y].write( textColour );
         this.backgroundColour[y].write( backgroundColour );
+        changedLines.set( y );
         setChanged();
     }
 
@@ -310,6 +326,12 @@ public class Terminal
         if( onChanged != null ) onChanged.run();
     }
 
+    public synchronized void setPaletteChanged()
+    {
+        paletteChanged = true;
+        setChanged();
+    }
+
     public synchronized void write( FriendlyByteBuf buffer )
     {
         buffer.writeInt( cursorX );
@@ -317,23 +339,74 @@ public class Terminal
         buffer.writeBoolean( cursorBlink );
         buffer.writeByte( cursorBackgroundColour << 4 | cursorColour );
 
-        for( int y = 0; y < height; y++ )
+        for( int y = 0; y < height; y++ ) writeLine( buffer, y );
+
+        palette.write( buffer );
+    }
+
+    /**
+     * Write the lines and palette which have changed since the last call to this method, along with the current cursor.
+     *
+     * This allows sending partial updates to clients which already have a copy of this terminal, which is considerably
+     * smaller than a full snapshot when only a few lines are redrawn.
+     *
+     * @param buffer The buffer to write to.
+     * @return Whether the changes could be written. This is {@code false} if the terminal has been resized, in which
+     * case a full snapshot should be sent instead.
+     * @see #readChanges(FriendlyByteBuf)
+     */
+    public synchronized boolean writeChanges( FriendlyByteBuf buffer )
+    {
+        boolean wasResized = resized;
+        resized = false;
+        if( wasResized )
         {
-            TextBuffer text = this.text[y];
-            TextBuffer textColour = this.textColour[y];
-            TextBuffer backColour = backgroundColour[y];
+            clearChanges();
+            return false;
+        }
 
-            for( int x = 0; x < width; x++ )
-            {
-                buffer.writeByte( text.charAt( x ) & 0xFF );
-                buffer.writeByte( getColour(
-                    backColour.charAt( x ), Colour.BLACK ) << 4 |
-                    getColour( textColour.charAt( x ), Colour.WHITE )
-                );
-            }
+        buffer.writeInt( cursorX );
+        buffer.writeInt( cursorY );
+        buffer.writeBoolean( cursorBlink );
+        buffer.writeByte( cursorBackgroundColour << 4 | cursorColour );
+
+        buffer.writeVarInt( changedLines.cardinality() );
+        for( int y = changedLines.nextSetBit( 0 ); y >= 0; y = changedLines.nextSetBit( y + 1 ) )
+        {
+            buffer.writeVarInt( y );
+            writeLine( buffer, y );
         }
 
-        palette.write( buffer );
+        buffer.writeBoolean( paletteChanged );
+        if( paletteChanged ) palette.write( buffer );
+
+        clearChanges();
+        return true;
+    }
+
+    /**
+     * Discard any pending changes, for instance after sending a full snapshot of this terminal.
+     */
+    public synchronized void clearChanges()
+    {
+        changedLines.clear();
+        paletteChanged = false;
+    }
+
+    private void writeLine( FriendlyByteBuf buffer, int y )
+    {
+        TextBuffer text = this.text[y];
+        TextBuffer textColour = this.textColour[y];
+        TextBuffer backColour = backgroundColour[y];
+
+        for( int x = 0; x < width; x++ )
+        {
+            buffer.writeByte( text.charAt( x ) & 0xFF );
+            buffer.writeByte( getColour(
+                backColour.charAt( x ), Colour.BLACK ) << 4 |
+                getColour( textColour.charAt( x ), Colour.WHITE )
+            );
+        }
     }
 
     public synchronized void read( FriendlyByteBuf buffer )
@@ -346,26 +419,51 @@ public class Terminal
         cursorBackgroundColour = (cursorColour >> 4) & 0xF;
         this.cursorColour = cursorColour & 0xF;
 
-        for( int y = 0; y < height; y++ )
-        {
-            TextBuffer text = this.text[y];
-            TextBuffer textColour = this.textColour[y];
-            TextBuffer backColour = backgroundColour[y];
+        for( int y = 0; y < height; y++ ) readLine( buffer, y );
 
-            for( int x = 0; x < width; x++ )
-            {
-                text.setChar( x, (char) (buffer.readByte() & 0xFF) );
+        palette.read( buffer );
+        setChanged();
+    }
 
-                byte colour = buffer.readByte();
-                backColour.setChar( x, base16.charAt( (colour >> 4) & 0xF ) );
-                textColour.setChar( x, base16.charAt( colour & 0xF ) );
-            }
-        }
+    /**
+     * Apply a set of changes written by {@link #writeChanges(FriendlyByteBuf)}. This terminal must be the same size as
+     * the one which the changes were written from.
+     *
+     * @param buffer The buffer to read from.
+     */
+    public synchronized void readChanges( FriendlyByteBuf buffer )
+    {
+        cursorX = buffer.readInt();
+        cursorY = buffer.readInt();
+        cursorBlink = buffer.readBoolean();
 
-        palette.read( buffer );
+        byte cursorColour = buffer.readByte();
+        cursorBackgroundColour = (cursorColour >> 4) & 0xF;
+        this.cursorColour = cursorColour & 0xF;
+
+        int lines = buffer.readVarInt();
+        for( int i = 0; i < lines; i++ ) readLine( buffer, buffer.readVarInt() );
+
+        if( buffer.readBoolean() ) palette.read( buffer );
         setChanged();
     }
 
+    private void readLine( FriendlyByteBuf buffer, int y )
+    {
+        TextBuffer text = this.text[y];
+        TextBuffer textColour = this.textColour[y];
+        TextBuffer backColour = backgroundColour[y];
+
+        for( int x = 0; x < width; x++ )
+        {
+            text.setChar( x, (char) (buffer.readByte() & 0xFF) );
+
+            byte colour = buffer.readByte();
+            backColour.setChar( x, base16.charAt( (colour >> 4) & 0xF ) );
+            textColour.setChar( x, base16.charAt( colour & 0xF ) );
+        }
+    }
+
     public synchronized CompoundTag writeToNBT( CompoundTag nbt )
     {
         nbt.putInt( "term_cursorX", cursorX );
@@ -412,6 +510,8 @@ public class Terminal
         }
 
         palette.readFromNBT( nbt );
+        changedLines.set( 0, height );
+        paletteChanged = true;
         setChanged();
     }
 
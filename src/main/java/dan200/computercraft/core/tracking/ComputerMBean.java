@@ -8,13 +8,26 @@ package dan200.computercraft.core.tracking;
 import com.google.common.base.CaseFormat;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.filesystem.ContentCache;
+import dan200.computercraft.shared.util.ThreadUtils;
 import net.minecraft.locale.Language;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.management.*;
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.LongSupplier;
 
 public final class ComputerMBean implements DynamicMBean, Tracker
@@ -24,10 +37,25 @@ public final class ComputerMBean implements DynamicMBean, Tracker
         TrackingField.SERVER_COUNT, TrackingField.SERVER_TIME
     ) );
 
+    /**
+     * How often metrics are written to the {@linkplain #startExport(Path) export file}, in seconds.
+     */
+    private static final int EXPORT_INTERVAL = 10;
+
+    private static final ScheduledExecutorService EXPORT_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+        ThreadUtils.factory( "Metrics" )
+    );
+
+    private static final List<ExtraAttribute> extraAttributes = new ArrayList<>();
+
     private static ComputerMBean instance;
+    private static boolean registered;
+    private static ScheduledFuture<?> exportTask;
 
     private final Map<String, LongSupplier> attributes = new HashMap<>();
+    private final Set<String> gauges = new HashSet<>();
     private final Map<TrackingField, Counter> values = new HashMap<>();
+    private final Map<TrackingField, Histogram> histograms = new HashMap<>();
     private final MBeanInfo info;
 
     private ComputerMBean()
@@ -35,7 +63,7 @@ public final class ComputerMBean implements DynamicMBean, Tracker
         List<MBeanAttributeInfo> attributes = new ArrayList<>();
         for( Map.Entry<String, TrackingField> field : TrackingField.fields().entrySet() )
         {
-            if( SKIP.contains( field.getValue() ) ) continue;
+            if( SKIP.contains( field.getValue() ) || field.getValue().timing() != null ) continue;
 
             String name = CaseFormat.LOWER_UNDERSCORE.to( CaseFormat.LOWER_CAMEL, field.getKey() );
             add( name, field.getValue(), attributes, null );
@@ -44,6 +72,14 @@ public final class ComputerMBean implements DynamicMBean, Tracker
         add( "task", TrackingField.TOTAL_TIME, attributes, TrackingField.TASKS );
         add( "serverTask", TrackingField.SERVER_TIME, attributes, TrackingField.SERVER_COUNT );
 
+        attributes.add( addAttribute( "resourceCacheHits", "Reads of read-only files served from the cache", true, ContentCache::getHits ) );
+        attributes.add( addAttribute( "resourceCacheMisses", "Reads of read-only files not in the cache", true, ContentCache::getMisses ) );
+        attributes.add( addAttribute( "resourceCacheEvictions", "Files evicted from the read-only file cache", true, ContentCache::getEvictions ) );
+        for( ExtraAttribute extra : extraAttributes )
+        {
+            attributes.add( addAttribute( extra.name(), extra.description(), extra.counter(), extra.value() ) );
+        }
+
         info = new MBeanInfo(
             ComputerMBean.class.getSimpleName(),
             "metrics about all computers on the server",
@@ -51,11 +87,38 @@ public final class ComputerMBean implements DynamicMBean, Tracker
         );
     }
 
-    public static void register()
+    /**
+     * Add an additional attribute, for metrics which are tracked outside of the core computer code. This must be called
+     * before the bean is {@linkplain #register() registered}.
+     *
+     * @param name        The attribute's name, in lower camel case.
+     * @param description A description of this attribute.
+     * @param counter     Whether this attribute is a running total, rather than a value which may go up and down.
+     * @param value       A function which computes this attribute's current value.
+     */
+    public static synchronized void addAttribute( @Nonnull String name, @Nonnull String description, boolean counter, @Nonnull LongSupplier value )
+    {
+        if( instance != null ) throw new IllegalStateException( "Cannot add attributes once registered" );
+        extraAttributes.add( new ExtraAttribute( name, description, counter, value ) );
+    }
+
+    private static synchronized ComputerMBean getInstance()
+    {
+        if( instance == null ) instance = new ComputerMBean();
+        return instance;
+    }
+
+    /**
+     * Expose these metrics over JMX.
+     */
+    public static synchronized void register()
     {
+        if( registered ) return;
+        registered = true;
+
         try
         {
-            ManagementFactory.getPlatformMBeanServer().registerMBean( instance = new ComputerMBean(), new ObjectName( "dan200.computercraft:type=Computers" ) );
+            ManagementFactory.getPlatformMBeanServer().registerMBean( getInstance(), new ObjectName( "dan200.computercraft:type=Computers" ) );
         }
         catch( InstanceAlreadyExistsException | MBeanRegistrationException | NotCompliantMBeanException | MalformedObjectNameException e )
         {
@@ -63,9 +126,64 @@ public final class ComputerMBean implements DynamicMBean, Tracker
         }
     }
 
+    /**
+     * Start collecting metrics. This should be called after {@link Tracking#reset()}, as the server starts. Any metrics
+     * from a previous server are discarded.
+     */
     public static void registerTracker()
     {
-        if( instance != null ) Tracking.add( instance );
+        ComputerMBean instance = getInstance();
+        instance.reset();
+        Tracking.add( instance );
+    }
+
+    /**
+     * Periodically write all metrics to a file, in the Prometheus text format. This allows external tools to scrape
+     * metrics without connecting over JMX.
+     *
+     * @param file The file to write to.
+     */
+    public static synchronized void startExport( @Nonnull Path file )
+    {
+        stopExport();
+
+        ComputerMBean instance = getInstance();
+        exportTask = EXPORT_EXECUTOR.scheduleWithFixedDelay( () -> {
+            try
+            {
+                instance.export( file );
+            }
+            catch( IOException e )
+            {
+                ComputerCraft.log.error( "Failed to write metrics to {}", file, e );
+            }
+        }, EXPORT_INTERVAL, EXPORT_INTERVAL, TimeUnit.SECONDS );
+    }
+
+    public static synchronized void stopExport()
+    {
+        if( exportTask == null ) return;
+
+        exportTask.cancel( false );
+        exportTask = null;
+    }
+
+    private void export( Path file ) throws IOException
+    {
+        // Write to a temporary file and then move it into place, so scrapers never see a partially written file.
+        Path temp = file.resolveSibling( file.getFileName() + ".tmp" );
+        try( Writer writer = Files.newBufferedWriter( temp, StandardCharsets.UTF_8 ) )
+        {
+            for( MBeanAttributeInfo attribute : info.getAttributes() )
+            {
+                String name = "computercraft_" + CaseFormat.LOWER_CAMEL.to( CaseFormat.LOWER_UNDERSCORE, attribute.getName() );
+                writer.write( "# HELP " + name + " " + attribute.getDescription() + "\n" );
+                writer.write( "# TYPE " + name + (gauges.contains( attribute.getName() ) ? " gauge\n" : " counter\n") );
+                writer.write( name + " " + attributes.get( attribute.getName() ).getAsLong() + "\n" );
+            }
+        }
+
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
     }
 
     @Override
@@ -110,46 +228,93 @@ public final class ComputerMBean implements DynamicMBean, Tracker
     @Override
     public void addTaskTiming( Computer computer, long time )
     {
-        addValue( computer, TrackingField.TOTAL_TIME, time );
+        addTiming( computer, TrackingField.TOTAL_TIME, time );
     }
 
     @Override
     public void addServerTiming( Computer computer, long time )
     {
-        addValue( computer, TrackingField.SERVER_TIME, time );
+        addTiming( computer, TrackingField.SERVER_TIME, time );
+    }
+
+    @Override
+    public void addTiming( Computer computer, TrackingField field, long time )
+    {
+        addValue( computer, field, time );
+
+        Histogram histogram = histograms.get( field );
+        if( histogram != null ) histogram.record( time );
     }
 
     @Override
     public void addValue( Computer computer, TrackingField field, long change )
     {
         Counter counter = values.get( field );
-        counter.value.addAndGet( change );
-        counter.count.incrementAndGet();
+        counter.value.add( change );
+        counter.count.increment();
+    }
+
+    private void reset()
+    {
+        for( Counter counter : values.values() )
+        {
+            counter.value.reset();
+            counter.count.reset();
+        }
+        for( Histogram histogram : histograms.values() ) histogram.reset();
     }
 
-    private MBeanAttributeInfo addAttribute( String name, String description, LongSupplier value )
+    private MBeanAttributeInfo addAttribute( String name, String description, boolean counter, LongSupplier value )
     {
         attributes.put( name, value );
+        if( !counter ) gauges.add( name );
         return new MBeanAttributeInfo( name, "long", description, true, false, false );
     }
 
-    private void add( String name, TrackingField field, List<MBeanAttributeInfo> attributes, TrackingField count )
+    private void add( String name, TrackingField field, List<MBeanAttributeInfo> attributes, @Nullable TrackingField count )
     {
         Counter counter = new Counter();
         values.put( field, counter );
 
         String prettyName = Language.getInstance().getOrDefault( field.translationKey() );
-        attributes.add( addAttribute( name, prettyName, counter.value::longValue ) );
+        attributes.add( addAttribute( name, prettyName, true, counter.value::longValue ) );
         if( count != null )
         {
             String countName = Language.getInstance().getOrDefault( count.translationKey() );
-            attributes.add( addAttribute( name + "Count", countName, counter.count::longValue ) );
+            attributes.add( addAttribute( name + "Count", countName, true, counter.count::longValue ) );
         }
+
+        if( field.hasPercentiles() )
+        {
+            // Timings are recorded from every computer thread at once.
+            Histogram histogram = Histogram.striped();
+            histograms.put( field, histogram );
+
+            for( TrackingField percentile : field.percentiles() )
+            {
+                String suffix = percentile.id().substring( percentile.id().lastIndexOf( '_' ) + 1 );
+                String percentileName = Language.getInstance().getOrDefault( percentile.translationKey() );
+                double quantile = percentile.quantile();
+                attributes.add( addAttribute(
+                    name + CaseFormat.LOWER_CAMEL.to( CaseFormat.UPPER_CAMEL, suffix ), percentileName, false,
+                    () -> histogram.getPercentile( quantile )
+                ) );
+            }
+        }
+    }
+
+    private record ExtraAttribute(
+        String name,
+        String description,
+        boolean counter,
+        LongSupplier value
+    )
+    {
     }
 
     private static class Counter
     {
-        final AtomicLong value = new AtomicLong();
-        final AtomicLong count = new AtomicLong();
+        final LongAdder value = new LongAdder();
+        final LongAdder count = new LongAdder();
     }
 }
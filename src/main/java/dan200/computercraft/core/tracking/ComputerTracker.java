@@ -6,30 +6,40 @@
 package dan200.computercraft.core.tracking;
 
 import dan200.computercraft.core.computer.Computer;
-import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 
 import javax.annotation.Nullable;
 import java.lang.ref.WeakReference;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and other values for a single computer.
+ *
+ * Computers may report values from several threads at once (for instance, the computer and server threads). To avoid
+ * these contending with each other, values are accumulated in {@link LongAdder}s, and are only summed when read.
+ * Timings with {@linkplain TrackingField#percentiles() percentiles} are also recorded in a {@link Histogram}.
+ */
 public class ComputerTracker
 {
     private final WeakReference<Computer> computer;
     private final int computerId;
 
-    private long tasks;
-    private long totalTime;
-    private long maxTime;
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final LongAccumulator maxTime = new LongAccumulator( Math::max, 0 );
 
-    private long serverCount;
-    private long serverTime;
+    private final LongAdder serverCount = new LongAdder();
+    private final LongAdder serverTime = new LongAdder();
 
-    private final Object2LongOpenHashMap<TrackingField> fields;
+    private final Map<TrackingField, LongAdder> fields = new ConcurrentHashMap<>();
+    private final Map<TrackingField, Histogram> histograms = new ConcurrentHashMap<>();
 
     public ComputerTracker( Computer computer )
     {
         this.computer = new WeakReference<>( computer );
         computerId = computer.getID();
-        fields = new Object2LongOpenHashMap<>();
     }
 
     ComputerTracker( ComputerTracker timings )
@@ -37,14 +47,24 @@ public class ComputerTracker
         computer = timings.computer;
         computerId = timings.computerId;
 
-        tasks = timings.tasks;
-        totalTime = timings.totalTime;
-        maxTime = timings.maxTime;
+        tasks.add( timings.tasks.sum() );
+        totalTime.add( timings.totalTime.sum() );
+        maxTime.accumulate( timings.maxTime.get() );
+
+        serverCount.add( timings.serverCount.sum() );
+        serverTime.add( timings.serverTime.sum() );
 
-        serverCount = timings.serverCount;
-        serverTime = timings.serverTime;
+        for( Map.Entry<TrackingField, LongAdder> field : timings.fields.entrySet() )
+        {
+            LongAdder value = new LongAdder();
+            value.add( field.getValue().sum() );
+            fields.put( field.getKey(), value );
+        }
 
-        fields = new Object2LongOpenHashMap<>( timings.fields );
+        for( Map.Entry<TrackingField, Histogram> histogram : timings.histograms.entrySet() )
+        {
+            histograms.put( histogram.getKey(), new Histogram( histogram.getValue() ) );
+        }
     }
 
     @Nullable
@@ -60,59 +80,81 @@ public class ComputerTracker
 
     public long getTasks()
     {
-        return tasks;
+        return tasks.sum();
     }
 
     public long getTotalTime()
     {
-        return totalTime;
+        return totalTime.sum();
     }
 
     public long getMaxTime()
     {
-        return maxTime;
+        return maxTime.get();
     }
 
     public long getAverage()
     {
-        return totalTime / tasks;
+        return totalTime.sum() / tasks.sum();
     }
 
     void addTaskTiming( long time )
     {
-        tasks++;
-        totalTime += time;
-        if( time > maxTime ) maxTime = time;
+        tasks.increment();
+        totalTime.add( time );
+        maxTime.accumulate( time );
+        getHistogram( TrackingField.TOTAL_TIME ).record( time );
     }
 
     void addMainTiming( long time )
     {
-        serverCount++;
-        serverTime += time;
+        serverCount.increment();
+        serverTime.add( time );
+        getHistogram( TrackingField.SERVER_TIME ).record( time );
+    }
+
+    void addTiming( TrackingField field, long time )
+    {
+        addValue( field, time );
+        if( field.hasPercentiles() ) getHistogram( field ).record( time );
+    }
+
+    private Histogram getHistogram( TrackingField field )
+    {
+        Histogram histogram = histograms.get( field );
+        return histogram != null ? histogram : histograms.computeIfAbsent( field, x -> new Histogram() );
     }
 
     void addValue( TrackingField field, long change )
     {
-        synchronized( fields )
-        {
-            fields.addTo( field, change );
-        }
+        LongAdder value = fields.get( field );
+        if( value == null ) value = fields.computeIfAbsent( field, x -> new LongAdder() );
+        value.add( change );
     }
 
     public long get( TrackingField field )
     {
-        if( field == TrackingField.TASKS ) return tasks;
-        if( field == TrackingField.MAX_TIME ) return maxTime;
-        if( field == TrackingField.TOTAL_TIME ) return totalTime;
-        if( field == TrackingField.AVERAGE_TIME ) return tasks == 0 ? 0 : totalTime / tasks;
+        if( field == TrackingField.TASKS ) return tasks.sum();
+        if( field == TrackingField.MAX_TIME ) return maxTime.get();
+        if( field == TrackingField.TOTAL_TIME ) return totalTime.sum();
+        if( field == TrackingField.AVERAGE_TIME )
+        {
+            long tasks = this.tasks.sum();
+            return tasks == 0 ? 0 : totalTime.sum() / tasks;
+        }
 
-        if( field == TrackingField.SERVER_COUNT ) return serverCount;
-        if( field == TrackingField.SERVER_TIME ) return serverTime;
+        if( field == TrackingField.SERVER_COUNT ) return serverCount.sum();
+        if( field == TrackingField.SERVER_TIME ) return serverTime.sum();
 
-        synchronized( fields )
+        TrackingField timing = field.timing();
+        if( timing != null )
         {
-            return fields.getLong( field );
+            Histogram histogram = histograms.get( timing );
+            return histogram == null ? 0 : histogram.getPercentile( field.quantile() );
         }
+
+        LongAdder value = fields.get( field );
+        return value == null ? 0 : value.sum();
     }
 
     public String getFormatted( TrackingField field )
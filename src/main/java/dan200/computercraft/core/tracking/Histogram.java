@@ -0,0 +1,144 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.tracking;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of timings, used to compute percentiles.
+ *
+ * Values are bucketed in a similar way to HDR histograms: values are grouped by their highest set bit, and then each
+ * group is split into {@link #SUB_BUCKETS} linear buckets. This means each bucket covers a range of at most
+ * {@code 1/SUB_BUCKETS} of its values (so reported percentiles are within ~6% of the true value), while the histogram
+ * uses the same amount of memory however many values are recorded.
+ *
+ * Values may be recorded from multiple threads without locking. Histograms shared between many threads should be
+ * {@linkplain #striped() striped}, so that threads mostly update their own copy of the counts.
+ */
+public final class Histogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest value which can be recorded, 2^36ns (about 68 seconds). Larger values are clamped to this.
+     */
+    private static final int MAX_BITS = 36;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    private static final int BUCKETS = (MAX_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * The number of stripes used by {@link #striped()}: the smallest power of two which is at least the number of
+     * processors, up to a limit of 32.
+     */
+    private static final int STRIPES = Math.min( 32, Integer.highestOneBit( Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 ) ) << 1 );
+
+    private final AtomicLongArray[] stripes;
+
+    public Histogram()
+    {
+        this( 1 );
+    }
+
+    private Histogram( int stripes )
+    {
+        this.stripes = new AtomicLongArray[stripes];
+        for( int i = 0; i < stripes; i++ ) this.stripes[i] = new AtomicLongArray( BUCKETS );
+    }
+
+    Histogram( Histogram other )
+    {
+        this( 1 );
+        for( int i = 0; i < BUCKETS; i++ ) stripes[0].set( i, other.get( i ) );
+    }
+
+    /**
+     * Create a histogram which is recorded to from many threads at once.
+     *
+     * @return The new histogram.
+     */
+    public static Histogram striped()
+    {
+        return new Histogram( STRIPES );
+    }
+
+    public void record( long value )
+    {
+        // Threads are spread over the stripes by their ID. Computer threads are created together, so will normally have
+        // distinct stripes.
+        AtomicLongArray counts = stripes.length == 1 ? stripes[0] : stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        counts.incrementAndGet( getBucket( Math.min( Math.max( value, 0 ), MAX_VALUE ) ) );
+    }
+
+    /**
+     * Clear all recorded values. Values recorded while the histogram is being reset may or may not be kept.
+     */
+    public void reset()
+    {
+        for( AtomicLongArray counts : stripes )
+        {
+            for( int i = 0; i < BUCKETS; i++ ) counts.set( i, 0 );
+        }
+    }
+
+    public long getCount()
+    {
+        long count = 0;
+        for( int i = 0; i < BUCKETS; i++ ) count += get( i );
+        return count;
+    }
+
+    /**
+     * Compute a percentile of the recorded values.
+     *
+     * @param quantile The percentile to compute, between 0 and 1.
+     * @return The largest value in the bucket containing this percentile, or 0 if nothing has been recorded.
+     */
+    public long getPercentile( double quantile )
+    {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for( int i = 0; i < BUCKETS; i++ ) total += counts[i] = get( i );
+        if( total == 0 ) return 0;
+
+        long target = Math.max( 1, (long) Math.ceil( quantile * total ) );
+        long seen = 0;
+        for( int i = 0; i < BUCKETS; i++ )
+        {
+            seen += counts[i];
+            if( seen >= target ) return getUpperBound( i );
+        }
+
+        return MAX_VALUE;
+    }
+
+    private long get( int bucket )
+    {
+        long count = 0;
+        for( AtomicLongArray counts : stripes ) count += counts.get( bucket );
+        return count;
+    }
+
+    private static int getBucket( long value )
+    {
+        if( value < SUB_BUCKETS ) return (int) value;
+
+        // For values with their top bit at position n, take the next SUB_BUCKET_BITS bits below it.
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getUpperBound( int bucket )
+    {
+        if( bucket < SUB_BUCKETS ) return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -44,4 +44,17 @@ public interface Tracker
     default void addValue( Computer computer, TrackingField field, long change )
     {
     }
+
+    /**
+     * Report how long some operation took, such as a peripheral call or HTTP request. Implementations may track the
+     * distribution of these timings, to compute percentiles.
+     *
+     * @param computer The computer which performed this operation.
+     * @param field    The field to record this timing in.
+     * @param time     The time taken, in nanoseconds.
+     * @see TrackingField#percentiles()
+     */
+    default void addTiming( Computer computer, TrackingField field, long time )
+    {
+    }
 }
@@ -7,81 +7,75 @@ package dan200.computercraft.core.tracking;
 
 import dan200.computercraft.core.computer.Computer;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Distributes timings and other values to every {@link TrackingContext} and {@link Tracker}.
+ *
+ * These methods are called for every task a computer runs, so they do not take any locks. Contexts and trackers are
+ * rarely added, so are stored in concurrent collections which are cheap to iterate over.
+ */
 public final class Tracking
 {
     static final AtomicInteger tracking = new AtomicInteger( 0 );
 
-    private static final Object lock = new Object();
-    private static final HashMap<UUID, TrackingContext> contexts = new HashMap<>();
-    private static final List<Tracker> trackers = new ArrayList<>();
+    private static final Map<UUID, TrackingContext> contexts = new ConcurrentHashMap<>();
+    private static final List<Tracker> trackers = new CopyOnWriteArrayList<>();
 
     private Tracking() {}
 
     public static TrackingContext getContext( UUID uuid )
     {
-        synchronized( lock )
-        {
-            TrackingContext context = contexts.get( uuid );
-            if( context == null ) contexts.put( uuid, context = new TrackingContext() );
-            return context;
-        }
+        return contexts.computeIfAbsent( uuid, x -> new TrackingContext() );
     }
 
     public static void add( Tracker tracker )
     {
-        synchronized( lock )
-        {
-            trackers.add( tracker );
-            tracking.incrementAndGet();
-        }
+        trackers.add( tracker );
+        tracking.incrementAndGet();
     }
 
     public static void addTaskTiming( Computer computer, long time )
     {
         if( tracking.get() == 0 ) return;
 
-        synchronized( contexts )
-        {
-            for( TrackingContext context : contexts.values() ) context.addTaskTiming( computer, time );
-            for( Tracker tracker : trackers ) tracker.addTaskTiming( computer, time );
-        }
+        for( TrackingContext context : contexts.values() ) context.addTaskTiming( computer, time );
+        for( Tracker tracker : trackers ) tracker.addTaskTiming( computer, time );
     }
 
     public static void addServerTiming( Computer computer, long time )
     {
         if( tracking.get() == 0 ) return;
 
-        synchronized( contexts )
-        {
-            for( TrackingContext context : contexts.values() ) context.addServerTiming( computer, time );
-            for( Tracker tracker : trackers ) tracker.addServerTiming( computer, time );
-        }
+        for( TrackingContext context : contexts.values() ) context.addServerTiming( computer, time );
+        for( Tracker tracker : trackers ) tracker.addServerTiming( computer, time );
     }
 
     public static void addValue( Computer computer, TrackingField field, long change )
     {
         if( tracking.get() == 0 ) return;
 
-        synchronized( lock )
-        {
-            for( TrackingContext context : contexts.values() ) context.addValue( computer, field, change );
-            for( Tracker tracker : trackers ) tracker.addValue( computer, field, change );
-        }
+        for( TrackingContext context : contexts.values() ) context.addValue( computer, field, change );
+        for( Tracker tracker : trackers ) tracker.addValue( computer, field, change );
+    }
+
+    public static void addTiming( Computer computer, TrackingField field, long time )
+    {
+        if( tracking.get() == 0 ) return;
+
+        for( TrackingContext context : contexts.values() ) context.addTiming( computer, field, time );
+        for( Tracker tracker : trackers ) tracker.addTiming( computer, field, time );
     }
 
     public static void reset()
     {
-        synchronized( lock )
-        {
-            contexts.clear();
-            trackers.clear();
-            tracking.set( 0 );
-        }
+        contexts.clear();
+        trackers.clear();
+        tracking.set( 0 );
     }
 }
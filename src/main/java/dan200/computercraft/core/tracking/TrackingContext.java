@@ -8,6 +8,7 @@ package dan200.computercraft.core.tracking;
 import com.google.common.collect.MapMaker;
 import dan200.computercraft.core.computer.Computer;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -18,10 +19,12 @@ import java.util.Map;
  *
  * Note that this <em>will</em> track computers which have been deleted (hence
  * the presence of {@link #timingLookup} and {@link #timings}
+ *
+ * Values are accumulated into each computer's {@link ComputerTracker} without locking, and only summed up when read.
  */
 public class TrackingContext implements Tracker
 {
-    private boolean tracking = false;
+    private volatile boolean tracking = false;
 
     private final List<ComputerTracker> timings = new ArrayList<>();
     private final Map<Computer, ComputerTracker> timingLookup = new MapMaker().weakKeys().makeMap();
@@ -62,18 +65,8 @@ public class TrackingContext implements Tracker
     {
         if( !tracking ) return;
 
-        synchronized( this )
-        {
-            ComputerTracker computerTimings = timingLookup.get( computer );
-            if( computerTimings == null )
-            {
-                computerTimings = new ComputerTracker( computer );
-                timingLookup.put( computer, computerTimings );
-                timings.add( computerTimings );
-            }
-
-            computerTimings.addTaskTiming( time );
-        }
+        ComputerTracker computerTimings = getTracker( computer );
+        if( computerTimings != null ) computerTimings.addTaskTiming( time );
     }
 
     @Override
@@ -81,18 +74,8 @@ public class TrackingContext implements Tracker
     {
         if( !tracking ) return;
 
-        synchronized( this )
-        {
-            ComputerTracker computerTimings = timingLookup.get( computer );
-            if( computerTimings == null )
-            {
-                computerTimings = new ComputerTracker( computer );
-                timingLookup.put( computer, computerTimings );
-                timings.add( computerTimings );
-            }
-
-            computerTimings.addMainTiming( time );
-        }
+        ComputerTracker computerTimings = getTracker( computer );
+        if( computerTimings != null ) computerTimings.addMainTiming( time );
     }
 
     @Override
@@ -100,9 +83,37 @@ public class TrackingContext implements Tracker
     {
         if( !tracking ) return;
 
+        ComputerTracker computerTimings = getTracker( computer );
+        if( computerTimings != null ) computerTimings.addValue( field, change );
+    }
+
+    @Override
+    public void addTiming( Computer computer, TrackingField field, long time )
+    {
+        if( !tracking ) return;
+
+        ComputerTracker computerTimings = getTracker( computer );
+        if( computerTimings != null ) computerTimings.addTiming( field, time );
+    }
+
+    /**
+     * Get the tracker for a computer, creating it if needed. Only creating a tracker requires a lock, so computers
+     * can report timings concurrently.
+     *
+     * @param computer The computer to get the tracker for.
+     * @return This computer's tracker, or {@code null} if tracking has since stopped.
+     */
+    @Nullable
+    private ComputerTracker getTracker( Computer computer )
+    {
+        ComputerTracker computerTimings = timingLookup.get( computer );
+        if( computerTimings != null ) return computerTimings;
+
         synchronized( this )
         {
-            ComputerTracker computerTimings = timingLookup.get( computer );
+            if( !tracking ) return null;
+
+            computerTimings = timingLookup.get( computer );
             if( computerTimings == null )
             {
                 computerTimings = new ComputerTracker( computer );
@@ -110,7 +121,7 @@ public class TrackingContext implements Tracker
                 timings.add( computerTimings );
             }
 
-            computerTimings.addValue( field, change );
+            return computerTimings;
         }
     }
 }
@@ -5,8 +5,11 @@
  */
 package dan200.computercraft.core.tracking;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.LongFunction;
 
@@ -36,10 +39,27 @@ public final class TrackingField
     public static final TrackingField COROUTINES_CREATED = TrackingField.of( "coroutines_created", x -> String.format( "%4d", x ) );
     public static final TrackingField COROUTINES_DISPOSED = TrackingField.of( "coroutines_dead", x -> String.format( "%4d", x ) );
 
+    public static final TrackingField EVENT_WAIT_TIME = TrackingField.of( "event_wait", TrackingField::formatTime );
+    public static final TrackingField PERIPHERAL_TIME = TrackingField.of( "peripheral_time", TrackingField::formatTime );
+    public static final TrackingField HTTP_TIME = TrackingField.of( "http_time", TrackingField::formatTime );
+
+    static
+    {
+        addPercentiles( "task", TOTAL_TIME );
+        addPercentiles( "server", SERVER_TIME );
+        addPercentiles( "event_wait", EVENT_WAIT_TIME );
+        addPercentiles( "peripheral_time", PERIPHERAL_TIME );
+        addPercentiles( "http_time", HTTP_TIME );
+    }
+
     private final String id;
     private final String translationKey;
     private final LongFunction<String> format;
 
+    private final TrackingField timing;
+    private final double quantile;
+    private final List<TrackingField> percentiles = new ArrayList<>();
+
     public String id()
     {
         return id;
@@ -50,11 +70,45 @@ public final class TrackingField
         return translationKey;
     }
 
-    private TrackingField( String id, LongFunction<String> format )
+    /**
+     * If this field is a percentile of another field, get the field it is computed from.
+     *
+     * @return The timing this is a percentile of, or {@code null} if this is a normal field.
+     */
+    @Nullable
+    public TrackingField timing()
+    {
+        return timing;
+    }
+
+    public double quantile()
+    {
+        return quantile;
+    }
+
+    /**
+     * Get the percentiles computed from this field. If non-empty, a histogram is kept of every value reported for this
+     * field.
+     *
+     * @return The percentile fields for this field.
+     */
+    public List<TrackingField> percentiles()
+    {
+        return Collections.unmodifiableList( percentiles );
+    }
+
+    public boolean hasPercentiles()
+    {
+        return !percentiles.isEmpty();
+    }
+
+    private TrackingField( String id, LongFunction<String> format, TrackingField timing, double quantile )
     {
         this.id = id;
         translationKey = "tracking_field.computercraft." + id + ".name";
         this.format = format;
+        this.timing = timing;
+        this.quantile = quantile;
     }
 
     public String format( long value )
@@ -64,16 +118,35 @@ public final class TrackingField
 
     public static TrackingField of( String id, LongFunction<String> format )
     {
-        TrackingField field = new TrackingField( id, format );
+        TrackingField field = new TrackingField( id, format, null, 0 );
         fields.put( id, field );
         return field;
     }
 
+    private static void addPercentiles( String prefix, TrackingField timing )
+    {
+        addPercentile( prefix + "_p50", timing, 0.5 );
+        addPercentile( prefix + "_p99", timing, 0.99 );
+        addPercentile( prefix + "_p999", timing, 0.999 );
+    }
+
+    private static void addPercentile( String id, TrackingField timing, double quantile )
+    {
+        TrackingField field = new TrackingField( id, timing.format, timing, quantile );
+        fields.put( id, field );
+        timing.percentiles.add( field );
+    }
+
     public static Map<String, TrackingField> fields()
     {
         return Collections.unmodifiableMap( fields );
     }
 
+    private static String formatTime( long value )
+    {
+        return String.format( "%7.1fms", value / 1e6 );
+    }
+
     private static String formatDefault( long value )
     {
         return String.format( "%6d", value );
@@ -47,7 +47,16 @@ public class ClientTerminal implements ITerminal
     public void read( TerminalState state )
     {
         colour = state.colour;
-        if( state.hasTerminal() )
+        if( state.hasChanges() )
+        {
+            // Partial updates can only be applied to an up-to-date terminal. The server will send a full snapshot
+            // whenever the terminal is resized, so we should never fall out of sync.
+            if( terminal != null && terminal.getWidth() == state.width && terminal.getHeight() == state.height )
+            {
+                state.apply( terminal );
+            }
+        }
+        else if( state.hasTerminal() )
         {
             resizeTerminal( state.width, state.height );
             state.apply( terminal );
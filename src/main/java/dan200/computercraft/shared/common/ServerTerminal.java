@@ -10,12 +10,14 @@ import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.shared.network.client.TerminalState;
 import net.minecraft.nbt.CompoundTag;
 
+import javax.annotation.Nullable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ServerTerminal implements ITerminal
 {
     private final boolean colour;
     private final AtomicBoolean terminalChanged = new AtomicBoolean( false );
+    private final AtomicBoolean terminalReplaced = new AtomicBoolean( false );
     private Terminal terminal;
     private boolean terminalChangedLastFrame = false;
 
@@ -41,6 +43,7 @@ public class ServerTerminal implements ITerminal
         if( terminal == null )
         {
             terminal = new Terminal( width, height, this::markTerminalChanged );
+            terminalReplaced.set( true );
             markTerminalChanged();
         }
         else
@@ -54,6 +57,7 @@ public class ServerTerminal implements ITerminal
         if( terminal != null )
         {
             terminal = null;
+            terminalReplaced.set( true );
             markTerminalChanged();
         }
     }
@@ -85,6 +89,22 @@ public class ServerTerminal implements ITerminal
         return new TerminalState( colour, terminal );
     }
 
+    /**
+     * Write the changes to this terminal since this method was last called.
+     *
+     * @return The changes to this terminal, or {@code null} if clients need a full snapshot (see {@link #write()}).
+     */
+    @Nullable
+    public TerminalState writeChanges()
+    {
+        boolean replaced = terminalReplaced.getAndSet( false );
+        Terminal terminal = this.terminal;
+        if( terminal == null ) return null;
+
+        TerminalState changes = TerminalState.ofChanges( colour, terminal );
+        return replaced ? null : changes;
+    }
+
     public void writeDescription( CompoundTag nbt )
     {
         nbt.putBoolean( "colour", colour );
@@ -165,6 +165,12 @@ public abstract class BlockComputerBase<T extends TileComputerBase> extends Bloc
             {
                 computer.setLabel( label );
             }
+
+            String template = item.getTemplate( stack );
+            if( template != null )
+            {
+                computer.setTemplate( template );
+            }
         }
     }
 
@@ -17,5 +17,9 @@ public interface IComputerTile
 
     void setLabel( String label );
 
+    String getTemplate();
+
+    void setTemplate( String template );
+
     ComputerFamily getFamily();
 }
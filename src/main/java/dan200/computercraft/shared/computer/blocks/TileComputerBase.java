@@ -52,8 +52,10 @@ public abstract class TileComputerBase extends TileGeneric implements IComputerT
     private static final String NBT_ID = "ComputerId";
     private static final String NBT_LABEL = "Label";
     private static final String NBT_ON = "On";
+    private static final String NBT_TEMPLATE = "Template";
     private final ComputerFamily family;
     protected String label = null;
+    private String template = null;
     boolean startOn = false;
     private int instanceID = -1;
     private int computerID = -1;
@@ -145,6 +147,7 @@ public abstract class TileComputerBase extends TileGeneric implements IComputerT
         if( !ComputerCraft.serverComputerRegistry.contains( instanceID ) )
         {
             ServerComputer computer = createComputer( instanceID, computerID );
+            computer.setTemplate( template );
             ComputerCraft.serverComputerRegistry.add( instanceID, computer );
             fresh = true;
             changed = true;
@@ -327,6 +330,7 @@ public abstract class TileComputerBase extends TileGeneric implements IComputerT
         // Load ID, label and power state
         computerID = nbt.contains( NBT_ID ) ? nbt.getInt( NBT_ID ) : -1;
         label = nbt.contains( NBT_LABEL ) ? nbt.getString( NBT_LABEL ) : null;
+        template = nbt.contains( NBT_TEMPLATE ) ? nbt.getString( NBT_TEMPLATE ) : null;
         on = startOn = nbt.getBoolean( NBT_ON );
     }
 
@@ -343,6 +347,10 @@ public abstract class TileComputerBase extends TileGeneric implements IComputerT
         {
             nbt.putString( NBT_LABEL, label );
         }
+        if( template != null )
+        {
+            nbt.putString( NBT_TEMPLATE, template );
+        }
         nbt.putBoolean( NBT_ON, on );
         return super.save( nbt );
     }
@@ -445,6 +453,30 @@ public abstract class TileComputerBase extends TileGeneric implements IComputerT
         setChanged();
     }
 
+    @Override
+    public final String getTemplate()
+    {
+        return template;
+    }
+
+    @Override
+    public final void setTemplate( String template )
+    {
+        if( this.level.isClientSide || Objects.equals( this.template, template ) )
+        {
+            return;
+        }
+
+        // The new template is used the next time the computer is started.
+        this.template = template;
+        ServerComputer computer = getServerComputer();
+        if( computer != null )
+        {
+            computer.setTemplate( template );
+        }
+        setChanged();
+    }
+
     @Override
     public ComputerFamily getFamily()
     {
@@ -459,6 +491,7 @@ public abstract class TileComputerBase extends TileGeneric implements IComputerT
             instanceID = copy.instanceID;
             computerID = copy.computerID;
             label = copy.label;
+            template = copy.template;
             on = copy.on;
             startOn = copy.startOn;
             updateBlock();
@@ -17,12 +17,16 @@ import dan200.computercraft.core.apis.IAPIEnvironment;
 import dan200.computercraft.core.computer.Computer;
 import dan200.computercraft.core.computer.ComputerSide;
 import dan200.computercraft.core.computer.IComputerEnvironment;
+import dan200.computercraft.core.filesystem.OverlayMount;
+import dan200.computercraft.core.filesystem.TemplateMount;
 import dan200.computercraft.shared.common.ServerTerminal;
 import dan200.computercraft.shared.network.NetworkHandler;
 import dan200.computercraft.shared.network.NetworkMessage;
 import dan200.computercraft.shared.network.client.ComputerDataClientMessage;
 import dan200.computercraft.shared.network.client.ComputerDeletedClientMessage;
 import dan200.computercraft.shared.network.client.ComputerTerminalClientMessage;
+import dan200.computercraft.shared.network.client.TerminalState;
+import dan200.computercraft.shared.util.IDAssigner;
 import me.shedaniel.cloth.api.utils.v1.GameInstanceUtils;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
@@ -33,21 +37,36 @@ import net.minecraft.world.level.Level;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
 
 public class ServerComputer extends ServerTerminal implements IComputer, IComputerEnvironment
 {
+    private static final Pattern TEMPLATE_NAME = Pattern.compile( "[a-z0-9_-]+" );
+
     private final int instanceID;
     private final ComputerFamily family;
     private final Computer computer;
     private Level world;
     private BlockPos position;
     private CompoundTag userData;
+    private String template;
     private boolean changed;
 
     private boolean changedLastFrame;
     private int ticksSincePing;
 
+    /**
+     * Players who have received a full copy of this computer's terminal, and so can be sent partial updates.
+     */
+    private Set<Player> terminalViewers = createViewerSet();
+
     public ServerComputer( Level world, int computerID, String label, int instanceID, ComputerFamily family, int terminalWidth, int terminalHeight )
     {
         super( family != ComputerFamily.NORMAL, terminalWidth, terminalHeight );
@@ -91,6 +110,24 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
         position = new BlockPos( pos );
     }
 
+    @Nullable
+    public String getTemplate()
+    {
+        return template;
+    }
+
+    /**
+     * Set the template this computer's files are layered over. This only takes effect the next time the computer is
+     * started.
+     *
+     * @param template The name of the template, or {@code null} to use a plain folder.
+     * @see #withTemplate(IWritableMount, String)
+     */
+    public void setTemplate( @Nullable String template )
+    {
+        this.template = template;
+    }
+
     public IAPIEnvironment getAPIEnvironment()
     {
         return computer.getAPIEnvironment();
@@ -159,25 +196,47 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
             MinecraftServer server = GameInstanceUtils.getServer();
             if( server != null )
             {
-                // Send terminal state to clients who are currently interacting with the computer.
-
-                NetworkMessage packet = null;
+                // Send terminal state to clients who are currently interacting with the computer. Players who have
+                // already received the terminal only need the lines which changed, everyone else gets a full copy.
+                // Each packet is only encoded once, and then shared between all recipients.
+                TerminalState changes = writeChanges();
+                if( force ) changes = null;
+
+                List<Player> changesRecipients = new ArrayList<>();
+                List<Player> fullRecipients = new ArrayList<>();
+                Set<Player> viewers = createViewerSet();
                 for( Player player : server.getPlayerList()
                     .getPlayers() )
                 {
-                    if( isInteracting( player ) )
+                    if( !isWatchingTerminal( player ) ) continue;
+
+                    if( changes != null && terminalViewers.contains( player ) )
                     {
-                        if( packet == null )
-                        {
-                            packet = createTerminalPacket();
-                        }
-                        NetworkHandler.sendToPlayer( player, packet );
+                        changesRecipients.add( player );
                     }
+                    else
+                    {
+                        fullRecipients.add( player );
+                    }
+                    viewers.add( player );
+                }
+
+                terminalViewers = viewers;
+
+                if( !changesRecipients.isEmpty() )
+                {
+                    NetworkHandler.sendToPlayers( changesRecipients, new ComputerTerminalClientMessage( getInstanceID(), changes ) );
                 }
+                if( !fullRecipients.isEmpty() ) NetworkHandler.sendToPlayers( fullRecipients, createTerminalPacket() );
             }
         }
     }
 
+    private static Set<Player> createViewerSet()
+    {
+        return Collections.newSetFromMap( new WeakHashMap<>() );
+    }
+
     public boolean hasOutputChanged()
     {
         return changedLastFrame;
@@ -193,6 +252,17 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
         return getContainer( player ) != null;
     }
 
+    /**
+     * Whether this player should receive updates to this computer's terminal.
+     *
+     * @param player The player to check.
+     * @return If this player needs the terminal.
+     */
+    protected boolean isWatchingTerminal( Player player )
+    {
+        return isInteracting( player );
+    }
+
     protected NetworkMessage createTerminalPacket()
     {
         return new ComputerTerminalClientMessage( getInstanceID(), write() );
@@ -274,6 +344,7 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
     {
         // Send terminal state to client
         NetworkHandler.sendToPlayer( player, createTerminalPacket() );
+        terminalViewers.add( player );
     }
 
     public void broadcastDelete()
@@ -390,7 +461,27 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
     @Override
     public IWritableMount createSaveDirMount( String subPath, long capacity )
     {
-        return ComputerCraftAPI.createSaveDirMount( world, subPath, capacity );
+        IWritableMount mount = ComputerCraftAPI.createSaveDirMount( world, subPath, capacity );
+        return subPath.equals( "computer/" + getID() ) ? withTemplate( mount, template ) : mount;
+    }
+
+    /**
+     * Layer a computer's files over its template.
+     *
+     * Computers with a template (for instance, many identical kiosks) only store the files they have changed, with the
+     * rest read from a shared folder in {@code computercraft/templates}. All other computers use a plain folder.
+     *
+     * @param mount    The mount for the computer's own folder.
+     * @param template The name of the computer's template, or {@code null} if it has none.
+     * @return The mount to give the computer.
+     */
+    @Nullable
+    public static IWritableMount withTemplate( @Nullable IWritableMount mount, @Nullable String template )
+    {
+        if( mount == null || template == null || !TEMPLATE_NAME.matcher( template ).matches() ) return mount;
+
+        TemplateMount base = TemplateMount.get( new File( IDAssigner.getDir(), "templates/" + template ) );
+        return base == null ? mount : new OverlayMount( base, mount );
     }
 
     @Override
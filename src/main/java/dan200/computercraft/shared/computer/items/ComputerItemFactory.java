@@ -20,7 +20,7 @@ public final class ComputerItemFactory
     @Nonnull
     public static ItemStack create( TileComputer tile )
     {
-        return create( tile.getComputerID(), tile.getLabel(), tile.getFamily() );
+        return IComputerItem.setTemplate( create( tile.getComputerID(), tile.getLabel(), tile.getFamily() ), tile.getTemplate() );
     }
 
     @Nonnull
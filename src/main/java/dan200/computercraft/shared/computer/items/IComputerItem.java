@@ -11,11 +11,22 @@ import net.minecraft.nbt.CompoundTag;
 import net.minecraft.world.item.ItemStack;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public interface IComputerItem
 {
     String NBT_ID = "ComputerId";
 
+    /**
+     * The name of the template a computer's files are layered over. This is set on the computer's item, for instance
+     * with {@code /give @p computercraft:computer_normal{Template:"kiosk"}}, and kept when the computer is placed and
+     * broken. The template is read from the world's {@code computercraft/templates/kiosk} folder, and the name must
+     * match {@code [a-z0-9_-]+}.
+     *
+     * @see dan200.computercraft.shared.computer.core.ServerComputer#withTemplate
+     */
+    String NBT_TEMPLATE = "Template";
+
     default int getComputerID( @Nonnull ItemStack stack )
     {
         CompoundTag nbt = stack.getTag();
@@ -28,6 +39,27 @@ public interface IComputerItem
             .getString() : null;
     }
 
+    /**
+     * Get the template this computer's files are layered over.
+     *
+     * @param stack The computer stack.
+     * @return The name of the template, or {@code null} if this computer does not use one.
+     * @see dan200.computercraft.shared.computer.core.ServerComputer#withTemplate
+     */
+    @Nullable
+    default String getTemplate( @Nonnull ItemStack stack )
+    {
+        CompoundTag nbt = stack.getTag();
+        return nbt != null && nbt.contains( NBT_TEMPLATE ) ? nbt.getString( NBT_TEMPLATE ) : null;
+    }
+
+    @Nonnull
+    static ItemStack setTemplate( @Nonnull ItemStack stack, @Nullable String template )
+    {
+        if( template != null && !stack.isEmpty() ) stack.getOrCreateTag().putString( NBT_TEMPLATE, template );
+        return stack;
+    }
+
     ComputerFamily getFamily();
 
     ItemStack withFamily( @Nonnull ItemStack stack, @Nonnull ComputerFamily family );
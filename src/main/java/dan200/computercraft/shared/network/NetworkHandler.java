@@ -27,15 +27,19 @@ import net.minecraft.network.protocol.game.ClientboundCustomPayloadPacket;
 import net.minecraft.network.protocol.game.ServerboundCustomPayloadPacket;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.phys.Vec3;
 
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public final class NetworkHandler
 {
@@ -44,6 +48,17 @@ public final class NetworkHandler
 
     private static final ResourceLocation ID = new ResourceLocation( ComputerCraft.MOD_ID, "main" );
 
+    /**
+     * The number of bytes we have avoided encoding this tick, by sharing a single encoded packet between several
+     * players.
+     */
+    private static final AtomicLong bytesShared = new AtomicLong();
+
+    /**
+     * The value of {@link #bytesShared} at the end of the last tick.
+     */
+    private static volatile long bytesSharedLastTick;
+
     private NetworkHandler()
     {
     }
@@ -124,6 +139,49 @@ public final class NetworkHandler
         ((ServerPlayer) player).connection.send( new ClientboundCustomPayloadPacket( ID, encode( packet ) ) );
     }
 
+    /**
+     * Send a packet to several players. The packet is only encoded once, and its contents shared between all of them.
+     *
+     * Each player is given their own view of the buffer, as the connection to the integrated server's host passes the
+     * packet along without re-encoding it, and so reads from the buffer directly.
+     *
+     * @param players The players to send to.
+     * @param packet  The packet to send.
+     */
+    public static void sendToPlayers( Collection<? extends Player> players, NetworkMessage packet )
+    {
+        if( players.isEmpty() ) return;
+
+        FriendlyByteBuf buf = encode( packet );
+        for( Player player : players )
+        {
+            ((ServerPlayer) player).connection.send( new ClientboundCustomPayloadPacket( ID, new FriendlyByteBuf( buf.duplicate() ) ) );
+        }
+
+        bytesShared.addAndGet( (long) buf.readableBytes() * (players.size() - 1) );
+    }
+
+    /**
+     * Finish the current tick, making the number of bytes shared this tick available from
+     * {@link #getBytesSharedLastTick()}. This should be called once a tick on the server thread.
+     */
+    public static void tick()
+    {
+        bytesSharedLastTick = bytesShared.getAndSet( 0 );
+    }
+
+    /**
+     * Get the number of bytes which did not need to be encoded during the last tick, as a packet was shared between
+     * several players.
+     *
+     * @return The number of bytes saved.
+     * @see #sendToPlayers(Collection, NetworkMessage)
+     */
+    public static long getBytesSharedLastTick()
+    {
+        return bytesSharedLastTick;
+    }
+
     public static void sendToAllPlayers( NetworkMessage packet )
     {
         MinecraftServer server = GameInstanceUtils.getServer();
@@ -152,12 +210,9 @@ public final class NetworkHandler
 
     public static void sendToAllTracking( NetworkMessage packet, LevelChunk chunk )
     {
-        for( Player player : chunk.getLevel().players() )
-        {
-            if( chunk.getLevel().dimension().location() == player.getCommandSenderWorld().dimension().location() && player.chunkPosition().equals( chunk.getPos() ) )
-            {
-                ((ServerPlayer) player).connection.send( new ClientboundCustomPayloadPacket( ID, encode( packet ) ) );
-            }
-        }
+        sendToPlayers(
+            ((ServerLevel) chunk.getLevel()).getChunkSource().chunkMap.getPlayers( chunk.getPos(), false ).collect( Collectors.toList() ),
+            packet
+        );
     }
 }
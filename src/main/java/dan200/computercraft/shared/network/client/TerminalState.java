@@ -26,15 +26,24 @@ import java.util.zip.GZIPOutputStream;
  *
  * This is somewhat memory inefficient (we build a buffer, only to write it elsewhere), however it means we get a complete and accurate description of a
  * terminal, which avoids a lot of complexities with resizing terminals, dirty states, etc...
+ *
+ * A state may alternatively hold just the changes to a terminal since the last state was sent (see {@link #ofChanges(boolean, Terminal)}). These
+ * may only be applied to a terminal of the same size which is already up-to-date.
  */
 public class TerminalState
 {
+    /**
+     * Buffers smaller than this are sent uncompressed, as GZIP's headers outweigh any savings.
+     */
+    private static final int COMPRESSION_THRESHOLD = 256;
+
     public final boolean colour;
 
     public final int width;
     public final int height;
 
     private final boolean compress;
+    private final boolean changes;
 
     @Nullable
     private final ByteBuf buffer;
@@ -49,10 +58,11 @@ public class TerminalState
     public TerminalState( boolean colour, @Nullable Terminal terminal, boolean compress )
     {
         this.colour = colour;
-        this.compress = compress;
+        changes = false;
 
         if( terminal == null )
         {
+            this.compress = compress;
             width = height = 0;
             buffer = null;
         }
@@ -63,6 +73,36 @@ public class TerminalState
 
             ByteBuf buf = buffer = Unpooled.buffer();
             terminal.write( new FriendlyByteBuf( buf ) );
+            this.compress = compress && buf.readableBytes() >= COMPRESSION_THRESHOLD;
+        }
+    }
+
+    private TerminalState( boolean colour, int width, int height, ByteBuf buffer )
+    {
+        this.colour = colour;
+        this.width = width;
+        this.height = height;
+        this.buffer = buffer;
+        changes = true;
+        compress = buffer.readableBytes() >= COMPRESSION_THRESHOLD;
+    }
+
+    /**
+     * Create a state containing the changes to a terminal since this method was last called.
+     *
+     * @param colour   Whether this is a colour terminal.
+     * @param terminal The terminal to capture.
+     * @return The terminal's changes, or {@code null} if a full snapshot must be sent instead.
+     * @see Terminal#writeChanges(FriendlyByteBuf)
+     */
+    @Nullable
+    public static TerminalState ofChanges( boolean colour, Terminal terminal )
+    {
+        ByteBuf buffer = Unpooled.buffer();
+        synchronized( terminal )
+        {
+            if( !terminal.writeChanges( new FriendlyByteBuf( buffer ) ) ) return null;
+            return new TerminalState( colour, terminal.getWidth(), terminal.getHeight(), buffer );
         }
     }
 
@@ -73,6 +113,7 @@ public class TerminalState
 
         if( buf.readBoolean() )
         {
+            changes = buf.readBoolean();
             width = buf.readVarInt();
             height = buf.readVarInt();
 
@@ -81,6 +122,7 @@ public class TerminalState
         }
         else
         {
+            changes = false;
             width = height = 0;
             buffer = null;
         }
@@ -132,6 +174,7 @@ public class TerminalState
         buf.writeBoolean( buffer != null );
         if( buffer != null )
         {
+            buf.writeBoolean( changes );
             buf.writeVarInt( width );
             buf.writeVarInt( height );
 
@@ -180,6 +223,16 @@ public class TerminalState
         return buffer != null;
     }
 
+    /**
+     * Whether this state only contains the changes since the previous state.
+     *
+     * @return If this is a partial update.
+     */
+    public boolean hasChanges()
+    {
+        return changes;
+    }
+
     public int size()
     {
         return buffer == null ? 0 : buffer.readableBytes();
@@ -191,6 +244,13 @@ public class TerminalState
         {
             throw new NullPointerException( "buffer" );
         }
-        terminal.read( new FriendlyByteBuf( buffer ) );
+        if( changes )
+        {
+            terminal.readChanges( new FriendlyByteBuf( buffer ) );
+        }
+        else
+        {
+            terminal.read( new FriendlyByteBuf( buffer ) );
+        }
     }
 }
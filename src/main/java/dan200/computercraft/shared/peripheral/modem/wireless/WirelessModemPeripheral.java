@@ -64,4 +64,13 @@ public abstract class WirelessModemPeripheral extends ModemPeripheral
     {
         return WirelessNetwork.getUniversal();
     }
+
+    /**
+     * Notify the network that this modem has moved. Modems which can move must call this whenever their level or
+     * position changes, as the network only checks modems near the sender.
+     */
+    protected void updateLocation()
+    {
+        WirelessNetwork.getUniversal().updateReceiver( this );
+    }
 }
@@ -9,15 +9,48 @@ import dan200.computercraft.api.network.IPacketNetwork;
 import dan200.computercraft.api.network.IPacketReceiver;
 import dan200.computercraft.api.network.IPacketSender;
 import dan200.computercraft.api.network.Packet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
 
 import javax.annotation.Nonnull;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * The network used by wireless and ender modems.
+ *
+ * Rather than checking every receiver on each transmission, receivers are indexed by dimension and then by a coarse
+ * grid of {@link #CELL_SIZE} blocks, so we only visit receivers which could possibly be in range. Interdimensional
+ * receivers can receive any packet, so are kept in a separate set.
+ *
+ * Receivers may move (for instance, pocket computers and turtles) or change range (modems have a shorter range in
+ * storms). Our own modems call {@link #updateReceiver(IPacketReceiver)} whenever they move, and the range of every
+ * modem in a dimension is recomputed when its weather changes (see {@link #update()}). Other receivers have no way of
+ * notifying us, so are not indexed, and are instead checked on every transmission.
+ */
 public class WirelessNetwork implements IPacketNetwork
 {
+    /**
+     * The size of each grid cell, in blocks.
+     */
+    private static final int CELL_SIZE = 64;
+
+    /**
+     * Receivers with a range larger than this are not put in the grid, and instead checked on every transmission within
+     * their dimension. This avoids a single long-range receiver forcing us to search a huge area.
+     */
+    private static final double MAX_GRID_RANGE = 512;
+
     private static WirelessNetwork universalNetwork = null;
 
     public static WirelessNetwork getUniversal()
@@ -31,34 +64,129 @@ public class WirelessNetwork implements IPacketNetwork
         universalNetwork = null;
     }
 
-    private final Set<IPacketReceiver> receivers = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+    /**
+     * Check every network for dimensions whose weather has changed. This should be called once a tick on the server
+     * thread.
+     */
+    public static void updateNetworks()
+    {
+        WirelessNetwork network = universalNetwork;
+        if( network != null ) network.update();
+    }
+
+    /**
+     * Guards {@link #interdimensional}, {@link #unindexed} and {@link #dimensions}. Modifications to
+     * {@link #receivers} are also made while holding the write lock, though it may be read without it.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<IPacketReceiver, Location> receivers = new ConcurrentHashMap<>();
+    private final Set<IPacketReceiver> interdimensional = new HashSet<>();
+
+    /**
+     * Receivers which do not tell us when they move, and so are checked on every transmission.
+     */
+    private final Set<IPacketReceiver> unindexed = new HashSet<>();
+    private final Map<Level, Dimension> dimensions = new HashMap<>();
 
     @Override
     public void addReceiver( @Nonnull IPacketReceiver receiver )
     {
         Objects.requireNonNull( receiver, "device cannot be null" );
-        receivers.add( receiver );
+
+        Location location = locate( receiver );
+        lock.writeLock().lock();
+        try
+        {
+            Location existing = receivers.put( receiver, location );
+            if( existing != null ) unindex( receiver, existing );
+            index( receiver, location );
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Update the index after a receiver has moved, or its range has changed. This does nothing if the receiver is not
+     * on this network.
+     *
+     * @param receiver The receiver which has moved.
+     */
+    public void updateReceiver( @Nonnull IPacketReceiver receiver )
+    {
+        Location existing = receivers.get( receiver );
+        if( existing == null ) return;
+
+        // Most movement stays within the same cell. A smaller range than we indexed with is also fine, as we only use
+        // it to decide how far to search.
+        Location location = locate( receiver );
+        if( existing.matches( location ) && location.range <= existing.range ) return;
+
+        lock.writeLock().lock();
+        try
+        {
+            // Skip receivers which have been removed or re-added since we looked at them.
+            if( !receivers.replace( receiver, existing, location ) ) return;
+            unindex( receiver, existing );
+            index( receiver, location );
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
     public void removeReceiver( @Nonnull IPacketReceiver receiver )
     {
         Objects.requireNonNull( receiver, "device cannot be null" );
-        receivers.remove( receiver );
+
+        lock.writeLock().lock();
+        try
+        {
+            Location location = receivers.remove( receiver );
+            if( location != null ) unindex( receiver, location );
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
     public void transmitSameDimension( @Nonnull Packet packet, double range )
     {
         Objects.requireNonNull( packet, "packet cannot be null" );
-        for( IPacketReceiver device : receivers ) tryTransmit( device, packet, range, false );
+
+        IPacketSender sender = packet.sender();
+        Vec3 position = sender.getPosition();
+
+        // Gather candidates while holding the lock, but deliver without it - receivers may well modify the network.
+        List<IPacketReceiver> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try
+        {
+            candidates.addAll( interdimensional );
+            candidates.addAll( unindexed );
+
+            Dimension dimension = dimensions.get( sender.getLevel() );
+            if( dimension != null ) dimension.collect( position, Math.max( range, dimension.maxRange ), candidates );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        for( IPacketReceiver device : candidates ) tryTransmit( device, packet, range, false );
     }
 
     @Override
     public void transmitInterdimensional( @Nonnull Packet packet )
     {
         Objects.requireNonNull( packet, "packet cannot be null" );
-        for( IPacketReceiver device : receivers ) tryTransmit( device, packet, 0, true );
+        for( IPacketReceiver device : receivers.keySet() ) tryTransmit( device, packet, 0, true );
     }
 
     private static void tryTransmit( IPacketReceiver receiver, Packet packet, double range, boolean interdimensional )
@@ -87,4 +215,261 @@ public class WirelessNetwork implements IPacketNetwork
     {
         return true;
     }
+
+    /**
+     * Recompute the range of every receiver in any dimension whose weather has changed since the last update. This
+     * only visits each dimension, rather than each receiver, unless the weather changes.
+     */
+    private void update()
+    {
+        List<Level> changed = null;
+        lock.readLock().lock();
+        try
+        {
+            for( Map.Entry<Level, Dimension> entry : dimensions.entrySet() )
+            {
+                if( entry.getValue().stormy != isStormy( entry.getKey() ) )
+                {
+                    if( changed == null ) changed = new ArrayList<>();
+                    changed.add( entry.getKey() );
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        if( changed == null ) return;
+
+        lock.writeLock().lock();
+        try
+        {
+            for( Level level : changed )
+            {
+                Dimension dimension = dimensions.get( level );
+                if( dimension == null ) continue;
+
+                dimension.stormy = isStormy( level );
+
+                // Ranges may have shrunk, so recompute the maximum from scratch.
+                List<IPacketReceiver> members = new ArrayList<>( dimension.wide );
+                for( Set<IPacketReceiver> cell : dimension.cells.values() ) members.addAll( cell );
+                dimension.maxRange = 0;
+
+                for( IPacketReceiver receiver : members )
+                {
+                    Location existing = receivers.get( receiver );
+                    Location location = locate( receiver );
+                    receivers.put( receiver, location );
+                    unindex( receiver, existing );
+                    index( receiver, location );
+                }
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isStormy( Level level )
+    {
+        return level.isRaining() && level.isThundering();
+    }
+
+    private void index( IPacketReceiver receiver, Location location )
+    {
+        if( location.interdimensional )
+        {
+            interdimensional.add( receiver );
+        }
+        else if( !location.indexed )
+        {
+            unindexed.add( receiver );
+        }
+        else if( location.level != null )
+        {
+            Dimension dimension = dimensions.computeIfAbsent( location.level, Dimension::new );
+            dimension.add( receiver, location );
+            if( !location.wide ) dimension.maxRange = Math.max( dimension.maxRange, location.range );
+        }
+    }
+
+    private void unindex( IPacketReceiver receiver, Location location )
+    {
+        if( location.interdimensional )
+        {
+            interdimensional.remove( receiver );
+        }
+        else if( !location.indexed )
+        {
+            unindexed.remove( receiver );
+        }
+        else if( location.level != null )
+        {
+            Dimension dimension = dimensions.get( location.level );
+            if( dimension != null && dimension.remove( receiver, location ) ) dimensions.remove( location.level );
+        }
+    }
+
+    private static Location locate( IPacketReceiver receiver )
+    {
+        Level level = receiver.getLevel();
+        boolean isInterdimensional = receiver.isInterdimensional();
+        if( level == null || isInterdimensional ) return new Location( level, 0, isInterdimensional, false, true, 0 );
+
+        // Only our own modems tell us when they move, so anything else can't be put in the grid.
+        if( !(receiver instanceof WirelessModemPeripheral) ) return new Location( level, 0, false, false, false, 0 );
+
+        double range = receiver.getRange();
+        return new Location( level, cellOf( receiver.getPosition() ), false, range > MAX_GRID_RANGE, true, range );
+    }
+
+    private static int cellCoordinate( double coordinate )
+    {
+        return (int) Math.floor( coordinate / CELL_SIZE );
+    }
+
+    private static long cellKey( int x, int z )
+    {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    private static long cellOf( Vec3 position )
+    {
+        return cellKey( cellCoordinate( position.x ), cellCoordinate( position.z ) );
+    }
+
+    /**
+     * Where a receiver was when we last indexed it.
+     */
+    private static final class Location
+    {
+        final Level level;
+        final long cell;
+        final boolean interdimensional;
+        final boolean wide;
+
+        /**
+         * Whether this receiver is in the grid. If not, it is checked on every transmission.
+         */
+        final boolean indexed;
+
+        /**
+         * The receiver's range when it was indexed.
+         */
+        final double range;
+
+        Location( Level level, long cell, boolean interdimensional, boolean wide, boolean indexed, double range )
+        {
+            this.level = level;
+            this.cell = cell;
+            this.interdimensional = interdimensional;
+            this.wide = wide;
+            this.indexed = indexed;
+            this.range = range;
+        }
+
+        boolean matches( Location other )
+        {
+            return level == other.level && cell == other.cell && interdimensional == other.interdimensional
+                && wide == other.wide && indexed == other.indexed;
+        }
+    }
+
+    /**
+     * The receivers within a single dimension.
+     */
+    private static final class Dimension
+    {
+        final Long2ObjectMap<Set<IPacketReceiver>> cells = new Long2ObjectOpenHashMap<>();
+        final Set<IPacketReceiver> wide = new HashSet<>();
+
+        /**
+         * The largest range of any receiver in {@link #cells} when it was indexed. This may over-estimate the actual
+         * maximum, but never under-estimates it.
+         */
+        volatile double maxRange;
+
+        /**
+         * Whether this dimension was stormy when we last computed ranges.
+         */
+        boolean stormy;
+
+        Dimension( Level level )
+        {
+            stormy = isStormy( level );
+        }
+
+        void add( IPacketReceiver receiver, Location location )
+        {
+            if( location.wide )
+            {
+                wide.add( receiver );
+            }
+            else
+            {
+                cells.computeIfAbsent( location.cell, x -> new HashSet<>() ).add( receiver );
+            }
+        }
+
+        /**
+         * Remove a receiver from this dimension.
+         *
+         * @param receiver The receiver to remove.
+         * @param location The location the receiver was indexed at.
+         * @return Whether this dimension is now empty.
+         */
+        boolean remove( IPacketReceiver receiver, Location location )
+        {
+            if( location.wide )
+            {
+                wide.remove( receiver );
+            }
+            else
+            {
+                Set<IPacketReceiver> cell = cells.get( location.cell );
+                if( cell != null && cell.remove( receiver ) && cell.isEmpty() ) cells.remove( location.cell );
+            }
+
+            return wide.isEmpty() && cells.isEmpty();
+        }
+
+        /**
+         * Find all receivers which may be within {@code radius} blocks of a point.
+         *
+         * @param position The point to search around.
+         * @param radius   The distance to search.
+         * @param out      The list to add receivers to.
+         */
+        void collect( Vec3 position, double radius, List<IPacketReceiver> out )
+        {
+            out.addAll( wide );
+
+            int minX = cellCoordinate( position.x - radius ), maxX = cellCoordinate( position.x + radius );
+            int minZ = cellCoordinate( position.z - radius ), maxZ = cellCoordinate( position.z + radius );
+
+            // If we'd need to look at more cells than actually exist, just walk the populated ones instead.
+            if( (long) (maxX - minX + 1) * (maxZ - minZ + 1) > cells.size() )
+            {
+                for( Long2ObjectMap.Entry<Set<IPacketReceiver>> entry : cells.long2ObjectEntrySet() )
+                {
+                    long key = entry.getLongKey();
+                    int x = (int) (key >> 32), z = (int) key;
+                    if( x >= minX && x <= maxX && z >= minZ && z <= maxZ ) out.addAll( entry.getValue() );
+                }
+                return;
+            }
+
+            for( int x = minX; x <= maxX; x++ )
+            {
+                for( int z = minZ; z <= maxZ; z++ )
+                {
+                    Set<IPacketReceiver> cell = cells.get( cellKey( x, z ) );
+                    if( cell != null ) out.addAll( cell );
+                }
+            }
+        }
+    }
 }
@@ -13,6 +13,8 @@ import dan200.computercraft.api.peripheral.IPeripheralTile;
 import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.shared.common.ServerTerminal;
 import dan200.computercraft.shared.common.TileGeneric;
+import dan200.computercraft.shared.network.NetworkHandler;
+import dan200.computercraft.shared.network.client.MonitorClientMessage;
 import dan200.computercraft.shared.network.client.TerminalState;
 import dan200.computercraft.shared.util.TickScheduler;
 import net.minecraft.core.BlockPos;
@@ -167,7 +169,10 @@ public class TileMonitor extends TileGeneric implements IPeripheralTile
 
         if( serverMonitor.pollTerminalChanged() )
         {
-            updateBlock();
+            // Rather than resending the whole block entity (which is serialised separately for every player), encode
+            // the terminal once and share it with everyone tracking this monitor.
+            BlockPos pos = getBlockPos();
+            NetworkHandler.sendToAllTracking( new MonitorClientMessage( pos, serverMonitor.write() ), getLevel().getChunkAt( pos ) );
         }
     }
 
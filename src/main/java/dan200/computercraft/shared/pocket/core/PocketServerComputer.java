@@ -14,7 +14,6 @@ import dan200.computercraft.core.computer.ComputerSide;
 import dan200.computercraft.shared.common.IColouredItem;
 import dan200.computercraft.shared.computer.core.ComputerFamily;
 import dan200.computercraft.shared.computer.core.ServerComputer;
-import dan200.computercraft.shared.network.NetworkHandler;
 import dan200.computercraft.shared.pocket.items.ItemPocketComputer;
 import dan200.computercraft.shared.util.NBTUtil;
 import net.minecraft.nbt.CompoundTag;
@@ -193,18 +192,9 @@ public class PocketServerComputer extends ServerComputer implements IPocketAcces
     }
 
     @Override
-    public void broadcastState( boolean force )
+    protected boolean isWatchingTerminal( Player player )
     {
-        super.broadcastState( force );
-
-        if( (hasTerminalChanged() || force) && entity instanceof ServerPlayer )
-        {
-            // Broadcast the state to the current entity if they're not already interacting with it.
-            ServerPlayer player = (ServerPlayer) entity;
-            if( player.connection != null && !isInteracting( player ) )
-            {
-                NetworkHandler.sendToPlayer( player, createTerminalPacket() );
-            }
-        }
+        // The current entity needs the terminal to render it in their hand, even if they're not interacting with it.
+        return player == entity || super.isWatchingTerminal( player );
     }
 }
@@ -10,6 +10,7 @@ import com.google.common.base.Objects;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.ComputerCraftAPI;
 import dan200.computercraft.api.filesystem.IMount;
+import dan200.computercraft.api.filesystem.IWritableMount;
 import dan200.computercraft.api.media.IMedia;
 import dan200.computercraft.api.pocket.IPocketUpgrade;
 import dan200.computercraft.core.computer.ComputerSide;
@@ -327,6 +328,7 @@ public class ItemPocketComputer extends Item implements IComputerItem, IMedia, I
                 setComputerID( stack, computerID );
             }
             computer = new PocketServerComputer( world, computerID, getLabel( stack ), instanceID, getFamily() );
+            computer.setTemplate( getTemplate( stack ) );
             computer.updateValues( entity, stack, getUpgrade( stack ) );
             computer.addAPI( new PocketAPI( computer ) );
             ComputerCraft.serverComputerRegistry.add( instanceID, computer );
@@ -369,7 +371,8 @@ public class ItemPocketComputer extends Item implements IComputerItem, IMedia, I
     @Override
     public ItemStack withFamily( @Nonnull ItemStack stack, @Nonnull ComputerFamily family )
     {
-        return PocketComputerItemFactory.create( getComputerID( stack ), getLabel( stack ), getColour( stack ), family, getUpgrade( stack ) );
+        ItemStack result = PocketComputerItemFactory.create( getComputerID( stack ), getLabel( stack ), getColour( stack ), family, getUpgrade( stack ) );
+        return IComputerItem.setTemplate( result, getTemplate( stack ) );
     }
 
     @Override
@@ -430,7 +433,8 @@ public class ItemPocketComputer extends Item implements IComputerItem, IMedia, I
         int id = getComputerID( stack );
         if( id >= 0 )
         {
-            return ComputerCraftAPI.createSaveDirMount( world, "computer/" + id, ComputerCraft.computerSpaceLimit );
+            IWritableMount mount = ComputerCraftAPI.createSaveDirMount( world, "computer/" + id, ComputerCraft.computerSpaceLimit );
+            return ServerComputer.withTemplate( mount, getTemplate( stack ) );
         }
         return null;
     }
@@ -25,8 +25,11 @@ public class PocketModemPeripheral extends WirelessModemPeripheral
 
     void setLocation( Level world, Vec3 position )
     {
+        if( this.world == world && this.position.equals( position ) ) return;
+
         this.position = position;
         this.world = world;
+        updateLocation();
     }
 
     @Nonnull
@@ -11,7 +11,11 @@ import dan200.computercraft.api.ComputerCraftAPI;
 import dan200.computercraft.api.media.IMedia;
 import dan200.computercraft.api.peripheral.IPeripheralTile;
 import dan200.computercraft.api.turtle.event.TurtleEvent;
+import dan200.computercraft.core.apis.http.request.ConnectionPool;
 import dan200.computercraft.core.computer.MainThread;
+import dan200.computercraft.core.filesystem.FileMount;
+import dan200.computercraft.core.filesystem.TemplateMount;
+import dan200.computercraft.core.tracking.ComputerMBean;
 import dan200.computercraft.core.tracking.Tracking;
 import dan200.computercraft.shared.TurtlePermissions;
 import dan200.computercraft.shared.command.CommandComputerCraft;
@@ -35,6 +39,7 @@ import net.fabricmc.fabric.api.event.lifecycle.v1.ServerBlockEntityEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.player.PlayerBlockBreakEvents;
+import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.core.Registry;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
@@ -51,6 +56,10 @@ public final class ComputerCraftProxyCommon
     public static void init()
     {
         NetworkHandler.setup();
+        ComputerMBean.addAttribute(
+            "networkBytesSharedPerTick", "Bytes not re-encoded by sharing packets between players, during the last tick",
+            false, NetworkHandler::getBytesSharedLastTick
+        );
 
         registerProviders();
         registerHandlers();
@@ -99,6 +108,8 @@ public final class ComputerCraftProxyCommon
             MainThread.executePendingTasks();
             ComputerCraft.serverComputerRegistry.update();
             TickScheduler.tick();
+            WirelessNetwork.updateNetworks();
+            NetworkHandler.tick();
         } );
 
         ServerLifecycleEvents.SERVER_STARTED.register( server -> {
@@ -107,6 +118,15 @@ public final class ComputerCraftProxyCommon
             WirelessNetwork.resetNetworks();
             MainThread.reset();
             Tracking.reset();
+
+            // Only collect metrics if something will read them, so computers skip tracking entirely otherwise.
+            boolean export = !ComputerCraft.metricsFile.isEmpty();
+            if( ComputerCraft.metricsJmx ) ComputerMBean.register();
+            if( ComputerCraft.metricsJmx || export ) ComputerMBean.registerTracker();
+            if( export )
+            {
+                ComputerMBean.startExport( FabricLoader.getInstance().getGameDir().resolve( ComputerCraft.metricsFile ) );
+            }
         } );
 
         ServerLifecycleEvents.SERVER_STOPPING.register( server -> {
@@ -114,6 +134,10 @@ public final class ComputerCraftProxyCommon
             WirelessNetwork.resetNetworks();
             MainThread.reset();
             Tracking.reset();
+            ComputerMBean.stopExport();
+            ConnectionPool.closeAll();
+            FileMount.saveAllUsedSpace();
+            TemplateMount.reset();
             ComputerCraftProxyCommon.server = null;
         } );
 
@@ -135,6 +159,7 @@ public final class ComputerCraftProxyCommon
         // Config
         ServerLifecycleEvents.SERVER_STARTING.register( Config::serverStarting );
         ServerLifecycleEvents.SERVER_STOPPING.register( Config::serverStopping );
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register( ( server, resources, success ) -> Config.serverReload( server ) );
 
         TurtleEvent.EVENT_BUS.register( FurnaceRefuelHandler.INSTANCE );
         TurtleEvent.EVENT_BUS.register( new TurtlePermissions() );
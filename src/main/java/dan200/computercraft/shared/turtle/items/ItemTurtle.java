@@ -11,6 +11,7 @@ import dan200.computercraft.api.turtle.TurtleSide;
 import dan200.computercraft.shared.TurtleUpgrades;
 import dan200.computercraft.shared.common.IColouredItem;
 import dan200.computercraft.shared.computer.core.ComputerFamily;
+import dan200.computercraft.shared.computer.items.IComputerItem;
 import dan200.computercraft.shared.computer.items.ItemComputerBase;
 import dan200.computercraft.shared.turtle.blocks.BlockTurtle;
 import net.minecraft.core.NonNullList;
@@ -175,8 +176,9 @@ public class ItemTurtle extends ItemComputerBase implements ITurtleItem
     @Override
     public ItemStack withFamily( @Nonnull ItemStack stack, @Nonnull ComputerFamily family )
     {
-        return TurtleItemFactory.create( getComputerID( stack ), getLabel( stack ), getColour( stack ),
+        ItemStack result = TurtleItemFactory.create( getComputerID( stack ), getLabel( stack ), getColour( stack ),
             family, getUpgrade( stack, TurtleSide.LEFT ),
             getUpgrade( stack, TurtleSide.RIGHT ), getFuelLevel( stack ), getOverlay( stack ) );
+        return IComputerItem.setTemplate( result, getTemplate( stack ) );
     }
 }
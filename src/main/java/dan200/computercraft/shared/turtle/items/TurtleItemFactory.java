@@ -11,6 +11,7 @@ import dan200.computercraft.api.turtle.ITurtleUpgrade;
 import dan200.computercraft.api.turtle.TurtleSide;
 import dan200.computercraft.shared.ComputerCraftRegistry;
 import dan200.computercraft.shared.computer.core.ComputerFamily;
+import dan200.computercraft.shared.computer.items.IComputerItem;
 import dan200.computercraft.shared.turtle.blocks.ITurtleTile;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.ItemStack;
@@ -26,7 +27,7 @@ public final class TurtleItemFactory
     {
         ITurtleAccess access = turtle.getAccess();
 
-        return create( turtle.getComputerID(),
+        ItemStack stack = create( turtle.getComputerID(),
             turtle.getLabel(),
             turtle.getColour(),
             turtle.getFamily(),
@@ -34,6 +35,7 @@ public final class TurtleItemFactory
             access.getUpgrade( TurtleSide.RIGHT ),
             access.getFuelLevel(),
             turtle.getOverlay() );
+        return IComputerItem.setTemplate( stack, turtle.getTemplate() );
     }
 
     @Nonnull
@@ -50,6 +50,7 @@ public final class TurtleRecipe extends ComputerFamilyRecipe
         int computerID = item.getComputerID( stack );
         String label = item.getLabel( stack );
 
-        return TurtleItemFactory.create( computerID, label, -1, getFamily(), null, null, 0, null );
+        ItemStack result = TurtleItemFactory.create( computerID, label, -1, getFamily(), null, null, 0, null );
+        return IComputerItem.setTemplate( result, item.getTemplate( stack ) );
     }
 }
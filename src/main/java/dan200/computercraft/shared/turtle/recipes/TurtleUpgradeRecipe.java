@@ -10,6 +10,7 @@ import dan200.computercraft.api.turtle.ITurtleUpgrade;
 import dan200.computercraft.api.turtle.TurtleSide;
 import dan200.computercraft.shared.TurtleUpgrades;
 import dan200.computercraft.shared.computer.core.ComputerFamily;
+import dan200.computercraft.shared.computer.items.IComputerItem;
 import dan200.computercraft.shared.turtle.items.ITurtleItem;
 import dan200.computercraft.shared.turtle.items.TurtleItemFactory;
 import net.minecraft.resources.ResourceLocation;
@@ -172,7 +173,8 @@ public final class TurtleUpgradeRecipe extends CustomRecipe
         int fuelLevel = itemTurtle.getFuelLevel( turtle );
         int colour = itemTurtle.getColour( turtle );
         ResourceLocation overlay = itemTurtle.getOverlay( turtle );
-        return TurtleItemFactory.create( computerID, label, colour, family, upgrades[0], upgrades[1], fuelLevel, overlay );
+        ItemStack result = TurtleItemFactory.create( computerID, label, colour, family, upgrades[0], upgrades[1], fuelLevel, overlay );
+        return IComputerItem.setTemplate( result, itemTurtle.getTemplate( turtle ) );
     }
 
     @Override
@@ -105,6 +105,8 @@ public class TurtleModem extends AbstractTurtleUpgrade
             IPeripheral peripheral = turtle.getPeripheral( side );
             if( peripheral instanceof Peripheral )
             {
+                ((Peripheral) peripheral).updateLocation( turtle );
+
                 ModemState state = ((Peripheral) peripheral).getModemState();
                 if( state.pollChanged() )
                 {
@@ -120,25 +122,50 @@ public class TurtleModem extends AbstractTurtleUpgrade
     {
         private final ITurtleAccess turtle;
 
+        /**
+         * The turtle's location as of the last tick. The wireless network is told whenever this changes, so we report
+         * this rather than the turtle's current location.
+         */
+        private Level level;
+        private Vec3 position;
+
         Peripheral( ITurtleAccess turtle, boolean advanced )
         {
             super( new ModemState(), advanced );
             this.turtle = turtle;
+            level = turtle.getLevel();
+            position = positionOf( turtle );
+        }
+
+        private static Vec3 positionOf( ITurtleAccess turtle )
+        {
+            BlockPos turtlePos = turtle.getPosition();
+            return new Vec3( turtlePos.getX(), turtlePos.getY(), turtlePos.getZ() );
+        }
+
+        void updateLocation( ITurtleAccess turtle )
+        {
+            Level level = turtle.getLevel();
+            Vec3 position = positionOf( turtle );
+            if( this.level == level && this.position.equals( position ) ) return;
+
+            this.level = level;
+            this.position = position;
+            updateLocation();
         }
 
         @Nonnull
         @Override
         public Level getLevel()
         {
-            return turtle.getLevel();
+            return level;
         }
 
         @Nonnull
         @Override
         public Vec3 getPosition()
         {
-            BlockPos turtlePos = turtle.getPosition();
-            return new Vec3( turtlePos.getX(), turtlePos.getY(), turtlePos.getZ() );
+            return position;
         }
 
         @Override
@@ -13,8 +13,11 @@ import com.electronwill.nightconfig.core.file.FileNotFoundAction;
 import com.google.common.base.CaseFormat;
 import com.google.common.base.Converter;
 import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.apis.http.NetworkUtils;
 import dan200.computercraft.core.apis.http.options.Action;
 import dan200.computercraft.core.apis.http.options.AddressRuleConfig;
+import dan200.computercraft.core.computer.ComputerThread;
+import dan200.computercraft.core.filesystem.ContentCache;
 import dan200.computercraft.fabric.mixin.LevelResourceAccess;
 import dan200.computercraft.shared.peripheral.monitor.MonitorRenderer;
 import net.fabricmc.loader.FabricLoader;
@@ -34,6 +37,7 @@ import java.util.stream.Collectors;
 public final class Config
 {
     private static final int MODEM_MAX_RANGE = 100000;
+    private static final int FILE_WRITE_BUFFER_MAX = 1 << 20;
 
     public static final String TRANSLATION_PREFIX = "gui.computercraft.config.";
 
@@ -71,6 +75,36 @@ public final class Config
                 "Set how many files a computer can have open at the same time. Set to 0 for unlimited." );
             serverSpec.defineInRange( "maximum_open_files", ComputerCraft.maximumFilesOpen, 0, Integer.MAX_VALUE );
 
+            serverSpec.comment( "file_write_buffer",
+                "The size of the buffer used when writing to files on a computer or disk, in bytes. Small writes are " +
+                    "collected in this buffer and written to disk in the background. Each open file has its own " +
+                    "buffer, so this is limited to 1MiB. Set to 0 to disable buffering." );
+            serverSpec.defineInRange( "file_write_buffer", ComputerCraft.fileWriteBuffer, 0, FILE_WRITE_BUFFER_MAX );
+
+            serverSpec.comment( "file_write_budget",
+                "The maximum number of bytes a computer or disk may have buffered across all its open files. Once " +
+                    "this is exceeded, writes are flushed immediately." );
+            serverSpec.defineInRange( "file_write_budget", ComputerCraft.fileWriteBudget, 0, Integer.MAX_VALUE );
+
+            serverSpec.comment( "resource_cache_size",
+                "The maximum size of the cache of ROM and other read-only files, in bytes. This cache is shared " +
+                    "between all computers. Set to 0 to disable caching." );
+            serverSpec.defineInRange( "resource_cache_size", ComputerCraft.resourceCacheSize, 0, Integer.MAX_VALUE );
+
+            serverSpec.comment( "resource_cache_max_file_size",
+                "The largest read-only file which will be cached, in bytes. Larger files are read from disk each time." );
+            serverSpec.defineInRange( "resource_cache_max_file_size", ComputerCraft.resourceCacheMaxFileSize, 0, Integer.MAX_VALUE );
+
+            serverSpec.comment( "metrics_file",
+                "A file (relative to the game directory) to periodically write computer metrics to, in the Prometheus " +
+                    "text format. This includes task counts, timings and their percentiles. Leave empty to disable." );
+            serverSpec.define( "metrics_file", ComputerCraft.metricsFile );
+
+            serverSpec.comment( "metrics_jmx",
+                "Expose computer metrics over JMX, as the dan200.computercraft:type=Computers bean. Metrics are only " +
+                    "collected when this or metrics_file is enabled." );
+            serverSpec.define( "metrics_jmx", ComputerCraft.metricsJmx );
+
             serverSpec.comment( "disable_lua51_features",
                 "Set this to true to disable Lua 5.1 functions that will be removed in a future update. " +
                     "Useful for ensuring forward compatibility of your programs now." );
@@ -108,6 +142,16 @@ public final class Config
                     "Please note that some mods may not work with a thread count higher than 1. Use with caution." );
             serverSpec.defineInRange( "execution.computer_threads", ComputerCraft.computerThreads, 1, Integer.MAX_VALUE );
 
+            serverSpec.comment( "execution.adaptive_computer_threads",
+                "Grow and shrink the number of computer threads depending on how many computers are waiting to run.\n" +
+                    "When enabled, \"computer_threads\" is the minimum number of threads, and \"max_computer_threads\" " +
+                    "the maximum." );
+            serverSpec.define( "execution.adaptive_computer_threads", ComputerCraft.computerThreadsAdaptive );
+
+            serverSpec.comment( "execution.max_computer_threads",
+                "The maximum number of threads computers can run on when \"adaptive_computer_threads\" is enabled." );
+            serverSpec.defineInRange( "execution.max_computer_threads", ComputerCraft.maxComputerThreads, 1, Integer.MAX_VALUE );
+
             serverSpec.comment( "execution.max_main_global_time",
                 "The maximum time that can be spent executing tasks in a single tick, in milliseconds.\n" +
                     "Note, we will quite possibly go over this limit, as there's no way to tell how long a will take " +
@@ -149,6 +193,31 @@ public final class Config
             serverSpec.comment( "http.max_websockets",
                 "The number of websockets a computer can have open at one time. Set to 0 for unlimited." );
             serverSpec.defineInRange( "http.max_websockets", ComputerCraft.httpMaxWebsockets, 1, Integer.MAX_VALUE );
+
+            serverSpec.comment( "http.max_idle_connections",
+                "The number of idle connections to keep open to each host, allowing later requests to the same host to " +
+                    "skip connecting. Idle connections are closed after 30 seconds. Set to 0 to disable connection reuse." );
+            serverSpec.defineInRange( "http.max_idle_connections", ComputerCraft.httpMaxIdleConnections, 0, Integer.MAX_VALUE );
+
+            serverSpec.comment( "http.bandwidth",
+                "Limits bandwidth used by computers. Each computer with an open connection gets an equal share of the " +
+                    "global limit, capped by the per-computer limit." );
+
+            serverSpec.comment( "http.bandwidth.global_download",
+                "The number of bytes which can be downloaded in a second, shared across all computers. Set to 0 for unlimited." );
+            serverSpec.defineInRange( "http.bandwidth.global_download", ComputerCraft.httpDownloadBandwidth, 0, Integer.MAX_VALUE );
+
+            serverSpec.comment( "http.bandwidth.global_upload",
+                "The number of bytes which can be uploaded in a second, shared across all computers. Set to 0 for unlimited." );
+            serverSpec.defineInRange( "http.bandwidth.global_upload", ComputerCraft.httpUploadBandwidth, 0, Integer.MAX_VALUE );
+
+            serverSpec.comment( "http.bandwidth.computer_download",
+                "The number of bytes a single computer can download in a second. Set to 0 to only limit computers to their share of the global limit." );
+            serverSpec.defineInRange( "http.bandwidth.computer_download", ComputerCraft.httpComputerDownloadBandwidth, 0, Integer.MAX_VALUE );
+
+            serverSpec.comment( "http.bandwidth.computer_upload",
+                "The number of bytes a single computer can upload in a second. Set to 0 to only limit computers to their share of the global limit." );
+            serverSpec.defineInRange( "http.bandwidth.computer_upload", ComputerCraft.httpComputerUploadBandwidth, 0, Integer.MAX_VALUE );
         }
 
         { // Peripherals
@@ -282,7 +351,21 @@ public final class Config
     public static void serverStarting( MinecraftServer server )
     {
         serverPath = server.getWorldPath( serverDir ).resolve( serverFileName );
+        loadServerConfig();
+    }
 
+    /**
+     * Reload the server config from disk, such as after running {@code /reload}.
+     *
+     * @param server The current server.
+     */
+    public static void serverReload( MinecraftServer server )
+    {
+        if( serverPath != null ) loadServerConfig();
+    }
+
+    private static void loadServerConfig()
+    {
         try( CommentedFileConfig config = buildFileConfig( serverPath ) )
         {
             config.load();
@@ -335,6 +418,12 @@ public final class Config
             ComputerCraft.computerSpaceLimit = serverConfig.<Integer>get( "computer_space_limit" );
             ComputerCraft.floppySpaceLimit = serverConfig.<Integer>get( "floppy_space_limit" );
             ComputerCraft.maximumFilesOpen = serverConfig.<Integer>get( "maximum_open_files" );
+            ComputerCraft.fileWriteBuffer = serverConfig.<Integer>get( "file_write_buffer" );
+            ComputerCraft.fileWriteBudget = serverConfig.<Integer>get( "file_write_budget" );
+            ComputerCraft.resourceCacheSize = serverConfig.<Integer>get( "resource_cache_size" );
+            ComputerCraft.resourceCacheMaxFileSize = serverConfig.<Integer>get( "resource_cache_max_file_size" );
+            ComputerCraft.metricsFile = serverConfig.<String>get( "metrics_file" );
+            ComputerCraft.metricsJmx = serverConfig.<Boolean>get( "metrics_jmx" );
             ComputerCraft.disableLua51Features = serverConfig.<Boolean>get( "disable_lua51_features" );
             ComputerCraft.defaultComputerSettings = serverConfig.<String>get( "default_computer_settings" );
             ComputerCraft.debugEnable = serverConfig.<Boolean>get( "debug_enabled" );
@@ -343,6 +432,8 @@ public final class Config
 
             // Execution
             ComputerCraft.computerThreads = serverConfig.<Integer>get( "execution.computer_threads" );
+            ComputerCraft.computerThreadsAdaptive = serverConfig.<Boolean>get( "execution.adaptive_computer_threads" );
+            ComputerCraft.maxComputerThreads = serverConfig.<Integer>get( "execution.max_computer_threads" );
             ComputerCraft.maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( serverConfig.<Integer>get( "execution.max_main_global_time" ) );
             ComputerCraft.maxMainComputerTime = TimeUnit.MILLISECONDS.toNanos( serverConfig.<Integer>get( "execution.max_main_computer_time" ) );
 
@@ -353,6 +444,11 @@ public final class Config
                 .filter( Objects::nonNull ).collect( Collectors.toList() );
             ComputerCraft.httpMaxRequests = serverConfig.<Integer>get( "http.max_requests" );
             ComputerCraft.httpMaxWebsockets = serverConfig.<Integer>get( "http.max_websockets" );
+            ComputerCraft.httpMaxIdleConnections = serverConfig.<Integer>get( "http.max_idle_connections" );
+            ComputerCraft.httpDownloadBandwidth = serverConfig.<Integer>get( "http.bandwidth.global_download" );
+            ComputerCraft.httpUploadBandwidth = serverConfig.<Integer>get( "http.bandwidth.global_upload" );
+            ComputerCraft.httpComputerDownloadBandwidth = serverConfig.<Integer>get( "http.bandwidth.computer_download" );
+            ComputerCraft.httpComputerUploadBandwidth = serverConfig.<Integer>get( "http.bandwidth.computer_upload" );
 
             // Peripherals
             ComputerCraft.enableCommandBlock = serverConfig.<Boolean>get( "peripheral.command_block_enabled" );
@@ -377,6 +473,10 @@ public final class Config
             ComputerCraft.pocketTermHeight = serverConfig.<Integer>get( "term_sizes.pocket_computer.height" );
             ComputerCraft.monitorWidth = serverConfig.<Integer>get( "term_sizes.monitor.width" );
             ComputerCraft.monitorHeight = serverConfig.<Integer>get( "term_sizes.monitor.height" );
+
+            ComputerThread.resize();
+            ContentCache.configure();
+            NetworkUtils.reloadConfig();
         }
 
         // Client
@@ -15,15 +15,28 @@ import net.minecraft.world.phys.Vec3;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public final class WiredNetwork implements IWiredNetwork
 {
+    /**
+     * The maximum number of sending nodes we cache {@link Routes} for. Beyond this, the cache is emptied.
+     */
+    private static final int MAX_CACHED_ROUTES = 256;
+
     final ReadWriteLock lock = new ReentrantReadWriteLock();
     HashSet<WiredNode> nodes;
     private HashMap<String, IPeripheral> peripherals = new HashMap<>();
 
+    /**
+     * The shortest paths from a node to every other node in the network. This is populated by
+     * {@link #transmitPacket(WiredNode, Packet, double, boolean)} while holding the read lock, and cleared whenever the
+     * network's structure changes (while holding the write lock).
+     */
+    private final Map<WiredNode, Routes> routes = new ConcurrentHashMap<>();
+
     WiredNetwork( WiredNode node )
     {
         nodes = new HashSet<>( 1 );
@@ -92,6 +105,7 @@ public final class WiredNetwork implements IWiredNetwork
 
             boolean added = wiredU.neighbours.add( wiredV );
             if( added ) wiredV.neighbours.add( wiredU );
+            if( added || !hasU || !hasV ) routes.clear();
 
             InvariantChecker.checkNetwork( this );
             InvariantChecker.checkNode( wiredU );
@@ -122,64 +136,20 @@ public final class WiredNetwork implements IWiredNetwork
             // If there was no connection to remove then split.
             if( !wiredU.neighbours.remove( wiredV ) ) return false;
             wiredV.neighbours.remove( wiredU );
+            routes.clear();
 
-            // Determine if there is still some connection from u to v.
-            // Note this is an inlining of reachableNodes which short-circuits
-            // if all nodes are reachable.
-            Queue<WiredNode> enqueued = new ArrayDeque<>();
-            HashSet<WiredNode> reachableU = new HashSet<>();
-
-            reachableU.add( wiredU );
-            enqueued.add( wiredU );
-
-            while( !enqueued.isEmpty() )
+            // Determine if there is still some connection from u to v. If not, move whichever side is smaller into a
+            // new network.
+            for( HashSet<WiredNode> component : findSplitComponents( Arrays.asList( wiredU, wiredV ) ) )
             {
-                WiredNode node = enqueued.remove();
-                for( WiredNode neighbour : node.neighbours )
-                {
-                    // If we can reach wiredV from wiredU then abort.
-                    if( neighbour == wiredV ) return true;
-
-                    // Otherwise attempt to enqueue this neighbour as well.
-                    if( reachableU.add( neighbour ) ) enqueued.add( neighbour );
-                }
+                splitOff( component );
             }
 
-            // Create a new network with all U-reachable nodes/edges and remove them
-            // from the existing graph.
-            WiredNetwork networkU = new WiredNetwork( reachableU );
-            networkU.lock.writeLock().lock();
-            try
-            {
-                // Remove nodes from this network
-                nodes.removeAll( reachableU );
-
-                // Set network and transfer peripherals
-                for( WiredNode node : reachableU )
-                {
-                    node.network = networkU;
-                    networkU.peripherals.putAll( node.peripherals );
-                    peripherals.keySet().removeAll( node.peripherals.keySet() );
-                }
-
-                // Broadcast changes
-                if( !peripherals.isEmpty() ) WiredNetworkChange.removed( peripherals ).broadcast( networkU.nodes );
-                if( !networkU.peripherals.isEmpty() )
-                {
-                    WiredNetworkChange.removed( networkU.peripherals ).broadcast( nodes );
-                }
-
-                InvariantChecker.checkNetwork( this );
-                InvariantChecker.checkNetwork( networkU );
-                InvariantChecker.checkNode( wiredU );
-                InvariantChecker.checkNode( wiredV );
+            InvariantChecker.checkNetwork( this );
+            InvariantChecker.checkNode( wiredU );
+            InvariantChecker.checkNode( wiredV );
 
-                return true;
-            }
-            finally
-            {
-                networkU.lock.writeLock().unlock();
-            }
+            return true;
         }
         finally
         {
@@ -200,85 +170,27 @@ public final class WiredNetwork implements IWiredNetwork
             if( nodes.size() <= 1 ) return false;
             if( wired.network != this ) return false;
 
-            HashSet<WiredNode> neighbours = wired.neighbours;
+            List<WiredNode> neighbours = new ArrayList<>( wired.neighbours );
 
             // Remove this node and move into a separate network.
+            routes.clear();
             nodes.remove( wired );
             for( WiredNode neighbour : neighbours ) neighbour.neighbours.remove( wired );
 
             WiredNetwork wiredNetwork = new WiredNetwork( wired );
+            removeSingleNode( wired, wiredNetwork );
 
-            // If we're a leaf node in the graph (only one neighbour) then we don't need to
-            // check for network splitting
-            if( neighbours.size() == 1 )
-            {
-                // Broadcast our simple peripheral changes
-                removeSingleNode( wired, wiredNetwork );
-                InvariantChecker.checkNode( wired );
-                InvariantChecker.checkNetwork( wiredNetwork );
-                return true;
-            }
-
-            HashSet<WiredNode> reachable = reachableNodes( neighbours.iterator().next() );
-
-            // If all nodes are reachable then exit.
-            if( reachable.size() == nodes.size() )
+            // If we were a leaf node in the graph (only one neighbour) then we don't need to check for network
+            // splitting. Otherwise, a split may produce up to neighbours.size() separate networks. The largest one
+            // remains as this network, and the rest are moved out.
+            if( neighbours.size() > 1 )
             {
-                // Broadcast our simple peripheral changes
-                removeSingleNode( wired, wiredNetwork );
-                InvariantChecker.checkNode( wired );
-                InvariantChecker.checkNetwork( wiredNetwork );
-                return true;
+                for( HashSet<WiredNode> component : findSplitComponents( neighbours ) ) splitOff( component );
             }
 
-            // A split may cause 2..neighbours.size() separate networks, so we
-            // iterate through our neighbour list, generating child networks.
-            neighbours.removeAll( reachable );
-            ArrayList<WiredNetwork> maximals = new ArrayList<>( neighbours.size() + 1 );
-            maximals.add( wiredNetwork );
-            maximals.add( new WiredNetwork( reachable ) );
-
-            while( !neighbours.isEmpty() )
-            {
-                reachable = reachableNodes( neighbours.iterator().next() );
-                neighbours.removeAll( reachable );
-                maximals.add( new WiredNetwork( reachable ) );
-            }
-
-            for( WiredNetwork network : maximals ) network.lock.writeLock().lock();
-
-            try
-            {
-                // We special case the original node: detaching all peripherals when needed.
-                wired.network = wiredNetwork;
-                wired.peripherals = Collections.emptyMap();
-
-                // Ensure every network is finalised
-                for( WiredNetwork network : maximals )
-                {
-                    for( WiredNode child : network.nodes )
-                    {
-                        child.network = network;
-                        network.peripherals.putAll( child.peripherals );
-                    }
-                }
-
-                for( WiredNetwork network : maximals ) InvariantChecker.checkNetwork( network );
-                InvariantChecker.checkNode( wired );
-
-                // Then broadcast network changes once all nodes are finalised
-                for( WiredNetwork network : maximals )
-                {
-                    WiredNetworkChange.changeOf( peripherals, network.peripherals ).broadcast( network.nodes );
-                }
-            }
-            finally
-            {
-                for( WiredNetwork network : maximals ) network.lock.writeLock().unlock();
-            }
-
-            nodes.clear();
-            peripherals.clear();
+            InvariantChecker.checkNode( wired );
+            InvariantChecker.checkNetwork( wiredNetwork );
+            InvariantChecker.checkNetwork( this );
 
             return true;
         }
@@ -320,14 +232,62 @@ public final class WiredNetwork implements IWiredNetwork
     }
 
     static void transmitPacket( WiredNode start, Packet packet, double range, boolean interdimensional )
+    {
+        if( start.element.getLevel() != packet.sender().getLevel() )
+        {
+            // This should never happen, as nodes should be in the same place as their sender. Don't bother caching it.
+            for( TransmitPoint point : computeRoutes( start, Double.POSITIVE_INFINITY, true ) )
+            {
+                point.node.tryTransmit( packet, point.distance, point.interdimensional, range, interdimensional );
+            }
+            return;
+        }
+
+        // Our routes are relative to the starting node, so offset them by the sender's distance from it.
+        double startDistance = start.element.getPosition().distanceTo( packet.sender().getPosition() );
+        Routes routes = start.network.getRoutes( start );
+        for( int i = 0; i < routes.nodes.length; i++ )
+        {
+            routes.nodes[i].tryTransmit( packet, startDistance + routes.distances[i], routes.interdimensional[i], range, interdimensional );
+        }
+    }
+
+    /**
+     * Get the shortest paths from a node to every other node in the network, computing them if needed.
+     *
+     * This must be called while holding the read lock.
+     *
+     * @param start The node to compute routes from.
+     * @return The routes from this node.
+     */
+    private Routes getRoutes( WiredNode start )
+    {
+        Routes existing = routes.get( start );
+        if( existing != null ) return existing;
+
+        Collection<TransmitPoint> points = computeRoutes( start, 0, false );
+        Routes computed = new Routes( points );
+
+        if( routes.size() >= MAX_CACHED_ROUTES ) routes.clear();
+        routes.put( start, computed );
+        return computed;
+    }
+
+    /**
+     * Find the shortest path from a node to every other node using Dijkstra's algorithm.
+     *
+     * @param start                 The node to start from.
+     * @param startDistance         The distance the packet has travelled before reaching this node.
+     * @param startInterdimensional Whether the packet had to travel across dimensions to reach this node.
+     * @return The distance to each node.
+     */
+    private static Collection<TransmitPoint> computeRoutes( WiredNode start, double startDistance, boolean startInterdimensional )
     {
         Map<WiredNode, TransmitPoint> points = new HashMap<>();
         TreeSet<TransmitPoint> transmitTo = new TreeSet<>();
 
         {
-            TransmitPoint startEntry = start.element.getLevel() != packet.sender().getLevel()
-                ? new TransmitPoint( start, Double.POSITIVE_INFINITY, true )
-                : new TransmitPoint( start, start.element.getPosition().distanceTo( packet.sender().getPosition() ), false );
+            TransmitPoint startEntry = new TransmitPoint( start, startDistance, startInterdimensional );
             points.put( start, startEntry );
             transmitTo.add( startEntry );
         }
@@ -372,10 +332,7 @@ public final class WiredNetwork implements IWiredNetwork
             }
         }
 
-        for( TransmitPoint point : points.values() )
-        {
-            point.node.tryTransmit( packet, point.distance, point.interdimensional, range, interdimensional );
-        }
+        return points.values();
     }
 
     private void removeSingleNode( WiredNode wired, WiredNetwork wiredNetwork )
@@ -406,6 +363,195 @@ public final class WiredNetwork implements IWiredNetwork
         }
     }
 
+    /**
+     * Move a component which is no longer connected to the rest of this network into a new network.
+     *
+     * @param component The nodes to move. These must no longer have any connection to the remaining nodes.
+     */
+    private void splitOff( HashSet<WiredNode> component )
+    {
+        WiredNetwork network = new WiredNetwork( component );
+        network.lock.writeLock().lock();
+        try
+        {
+            // Set network and transfer peripherals
+            for( WiredNode node : component )
+            {
+                nodes.remove( node );
+                node.network = network;
+                network.peripherals.putAll( node.peripherals );
+                peripherals.keySet().removeAll( node.peripherals.keySet() );
+            }
+
+            // Broadcast changes
+            if( !peripherals.isEmpty() ) WiredNetworkChange.removed( peripherals ).broadcast( network.nodes );
+            if( !network.peripherals.isEmpty() ) WiredNetworkChange.removed( network.peripherals ).broadcast( nodes );
+
+            InvariantChecker.checkNetwork( network );
+        }
+        finally
+        {
+            network.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find which of the given nodes are no longer connected to each other, after an edge or node has been removed.
+     *
+     * We run a breadth-first search from every node in lock-step, merging searches when they meet. We can stop as soon
+     * as every search has met, or once all but one group of searches has run out of nodes to visit. This means the cost
+     * is proportional to the size of the components which are split off (or the size of the loop which keeps them
+     * connected), rather than the size of the whole network.
+     *
+     * @param starts The nodes to search from.
+     * @return The components which are no longer connected to the rest of the network. The largest component is not
+     * included, and should remain in the original network.
+     */
+    private static List<HashSet<WiredNode>> findSplitComponents( List<WiredNode> starts )
+    {
+        int count = starts.size();
+
+        // The search which first visited each node, and a union-find structure of which searches have met.
+        Map<WiredNode, Integer> owners = new HashMap<>();
+        int[] groups = new int[count];
+        List<Queue<WiredNode>> queues = new ArrayList<>( count );
+        int remaining = count;
+
+        for( int i = 0; i < count; i++ )
+        {
+            groups[i] = i;
+            queues.add( new ArrayDeque<>() );
+
+            WiredNode start = starts.get( i );
+            Integer owner = owners.putIfAbsent( start, i );
+            if( owner == null )
+            {
+                queues.get( i ).add( start );
+            }
+            else if( union( groups, owner, i ) )
+            {
+                remaining--;
+            }
+        }
+
+        while( true )
+        {
+            // All searches have met, so everything is still connected.
+            if( remaining <= 1 ) return Collections.emptyList();
+
+            int active = -1;
+            boolean multipleActive = false;
+            for( int i = 0; i < count; i++ )
+            {
+                if( queues.get( i ).isEmpty() ) continue;
+                int group = find( groups, i );
+                if( active == -1 )
+                {
+                    active = group;
+                }
+                else if( active != group )
+                {
+                    multipleActive = true;
+                    break;
+                }
+            }
+
+            // At most one group is still searching: every other group has visited its entire component.
+            if( !multipleActive ) return collectComponents( owners, groups, active );
+
+            for( int i = 0; i < count; i++ )
+            {
+                Queue<WiredNode> queue = queues.get( i );
+                WiredNode node = queue.poll();
+                if( node == null ) continue;
+
+                for( WiredNode neighbour : node.neighbours )
+                {
+                    Integer owner = owners.putIfAbsent( neighbour, i );
+                    if( owner == null )
+                    {
+                        queue.add( neighbour );
+                    }
+                    else if( union( groups, owner, i ) )
+                    {
+                        remaining--;
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<HashSet<WiredNode>> collectComponents( Map<WiredNode, Integer> owners, int[] groups, int active )
+    {
+        Map<Integer, HashSet<WiredNode>> components = new HashMap<>();
+        for( Map.Entry<WiredNode, Integer> entry : owners.entrySet() )
+        {
+            int group = find( groups, entry.getValue() );
+            if( group != active ) components.computeIfAbsent( group, x -> new HashSet<>() ).add( entry.getKey() );
+        }
+
+        List<HashSet<WiredNode>> result = new ArrayList<>( components.values() );
+
+        // If every search finished, keep the largest component in the original network.
+        if( active == -1 && !result.isEmpty() )
+        {
+            int largest = 0;
+            for( int i = 1; i < result.size(); i++ )
+            {
+                if( result.get( i ).size() > result.get( largest ).size() ) largest = i;
+            }
+            result.remove( largest );
+        }
+
+        return result;
+    }
+
+    private static int find( int[] groups, int index )
+    {
+        while( groups[index] != index )
+        {
+            groups[index] = groups[groups[index]];
+            index = groups[index];
+        }
+        return index;
+    }
+
+    private static boolean union( int[] groups, int a, int b )
+    {
+        int rootA = find( groups, a ), rootB = find( groups, b );
+        if( rootA == rootB ) return false;
+        groups[rootB] = rootA;
+        return true;
+    }
+
+    /**
+     * The distance from a single node to every node in the network, stored as parallel arrays to keep iteration
+     * cheap.
+     */
+    private static final class Routes
+    {
+        final WiredNode[] nodes;
+        final double[] distances;
+        final boolean[] interdimensional;
+
+        Routes( Collection<TransmitPoint> points )
+        {
+            int size = points.size();
+            nodes = new WiredNode[size];
+            distances = new double[size];
+            interdimensional = new boolean[size];
+
+            int i = 0;
+            for( TransmitPoint point : points )
+            {
+                nodes[i] = point.node;
+                distances[i] = point.distance;
+                interdimensional[i] = point.interdimensional;
+                i++;
+            }
+        }
+    }
+
     private static class TransmitPoint implements Comparable<TransmitPoint>
     {
         final WiredNode node;
@@ -440,25 +586,4 @@ public final class WiredNetwork implements IWiredNetwork
             throw new IllegalArgumentException( "Unknown implementation of IWiredNode: " + node );
         }
     }
-
-    private static HashSet<WiredNode> reachableNodes( WiredNode start )
-    {
-        Queue<WiredNode> enqueued = new ArrayDeque<>();
-        HashSet<WiredNode> reachable = new HashSet<>();
-
-        reachable.add( start );
-        enqueued.add( start );
-
-        WiredNode node;
-        while( (node = enqueued.poll()) != null )
-        {
-            for( WiredNode neighbour : node.neighbours )
-            {
-                // Otherwise attempt to enqueue this neighbour as well.
-                if( reachable.add( neighbour ) ) enqueued.add( neighbour );
-            }
-        }
-
-        return reachable;
-    }
 }
@@ -612,6 +612,7 @@ if http then
         checkKey(options, "headers", "table", true)
         checkKey(options, "method", "string", true)
         checkKey(options, "redirect", "boolean", true)
+        checkKey(options, "stream", "boolean", true)
 
         if options.method and not methods[options.method] then
             error("Unsupported HTTP method", 3)
@@ -691,20 +692,33 @@ if http then
         end
     end
 
+    local function checkWebsocketOptions(options)
+        checkKey(options, "url", "string")
+        checkKey(options, "headers", "table", true)
+        checkKey(options, "buffered", "boolean", true)
+    end
+
     local nativeWebsocket = http.websocket
     http.websocketAsync = nativeWebsocket
     http.websocket = function(_url, _headers)
-        expect(1, _url, "string")
-        expect(2, _headers, "table", "nil")
+        local url
+        if type(_url) == "table" then
+            checkWebsocketOptions(_url)
+            url = _url.url
+        else
+            expect(1, _url, "string")
+            expect(2, _headers, "table", "nil")
+            url = _url
+        end
 
         local ok, err = nativeWebsocket(_url, _headers)
         if not ok then return ok, err end
 
         while true do
-            local event, url, param = os.pullEvent( )
-            if event == "websocket_success" and url == _url then
+            local event, event_url, param = os.pullEvent( )
+            if event == "websocket_success" and event_url == url then
                 return param
-            elseif event == "websocket_failure" and url == _url then
+            elseif event == "websocket_failure" and event_url == url then
                 return false, param
             end
         end
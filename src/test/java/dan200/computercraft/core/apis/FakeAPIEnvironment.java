@@ -0,0 +1,183 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis;
+
+import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.api.peripheral.IWorkMonitor;
+import dan200.computercraft.core.computer.ComputerSide;
+import dan200.computercraft.core.computer.IComputerEnvironment;
+import dan200.computercraft.core.filesystem.FileSystem;
+import dan200.computercraft.core.terminal.Terminal;
+import dan200.computercraft.core.tracking.TrackingField;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An {@link IAPIEnvironment} for testing APIs without a computer. Queued events are recorded in {@link #events}, and
+ * tracking is ignored. Anything else a computer would provide is unsupported.
+ */
+public class FakeAPIEnvironment implements IAPIEnvironment
+{
+    /**
+     * Every event which has been queued, with the event name as the first element.
+     */
+    public final BlockingQueue<Object[]> events = new LinkedBlockingQueue<>();
+
+    @Nullable
+    private final FileSystem fileSystem;
+
+    public FakeAPIEnvironment()
+    {
+        this( null );
+    }
+
+    public FakeAPIEnvironment( @Nullable FileSystem fileSystem )
+    {
+        this.fileSystem = fileSystem;
+    }
+
+    @Override
+    public void queueEvent( String event, Object... args )
+    {
+        Object[] contents = new Object[args.length + 1];
+        contents[0] = event;
+        System.arraycopy( args, 0, contents, 1, args.length );
+        events.add( contents );
+    }
+
+    @Override
+    public FileSystem getFileSystem()
+    {
+        if( fileSystem == null ) throw new UnsupportedOperationException( "getFileSystem" );
+        return fileSystem;
+    }
+
+    @Override
+    public void addTrackingChange( @Nonnull TrackingField field, long change )
+    {
+    }
+
+    @Override
+    public void addTrackingTiming( @Nonnull TrackingField field, long time )
+    {
+    }
+
+    @Override
+    public int getComputerID()
+    {
+        return 0;
+    }
+
+    @Nonnull
+    @Override
+    public IComputerEnvironment getComputerEnvironment()
+    {
+        throw new UnsupportedOperationException( "getComputerEnvironment" );
+    }
+
+    @Nonnull
+    @Override
+    public IWorkMonitor getMainThreadMonitor()
+    {
+        throw new UnsupportedOperationException( "getMainThreadMonitor" );
+    }
+
+    @Nonnull
+    @Override
+    public Terminal getTerminal()
+    {
+        throw new UnsupportedOperationException( "getTerminal" );
+    }
+
+    @Override
+    public void shutdown()
+    {
+        throw new UnsupportedOperationException( "shutdown" );
+    }
+
+    @Override
+    public void reboot()
+    {
+        throw new UnsupportedOperationException( "reboot" );
+    }
+
+    @Override
+    public void setOutput( ComputerSide side, int output )
+    {
+        throw new UnsupportedOperationException( "setOutput" );
+    }
+
+    @Override
+    public int getOutput( ComputerSide side )
+    {
+        throw new UnsupportedOperationException( "getOutput" );
+    }
+
+    @Override
+    public int getInput( ComputerSide side )
+    {
+        throw new UnsupportedOperationException( "getInput" );
+    }
+
+    @Override
+    public void setBundledOutput( ComputerSide side, int output )
+    {
+        throw new UnsupportedOperationException( "setBundledOutput" );
+    }
+
+    @Override
+    public int getBundledOutput( ComputerSide side )
+    {
+        throw new UnsupportedOperationException( "getBundledOutput" );
+    }
+
+    @Override
+    public int getBundledInput( ComputerSide side )
+    {
+        throw new UnsupportedOperationException( "getBundledInput" );
+    }
+
+    @Override
+    public void setPeripheralChangeListener( @Nullable IPeripheralChangeListener listener )
+    {
+        throw new UnsupportedOperationException( "setPeripheralChangeListener" );
+    }
+
+    @Nullable
+    @Override
+    public IPeripheral getPeripheral( ComputerSide side )
+    {
+        throw new UnsupportedOperationException( "getPeripheral" );
+    }
+
+    @Nullable
+    @Override
+    public String getLabel()
+    {
+        throw new UnsupportedOperationException( "getLabel" );
+    }
+
+    @Override
+    public void setLabel( @Nullable String label )
+    {
+        throw new UnsupportedOperationException( "setLabel" );
+    }
+
+    @Override
+    public int startTimer( long ticks )
+    {
+        throw new UnsupportedOperationException( "startTimer" );
+    }
+
+    @Override
+    public void cancelTimer( int id )
+    {
+        throw new UnsupportedOperationException( "cancelTimer" );
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.handles;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.lua.OwnedByteArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class BinaryReadableHandleTest
+{
+    @TempDir
+    Path root;
+
+    @Test
+    public void testReadLargeFile() throws IOException, LuaException
+    {
+        byte[] contents = randomBytes( 3 << 20 );
+        Path file = root.resolve( "large.bin" );
+        Files.write( file, contents );
+
+        BinaryReadableHandle handle = BinaryReadableHandle.of( FileChannel.open( file, StandardOpenOption.READ ) );
+        assertArrayEquals( Arrays.copyOf( contents, 2 << 20 ), bytes( handle.read( Optional.of( 2 << 20 ) ) ) );
+        assertArrayEquals( Arrays.copyOfRange( contents, 2 << 20, contents.length ), bytes( handle.readAll() ) );
+        assertNull( handle.readAll() );
+        handle.close();
+    }
+
+    /**
+     * Reading a file which is truncated after being opened should return what is left, rather than failing.
+     *
+     * @throws IOException  If the file could not be accessed.
+     * @throws LuaException If the handle could not be read.
+     */
+    @Test
+    public void testReadTruncatedFile() throws IOException, LuaException
+    {
+        byte[] contents = randomBytes( 2 << 20 );
+        Path file = root.resolve( "truncated.bin" );
+        Files.write( file, contents );
+
+        BinaryReadableHandle handle = BinaryReadableHandle.of( FileChannel.open( file, StandardOpenOption.READ ) );
+        assertEquals( 1, bytes( handle.read( Optional.of( 1 ) ) ).length );
+
+        // Truncate the file while the handle is open.
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.WRITE ) )
+        {
+            channel.truncate( 1 << 20 );
+        }
+
+        assertArrayEquals( Arrays.copyOfRange( contents, 1, 1 << 20 ), bytes( handle.read( Optional.of( 2 << 20 ) ) ) );
+        assertNull( handle.read( Optional.of( 2 << 20 ) ) );
+        handle.close();
+    }
+
+    private static byte[] randomBytes( int length )
+    {
+        byte[] bytes = new byte[length];
+        new Random( length ).nextBytes( bytes );
+        return bytes;
+    }
+
+    private static byte[] bytes( Object[] result )
+    {
+        assertNotNull( result );
+        assertEquals( 1, result.length );
+
+        Object value = result[0];
+        if( value instanceof OwnedByteArray owned ) return owned.getBytes();
+        if( value instanceof byte[] array ) return array;
+        if( value instanceof ByteBuffer buffer )
+        {
+            byte[] array = new byte[buffer.remaining()];
+            buffer.get( array );
+            return array;
+        }
+        throw new IllegalStateException( "Unexpected result " + value );
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.apis.http.options.Action;
+import dan200.computercraft.core.apis.http.options.AddressRule;
+import dan200.computercraft.core.apis.http.options.Options;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AddressCacheTest
+{
+    private static final long TTL = 30;
+    private static final long NEGATIVE_TTL = 10;
+
+    private long now;
+
+    /**
+     * Every host which has been looked up.
+     */
+    private final List<String> lookups = new ArrayList<>();
+
+    /**
+     * Hosts which fail to resolve.
+     */
+    private final Set<String> unknown = new HashSet<>();
+
+    private List<AddressRule> rules;
+
+    @BeforeEach
+    public void setup()
+    {
+        rules = ComputerCraft.httpRules;
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        ComputerCraft.httpRules = rules;
+    }
+
+    @Test
+    public void testCachedUntilExpired() throws HTTPRequestException
+    {
+        AddressCache cache = create( 16 );
+        InetSocketAddress address = cache.getAddress( "example.com", 80 );
+        assertEquals( address, cache.getAddress( "EXAMPLE.com", 80 ) );
+        assertEquals( List.of( "example.com" ), lookups );
+
+        now += TTL;
+        assertEquals( address, cache.getAddress( "example.com", 80 ) );
+        assertEquals( List.of( "example.com", "example.com" ), lookups );
+    }
+
+    @Test
+    public void testFailuresCached() throws HTTPRequestException
+    {
+        AddressCache cache = create( 16 );
+        unknown.add( "example.com" );
+        assertThrows( HTTPRequestException.class, () -> cache.getAddress( "example.com", 80 ) );
+
+        unknown.clear();
+        now += NEGATIVE_TTL - 1;
+        assertThrows( HTTPRequestException.class, () -> cache.getAddress( "example.com", 80 ) );
+        assertEquals( List.of( "example.com" ), lookups );
+
+        now += 1;
+        cache.getAddress( "example.com", 80 );
+        assertEquals( List.of( "example.com", "example.com" ), lookups );
+    }
+
+    @Test
+    public void testBounded() throws HTTPRequestException
+    {
+        AddressCache cache = create( 2 );
+        cache.getAddress( "a.com", 80 );
+        cache.getAddress( "b.com", 80 );
+        cache.getAddress( "c.com", 80 );
+        assertEquals( List.of( "a.com", "b.com", "c.com" ), lookups );
+
+        // The least recently used host is evicted.
+        cache.getAddress( "c.com", 80 );
+        cache.getAddress( "a.com", 80 );
+        assertEquals( List.of( "a.com", "b.com", "c.com", "a.com" ), lookups );
+    }
+
+    @Test
+    public void testOptionsCached() throws HTTPRequestException
+    {
+        AddressCache cache = create( 16 );
+        ComputerCraft.httpRules = List.of( AddressRule.parse( "*", null, Action.ALLOW.toPartial() ) );
+
+        InetSocketAddress address = cache.getAddress( "example.com", 80 );
+        Options options = cache.getOptions( "example.com", address );
+        assertEquals( Action.ALLOW, options.action );
+        assertSame( options, cache.getOptions( "example.com", address ) );
+
+        // Options should be recomputed as soon as the rules change.
+        ComputerCraft.httpRules = List.of( AddressRule.parse( "example.com", null, Action.DENY.toPartial() ) );
+        Options denied = cache.getOptions( "example.com", address );
+        assertEquals( Action.DENY, denied.action );
+        assertNotSame( options, denied );
+    }
+
+    private AddressCache create( int maxHosts )
+    {
+        return new AddressCache( maxHosts, TTL, NEGATIVE_TTL, () -> now, ( host, port ) -> {
+            lookups.add( host );
+            if( unknown.contains( host ) ) return InetSocketAddress.createUnresolved( host, port );
+
+            try
+            {
+                return new InetSocketAddress( InetAddress.getByAddress( host, new byte[] { 10, 0, 0, 1 } ), port );
+            }
+            catch( UnknownHostException e )
+            {
+                throw new IllegalStateException( e );
+            }
+        } );
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http;
+
+import io.netty.util.ResourceLeakDetector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link ResourceLeakDetector} which remembers every leak it finds, so tests can check none were reported.
+ *
+ * This is installed for all tests with the {@code io.netty.customResourceLeakDetector} property (see
+ * {@code build.gradle}), as Netty creates its detectors when it is first loaded.
+ *
+ * @param <T> The type of resource being tracked.
+ */
+public class RecordingLeakDetector<T> extends ResourceLeakDetector<T>
+{
+    private static final List<String> leaks = new ArrayList<>();
+
+    public RecordingLeakDetector( Class<?> resourceType, int samplingInterval )
+    {
+        super( resourceType, samplingInterval );
+    }
+
+    public RecordingLeakDetector( Class<?> resourceType, int samplingInterval, long maxActive )
+    {
+        super( resourceType, samplingInterval, maxActive );
+    }
+
+    /**
+     * Get and clear the leaks found so far.
+     *
+     * @return Every leak reported since this was last called.
+     */
+    public static List<String> takeLeaks()
+    {
+        synchronized( leaks )
+        {
+            List<String> result = List.copyOf( leaks );
+            leaks.clear();
+            return result;
+        }
+    }
+
+    @Override
+    protected void reportTracedLeak( String resourceType, String records )
+    {
+        super.reportTracedLeak( resourceType, records );
+        synchronized( leaks )
+        {
+            leaks.add( resourceType + records );
+        }
+    }
+
+    @Override
+    protected void reportUntracedLeak( String resourceType )
+    {
+        super.reportUntracedLeak( resourceType );
+        synchronized( leaks )
+        {
+            leaks.add( resourceType );
+        }
+    }
+}
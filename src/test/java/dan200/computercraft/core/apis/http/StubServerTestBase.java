@@ -0,0 +1,89 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.apis.FakeAPIEnvironment;
+import dan200.computercraft.core.apis.http.options.Action;
+import dan200.computercraft.core.apis.http.options.AddressRule;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Timeout;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A base class for tests which connect to a local server. The server is started before each test, with a pipeline set
+ * up by {@link #initChannel(SocketChannel)}, and every address is allowed by the HTTP rules while it runs.
+ */
+@Timeout( value = 60 )
+public abstract class StubServerTestBase
+{
+    private List<AddressRule> rules;
+
+    private final EventLoopGroup serverGroup = new NioEventLoopGroup( 1 );
+    private Channel server;
+
+    protected final FakeAPIEnvironment environment = new FakeAPIEnvironment();
+    protected final BlockingQueue<Object[]> events = environment.events;
+    protected final ComputerShapingHandler shaper = new ComputerShapingHandler();
+
+    /**
+     * Set up the pipeline for a connection to the server.
+     *
+     * @param ch The connection's channel.
+     */
+    protected abstract void initChannel( SocketChannel ch );
+
+    /**
+     * Get the port the server is listening on.
+     *
+     * @return The server's port.
+     */
+    protected final int port()
+    {
+        return ((InetSocketAddress) server.localAddress()).getPort();
+    }
+
+    @BeforeEach
+    public void startServer() throws InterruptedException
+    {
+        rules = ComputerCraft.httpRules;
+        ComputerCraft.httpRules = List.of( AddressRule.parse( "*", null, Action.ALLOW.toPartial() ) );
+
+        server = new ServerBootstrap()
+            .group( serverGroup )
+            .channel( NioServerSocketChannel.class )
+            .childHandler( new ChannelInitializer<SocketChannel>()
+            {
+                @Override
+                protected void initChannel( SocketChannel ch )
+                {
+                    StubServerTestBase.this.initChannel( ch );
+                }
+            } )
+            .bind( "127.0.0.1", 0 ).sync().channel();
+    }
+
+    @AfterEach
+    public void stopServer() throws InterruptedException
+    {
+        server.close().sync();
+        serverGroup.shutdownGracefully( 0, 1, TimeUnit.SECONDS ).sync();
+
+        ComputerCraft.httpRules = rules;
+    }
+}
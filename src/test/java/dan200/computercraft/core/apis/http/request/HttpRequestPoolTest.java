@@ -0,0 +1,458 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.MethodResult;
+import dan200.computercraft.core.apis.http.RecordingLeakDetector;
+import dan200.computercraft.core.apis.http.Resource;
+import dan200.computercraft.core.apis.http.ResourceGroup;
+import dan200.computercraft.core.apis.http.StubServerTestBase;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Sends requests to a local HTTP server, checking that connections are reused from the {@link ConnectionPool}, that
+ * requests are only retried when it is safe to do so, and that streamed responses are read correctly.
+ */
+public class HttpRequestPoolTest extends StubServerTestBase
+{
+    private int maxIdle;
+    private URI uri;
+
+    /**
+     * The number of connections the server has accepted.
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * The method of every request the server has received.
+     */
+    private final Queue<HttpMethod> received = new ConcurrentLinkedQueue<>();
+
+    /**
+     * If set, the server closes a connection when it receives a second request on it, without sending a response. This
+     * looks the same to the client as the connection timing out while in the pool.
+     */
+    private volatile boolean dropReused;
+
+    /**
+     * The number of bytes of streamed responses the server has written.
+     */
+    private final AtomicLong streamed = new AtomicLong();
+
+    /**
+     * Counted down when the server's end of a streamed response's connection is closed.
+     */
+    private final CountDownLatch streamClosed = new CountDownLatch( 1 );
+
+    private static final String SPLIT_BODY = "h\u00e9llo w\u00f6rld\r\nsecond line\nend";
+
+    private final ResourceGroup<HttpRequest> requests = new ResourceGroup<>( ResourceGroup.DEFAULT );
+
+    @Override
+    protected void initChannel( SocketChannel ch )
+    {
+        connections.incrementAndGet();
+        ch.pipeline().addLast( new HttpServerCodec(), new HttpObjectAggregator( 1 << 16 ), new StubHandler() );
+    }
+
+    @BeforeEach
+    public void setup()
+    {
+        maxIdle = ComputerCraft.httpMaxIdleConnections;
+        uri = URI.create( "http://127.0.0.1:" + port() + "/test" );
+        requests.startup();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        requests.shutdown();
+        ConnectionPool.closeAll();
+        ComputerCraft.httpMaxIdleConnections = maxIdle;
+    }
+
+    @Test
+    public void testConnectionsReused() throws InterruptedException
+    {
+        ComputerCraft.httpMaxIdleConnections = 4;
+        for( int i = 0; i < 20; i++ ) assertSuccess( request( HttpMethod.GET, null ) );
+        assertEquals( 1, connections.get(), "All requests should share one connection" );
+    }
+
+    @Test
+    public void testConnectionsNotPooledWhenDisabled() throws InterruptedException
+    {
+        ComputerCraft.httpMaxIdleConnections = 0;
+        for( int i = 0; i < 20; i++ ) assertSuccess( request( HttpMethod.GET, null ) );
+        assertEquals( 20, connections.get(), "Each request should use a new connection" );
+    }
+
+    @Test
+    public void testIdempotentRequestRetried() throws InterruptedException
+    {
+        ComputerCraft.httpMaxIdleConnections = 4;
+        assertSuccess( request( HttpMethod.GET, null ) );
+
+        // The pooled connection is dropped after the request is sent, so it is sent again on a new connection.
+        dropReused = true;
+        assertSuccess( request( HttpMethod.GET, null ) );
+        assertEquals( 2, connections.get() );
+        assertEquals( List.of( HttpMethod.GET, HttpMethod.GET, HttpMethod.GET ), List.copyOf( received ) );
+    }
+
+    @Test
+    public void testPostNotRetried() throws InterruptedException
+    {
+        ComputerCraft.httpMaxIdleConnections = 4;
+        assertSuccess( request( HttpMethod.GET, null ) );
+
+        // The server has seen the POST, so sending it again could repeat its side effects.
+        dropReused = true;
+        Object[] event = request( HttpMethod.POST, "a=1" );
+        assertEquals( "http_failure", event[0] );
+        assertEquals( "Connection closed", event[2] );
+        assertEquals( 1, connections.get() );
+        assertEquals( List.of( HttpMethod.GET, HttpMethod.POST ), List.copyOf( received ) );
+    }
+
+    /**
+     * Measure how many requests per second a single computer can make to a local server, with and without connection
+     * pooling.
+     *
+     * @throws InterruptedException If interrupted while waiting for a response.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void benchmarkPooling() throws InterruptedException
+    {
+        int count = 2000;
+        for( int i = 0; i < 3; i++ )
+        {
+            ComputerCraft.httpMaxIdleConnections = 0;
+            long uncached = time( count );
+
+            ComputerCraft.httpMaxIdleConnections = 4;
+            long pooled = time( count );
+
+            System.out.printf(
+                "%d requests: %.0f requests/s without pooling, %.0f requests/s with pooling%n",
+                count, count * 1e9 / uncached, count * 1e9 / pooled
+            );
+        }
+    }
+
+    /**
+     * Read a response which is sent a byte at a time, so lines and multi-byte characters are split across chunks.
+     *
+     * @throws Exception If the response could not be read.
+     */
+    @Test
+    public void testStreamPartialReads() throws Exception
+    {
+        StreamingResponseHandle handle = stream( "/split" );
+        assertArrayEquals( new Object[] { "h\u00e9llo w\u00f6rld" }, await( handle.readLine( Optional.empty() ) ) );
+        assertArrayEquals( new Object[] { "sec" }, await( handle.read( Optional.of( 3 ) ) ) );
+        assertArrayEquals( new Object[] { "ond line\n" }, await( handle.readLine( Optional.of( true ) ) ) );
+        assertArrayEquals( new Object[] { "end" }, await( handle.readAll() ) );
+        assertArrayEquals( new Object[0], await( handle.read( Optional.empty() ) ) );
+    }
+
+    /**
+     * Read a response without relying on being woken up, as happens when the computer's event queue is full and our
+     * event is dropped. The reader should try again after any other event.
+     *
+     * @throws Exception If the response could not be read.
+     */
+    @Test
+    public void testStreamWithoutWakeup() throws Exception
+    {
+        StreamingResponseHandle handle = stream( "/split" );
+
+        MethodResult result = handle.readAll();
+        while( result.getCallback() != null )
+        {
+            Thread.sleep( 10 );
+            events.clear();
+            result = result.getCallback().resume( new Object[] { "timer", 1 } );
+        }
+
+        assertArrayEquals( new Object[] { SPLIT_BODY }, result.getResult() );
+    }
+
+    /**
+     * Start a large response and don't read it. The server should be stopped from sending the body, and then resume
+     * once it is read.
+     *
+     * @throws Exception If the response could not be read.
+     */
+    @Test
+    public void testStreamBackpressure() throws Exception
+    {
+        int size = 32 << 20;
+        StreamingResponseHandle handle = stream( "/stream/" + size );
+
+        // Wait for the server to stop sending.
+        long last;
+        do
+        {
+            last = streamed.get();
+            Thread.sleep( 500 );
+        } while( streamed.get() != last );
+
+        long sent = last;
+        assertTrue( sent < size / 2, () -> "Server sent " + sent + " bytes without being read" );
+
+        int read = 0;
+        while( true )
+        {
+            Object[] result = await( handle.read( Optional.of( 1 << 16 ) ) );
+            if( result.length == 0 ) break;
+
+            String chunk = (String) result[0];
+            for( int i = 0; i < chunk.length(); i++ )
+            {
+                if( chunk.charAt( i ) != streamByte( read + i ) ) fail( "Incorrect data at offset " + (read + i) );
+            }
+            read += chunk.length();
+        }
+
+        assertEquals( size, read );
+    }
+
+    /**
+     * Close a response before it has been fully received. The connection should be closed, rather than the rest of the
+     * body being downloaded.
+     *
+     * @throws Exception If the response could not be read.
+     */
+    @Test
+    public void testStreamClosedEarly() throws Exception
+    {
+        StreamingResponseHandle handle = stream( "/stream/" + (32 << 20) );
+        assertArrayEquals( new Object[] { "abcde" }, await( handle.read( Optional.of( 5 ) ) ) );
+
+        handle.doClose();
+        assertTrue( streamClosed.await( 10, TimeUnit.SECONDS ), "Connection was not closed" );
+        assertThrows( LuaException.class, () -> handle.read( Optional.empty() ) );
+    }
+
+    /**
+     * Read part of a response and then drop the handle without closing it. Once it is garbage collected, the request
+     * should be closed and the rest of the body released.
+     *
+     * @throws Exception If the response could not be read.
+     */
+    @Test
+    public void testStreamCollected() throws Exception
+    {
+        ResourceLeakDetector.setLevel( ResourceLeakDetector.Level.PARANOID );
+        RecordingLeakDetector.takeLeaks();
+
+        HttpRequest request = new HttpRequest( requests, environment, shaper, uri.toString(), null, new DefaultHttpHeaders(), false, false, true );
+        readAndDrop( stream( request, "/stream/" + (48 << 10) ) );
+
+        for( int i = 0; i < 100 && !request.isClosed(); i++ )
+        {
+            System.gc();
+            Thread.sleep( 50 );
+            Resource.cleanup();
+        }
+        assertTrue( request.isClosed(), "Request was not closed when its handle was collected" );
+
+        // Any leaked buffers are reported when they are collected and a new buffer is allocated.
+        for( int i = 0; i < 10; i++ )
+        {
+            System.gc();
+            Thread.sleep( 50 );
+            ByteBuf buffer = ByteBufAllocator.DEFAULT.buffer( 1 );
+            buffer.release();
+        }
+        assertEquals( List.of(), RecordingLeakDetector.takeLeaks() );
+    }
+
+    private void readAndDrop( StreamingResponseHandle handle ) throws LuaException, InterruptedException
+    {
+        assertArrayEquals( new Object[] { "abcde" }, await( handle.read( Optional.of( 5 ) ) ) );
+    }
+
+    private long time( int count ) throws InterruptedException
+    {
+        long start = System.nanoTime();
+        for( int i = 0; i < count; i++ ) assertSuccess( request( HttpMethod.GET, null ) );
+        return System.nanoTime() - start;
+    }
+
+    private Object[] request( HttpMethod method, String body ) throws InterruptedException
+    {
+        HttpRequest request = new HttpRequest( requests, environment, shaper, uri.toString(), body, new DefaultHttpHeaders(), false, false, false );
+        assertTrue( request.queue( r -> r.request( uri, method ) ), "Request should be queued" );
+
+        Object[] event = events.poll( 10, TimeUnit.SECONDS );
+        assertNotNull( event, "No response received" );
+        return event;
+    }
+
+    private StreamingResponseHandle stream( String path ) throws InterruptedException
+    {
+        return stream( new HttpRequest( requests, environment, shaper, uri.toString(), null, new DefaultHttpHeaders(), false, false, true ), path );
+    }
+
+    private StreamingResponseHandle stream( HttpRequest request, String path ) throws InterruptedException
+    {
+        URI uri = this.uri.resolve( path );
+        assertTrue( request.queue( r -> r.request( uri, HttpMethod.GET ) ), "Request should be queued" );
+
+        Object[] event = events.poll( 10, TimeUnit.SECONDS );
+        assertNotNull( event, "No response received" );
+        assertSuccess( event );
+        return (StreamingResponseHandle) ((HttpResponseHandle) event[2]).getExtra().iterator().next();
+    }
+
+    /**
+     * Run a read to completion, resuming it with our events until it finishes.
+     *
+     * @param result The result of the read.
+     * @return The values it returned.
+     * @throws LuaException         If the read failed.
+     * @throws InterruptedException If interrupted while waiting for an event.
+     */
+    private Object[] await( MethodResult result ) throws LuaException, InterruptedException
+    {
+        while( result.getCallback() != null )
+        {
+            Object[] event = events.poll( 10, TimeUnit.SECONDS );
+            assertNotNull( event, "Reader was never woken up" );
+            result = result.getCallback().resume( event );
+        }
+
+        return result.getResult();
+    }
+
+    private static char streamByte( int offset )
+    {
+        return (char) ('a' + offset % 26);
+    }
+
+    private static void assertSuccess( Object[] event )
+    {
+        assertEquals( "http_success", event[0], () -> "Request failed: " + (event.length > 2 ? event[2] : "") );
+    }
+
+    private final class StubHandler extends SimpleChannelInboundHandler<FullHttpRequest>
+    {
+        private int served;
+
+        @Override
+        protected void channelRead0( ChannelHandlerContext ctx, FullHttpRequest request )
+        {
+            received.add( request.method() );
+            if( request.uri().equals( "/split" ) )
+            {
+                writeSplit( ctx );
+                return;
+            }
+            if( request.uri().startsWith( "/stream/" ) )
+            {
+                ctx.channel().closeFuture().addListener( x -> streamClosed.countDown() );
+                HttpResponse response = new DefaultHttpResponse( HttpVersion.HTTP_1_1, HttpResponseStatus.OK );
+                HttpUtil.setTransferEncodingChunked( response, true );
+                ctx.write( response );
+                writeStream( ctx, 0, Integer.parseInt( request.uri().substring( "/stream/".length() ) ) );
+                return;
+            }
+
+            if( served++ > 0 && dropReused )
+            {
+                ctx.close();
+                return;
+            }
+
+            FullHttpResponse response = new DefaultFullHttpResponse(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer( "ok", StandardCharsets.UTF_8 )
+            );
+            response.headers().set( HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes() );
+
+            boolean keepAlive = HttpUtil.isKeepAlive( request );
+            HttpUtil.setKeepAlive( response, keepAlive );
+            if( keepAlive )
+            {
+                ctx.writeAndFlush( response );
+            }
+            else
+            {
+                ctx.writeAndFlush( response ).addListener( ChannelFutureListener.CLOSE );
+            }
+        }
+
+        private void writeSplit( ChannelHandlerContext ctx )
+        {
+            HttpResponse response = new DefaultHttpResponse( HttpVersion.HTTP_1_1, HttpResponseStatus.OK );
+            HttpUtil.setTransferEncodingChunked( response, true );
+            ctx.write( response );
+
+            for( byte b : SPLIT_BODY.getBytes( StandardCharsets.UTF_8 ) )
+            {
+                ctx.writeAndFlush( new DefaultHttpContent( Unpooled.wrappedBuffer( new byte[] { b } ) ) );
+            }
+            ctx.writeAndFlush( LastHttpContent.EMPTY_LAST_CONTENT );
+        }
+
+        /**
+         * Write the body of a streamed response, one chunk at a time. Each chunk is only written once the last one has
+         * been sent, so we stop when the client stops reading.
+         */
+        private void writeStream( ChannelHandlerContext ctx, int offset, int size )
+        {
+            if( offset >= size )
+            {
+                ctx.writeAndFlush( LastHttpContent.EMPTY_LAST_CONTENT );
+                return;
+            }
+
+            int length = Math.min( 8192, size - offset );
+            ByteBuf chunk = ctx.alloc().buffer( length );
+            for( int i = 0; i < length; i++ ) chunk.writeByte( streamByte( offset + i ) );
+
+            ctx.writeAndFlush( new DefaultHttpContent( chunk ) ).addListener( f -> {
+                if( !f.isSuccess() ) return;
+                streamed.addAndGet( length );
+                writeStream( ctx, offset + length, size );
+            } );
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.http.websocket;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.http.ResourceGroup;
+import dan200.computercraft.core.apis.http.StubServerTestBase;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Opens websockets to a local server, checking that messages are neither lost nor reordered on their way in or out.
+ */
+public class WebsocketTest extends StubServerTestBase
+{
+    private String address;
+    private Websocket websocket;
+
+    /**
+     * Every message the server has received.
+     */
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+    /**
+     * Counted down when the server closes a connection.
+     */
+    private final CountDownLatch serverClosed = new CountDownLatch( 1 );
+
+    private final ResourceGroup<Websocket> websockets = new ResourceGroup<>( ResourceGroup.DEFAULT );
+
+    @Override
+    protected void initChannel( SocketChannel ch )
+    {
+        ch.pipeline().addLast(
+            new HttpServerCodec(), new HttpObjectAggregator( 1 << 16 ),
+            new WebSocketServerProtocolHandler( "/ws" ), new StubHandler()
+        );
+    }
+
+    @BeforeEach
+    public void setup()
+    {
+        address = "ws://127.0.0.1:" + port() + "/ws";
+        websockets.startup();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        websockets.shutdown();
+    }
+
+    /**
+     * Send messages back to back, without waiting between them, and check the server receives every one. Each burst is
+     * written by as few flushes as possible, so none of its messages may be left behind in an unflushed write.
+     *
+     * @throws Exception If the websocket could not be used.
+     */
+    @Test
+    public void testBackToBackSends() throws Exception
+    {
+        WebsocketHandle handle = open( false );
+
+        int sent = 0;
+        for( int burst = 1; burst <= 100; burst++ )
+        {
+            for( int i = 0; i < burst; i++ ) handle.send( "message " + sent++, Optional.empty() );
+
+            // Wait for this burst, so the next one starts while the last flush may still be running.
+            for( int i = sent - burst; i < sent; i++ )
+            {
+                assertEquals( "message " + i, received.poll( 10, TimeUnit.SECONDS ), "Message was lost or reordered" );
+            }
+        }
+
+        handle.doClose();
+    }
+
+    /**
+     * Have the server send a batch of messages and then close the connection, before the computer has received any of
+     * them. A buffered websocket should still deliver all of them, and only report it was closed afterwards.
+     *
+     * @throws Exception If the websocket could not be used.
+     */
+    @Test
+    public void testInboxDrainedAfterClose() throws Exception
+    {
+        WebsocketHandle handle = open( true );
+        handle.send( "flood 50", Optional.empty() );
+        assertTrue( serverClosed.await( 10, TimeUnit.SECONDS ), "Server did not close the connection" );
+
+        // Wait for the close frame to reach the client.
+        while( !websocket.isClosed() ) Thread.sleep( 1 );
+        assertNull( events.poll(), "Closed before the inbox was drained" );
+
+        // Disposing again must not throw away the inbox.
+        websocket.checkClosed();
+        websocket.checkClosed();
+
+        List<Object> messages = new ArrayList<>();
+        while( messages.size() < 50 )
+        {
+            Object[] result = handle.receiveMany( 20, Optional.empty() ).getResult();
+            assertNotNull( result, "Messages should be available without waiting" );
+            assertNotEquals( 0, result.length, "Closed before the inbox was drained" );
+            messages.addAll( (List<?>) result[0] );
+        }
+
+        for( int i = 0; i < messages.size(); i++ ) assertEquals( "reply " + i, messages.get( i ) );
+
+        Object[] event = events.poll( 10, TimeUnit.SECONDS );
+        assertNotNull( event, "Close was never reported" );
+        assertEquals( Websocket.CLOSE_EVENT, event[0] );
+        assertThrows( LuaException.class, () -> handle.receive( Optional.empty() ) );
+    }
+
+    private WebsocketHandle open( boolean buffered ) throws Exception
+    {
+        websocket = new Websocket(
+            websockets, environment, shaper, Websocket.checkUri( address ), address, new DefaultHttpHeaders(), buffered
+        );
+        assertTrue( websocket.queue( Websocket::connect ), "Websocket should be queued" );
+
+        Object[] event = events.poll( 10, TimeUnit.SECONDS );
+        assertNotNull( event, "No response received" );
+        assertEquals( Websocket.SUCCESS_EVENT, event[0], () -> "Websocket failed: " + (event.length > 2 ? event[2] : "") );
+        return (WebsocketHandle) event[2];
+    }
+
+    private final class StubHandler extends SimpleChannelInboundHandler<TextWebSocketFrame>
+    {
+        @Override
+        protected void channelRead0( ChannelHandlerContext ctx, TextWebSocketFrame frame )
+        {
+            String message = frame.text();
+            if( message.startsWith( "flood " ) )
+            {
+                int count = Integer.parseInt( message.substring( "flood ".length() ) );
+                for( int i = 0; i < count; i++ ) ctx.write( new TextWebSocketFrame( "reply " + i ) );
+                ctx.writeAndFlush( new CloseWebSocketFrame( 1000, "done" ) ).addListener( x -> {
+                    ctx.close();
+                    serverClosed.countDown();
+                } );
+            }
+            else
+            {
+                received.add( message );
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.asm;
+
+import dan200.computercraft.api.lua.IArguments;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+import dan200.computercraft.api.lua.MethodResult;
+import dan200.computercraft.api.lua.ObjectArguments;
+import dan200.computercraft.core.apis.FSAPI;
+import dan200.computercraft.core.apis.FakeAPIEnvironment;
+import dan200.computercraft.core.apis.TermMethods;
+import dan200.computercraft.core.filesystem.FileMount;
+import dan200.computercraft.core.filesystem.FileSystem;
+import dan200.computercraft.core.filesystem.FileSystemException;
+import dan200.computercraft.core.terminal.Terminal;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the specialised argument decoding and results of methods generated by {@link Generator}.
+ */
+public class GeneratorTest
+{
+    private static final ILuaContext CONTEXT = task -> {
+        throw new LuaException( "Cannot run main thread tasks" );
+    };
+
+    @Test
+    public void testPrimitiveResults() throws LuaException
+    {
+        Primitives target = new Primitives();
+
+        assertArrayEquals( new Object[] { true }, call( target, "not", false ).getResult() );
+        assertArrayEquals( new Object[] { 3 }, call( target, "add", 1, 2 ).getResult() );
+        assertArrayEquals( new Object[] { 5000 }, call( target, "add", 4000, 1000 ).getResult() );
+        assertArrayEquals( new Object[] { -129 }, call( target, "add", -128, -1 ).getResult() );
+        assertArrayEquals( new Object[] { 1L << 40 }, call( target, "shift", 40 ).getResult() );
+        assertArrayEquals( new Object[] { 1L }, call( target, "shift", 0 ).getResult() );
+        assertArrayEquals( new Object[] { 1.25 }, call( target, "half", 2.5 ).getResult() );
+
+        // Small values are boxed from a cache, rather than allocated each call.
+        assertSame( call( target, "add", 500, 2 ).getResult()[0], call( target, "add", 2, 500 ).getResult()[0] );
+        assertSame( call( target, "shift", 9 ).getResult()[0], call( target, "shift", 9 ).getResult()[0] );
+    }
+
+    @Test
+    public void testResultsNotShared() throws LuaException
+    {
+        Primitives target = new Primitives();
+
+        // Modifying one call's results must not affect any later call.
+        call( target, "not", false ).getResult()[0] = "oops";
+        call( target, "add", 1, 2 ).getResult()[0] = "oops";
+        call( target, "shift", 3 ).getResult()[0] = "oops";
+
+        assertArrayEquals( new Object[] { true }, call( target, "not", false ).getResult() );
+        assertArrayEquals( new Object[] { 3 }, call( target, "add", 1, 2 ).getResult() );
+        assertArrayEquals( new Object[] { 8L }, call( target, "shift", 3 ).getResult() );
+    }
+
+    @Test
+    public void testOptionalArguments() throws LuaException
+    {
+        Primitives target = new Primitives();
+
+        assertArrayEquals( new Object[] { "none" }, call( target, "describe" ).getResult() );
+        assertArrayEquals( new Object[] { "hello 3" }, call( target, "describe", "hello", 3 ).getResult() );
+        assertArrayEquals( new Object[] { "hello" }, call( target, "describe", "hello" ).getResult() );
+        assertThrows( LuaException.class, () -> call( target, "describe", 1 ) );
+        assertThrows( LuaException.class, () -> call( target, "describe", "x", "y" ) );
+    }
+
+    @Test
+    public void testBadArguments()
+    {
+        Primitives target = new Primitives();
+
+        LuaException error = assertThrows( LuaException.class, () -> call( target, "add", 1, "two" ) );
+        assertEquals( "bad argument #2 (number expected, got string)", error.getMessage() );
+        assertThrows( LuaException.class, () -> call( target, "not", "yes" ) );
+    }
+
+    /**
+     * Compare the generated wrappers for {@code term.write} and {@code fs.exists} against the code they generated
+     * before results were specialised, which boxed the return value into a new {@link MethodResult}.
+     *
+     * {@code InventoryMethods.list} is not included, as it requires a bootstrapped Minecraft registry.
+     *
+     * @param root A temporary directory to create the file system in.
+     * @throws IOException         If the file system could not be created.
+     * @throws FileSystemException If the file system could not be created.
+     * @throws LuaException        If calling a method fails.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void benchmarkMethods( @TempDir File root ) throws IOException, FileSystemException, LuaException
+    {
+        Files.writeString( root.toPath().resolve( "startup.lua" ), "print('Hello')" );
+        FileSystem fileSystem = new FileSystem( "hdd", new FileMount( root, 1_000_000 ) );
+        FSAPI fs = new FSAPI( new FakeAPIEnvironment( fileSystem ) );
+        fs.startup();
+
+        Terminal terminal = new Terminal( 51, 19 );
+        TermMethods term = new TermMethods()
+        {
+            @Nonnull
+            @Override
+            public Terminal getTerminal()
+            {
+                return terminal;
+            }
+
+            @Override
+            public boolean isColour()
+            {
+                return true;
+            }
+        };
+
+        LuaMethod exists = find( FSAPI.class, "exists" ), write = find( TermMethods.class, "write" );
+        LuaMethod oldExists = ( target, context, args ) -> MethodResult.of( ((FSAPI) target).exists( args.getString( 0 ) ) );
+        IArguments existsArgs = new ObjectArguments( "startup.lua" ), writeArgs = new ObjectArguments( "Hello, world!" );
+
+        for( int round = 0; round < 3; round++ )
+        {
+            measure( "fs.exists (generated)", exists, fs, existsArgs );
+            measure( "fs.exists (boxed result)", oldExists, fs, existsArgs );
+            measure( "term.write (generated)", write, term, writeArgs );
+        }
+
+        fs.shutdown();
+    }
+
+    private static void measure( String name, LuaMethod method, Object target, IArguments args ) throws LuaException
+    {
+        int count = 1_000_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long startBytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for( int i = 0; i < count; i++ ) method.apply( target, CONTEXT, args );
+        long time = System.nanoTime() - start;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+
+        System.out.printf( "%s: %.1fns, %.1f bytes per call%n", name, (double) time / count, (double) bytes / count );
+    }
+
+    private static LuaMethod find( Class<?> klass, String name )
+    {
+        for( NamedMethod<LuaMethod> method : LuaMethod.GENERATOR.getMethods( klass ) )
+        {
+            if( method.getName().equals( name ) ) return method.getMethod();
+        }
+
+        throw new IllegalArgumentException( "No such method " + name + " in " + klass );
+    }
+
+    static MethodResult call( Object target, String name, Object... args ) throws LuaException
+    {
+        return find( target.getClass(), name ).apply( target, CONTEXT, new ObjectArguments( args ) );
+    }
+
+    public static class Primitives
+    {
+        @LuaFunction( "not" )
+        public final boolean not( boolean value )
+        {
+            return !value;
+        }
+
+        @LuaFunction
+        public final int add( int x, int y )
+        {
+            return x + y;
+        }
+
+        @LuaFunction
+        public final long shift( int bits )
+        {
+            return 1L << bits;
+        }
+
+        @LuaFunction
+        public final double half( double value )
+        {
+            return value / 2;
+        }
+
+        @LuaFunction
+        public final String describe( Optional<String> name, Optional<Integer> count )
+        {
+            if( name.isEmpty() ) return "none";
+            return count.map( c -> name.get() + " " + c ).orElse( name.get() );
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.computer;
+
+import dan200.computercraft.api.filesystem.IMount;
+import dan200.computercraft.api.filesystem.IWritableMount;
+import dan200.computercraft.core.filesystem.FileMount;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal {@link IComputerEnvironment}, which stores computers' files in a temporary directory and provides an empty
+ * ROM and BIOS.
+ */
+public class BasicEnvironment implements IComputerEnvironment
+{
+    private final File root;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public BasicEnvironment( File root )
+    {
+        this.root = root;
+    }
+
+    @Override
+    public int getDay()
+    {
+        return 0;
+    }
+
+    @Override
+    public double getTimeOfDay()
+    {
+        return 0;
+    }
+
+    @Override
+    public boolean isColour()
+    {
+        return true;
+    }
+
+    @Override
+    public long getComputerSpaceLimit()
+    {
+        return 1_000_000;
+    }
+
+    @Nonnull
+    @Override
+    public String getHostString()
+    {
+        return "ComputerCraft (test)";
+    }
+
+    @Nonnull
+    @Override
+    public String getUserAgent()
+    {
+        return "ComputerCraft (test)";
+    }
+
+    @Override
+    public int assignNewID()
+    {
+        return nextId.getAndIncrement();
+    }
+
+    @Override
+    public IWritableMount createSaveDirMount( String subPath, long capacity )
+    {
+        return new FileMount( new File( root, subPath ), capacity );
+    }
+
+    @Override
+    public IMount createResourceMount( String domain, String subPath )
+    {
+        File rom = new File( root, "rom" );
+        rom.mkdirs();
+        return new FileMount( rom, 0 );
+    }
+
+    @Override
+    public InputStream createResourceFile( String domain, String subPath )
+    {
+        return new ByteArrayInputStream( new byte[0] );
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.computer;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaAPI;
+import dan200.computercraft.core.lua.ILuaMachine;
+import dan200.computercraft.core.lua.MachineResult;
+import dan200.computercraft.core.terminal.Terminal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Timeout( value = 60 )
+public class ComputerThreadTest
+{
+    @TempDir
+    File root;
+
+    private int threads;
+    private final List<Computer> computers = new ArrayList<>();
+
+    @BeforeEach
+    public void setup()
+    {
+        threads = ComputerCraft.computerThreads;
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        for( Computer computer : computers ) computer.unload();
+        computers.clear();
+
+        ComputerThread.stop();
+        ComputerCraft.computerThreads = threads;
+    }
+
+    /**
+     * Queue events to thousands of computers from several threads at once, and check every one is run exactly once.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @Test
+    public void testManyExecutors() throws InterruptedException
+    {
+        ComputerCraft.computerThreads = 4;
+        queueEvents( 2000, 10, 4 );
+    }
+
+    /**
+     * Measure how quickly events are run when queued to thousands of computers, for a varying number of runners.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void benchmarkContention() throws InterruptedException
+    {
+        for( int runners : new int[] { 1, 2, 4, 8 } )
+        {
+            ComputerThread.stop();
+            ComputerCraft.computerThreads = runners;
+
+            // Warm up, and then measure.
+            queueEvents( 5000, 20, 8 );
+            long rate = queueEvents( 5000, 40, 8 );
+            System.out.printf( "%d runners: %d events/s%n", runners, rate );
+
+            for( Computer computer : computers ) computer.unload();
+            computers.clear();
+        }
+    }
+
+    /**
+     * Run several computers which are always busy on a smaller number of runners, and check they all get a similar
+     * share of the CPU time. This depends on wall-clock time, and so is only run as a benchmark.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void benchmarkFairness() throws InterruptedException
+    {
+        ComputerCraft.computerThreads = 2;
+
+        int count = 6;
+        Computer[] busy = new Computer[count];
+        for( int i = 0; i < count; i++ ) busy[i] = createComputer();
+
+        AtomicLongArray spent = new AtomicLongArray( count );
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 3 );
+
+        for( int i = 0; i < count; i++ )
+        {
+            Computer computer = busy[i];
+            int index = i;
+            Runnable task = new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // Each task burns a millisecond, and then queues itself again until the deadline.
+                    long start = System.nanoTime();
+                    while( System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos( 1 ) ) Thread.onSpinWait();
+                    spent.addAndGet( index, System.nanoTime() - start );
+
+                    if( System.nanoTime() < deadline ) computer.queueEvent( "task", new Object[] { this } );
+                }
+            };
+            computer.queueEvent( "task", new Object[] { task } );
+        }
+
+        Thread.sleep( TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() ) + 100 );
+
+        long minSpent = Long.MAX_VALUE, maxSpent = 0;
+        for( int i = 0; i < count; i++ )
+        {
+            minSpent = Math.min( minSpent, spent.get( i ) );
+            maxSpent = Math.max( maxSpent, spent.get( i ) );
+        }
+
+        long min = minSpent, max = maxSpent;
+        System.out.printf( "Busiest computer ran for %.1fms, least busy for %.1fms%n", max * 1e-6, min * 1e-6 );
+        assertTrue( min > 0, "Every computer should have run" );
+        assertTrue( max < min * 2, () -> String.format( "Unfair split: %.1fms vs %.1fms", max * 1e-6, min * 1e-6 ) );
+    }
+
+    /**
+     * Repeatedly grow and shrink the runner pool while events are being queued, and check that no work is lost and that
+     * running tasks are not interrupted.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @Test
+    public void testResize() throws InterruptedException
+    {
+        ComputerCraft.computerThreads = 4;
+        Computer[] targets = new Computer[200];
+        for( int i = 0; i < targets.length; i++ ) targets[i] = createComputer();
+
+        // A long running task, which must survive the pool being shrunk underneath it.
+        AtomicBoolean slowFinished = new AtomicBoolean();
+        targets[0].queueEvent( "task", new Object[] { (Runnable) () -> {
+            try
+            {
+                Thread.sleep( 500 );
+                slowFinished.set( true );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        } } );
+
+        int events = 50;
+        AtomicLong ran = new AtomicLong();
+        Runnable task = ran::incrementAndGet;
+        Thread producer = new Thread( () -> {
+            for( int event = 0; event < events; event++ )
+            {
+                for( Computer computer : targets ) computer.queueEvent( "task", new Object[] { task } );
+                LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 2 ) );
+            }
+        } );
+        producer.start();
+
+        int[] sizes = new int[] { 1, 6, 2, 1, 8, 3, 1, 4 };
+        for( int i = 0; i < 40; i++ )
+        {
+            ComputerCraft.computerThreads = sizes[i % sizes.length];
+            ComputerThread.resize();
+            Thread.sleep( 5 );
+        }
+        producer.join();
+
+        long total = (long) targets.length * events;
+        waitFor( () -> ran.get() >= total && slowFinished.get() );
+        assertEquals( total, ran.get(), "Every event should be run exactly once" );
+        assertFalse( ComputerThread.hasPendingWork(), "No work should be left queued" );
+    }
+
+    /**
+     * Queue events to a set of computers, and wait for them all to run.
+     *
+     * @param computerCount The number of computers to create.
+     * @param events        The number of events to queue on each computer.
+     * @param producers     The number of threads queuing events.
+     * @return The number of events run per second.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    long queueEvents( int computerCount, int events, int producers ) throws InterruptedException
+    {
+        while( computers.size() < computerCount ) createComputer();
+        Computer[] targets = computers.subList( 0, computerCount ).toArray( new Computer[0] );
+
+        long total = (long) computerCount * events;
+        AtomicLong ran = new AtomicLong();
+        Runnable task = ran::incrementAndGet;
+
+        long start = System.nanoTime();
+        Thread[] producerThreads = new Thread[producers];
+        for( int i = 0; i < producers; i++ )
+        {
+            int offset = i;
+            producerThreads[i] = new Thread( () -> {
+                for( int event = offset; event < events; event += producers )
+                {
+                    for( Computer computer : targets ) computer.queueEvent( "task", new Object[] { task } );
+                }
+            } );
+            producerThreads[i].start();
+        }
+        for( Thread thread : producerThreads ) thread.join();
+
+        waitFor( () -> ran.get() >= total );
+        long elapsed = System.nanoTime() - start;
+
+        // Give any duplicate events a chance to run.
+        Thread.sleep( 50 );
+        assertEquals( total, ran.get(), "Every event should be run exactly once" );
+        return total * TimeUnit.SECONDS.toNanos( 1 ) / Math.max( 1, elapsed );
+    }
+
+    Computer createComputer() throws InterruptedException
+    {
+        Computer computer = new Computer(
+            new BasicEnvironment( root ), new Terminal( 51, 19 ), computers.size(), ( c, timeout ) -> new TaskMachine()
+        );
+        computers.add( computer );
+
+        computer.turnOn();
+        computer.tick();
+        waitFor( computer::isOn );
+        return computer;
+    }
+
+    static void waitFor( BooleanSupplier condition ) throws InterruptedException
+    {
+        while( !condition.getAsBoolean() ) Thread.sleep( 1 );
+    }
+
+    /**
+     * A "Lua machine" which runs the {@link Runnable} passed as the first argument of each event.
+     */
+    private static final class TaskMachine implements ILuaMachine
+    {
+        @Override
+        public void addAPI( @Nonnull ILuaAPI api )
+        {
+        }
+
+        @Override
+        public MachineResult loadBios( @Nonnull InputStream bios )
+        {
+            return MachineResult.OK;
+        }
+
+        @Override
+        public MachineResult handleEvent( @Nullable String eventName, @Nullable Object[] arguments )
+        {
+            if( arguments != null && arguments.length > 0 && arguments[0] instanceof Runnable )
+            {
+                ((Runnable) arguments[0]).run();
+            }
+            return MachineResult.OK;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.computer;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimerWheelTest
+{
+    private final TimerWheel wheel = new TimerWheel();
+
+    /**
+     * The number of times {@link TimerWheel#tick()} has been called.
+     */
+    private long ticks = 0;
+
+    @Test
+    public void testFiresOnExpectedTick()
+    {
+        // Timers on either side of each level's boundary, and one in the overflow list.
+        long[] delays = new long[] {
+            0, 1, 2, 63, 64, 65, 127, 128,
+            4095, 4096, 4097, 262143, 262144, 262145,
+            (1L << 24) - 1, 1L << 24, (1L << 24) + 5,
+        };
+
+        List<Timer> timers = new ArrayList<>();
+        for( long delay : delays ) timers.add( schedule( delay ) );
+
+        tickUntil( (1L << 24) + 10 );
+        for( Timer timer : timers ) timer.assertFiredOnTime();
+    }
+
+    @Test
+    public void testScheduledPartWayThrough()
+    {
+        tickUntil( 100 );
+
+        // Schedule timers when the wheel is not aligned to a slot boundary, so cascading has to handle partial slots.
+        List<Timer> timers = new ArrayList<>();
+        for( long delay = 0; delay < 10_000; delay += 7 ) timers.add( schedule( delay ) );
+
+        tickUntil( 12_000 );
+        for( Timer timer : timers ) timer.assertFiredOnTime();
+    }
+
+    @Test
+    public void testCancel()
+    {
+        // Cancelled before it is added to the wheel.
+        Timer early = schedule( 10 );
+        wheel.cancel( early );
+
+        // Cancelled while on the first level, and after being cascaded down from a higher one.
+        Timer first = schedule( 10 );
+        Timer cascaded = schedule( 5000 );
+        tick();
+
+        wheel.cancel( first );
+        tickUntil( 4500 );
+        wheel.cancel( cascaded );
+
+        // Cancelling a timer which has already fired does nothing.
+        Timer fired = schedule( 1 );
+        tick();
+        wheel.cancel( fired );
+
+        tickUntil( 10_000 );
+        assertEquals( -1, early.firedAt );
+        assertEquals( -1, first.firedAt );
+        assertEquals( -1, cascaded.firedAt );
+        fired.assertFiredOnTime();
+    }
+
+    @Test
+    public void testReset()
+    {
+        Timer timer = schedule( 5 );
+        Timer pending = schedule( 2 );
+        tick();
+
+        wheel.reset();
+        tickUntil( 100 );
+
+        assertEquals( -1, timer.firedAt );
+        assertEquals( -1, pending.firedAt );
+    }
+
+    /**
+     * Schedule and cancel lots of random timers, comparing against the expected firing time.
+     */
+    @Test
+    public void testRandom()
+    {
+        Random random = new Random( 0x5eed );
+        List<Timer> timers = new ArrayList<>();
+        List<Timer> live = new ArrayList<>();
+
+        for( int round = 0; round < 20_000; round++ )
+        {
+            int action = random.nextInt( 10 );
+            if( action < 6 )
+            {
+                // Mostly short timers, like sleep(), with some long ones.
+                long delay = random.nextInt( 4 ) == 0 ? random.nextInt( 300_000 ) : random.nextInt( 200 );
+                Timer timer = schedule( delay );
+                timers.add( timer );
+                live.add( timer );
+            }
+            else if( action < 7 && !live.isEmpty() )
+            {
+                Timer timer = live.remove( random.nextInt( live.size() ) );
+                timer.cancelled = true;
+                wheel.cancel( timer );
+            }
+            else
+            {
+                tickUntil( ticks + random.nextInt( 20 ) );
+            }
+        }
+
+        tickUntil( ticks + 300_001 );
+        for( Timer timer : timers )
+        {
+            if( timer.cancelled )
+            {
+                // Timers may have fired before being cancelled, but must not have fired afterwards.
+                assertTrue( timer.firedAt == -1 || timer.firedAt == timer.expectedAt(), "Cancelled timer fired late" );
+            }
+            else
+            {
+                timer.assertFiredOnTime();
+            }
+        }
+    }
+
+    /**
+     * Compare the cost of advancing the wheel against scanning every timer each tick (as {@code Environment} used to),
+     * with 10k and 100k live timers.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void benchmarkAgainstScan()
+    {
+        for( int count : new int[] { 10_000, 100_000 } )
+        {
+            for( int i = 0; i < 3; i++ )
+            {
+                long wheelTime = timeWheel( count, 2000 );
+                long scanTime = timeScan( count, 2000 );
+                System.out.printf(
+                    "%d timers: wheel %.1fus/tick, scan %.1fus/tick%n",
+                    count, wheelTime / 2000 * 1e-3, scanTime / 2000 * 1e-3
+                );
+            }
+        }
+    }
+
+    private static long timeWheel( int count, int tickCount )
+    {
+        TimerWheel wheel = new TimerWheel();
+        Random random = new Random( 0 );
+        for( int i = 0; i < count; i++ ) wheel.schedule( new Repeating( wheel, random, 1 + random.nextInt( 200 ) ) );
+        wheel.tick();
+
+        long start = System.nanoTime();
+        for( int i = 0; i < tickCount; i++ ) wheel.tick();
+        return System.nanoTime() - start;
+    }
+
+    private static long timeScan( int count, int tickCount )
+    {
+        // The old implementation: a map of timers, each of which is counted down every tick.
+        Int2ObjectMap<long[]> timers = new Int2ObjectOpenHashMap<>();
+        Random random = new Random( 0 );
+        for( int i = 0; i < count; i++ ) timers.put( i, new long[] { 1 + random.nextInt( 200 ) } );
+
+        long fired = 0;
+        long start = System.nanoTime();
+        for( int tick = 0; tick < tickCount; tick++ )
+        {
+            Iterator<Int2ObjectMap.Entry<long[]>> it = timers.int2ObjectEntrySet().iterator();
+            while( it.hasNext() )
+            {
+                long[] timer = it.next().getValue();
+                if( --timer[0] <= 0 )
+                {
+                    // Rather than removing and adding a new timer, just restart this one.
+                    timer[0] = 1 + random.nextInt( 200 );
+                    fired++;
+                }
+            }
+        }
+        long time = System.nanoTime() - start;
+
+        assertFalse( fired == 0 );
+        return time;
+    }
+
+    private Timer schedule( long delay )
+    {
+        Timer timer = new Timer( delay, ticks );
+        wheel.schedule( timer );
+        return timer;
+    }
+
+    private void tick()
+    {
+        ticks++;
+        wheel.tick();
+    }
+
+    private void tickUntil( long target )
+    {
+        while( ticks < target ) tick();
+    }
+
+    private final class Timer extends TimerWheel.Entry
+    {
+        final long scheduledAt;
+        long firedAt = -1;
+        boolean cancelled;
+
+        Timer( long delay, long scheduledAt )
+        {
+            super( delay );
+            this.scheduledAt = scheduledAt;
+        }
+
+        @Override
+        protected void fire()
+        {
+            assertEquals( -1, firedAt, "Timer fired twice" );
+            firedAt = ticks;
+        }
+
+        /**
+         * Timers count the next tick as their first one, and a delay of 0 fires on the next tick.
+         *
+         * @return The tick this timer should have fired on.
+         */
+        long expectedAt()
+        {
+            return scheduledAt + Math.max( 1, delay );
+        }
+
+        void assertFiredOnTime()
+        {
+            assertEquals( expectedAt(), firedAt, () -> "Timer with delay " + delay + " scheduled at " + scheduledAt );
+        }
+    }
+
+    /**
+     * A timer which reschedules itself when fired, keeping the number of live timers constant.
+     */
+    private static final class Repeating extends TimerWheel.Entry
+    {
+        private final TimerWheel wheel;
+        private final Random random;
+
+        Repeating( TimerWheel wheel, Random random, long delay )
+        {
+            super( delay );
+            this.wheel = wheel;
+            this.random = random;
+        }
+
+        @Override
+        protected void fire()
+        {
+            wheel.schedule( new Repeating( wheel, random, 1 + random.nextInt( 200 ) ) );
+        }
+    }
+}
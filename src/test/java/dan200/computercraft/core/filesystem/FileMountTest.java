@@ -0,0 +1,301 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import dan200.computercraft.ComputerCraft;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileMountTest
+{
+    private static final int MINIMUM_FILE_SIZE = 500;
+
+    @TempDir
+    Path root;
+
+    /**
+     * A mount without a usage file must not allow writes beyond its capacity before it has been recounted.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testLimitEnforcedBeforeRecount() throws IOException
+    {
+        // Load several other mounts first, so the background recount is unlikely to have reached ours.
+        for( int i = 0; i < 20; i++ )
+        {
+            Path other = Files.createDirectories( root.resolve( "other" + i ) );
+            for( int j = 0; j < 500; j++ ) Files.createFile( other.resolve( "file" + j ) );
+        }
+        for( int i = 0; i < 20; i++ ) new FileMount( root.resolve( "other" + i ).toFile(), 1_000_000 );
+
+        Path dir = Files.createDirectories( root.resolve( "computer" ) );
+        Files.write( dir.resolve( "big.bin" ), new byte[10_000] );
+
+        FileMount mount = new FileMount( dir.toFile(), 5_000 );
+        assertThrows( IOException.class, () -> {
+            try( WritableByteChannel channel = mount.openForWrite( "other.bin" ) )
+            {
+                channel.write( ByteBuffer.wrap( new byte[1000] ) );
+            }
+        } );
+        assertEquals( 0, mount.getRemainingSpace() );
+    }
+
+    /**
+     * The used space is persisted and trusted on the next load, but only once it is accurate.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testSavedUsageIsAccurate() throws IOException
+    {
+        Path dir = Files.createDirectories( root.resolve( "computer" ) );
+        for( int i = 0; i < 20; i++ ) Files.write( dir.resolve( "file" + i ), new byte[1000 * i] );
+        File usage = new File( dir + ".usage" );
+
+        for( int round = 0; round < 20; round++ )
+        {
+            // Modify the mount and save while (possibly) still being recounted.
+            FileMount mount = new FileMount( dir.toFile(), 1_000_000 );
+            mount.delete( "file" + round );
+            FileMount.saveAllUsedSpace();
+
+            long actual = measure( dir );
+            if( usage.exists() )
+            {
+                ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( usage.toPath() ) );
+                buffer.getInt();
+                assertEquals( actual, buffer.getLong(), "Saved usage should match the files on disk" );
+            }
+
+            assertEquals( 1_000_000 + MINIMUM_FILE_SIZE - actual, new FileMount( dir.toFile(), 1_000_000 ).getRemainingSpace() );
+        }
+    }
+
+    /**
+     * Buffered writes are not written to disk straight away, but are visible to any other handle on the mount.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testBufferedWritesVisible() throws IOException
+    {
+        Path dir = Files.createDirectories( root.resolve( "computer" ) );
+        FileMount mount = new FileMount( dir.toFile(), 1_000_000 );
+
+        try( WritableByteChannel channel = mount.openForWrite( "file.txt" ) )
+        {
+            write( channel, "hello" );
+            assertEquals( 0, Files.size( dir.resolve( "file.txt" ) ), "Write should be buffered" );
+
+            assertEquals( 5, mount.getSize( "file.txt" ) );
+            assertEquals( "hello", read( mount, "file.txt" ) );
+        }
+    }
+
+    /**
+     * Once the mount's budget of unflushed bytes is exceeded, writes are flushed immediately.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testBudgetFlushesWrites() throws IOException
+    {
+        Path dir = Files.createDirectories( root.resolve( "computer" ) );
+        FileMount mount = new FileMount( dir.toFile(), 1_000_000 );
+
+        int budget = ComputerCraft.fileWriteBudget;
+        ComputerCraft.fileWriteBudget = 100;
+        try( WritableByteChannel first = mount.openForWrite( "first.txt" );
+             WritableByteChannel second = mount.openForWrite( "second.txt" ) )
+        {
+            first.write( ByteBuffer.wrap( new byte[60] ) );
+            assertEquals( 0, Files.size( dir.resolve( "first.txt" ) ), "Write should be buffered" );
+
+            // Both handles share the mount's budget, so this write takes it over the limit.
+            second.write( ByteBuffer.wrap( new byte[60] ) );
+            assertEquals( 60, Files.size( dir.resolve( "second.txt" ) ), "Write should have been flushed" );
+            assertEquals( 60, mount.addUnflushedBytes( 0 ) );
+        }
+        finally
+        {
+            ComputerCraft.fileWriteBudget = budget;
+        }
+
+        assertEquals( 0, mount.addUnflushedBytes( 0 ), "Closing should release the budget" );
+    }
+
+    /**
+     * If the buffer cannot be written, the channel is failed rather than silently dropping the buffered bytes, and
+     * these are written out when the channel is closed.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testWriteErrorFailsChannel() throws IOException
+    {
+        FileMount mount = new FileMount( Files.createDirectories( root.resolve( "computer" ) ).toFile(), 1_000_000 );
+        FailingChannel inner = new FailingChannel();
+        WriteBehindChannel channel = new WriteBehindChannel( mount, inner, 16 );
+
+        write( channel, "buffered" );
+        inner.failing = true;
+
+        // Failing in the background should be reported by the next operation.
+        channel.flushQuietly();
+        IOException error = assertThrows( IOException.class, () -> write( channel, "more" ) );
+        assertSame( error, assertThrows( IOException.class, channel::flush ), "Channel should stay failed" );
+        assertEquals( 8, mount.addUnflushedBytes( 0 ), "Buffered bytes should be kept" );
+
+        inner.failing = false;
+        channel.close();
+        assertEquals( "buffered", inner.contents.toString( StandardCharsets.UTF_8 ) );
+        assertEquals( 0, mount.addUnflushedBytes( 0 ) );
+    }
+
+    /**
+     * Writes reach the disk in order when the channel is flushed and closed, and the channel cannot be used after it
+     * is closed.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testFlushAndCloseOrdering() throws IOException
+    {
+        Path dir = Files.createDirectories( root.resolve( "computer" ) );
+        FileMount mount = new FileMount( dir.toFile(), 1_000_000 );
+
+        WritableByteChannel channel = mount.openForWrite( "file.txt" );
+        write( channel, "first " );
+        ((Flushable) channel).flush();
+        assertEquals( "first ", Files.readString( dir.resolve( "file.txt" ) ) );
+
+        write( channel, "second" );
+        channel.close();
+        assertEquals( "first second", Files.readString( dir.resolve( "file.txt" ) ) );
+
+        assertThrows( ClosedChannelException.class, () -> write( channel, "third" ) );
+        channel.close();
+
+        try( WritableByteChannel append = mount.openForAppend( "file.txt" ) )
+        {
+            write( append, " third" );
+        }
+        assertEquals( "first second third", Files.readString( dir.resolve( "file.txt" ) ) );
+    }
+
+    private static void write( WritableByteChannel channel, String contents ) throws IOException
+    {
+        channel.write( ByteBuffer.wrap( contents.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    private static String read( FileMount mount, String path ) throws IOException
+    {
+        try( InputStream stream = Channels.newInputStream( mount.openForRead( path ) ) )
+        {
+            return new String( stream.readAllBytes(), StandardCharsets.UTF_8 );
+        }
+    }
+
+    private static long measure( Path dir ) throws IOException
+    {
+        long size = MINIMUM_FILE_SIZE;
+        try( Stream<Path> files = Files.list( dir ) )
+        {
+            for( Path file : (Iterable<Path>) files::iterator )
+            {
+                assertTrue( Files.isRegularFile( file ) );
+                size += Math.max( Files.size( file ), MINIMUM_FILE_SIZE );
+            }
+        }
+        return size;
+    }
+
+    /**
+     * An in-memory channel, whose writes fail while {@link #failing} is set.
+     */
+    private static final class FailingChannel implements SeekableByteChannel
+    {
+        final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        boolean failing;
+        boolean open = true;
+
+        @Override
+        public int write( ByteBuffer src ) throws IOException
+        {
+            if( failing ) throw new IOException( "Disk is broken" );
+
+            int length = src.remaining();
+            byte[] bytes = new byte[length];
+            src.get( bytes );
+            contents.write( bytes );
+            return length;
+        }
+
+        @Override
+        public int read( ByteBuffer dst )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position()
+        {
+            return contents.size();
+        }
+
+        @Override
+        public SeekableByteChannel position( long newPosition )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long size()
+        {
+            return contents.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate( long size )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public void close()
+        {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileSystemTest
+{
+    @TempDir
+    File root;
+
+    /**
+     * Mount and unmount drives at random locations, checking each lookup agrees with finding the deepest mount
+     * containing the path.
+     *
+     * @throws FileSystemException If the file system could not be accessed.
+     */
+    @Test
+    public void testMountLookup() throws FileSystemException
+    {
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1_000_000 ) );
+        Map<String, String> mounted = new HashMap<>();
+        mounted.put( "", "hdd" );
+
+        Random random = new Random( 0x3ead );
+        for( int round = 0; round < 2000; round++ )
+        {
+            String location = randomPath( random );
+            if( location.isEmpty() ) continue;
+
+            if( random.nextInt( 3 ) == 0 )
+            {
+                fs.unmount( location );
+                mounted.remove( location );
+            }
+            else
+            {
+                String label = "mount" + round;
+                fs.mount( label, location, new EmptyMount() );
+                mounted.put( location, label );
+            }
+
+            for( int check = 0; check < 10; check++ )
+            {
+                String path = randomPath( random );
+                assertEquals( deepestMount( mounted, path ), fs.getMountLabel( path ), "Mount for " + path );
+            }
+        }
+    }
+
+    @Test
+    public void testMountLookupIgnoresCase() throws FileSystemException
+    {
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1_000_000 ) );
+        fs.mount( "disk", "Disk", new EmptyMount() );
+        fs.mount( "nested", "disk/Nested/deeper", new EmptyMount() );
+
+        assertEquals( "disk", fs.getMountLabel( "disk" ) );
+        assertEquals( "disk", fs.getMountLabel( "DISK/file.lua" ) );
+        assertEquals( "disk", fs.getMountLabel( "disk/nested" ) );
+        assertEquals( "nested", fs.getMountLabel( "disk/nested/Deeper/x" ) );
+        assertEquals( "hdd", fs.getMountLabel( "disk2" ) );
+
+        fs.unmount( "Disk" );
+        assertEquals( "hdd", fs.getMountLabel( "disk/file.lua" ) );
+        assertEquals( "nested", fs.getMountLabel( "disk/nested/deeper" ) );
+    }
+
+    @Test
+    public void testListIncludesMounts() throws FileSystemException, IOException
+    {
+        Files.createDirectories( root.toPath().resolve( "programs" ) );
+        Files.writeString( root.toPath().resolve( "startup.lua" ), "" );
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1_000_000 ) );
+        for( int i = 1; i <= 40; i++ ) fs.mount( "disk" + i, i == 1 ? "disk" : "disk" + i, new EmptyMount() );
+        fs.mount( "nested", "programs/lib", new EmptyMount() );
+        fs.mount( "deep", "programs/a/b", new EmptyMount() );
+
+        List<String> expected = new ArrayList<>();
+        expected.add( "disk" );
+        for( int i = 2; i <= 40; i++ ) expected.add( "disk" + i );
+        expected.add( "programs" );
+        expected.add( "startup.lua" );
+        expected.sort( null );
+        assertArrayEquals( expected.toArray(), fs.list( "" ) );
+
+        // Only mounts directly inside this directory should be listed.
+        assertArrayEquals( new String[] { "lib" }, fs.list( "programs" ) );
+        assertEquals( Set.of( "lib" ), fs.listMounts( "programs" ) );
+        assertEquals( Set.of(), fs.listMounts( "programs/lib" ) );
+
+        fs.unmount( "disk5" );
+        assertFalse( Arrays.asList( fs.list( "" ) ).contains( "disk5" ) );
+    }
+
+    @Test
+    public void testSanitizedPathsAreStable() throws FileSystemException, IOException
+    {
+        Files.writeString( root.toPath().resolve( "file.lua" ), "" );
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1_000_000 ) );
+
+        // Repeat each lookup, so the second is served from the cache of sanitised paths.
+        for( int i = 0; i < 2; i++ )
+        {
+            assertTrue( fs.exists( "a/../file.lua" ) );
+            assertTrue( fs.exists( "./file.lua" ) );
+            assertTrue( fs.exists( "\\file.lua" ) );
+            assertFalse( fs.exists( "file.lua/.." + "/missing" ) );
+            assertEquals( "hdd", fs.getMountLabel( "..." ) );
+        }
+    }
+
+    /**
+     * Compare {@link FileSystem#find(String)} against matching a regex over the whole tree, as it used to, for a random
+     * tree of files with a second mount inside it.
+     *
+     * @throws FileSystemException If the file system could not be accessed.
+     * @throws IOException         If the files could not be created.
+     */
+    @Test
+    public void testFind() throws FileSystemException, IOException
+    {
+        Random random = new Random( 0xf14d );
+        String[] names = new String[] { "a", "ab", "b.lua", "a.lua", "lib", "x" };
+        createTree( random, root.toPath().resolve( "hdd" ), names, 4 );
+        createTree( random, root.toPath().resolve( "disk" ), names, 3 );
+        Files.writeString( root.toPath().resolve( "hdd/file.txt" ), "" );
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root.toPath().resolve( "hdd" ).toFile(), 1_000_000 ) );
+        fs.mount( "disk", "lib/disk", new FileMount( root.toPath().resolve( "disk" ).toFile(), 1_000_000 ) );
+
+        String[] segments = new String[] { "*", "a*", "*.lua", "lib", "*a*", "a", "**", "disk", "*b" };
+        for( int i = 0; i < 200; i++ )
+        {
+            StringBuilder pattern = new StringBuilder();
+            int depth = 1 + random.nextInt( 4 );
+            for( int j = 0; j < depth; j++ )
+            {
+                if( j > 0 ) pattern.append( '/' );
+                pattern.append( segments[random.nextInt( segments.length )] );
+            }
+
+            String wildcard = pattern.toString();
+            assertArrayEquals( findByRegex( fs, wildcard ), fs.find( wildcard ), "Results for " + wildcard );
+        }
+
+        assertArrayEquals( new String[] { "lib/disk" }, fs.find( "lib/disk" ) );
+        assertArrayEquals( new String[0], fs.find( "missing/*" ) );
+        assertArrayEquals( new String[0], fs.find( "file.txt/*" ) );
+    }
+
+    /**
+     * Compare {@link FileSystem#find(String)} against the regex-based search on a mount with 50 thousand files.
+     *
+     * @throws FileSystemException If the file system could not be accessed.
+     * @throws IOException         If the files could not be created.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void benchmarkFind() throws FileSystemException, IOException
+    {
+        // 50 directories, each with 10 sub-directories of 100 files.
+        for( int i = 0; i < 50; i++ )
+        {
+            for( int j = 0; j < 10; j++ )
+            {
+                Path dir = Files.createDirectories( root.toPath().resolve( "dir" + i ).resolve( "sub" + j ) );
+                for( int k = 0; k < 100; k++ ) Files.createFile( dir.resolve( "file" + k + (k % 4 == 0 ? ".lua" : ".txt") ) );
+            }
+        }
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, Long.MAX_VALUE ) );
+        for( String pattern : new String[] { "*/*/*.lua", "dir1*/sub1/file1*", "*", "dir7/*" } )
+        {
+            for( int round = 0; round < 3; round++ )
+            {
+                long start = System.nanoTime();
+                int found = fs.find( pattern ).length;
+                long findTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int foundByRegex = findByRegex( fs, pattern ).length;
+                long regexTime = System.nanoTime() - start;
+
+                assertEquals( foundByRegex, found );
+                System.out.printf(
+                    "%s (%d matches): %.2fms by segment, %.2fms by regex%n",
+                    pattern, found, findTime * 1e-6, regexTime * 1e-6
+                );
+            }
+        }
+    }
+
+    private static void createTree( Random random, Path dir, String[] names, int depth ) throws IOException
+    {
+        Files.createDirectories( dir );
+        for( String name : names )
+        {
+            if( random.nextInt( 3 ) == 0 ) continue;
+
+            Path child = dir.resolve( name );
+            if( depth > 0 && random.nextBoolean() )
+            {
+                createTree( random, child, names, depth - 1 );
+            }
+            else
+            {
+                Files.writeString( child, name );
+            }
+        }
+    }
+
+    /**
+     * Find files matching a wildcard by walking every file below the first wildcard, and checking each against a
+     * regex. This is how {@link FileSystem#find(String)} used to be implemented.
+     *
+     * @param fs       The file system to search.
+     * @param wildPath The wildcard to match.
+     * @return All matching paths.
+     * @throws FileSystemException If the file system could not be accessed.
+     */
+    private static String[] findByRegex( FileSystem fs, String wildPath ) throws FileSystemException
+    {
+        wildPath = FileSystem.sanitizePath( wildPath, true );
+        int starIndex = wildPath.indexOf( '*' );
+        if( starIndex == -1 ) return fs.exists( wildPath ) ? new String[] { wildPath } : new String[0];
+
+        int prevDir = wildPath.substring( 0, starIndex ).lastIndexOf( '/' );
+        String startDir = prevDir == -1 ? "" : wildPath.substring( 0, prevDir );
+        if( !fs.isDir( startDir ) ) return new String[0];
+
+        Pattern pattern = Pattern.compile( "^\\Q" + wildPath.replaceAll( "\\*", "\\\\E[^\\\\/]*\\\\Q" ) + "\\E$" );
+        List<String> matches = new ArrayList<>();
+        findByRegex( fs, startDir, pattern, matches );
+        return matches.toArray( new String[0] );
+    }
+
+    private static void findByRegex( FileSystem fs, String dir, Pattern pattern, List<String> matches ) throws FileSystemException
+    {
+        for( String entry : fs.list( dir ) )
+        {
+            String entryPath = dir.isEmpty() ? entry : dir + "/" + entry;
+            if( pattern.matcher( entryPath ).matches() ) matches.add( entryPath );
+            if( fs.isDir( entryPath ) ) findByRegex( fs, entryPath, pattern, matches );
+        }
+    }
+
+    private static String randomPath( Random random )
+    {
+        String[] segments = new String[] { "a", "b", "disk", "disk2" };
+        StringBuilder path = new StringBuilder();
+        int depth = random.nextInt( 4 );
+        for( int i = 0; i < depth; i++ )
+        {
+            if( i > 0 ) path.append( '/' );
+            path.append( segments[random.nextInt( segments.length )] );
+        }
+        return path.toString();
+    }
+
+    /**
+     * Find the mount for a path by checking every mount, as {@link FileSystem} used to.
+     *
+     * @param mounted A map of mount locations to their labels.
+     * @param path    The path to look up.
+     * @return The label of the deepest mount containing this path.
+     */
+    private static String deepestMount( Map<String, String> mounted, String path )
+    {
+        String best = null;
+        for( String location : mounted.keySet() )
+        {
+            if( !FileSystem.contains( location, path ) ) continue;
+            if( best == null || location.length() > best.length() ) best = location;
+        }
+        return mounted.get( best );
+    }
+}
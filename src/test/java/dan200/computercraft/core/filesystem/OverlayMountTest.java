@@ -0,0 +1,166 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OverlayMountTest
+{
+    @TempDir
+    Path root;
+
+    private Path base;
+    private Path upper;
+
+    @BeforeEach
+    public void setup() throws IOException
+    {
+        base = Files.createDirectories( root.resolve( "template" ) );
+        Files.writeString( base.resolve( "startup.lua" ), "hello" );
+        Files.createDirectories( base.resolve( "lib" ) );
+        Files.writeString( base.resolve( "lib/util.lua" ), "util" );
+
+        upper = root.resolve( "computer" );
+    }
+
+    private OverlayMount mount()
+    {
+        return new OverlayMount( TemplateMount.get( base.toFile() ), new FileMount( upper.toFile(), 1_000_000 ) );
+    }
+
+    /**
+     * Deleting a file from the base layer hides it (and, for directories, its children) without touching the template,
+     * and this survives reloading the mount.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testWhiteouts() throws IOException
+    {
+        OverlayMount mount = mount();
+        mount.delete( "startup.lua" );
+        mount.delete( "lib" );
+
+        assertFalse( mount.exists( "startup.lua" ) );
+        assertFalse( mount.exists( "lib/util.lua" ) );
+        assertEquals( List.of(), list( mount, "" ), "Whiteout file should not be listed" );
+        assertTrue( Files.exists( base.resolve( "startup.lua" ) ), "Template should not be modified" );
+
+        OverlayMount reloaded = mount();
+        assertFalse( reloaded.exists( "startup.lua" ) );
+        assertFalse( reloaded.exists( "lib" ) );
+    }
+
+    /**
+     * Appending to a file from the base layer copies it into the upper layer first.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testAppendCopiesUp() throws IOException
+    {
+        OverlayMount mount = mount();
+        try( WritableByteChannel channel = mount.openForAppend( "lib/util.lua" ) )
+        {
+            write( channel, " and more" );
+        }
+
+        assertEquals( "util and more", read( mount, "lib/util.lua" ) );
+        assertEquals( "util and more", Files.readString( upper.resolve( "lib/util.lua" ) ) );
+        assertEquals( "util", Files.readString( base.resolve( "lib/util.lua" ) ), "Template should not be modified" );
+    }
+
+    /**
+     * A deleted file or directory may be created again, without the template's version showing through.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testDeleteThenRecreate() throws IOException
+    {
+        OverlayMount mount = mount();
+        mount.delete( "startup.lua" );
+        try( WritableByteChannel channel = mount.openForWrite( "startup.lua" ) )
+        {
+            write( channel, "new" );
+        }
+        assertEquals( "new", read( mount, "startup.lua" ) );
+        assertEquals( List.of( "lib", "startup.lua" ), list( mount, "" ) );
+
+        mount.delete( "startup.lua" );
+        assertFalse( mount.exists( "startup.lua" ) );
+
+        mount.delete( "lib" );
+        mount.makeDirectory( "lib" );
+        assertTrue( mount.isDirectory( "lib" ) );
+        assertEquals( List.of(), list( mount, "lib" ), "Template's files should stay hidden" );
+    }
+
+    /**
+     * Moving files and directories from the base layer copies them into the upper layer and hides the originals.
+     *
+     * @throws IOException         If the mount could not be accessed.
+     * @throws FileSystemException If the files could not be moved.
+     */
+    @Test
+    public void testMoveAcrossLayers() throws IOException, FileSystemException
+    {
+        OverlayMount mount = mount();
+        FileSystem fs = new FileSystem( "hdd", mount );
+
+        fs.move( "startup.lua", "main.lua" );
+        fs.move( "lib", "apis" );
+
+        assertEquals( List.of( "apis", "main.lua" ), list( mount, "" ) );
+        assertEquals( "hello", read( mount, "main.lua" ) );
+        assertEquals( "util", read( mount, "apis/util.lua" ) );
+        assertTrue( Files.exists( upper.resolve( "apis/util.lua" ) ) );
+        assertTrue( Files.exists( base.resolve( "lib/util.lua" ) ), "Template should not be modified" );
+
+        // And back again, now entirely within the upper layer.
+        fs.move( "main.lua", "startup.lua" );
+        assertEquals( "hello", read( mount, "startup.lua" ) );
+        assertFalse( mount.exists( "main.lua" ) );
+    }
+
+    private static List<String> list( OverlayMount mount, String path ) throws IOException
+    {
+        List<String> contents = new ArrayList<>();
+        mount.list( path, contents );
+        contents.sort( null );
+        return contents;
+    }
+
+    private static void write( WritableByteChannel channel, String contents ) throws IOException
+    {
+        channel.write( ByteBuffer.wrap( contents.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    private static String read( OverlayMount mount, String path ) throws IOException
+    {
+        try( InputStream stream = Channels.newInputStream( mount.openForRead( path ) ) )
+        {
+            return new String( stream.readAllBytes(), StandardCharsets.UTF_8 );
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TemplateMountTest
+{
+    @TempDir
+    Path root;
+
+    /**
+     * Each template directory has a single mount, until the server stops.
+     *
+     * @throws IOException If the template could not be created.
+     */
+    @Test
+    public void testSharedUntilReset() throws IOException
+    {
+        Path dir = Files.createDirectories( root.resolve( "template" ) );
+        assertNull( TemplateMount.get( root.resolve( "missing" ).toFile() ) );
+
+        TemplateMount mount = TemplateMount.get( dir.toFile() );
+        assertSame( mount, TemplateMount.get( dir.toFile() ) );
+
+        TemplateMount.reset();
+        assertNotSame( mount, TemplateMount.get( dir.toFile() ) );
+    }
+
+    /**
+     * Changes to the template are picked up by the next read, even though the file's contents are cached.
+     *
+     * @throws IOException If the mount could not be accessed.
+     */
+    @Test
+    public void testChangesPickedUp() throws IOException
+    {
+        Path dir = Files.createDirectories( root.resolve( "template" ) );
+        Path file = dir.resolve( "startup.lua" );
+        Files.writeString( file, "old" );
+
+        TemplateMount mount = TemplateMount.get( dir.toFile() );
+        assertEquals( "old", read( mount, "startup.lua" ) );
+        assertEquals( "old", read( mount, "startup.lua" ) );
+
+        Files.writeString( file, "new!" );
+        Files.setLastModifiedTime( file, FileTime.fromMillis( Files.getLastModifiedTime( file ).toMillis() + 10_000 ) );
+        assertEquals( "new!", read( mount, "startup.lua" ) );
+    }
+
+    private static String read( TemplateMount mount, String path ) throws IOException
+    {
+        try( InputStream stream = Channels.newInputStream( mount.openForRead( path ) ) )
+        {
+            return new String( stream.readAllBytes(), StandardCharsets.UTF_8 );
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.api.lua.IArguments;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.computer.BasicEnvironment;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.computer.TimeoutState;
+import dan200.computercraft.core.terminal.Terminal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.squiddev.cobalt.Constants;
+import org.squiddev.cobalt.LuaTable;
+import org.squiddev.cobalt.LuaValue;
+import org.squiddev.cobalt.Varargs;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.squiddev.cobalt.ValueFactory.valueOf;
+import static org.squiddev.cobalt.ValueFactory.varargsOf;
+
+/**
+ * Checks converting values between Java and Lua, including the paths which avoid tracking already converted values.
+ */
+public class MarshallingTest
+{
+    @TempDir
+    File root;
+
+    private CobaltLuaMachine machine;
+
+    @BeforeEach
+    public void setup()
+    {
+        Computer computer = new Computer( new BasicEnvironment( root ), new Terminal( 51, 19 ), 0 );
+        machine = new CobaltLuaMachine( computer, new TimeoutState() );
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        machine.close();
+    }
+
+    @Test
+    public void testPrimitiveValues()
+    {
+        Varargs values = machine.toValues( new Object[] { 1, 2.5, "three", true, null, new byte[] { 'a', 'b' } } );
+        assertEquals( 6, values.count() );
+        assertEquals( valueOf( 1 ), values.arg( 1 ) );
+        assertEquals( valueOf( 2.5 ), values.arg( 2 ) );
+        assertEquals( valueOf( "three" ), values.arg( 3 ) );
+        assertEquals( Constants.TRUE, values.arg( 4 ) );
+        assertTrue( values.arg( 5 ).isNil() );
+        assertEquals( valueOf( "ab" ), values.arg( 6 ) );
+
+        assertSame( Constants.NONE, machine.toValues( new Object[0] ) );
+        assertSame( Constants.NONE, machine.toValues( null ) );
+    }
+
+    @Test
+    public void testSharedValues()
+    {
+        // Tracking only starts part way through the values, but objects must still be converted once.
+        Map<String, Object> shared = new HashMap<>();
+        shared.put( "self", shared );
+        Varargs values = machine.toValues( new Object[] { "first", shared, List.of( shared ), shared } );
+
+        LuaValue table = values.arg( 2 );
+        assertTrue( table instanceof LuaTable );
+        assertSame( table, ((LuaTable) table).rawget( valueOf( "self" ) ) );
+        assertSame( table, ((LuaTable) values.arg( 3 )).rawget( 1 ) );
+        assertSame( table, values.arg( 4 ) );
+    }
+
+    @Test
+    public void testToObjects()
+    {
+        assertEquals( 0, CobaltLuaMachine.toObjects( Constants.NONE ).length );
+
+        LuaTable table = new LuaTable();
+        table.rawset( "self", table );
+        table.rawset( 1, valueOf( "x" ) );
+        Object[] objects = CobaltLuaMachine.toObjects( varargsOf( valueOf( 1 ), Constants.FALSE, table ) );
+
+        assertEquals( 1.0, objects[0] );
+        assertEquals( false, objects[1] );
+        Map<?, ?> map = (Map<?, ?>) objects[2];
+        assertSame( map, map.get( "self" ) );
+        assertEquals( "x", map.get( 1.0 ) );
+    }
+
+    @Test
+    public void testArguments() throws LuaException
+    {
+        LuaTable table = new LuaTable();
+        IArguments args = CobaltLuaMachine.toArguments( varargsOf( new LuaValue[] {
+            valueOf( "hello" ), Constants.NIL, Constants.TRUE, valueOf( 3 ), table,
+        } ) );
+
+        assertEquals( 5, args.count() );
+        assertEquals( "hello", args.get( 0 ) );
+        assertNull( args.get( 1 ) );
+        assertEquals( true, args.get( 2 ) );
+        assertEquals( 3.0, args.get( 3 ) );
+        assertSame( args.get( 4 ), args.get( 4 ), "Tables should only be converted once" );
+        assertNull( args.get( 5 ) );
+
+        assertEquals( "hello", args.getString( 0 ) );
+        assertTrue( args.getBoolean( 2 ) );
+        assertEquals( 3, args.getInt( 3 ) );
+        assertEquals( Optional.empty(), args.optString( 1 ) );
+        assertEquals( Optional.of( 3 ), args.optInt( 3 ) );
+        assertEquals( 7, args.optInt( 1, 7 ) );
+        assertEquals( "default", args.optString( 5, "default" ) );
+
+        assertThrows( LuaException.class, () -> args.getString( 3 ) );
+        assertThrows( LuaException.class, () -> args.getBoolean( 0 ) );
+        assertThrows( LuaException.class, () -> args.optInt( 0, 1 ) );
+
+        assertEquals( true, args.drop( 2 ).get( 0 ) );
+        assertSame( VarargArguments.EMPTY, CobaltLuaMachine.toArguments( Constants.NONE ) );
+    }
+
+    /**
+     * Measure how many bytes are allocated per call when converting common arguments and results.
+     *
+     * @throws LuaException If reading arguments fails.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void measureAllocations() throws LuaException
+    {
+        Object[] results = new Object[] { 1, "two", true };
+        Varargs luaArgs = varargsOf( valueOf( "text" ), valueOf( 4 ), Constants.NIL );
+        int count = 1_000_000;
+
+        for( int round = 0; round < 3; round++ )
+        {
+            long start = allocatedBytes();
+            for( int i = 0; i < count; i++ ) machine.toValues( results );
+            long toValues = allocatedBytes() - start;
+
+            start = allocatedBytes();
+            for( int i = 0; i < count; i++ ) CobaltLuaMachine.toObjects( luaArgs );
+            long toObjects = allocatedBytes() - start;
+
+            start = allocatedBytes();
+            for( int i = 0; i < count; i++ )
+            {
+                IArguments args = CobaltLuaMachine.toArguments( luaArgs );
+                args.getString( 0 );
+                args.getInt( 1 );
+                args.optBoolean( 2, false );
+            }
+            long arguments = allocatedBytes() - start;
+
+            System.out.printf(
+                "Bytes per call: toValues %.1f, toObjects %.1f, arguments %.1f%n",
+                (double) toValues / count, (double) toObjects / count, (double) arguments / count
+            );
+        }
+    }
+
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.tracking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramTest
+{
+    @Test
+    public void testEmpty()
+    {
+        Histogram histogram = new Histogram();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getPercentile( 0.5 ) );
+        assertEquals( 0, histogram.getPercentile( 1 ) );
+    }
+
+    @Test
+    public void testSmallValuesAreExact()
+    {
+        Histogram histogram = new Histogram();
+        for( int i = 0; i < 16; i++ ) histogram.record( i );
+
+        assertEquals( 16, histogram.getCount() );
+        assertEquals( 0, histogram.getPercentile( 0 ) );
+        assertEquals( 7, histogram.getPercentile( 0.5 ) );
+        assertEquals( 15, histogram.getPercentile( 1 ) );
+    }
+
+    /**
+     * Record single values, and check the reported value is the upper bound of a bucket which is no more than 1/16th
+     * of the value wide.
+     */
+    @Test
+    public void testBucketBounds()
+    {
+        Random random = new Random( 0x4157 );
+        for( int i = 0; i < 10_000; i++ )
+        {
+            long value = random.nextLong() >>> (28 + random.nextInt( 36 ));
+            Histogram histogram = new Histogram();
+            histogram.record( value );
+
+            long reported = histogram.getPercentile( 1 );
+            assertTrue( reported >= value, () -> value + " reported as " + reported );
+            assertTrue( reported - value <= value / 16, () -> value + " reported as " + reported );
+
+            // Every value in this bucket is reported the same.
+            Histogram top = new Histogram();
+            top.record( reported );
+            assertEquals( reported, top.getPercentile( 1 ) );
+        }
+    }
+
+    @Test
+    public void testClamped()
+    {
+        Histogram histogram = new Histogram();
+        histogram.record( -5 );
+        assertEquals( 0, histogram.getPercentile( 1 ) );
+
+        histogram.record( Long.MAX_VALUE );
+        assertEquals( (1L << 36) - 1, histogram.getPercentile( 1 ) );
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        Random random = new Random( 0x9e7 );
+        long[] values = new long[50_000];
+        Histogram histogram = new Histogram();
+        for( int i = 0; i < values.length; i++ )
+        {
+            // Roughly log-normal, like most timings.
+            values[i] = (long) Math.exp( 10 + random.nextGaussian() * 2 );
+            histogram.record( values[i] );
+        }
+        Arrays.sort( values );
+
+        for( double quantile : new double[] { 0.5, 0.9, 0.99, 0.999 } )
+        {
+            long expected = values[(int) Math.ceil( quantile * values.length ) - 1];
+            long actual = histogram.getPercentile( quantile );
+            assertTrue(
+                actual >= expected && actual - expected <= expected / 16,
+                () -> "p" + quantile + " should be " + expected + ", got " + actual
+            );
+        }
+    }
+
+    @Test
+    public void testStripedFromManyThreads() throws InterruptedException
+    {
+        Histogram histogram = Histogram.striped();
+        Thread[] threads = new Thread[8];
+        for( int i = 0; i < threads.length; i++ )
+        {
+            long value = 1000L * (i + 1);
+            threads[i] = new Thread( () -> {
+                for( int j = 0; j < 10_000; j++ ) histogram.record( value );
+            } );
+            threads[i].start();
+        }
+        for( Thread thread : threads ) thread.join();
+
+        assertEquals( 80_000, histogram.getCount() );
+        assertEquals( new Histogram( histogram ).getPercentile( 0.5 ), histogram.getPercentile( 0.5 ) );
+        assertTrue( histogram.getPercentile( 1 ) >= 8000 );
+
+        histogram.reset();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getPercentile( 0.5 ) );
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.shared.network.client;
+
+import dan200.computercraft.core.terminal.Terminal;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a client kept up-to-date with {@link TerminalState#ofChanges(boolean, Terminal)} always matches the
+ * server's terminal.
+ */
+public class TerminalStateTest
+{
+    private static final String BASE16 = "0123456789abcdef";
+
+    @Test
+    public void testChangesMatchSnapshot()
+    {
+        Random random = new Random( 0x7e47 );
+        Terminal server = new Terminal( 51, 19 );
+
+        // New viewers are always sent a full snapshot first.
+        Terminal client = new Terminal( 1, 1 );
+        client = sync( new TerminalState( true, server ), client );
+        for( int round = 0; round < 2000; round++ )
+        {
+            for( int change = random.nextInt( 4 ); change >= 0; change-- ) randomChange( random, server );
+            client = sync( server, client );
+
+            int finalRound = round;
+            assertArrayEquals( snapshot( server ), snapshot( client ), () -> "Terminals differ after round " + finalRound );
+        }
+    }
+
+    @Test
+    public void testOnlyChangedLinesSent()
+    {
+        Terminal terminal = new Terminal( 51, 19 );
+        terminal.clearChanges();
+
+        // Nothing but the cursor should be sent when the terminal hasn't changed.
+        TerminalState unchanged = TerminalState.ofChanges( true, terminal );
+        assertNotNull( unchanged );
+        assertTrue( unchanged.size() < 16, () -> "Unchanged terminal sent " + unchanged.size() + " bytes" );
+
+        terminal.setCursorPos( 0, 4 );
+        terminal.write( "12:34" );
+        TerminalState oneLine = TerminalState.ofChanges( true, terminal );
+        assertNotNull( oneLine );
+        assertTrue( oneLine.size() < 51 * 2 + 16, () -> "One changed line sent " + oneLine.size() + " bytes" );
+
+        TerminalState full = new TerminalState( true, terminal, false );
+        assertTrue( full.size() > 51 * 19 * 2, () -> "Full snapshot only sent " + full.size() + " bytes" );
+    }
+
+    @Test
+    public void testResizeRequiresSnapshot()
+    {
+        Terminal terminal = new Terminal( 51, 19 );
+        terminal.resize( 26, 20 );
+        assertNull( TerminalState.ofChanges( true, terminal ), "Resized terminal should need a full snapshot" );
+        assertNotNull( TerminalState.ofChanges( true, terminal ), "Should send changes again after a snapshot" );
+
+        // A no-op resize should not force a snapshot.
+        terminal.resize( 26, 20 );
+        assertNotNull( TerminalState.ofChanges( true, terminal ) );
+    }
+
+    /**
+     * Compare the cost of sending a full, compressed, snapshot against sending only the changed lines, for a terminal
+     * which redraws a clock every tick.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void benchmarkClock()
+    {
+        Terminal terminal = new Terminal( 51, 19 );
+        Random random = new Random( 0 );
+        for( int y = 0; y < terminal.getHeight(); y++ ) terminal.setLine( y, randomText( random, 51 ), randomColours( random, 51 ), randomColours( random, 51 ) );
+        terminal.clearChanges();
+
+        int count = 20_000;
+        for( int round = 0; round < 3; round++ )
+        {
+            long fullBytes = 0, changeBytes = 0;
+
+            long start = System.nanoTime();
+            for( int i = 0; i < count; i++ )
+            {
+                tickClock( terminal, i );
+                fullBytes += encode( new TerminalState( true, terminal ) );
+            }
+            long fullTime = System.nanoTime() - start;
+            terminal.clearChanges();
+
+            start = System.nanoTime();
+            for( int i = 0; i < count; i++ )
+            {
+                tickClock( terminal, i );
+                changeBytes += encode( TerminalState.ofChanges( true, terminal ) );
+            }
+            long changeTime = System.nanoTime() - start;
+
+            System.out.printf(
+                "Full snapshot: %.1fus, %d bytes per update. Changes: %.1fus, %d bytes per update%n",
+                fullTime / count * 1e-3, fullBytes / count, changeTime / count * 1e-3, changeBytes / count
+            );
+        }
+    }
+
+    private static void tickClock( Terminal terminal, int tick )
+    {
+        terminal.setCursorPos( 20, 9 );
+        terminal.write( String.format( "%02d:%02d:%02d", tick / 3600 % 24, tick / 60 % 60, tick % 60 ) );
+    }
+
+    private static int encode( @Nullable TerminalState state )
+    {
+        assertNotNull( state );
+        ByteBuf buffer = Unpooled.buffer();
+        state.write( new FriendlyByteBuf( buffer ) );
+        return buffer.readableBytes();
+    }
+
+    /**
+     * Send the server's terminal to the client, as {@code ClientTerminal} would receive it.
+     *
+     * @param server The server's terminal.
+     * @param client The client's current terminal.
+     * @return The updated client terminal.
+     */
+    private static Terminal sync( Terminal server, Terminal client )
+    {
+        TerminalState state = TerminalState.ofChanges( true, server );
+        return sync( state == null ? new TerminalState( true, server ) : state, client );
+    }
+
+    private static Terminal sync( TerminalState state, Terminal client )
+    {
+        ByteBuf buffer = Unpooled.buffer();
+        state.write( new FriendlyByteBuf( buffer ) );
+        TerminalState received = new TerminalState( new FriendlyByteBuf( buffer ) );
+        assertFalse( buffer.readableBytes() > 0, "Packet was not fully read" );
+
+        if( !received.hasChanges() && (client.getWidth() != received.width || client.getHeight() != received.height) )
+        {
+            client = new Terminal( received.width, received.height );
+        }
+        received.apply( client );
+        return client;
+    }
+
+    private static void randomChange( Random random, Terminal terminal )
+    {
+        int width = terminal.getWidth(), height = terminal.getHeight();
+        switch( random.nextInt( 12 ) )
+        {
+            case 0:
+            case 1:
+            case 2:
+                terminal.setCursorPos( random.nextInt( width + 4 ) - 2, random.nextInt( height + 4 ) - 2 );
+                terminal.write( randomText( random, random.nextInt( 10 ) ) );
+                break;
+            case 3:
+            case 4:
+            {
+                terminal.setCursorPos( random.nextInt( width ), random.nextInt( height ) );
+                int length = random.nextInt( 10 );
+                terminal.blit( randomText( random, length ), randomColours( random, length ), randomColours( random, length ) );
+                break;
+            }
+            case 5:
+                terminal.scroll( random.nextInt( 5 ) - 2 );
+                break;
+            case 6:
+                terminal.setCursorPos( random.nextInt( width ), random.nextInt( height ) );
+                terminal.clearLine();
+                break;
+            case 7:
+                if( random.nextInt( 10 ) == 0 ) terminal.clear();
+                break;
+            case 8:
+                terminal.setTextColour( random.nextInt( 16 ) );
+                terminal.setBackgroundColour( random.nextInt( 16 ) );
+                terminal.setCursorBlink( random.nextBoolean() );
+                break;
+            case 9:
+                terminal.getPalette().setColour( random.nextInt( 16 ), random.nextDouble(), random.nextDouble(), random.nextDouble() );
+                terminal.setPaletteChanged();
+                break;
+            case 10:
+                if( random.nextInt( 10 ) == 0 ) terminal.resize( 20 + random.nextInt( 40 ), 5 + random.nextInt( 20 ) );
+                break;
+            case 11:
+                if( random.nextInt( 20 ) == 0 ) terminal.reset();
+                break;
+        }
+    }
+
+    private static String randomText( Random random, int length )
+    {
+        char[] chars = new char[length];
+        for( int i = 0; i < length; i++ ) chars[i] = (char) (32 + random.nextInt( 95 ));
+        return new String( chars );
+    }
+
+    private static String randomColours( Random random, int length )
+    {
+        char[] chars = new char[length];
+        for( int i = 0; i < length; i++ ) chars[i] = BASE16.charAt( random.nextInt( 16 ) );
+        return new String( chars );
+    }
+
+    private static byte[] snapshot( Terminal terminal )
+    {
+        ByteBuf buffer = Unpooled.buffer();
+        terminal.write( new FriendlyByteBuf( buffer ) );
+        return Arrays.copyOfRange( buffer.array(), buffer.arrayOffset() + buffer.readerIndex(), buffer.arrayOffset() + buffer.readerIndex() + buffer.readableBytes() );
+    }
+}
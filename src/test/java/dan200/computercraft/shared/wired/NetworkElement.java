@@ -0,0 +1,120 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.shared.wired;
+
+import dan200.computercraft.api.network.IPacketReceiver;
+import dan200.computercraft.api.network.Packet;
+import dan200.computercraft.api.network.wired.IWiredElement;
+import dan200.computercraft.api.network.wired.IWiredNetworkChange;
+import dan200.computercraft.api.network.wired.IWiredNode;
+import dan200.computercraft.api.peripheral.IPeripheral;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A wired element at a fixed position, which records the distance of every packet it receives, and which peripherals
+ * it has been told about.
+ */
+final class NetworkElement implements IWiredElement, IPacketReceiver
+{
+    private final String id;
+    private final Vec3 position;
+    private final WiredNode node;
+
+    // Packets are records, so compare them by identity rather than by value.
+    final Map<Packet, Double> received = new IdentityHashMap<>();
+
+    final Map<String, IPeripheral> remotePeripherals = new HashMap<>();
+
+    NetworkElement( String id, Vec3 position )
+    {
+        this.id = id;
+        this.position = position;
+        node = new WiredNode( this );
+        node.addReceiver( this );
+    }
+
+    NetworkElement( String id, double x, double y, double z )
+    {
+        this( id, new Vec3( x, y, z ) );
+    }
+
+    WiredNode node()
+    {
+        return node;
+    }
+
+    @Nonnull
+    @Override
+    public IWiredNode getNode()
+    {
+        return node;
+    }
+
+    @Override
+    public void networkChanged( @Nonnull IWiredNetworkChange change )
+    {
+        remotePeripherals.keySet().removeAll( change.peripheralsRemoved().keySet() );
+        remotePeripherals.putAll( change.peripheralsAdded() );
+    }
+
+    @Nonnull
+    @Override
+    public String getSenderID()
+    {
+        return id;
+    }
+
+    @Nonnull
+    @Override
+    @SuppressWarnings( "ConstantConditions" )
+    public Level getLevel()
+    {
+        // Every element is in the same (non-existent) level.
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public Vec3 getPosition()
+    {
+        return position;
+    }
+
+    @Override
+    public double getRange()
+    {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public boolean isInterdimensional()
+    {
+        return false;
+    }
+
+    @Override
+    public void receiveSameDimension( @Nonnull Packet packet, double distance )
+    {
+        received.put( packet, distance );
+    }
+
+    @Override
+    public void receiveDifferentDimension( @Nonnull Packet packet )
+    {
+    }
+
+    @Override
+    public String toString()
+    {
+        return "NetworkElement{" + id + "}";
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.shared.wired;
+
+import dan200.computercraft.api.network.Packet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Checks that the cached routes used by {@link WiredNetwork#transmitPacket} always match a fresh shortest-path search,
+ * including after the network has been changed.
+ */
+public class WiredNetworkRoutingTest
+{
+    @Test
+    public void testRoutesAfterChanges()
+    {
+        Random random = new Random( 0x10ad );
+        List<NetworkElement> elements = new ArrayList<>();
+        for( int i = 0; i < 200; i++ )
+        {
+            elements.add( new NetworkElement( "n" + i, random.nextInt( 64 ), random.nextInt( 64 ), random.nextInt( 64 ) ) );
+        }
+
+        for( int round = 0; round < 50; round++ )
+        {
+            // Make a handful of random changes. These should all invalidate any cached routes.
+            for( int change = 0; change < 20; change++ )
+            {
+                WiredNode a = elements.get( random.nextInt( elements.size() ) ).node();
+                WiredNode b = elements.get( random.nextInt( elements.size() ) ).node();
+                if( a == b ) continue;
+
+                switch( random.nextInt( 6 ) )
+                {
+                    case 0:
+                    case 1:
+                    case 2:
+                        a.getNetwork().connect( a, b );
+                        break;
+                    case 3:
+                    case 4:
+                        if( a.network == b.network ) a.getNetwork().disconnect( a, b );
+                        break;
+                    case 5:
+                        a.getNetwork().remove( a );
+                        break;
+                }
+            }
+
+            // Then send a few packets from each of several nodes, so some are sent with cached routes.
+            for( int sends = 0; sends < 5; sends++ )
+            {
+                NetworkElement sender = elements.get( random.nextInt( elements.size() ) );
+                for( int repeat = 0; repeat < 2; repeat++ ) checkTransmit( sender, elements );
+            }
+        }
+    }
+
+    @Test
+    public void testCacheIsPerNetwork()
+    {
+        NetworkElement a = new NetworkElement( "a", 0, 0, 0 );
+        NetworkElement b = new NetworkElement( "b", 3, 0, 0 );
+        NetworkElement c = new NetworkElement( "c", 3, 4, 0 );
+        List<NetworkElement> elements = List.of( a, b, c );
+
+        a.node().getNetwork().connect( a.node(), b.node() );
+        b.node().getNetwork().connect( b.node(), c.node() );
+        checkTransmit( a, elements );
+
+        // Splitting the network must not leave c reachable through a's cached routes.
+        b.node().getNetwork().disconnect( b.node(), c.node() );
+        Packet packet = checkTransmit( a, elements );
+        assertFalse( c.received.containsKey( packet ) );
+
+        // And a shorter path should be used as soon as it exists.
+        a.node().getNetwork().connect( a.node(), c.node() );
+        checkTransmit( a, elements );
+        assertEquals( 5.0, c.received.get( checkTransmit( a, elements ) ), 1e-9 );
+    }
+
+    /**
+     * Compare transmitting with cached routes against recomputing them each time, on a large synthetic cable grid.
+     */
+    @Test
+    @Tag( "benchmark" )
+    public void benchmarkTransmit()
+    {
+        int size = 45;
+        NetworkElement[][] grid = new NetworkElement[size][size];
+        for( int x = 0; x < size; x++ )
+        {
+            for( int z = 0; z < size; z++ )
+            {
+                NetworkElement element = grid[x][z] = new NetworkElement( x + "," + z, x, 0, z );
+
+                // Most cables don't have a modem attached.
+                if( (x * size + z) % 20 != 0 ) element.node().removeReceiver( element );
+                if( x > 0 ) element.node().getNetwork().connect( element.node(), grid[x - 1][z].node() );
+                if( z > 0 ) element.node().getNetwork().connect( element.node(), grid[x][z - 1].node() );
+            }
+        }
+
+        NetworkElement sender = grid[0][0];
+        WiredNode u = grid[size / 2][size / 2].node(), v = grid[size / 2 + 1][size / 2].node();
+        int count = 500;
+
+        for( int i = 0; i < 3; i++ )
+        {
+            // Toggling an edge within a loop invalidates the cache, without splitting the network.
+            long start = System.nanoTime();
+            for( int j = 0; j < count; j++ )
+            {
+                u.getNetwork().disconnect( u, v );
+                u.getNetwork().connect( u, v );
+            }
+            long toggleTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for( int j = 0; j < count; j++ )
+            {
+                u.getNetwork().disconnect( u, v );
+                u.getNetwork().connect( u, v );
+                transmit( sender );
+            }
+            long uncachedTime = System.nanoTime() - start - toggleTime;
+
+            start = System.nanoTime();
+            for( int j = 0; j < count; j++ ) transmit( sender );
+            long cachedTime = System.nanoTime() - start;
+
+            System.out.printf(
+                "%d nodes: %.1fus/transmit uncached, %.1fus/transmit cached%n",
+                size * size, uncachedTime / count * 1e-3, cachedTime / count * 1e-3
+            );
+        }
+    }
+
+    private static Packet transmit( NetworkElement sender )
+    {
+        Packet packet = new Packet( 1, 1, null, sender );
+        sender.node().transmitSameDimension( packet, Double.POSITIVE_INFINITY );
+        return packet;
+    }
+
+    private static Packet checkTransmit( NetworkElement sender, List<NetworkElement> elements )
+    {
+        Packet packet = transmit( sender );
+
+        Map<WiredNode, Double> expected = shortestPaths( sender.node() );
+        for( NetworkElement element : elements )
+        {
+            Double distance = expected.get( element.node() );
+            if( distance == null )
+            {
+                assertFalse( element.received.containsKey( packet ), () -> element + " is not connected to " + sender );
+            }
+            else
+            {
+                Double actual = element.received.get( packet );
+                assertNotNull( actual, () -> element + " did not receive a packet from " + sender );
+                assertEquals( distance, actual, 1e-9, element + " received packet at the wrong distance" );
+            }
+        }
+
+        return packet;
+    }
+
+    /**
+     * A naive implementation of Dijkstra's algorithm, to check against.
+     *
+     * @param start The node to start from.
+     * @return The distance to every reachable node.
+     */
+    private static Map<WiredNode, Double> shortestPaths( WiredNode start )
+    {
+        Map<WiredNode, Double> distances = new HashMap<>();
+        Set<WiredNode> visited = new HashSet<>();
+        distances.put( start, 0.0 );
+
+        while( true )
+        {
+            WiredNode closest = null;
+            for( Map.Entry<WiredNode, Double> entry : distances.entrySet() )
+            {
+                if( visited.contains( entry.getKey() ) ) continue;
+                if( closest == null || entry.getValue() < distances.get( closest ) ) closest = entry.getKey();
+            }
+            if( closest == null ) return distances;
+
+            visited.add( closest );
+            double distance = distances.get( closest );
+            for( WiredNode neighbour : closest.neighbours )
+            {
+                double newDistance = distance + closest.element.getPosition().distanceTo( neighbour.element.getPosition() );
+                Double existing = distances.get( neighbour );
+                if( existing == null || newDistance < existing ) distances.put( neighbour, newDistance );
+            }
+        }
+    }
+}
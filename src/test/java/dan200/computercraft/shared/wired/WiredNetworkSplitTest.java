@@ -0,0 +1,161 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2021. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.shared.wired;
+
+import dan200.computercraft.api.peripheral.IPeripheral;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Randomly connects, disconnects and removes nodes, checking that {@link WiredNetwork}'s incremental splitting always
+ * agrees with a naive breadth-first search over the whole graph.
+ */
+public class WiredNetworkSplitTest
+{
+    private static final int NODES = 400;
+
+    @Test
+    public void testRandomChurn()
+    {
+        for( long seed = 0; seed < 3; seed++ ) churn( new Random( seed ), 4000 );
+    }
+
+    private static void churn( Random random, int operations )
+    {
+        List<NetworkElement> elements = new ArrayList<>( NODES );
+        for( int i = 0; i < NODES; i++ )
+        {
+            elements.add( new NetworkElement( "n" + i, random.nextInt( 32 ), random.nextInt( 32 ), random.nextInt( 32 ) ) );
+        }
+
+        for( int operation = 0; operation < operations; operation++ )
+        {
+            WiredNode node = elements.get( random.nextInt( NODES ) ).node();
+            int action = random.nextInt( 100 );
+            if( action < 45 )
+            {
+                WiredNode other = elements.get( random.nextInt( NODES ) ).node();
+                if( other != node ) node.getNetwork().connect( node, other );
+            }
+            else if( action < 88 )
+            {
+                // Disconnect an existing edge, which may or may not be a bridge.
+                if( node.neighbours.isEmpty() ) continue;
+                List<WiredNode> neighbours = new ArrayList<>( node.neighbours );
+                node.getNetwork().disconnect( node, neighbours.get( random.nextInt( neighbours.size() ) ) );
+            }
+            else if( action < 93 )
+            {
+                node.getNetwork().remove( node );
+            }
+            else
+            {
+                // Toggle this node's peripheral, so we check peripherals follow nodes into their new network.
+                String name = "peripheral_" + node.element.getSenderID();
+                Map<String, IPeripheral> peripherals = node.peripherals.isEmpty()
+                    ? Collections.singletonMap( name, new NamedPeripheral( name ) )
+                    : Collections.emptyMap();
+                node.getNetwork().updatePeripherals( node, peripherals );
+            }
+
+            checkComponents( elements );
+        }
+    }
+
+    /**
+     * Check that every node's network contains exactly the nodes reachable from it, and that every element knows about
+     * exactly the peripherals in its network.
+     *
+     * @param elements Every element in the graph.
+     */
+    private static void checkComponents( List<NetworkElement> elements )
+    {
+        Set<WiredNode> seen = new HashSet<>();
+        for( NetworkElement element : elements )
+        {
+            WiredNode start = element.node();
+            if( seen.contains( start ) ) continue;
+
+            Set<WiredNode> component = reachable( start );
+            seen.addAll( component );
+
+            WiredNetwork network = start.network;
+            assertEquals( component, network.nodes, () -> "Network of " + start + " does not match its component" );
+
+            Map<String, IPeripheral> peripherals = new HashMap<>();
+            for( WiredNode node : component )
+            {
+                assertSame( network, node.network, () -> node + " is in the wrong network" );
+                peripherals.putAll( node.peripherals );
+            }
+
+            for( WiredNode node : component )
+            {
+                assertEquals(
+                    peripherals.keySet(), ((NetworkElement) node.element).remotePeripherals.keySet(),
+                    () -> node + " has the wrong peripherals"
+                );
+            }
+        }
+    }
+
+    private static Set<WiredNode> reachable( WiredNode start )
+    {
+        Set<WiredNode> visited = new HashSet<>();
+        Queue<WiredNode> queue = new ArrayDeque<>();
+        visited.add( start );
+        queue.add( start );
+
+        WiredNode node;
+        while( (node = queue.poll()) != null )
+        {
+            for( WiredNode neighbour : node.neighbours )
+            {
+                if( visited.add( neighbour ) ) queue.add( neighbour );
+            }
+        }
+
+        return visited;
+    }
+
+    private static final class NamedPeripheral implements IPeripheral
+    {
+        private final String name;
+
+        NamedPeripheral( String name )
+        {
+            this.name = name;
+        }
+
+        @Nonnull
+        @Override
+        public String getType()
+        {
+            return name;
+        }
+
+        @Override
+        public boolean equals( @Nullable IPeripheral other )
+        {
+            return this == other;
+        }
+    }
+}